@@ -0,0 +1,97 @@
+package com.mediscreen.note.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, typically the result of the last release and the current one,
+ * and exits with status 1 when a benchmark regressed.
+ * A benchmark regresses when it is worse than the baseline by more than the threshold and by more than
+ * the sum of both score errors, so that noisy benchmarks are not reported.
+ * <p>
+ * Arguments: {@code baseline.json current.json [threshold percent, 10 by default]}.
+ */
+public final class BenchmarkComparison {
+
+
+    private BenchmarkComparison() {
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison baseline.json current.json [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", score(entry.getValue()), "new");
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            double change = (score(after) - score(before)) / score(before);
+            double worsening = higherIsBetter(after) ? -change : change;
+            double noise = error(before) + error(after);
+            boolean regressed = worsening > threshold && Math.abs(score(after) - score(before)) > noise;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), score(before), score(after),
+                    change * 100, regressed ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regression(s) above %.0f%%%n", regressions, threshold * 100);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+
+    /**
+     * Index the results by benchmark name, parameters and unit.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText()
+                    .replace("com.mediscreen.note.benchmark.", ""));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            key.append(" (").append(result.get("primaryMetric").get("scoreUnit").asText()).append(')');
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+
+    private static double score(JsonNode result) {
+        return result.get("primaryMetric").get("score").asDouble();
+    }
+
+
+    private static double error(JsonNode result) {
+        double error = result.get("primaryMetric").get("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+
+    private static boolean higherIsBetter(JsonNode result) {
+        return result.get("mode").asText().equals("thrpt");
+    }
+}
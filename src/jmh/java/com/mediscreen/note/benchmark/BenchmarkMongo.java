@@ -0,0 +1,228 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.event.NoteOutbox;
+import com.mediscreen.note.mapper.NoteMapper;
+import com.mediscreen.note.model.DatabaseSequence;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteBodyCompression;
+import com.mediscreen.note.repository.NoteReadRouting;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteRepositoryCustomImpl;
+import com.mediscreen.note.repository.OperationTimeListener;
+import com.mediscreen.note.service.NoteArchiveService;
+import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.SequenceGeneratorService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Shared plumbing for the benchmarks that run against a local MongoDB.
+ * The target is configured with the {@code benchmark.mongodb.uri} and {@code benchmark.mongodb.database} system properties.
+ */
+final class BenchmarkMongo {
+
+
+    static final String URI = System.getProperty("benchmark.mongodb.uri", "mongodb://localhost:27017");
+    static final String DATABASE = System.getProperty("benchmark.mongodb.database", "mediscreenBenchmark");
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final String[] SENTENCES = {
+            "Le patient déclare qu'il se sent très bien.",
+            "Tests de laboratoire indiquant une microalbumine élevée.",
+            "Fumeur, il a arrêté dans les 12 mois précédents.",
+            "Le patient déclare avoir eu plusieurs épisodes de vertige depuis la dernière visite.",
+            "Hémoglobine A1C supérieure au niveau recommandé.",
+            "Poids corporel supérieur au poids recommandé.",
+            "Tests de laboratoire indiquant un taux de cholestérol LDL élevé.",
+            "Le patient déclare qu'il n'a aucun problème."
+    };
+
+
+    /** Appended to one note in {@value #RARE_SENTENCE_PERIOD}, for selective searches. */
+    static final String RARE_SENTENCE = "Hyperkaliémie détectée au dernier bilan sanguin.";
+    static final int RARE_SENTENCE_PERIOD = 1000;
+
+
+    private BenchmarkMongo() {
+    }
+
+
+    static MongoClient client() {
+        return MongoClients.create(URI);
+    }
+
+
+    static MongoTemplate template(MongoClient client) {
+        return new MongoTemplate(client, DATABASE);
+    }
+
+
+    /**
+     * Build the repository as Spring Data does, including its custom fragment.
+     * @param template the template
+     * @return the repository
+     */
+    static NoteRepository noteRepository(MongoTemplate template) {
+        return new MongoRepositoryFactory(template)
+                .getRepository(NoteRepository.class, RepositoryFragments.just(
+                        new NoteRepositoryCustomImpl(template, new NoteBodyCompression(NoteBodyCompression.Mode.DISABLED, 0),
+                                new NoteReadRouting(null, new OperationTimeListener(), "primary", "primary", "primary", Duration.ofSeconds(90)))));
+    }
+
+
+    /**
+     * Wire the service against the given database with the default sequence block size and without cache.
+     * @param template the template
+     * @return the service
+     */
+    static NoteService noteService(MongoTemplate template) {
+        return noteService(template, NoteCache.Mode.DISABLED);
+    }
+
+
+    /**
+     * Wire the service against the given database with the default sequence block size.
+     * @param template the template
+     * @param cacheMode the cache mode
+     * @return the service
+     */
+    static NoteService noteService(MongoTemplate template, NoteCache.Mode cacheMode) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SequenceGeneratorService sequenceGenerator = new SequenceGeneratorService(template, meterRegistry, 50);
+        NoteCache noteCache = new NoteCache(cacheMode, 10_000, Duration.ofMinutes(10), Duration.ofSeconds(5), meterRegistry);
+        NoteRepository noteRepository = noteRepository(template);
+        return new NoteService(noteRepository, new NoteMapper(), sequenceGenerator, noteCache,
+                new NoteOutbox(NoteOutbox.Mode.DISABLED, null, null, null),
+                disabledArchive(noteRepository), meterRegistry);
+    }
+
+
+    /**
+     * An archive that never runs, so that reads only query the hot collection as by default.
+     * @param noteRepository the repository
+     * @return the archive service
+     */
+    static NoteArchiveService disabledArchive(NoteRepository noteRepository) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NoteCache noteCache = new NoteCache(NoteCache.Mode.DISABLED, 0, Duration.ZERO, Duration.ZERO, meterRegistry);
+        return new NoteArchiveService(noteRepository, noteCache, meterRegistry, NoteArchiveService.Mode.DISABLED, Duration.ZERO, 0);
+    }
+
+
+    /**
+     * Create the indexes declared on {@link Note}, as the application does at startup.
+     * @param template the template
+     */
+    static void ensureNoteIndexes(MongoTemplate template) {
+        IndexOperations indexOps = template.indexOps(Note.class);
+        new MongoPersistentEntityIndexResolver(template.getConverter().getMappingContext())
+                .resolveIndexFor(Note.class)
+                .forEach(indexOps::ensureIndex);
+    }
+
+
+    /**
+     * Fill the notes collection with the given number of documents, unless it already holds exactly that many.
+     * Ids are contiguous from 1 and every patient gets {@code notesPerPatient} notes spread over the last years,
+     * the note sequence is moved past the seeded ids so that created notes do not collide with them.
+     * @param template the template
+     * @param documentCount the number of notes
+     * @param notesPerPatient the number of notes per patient
+     */
+    static void seedNotes(MongoTemplate template, int documentCount, int notesPerPatient) {
+        template.upsert(query(where("_id").is(Note.SEQUENCE_NAME)), new Update().max("seq", (long) documentCount),
+                DatabaseSequence.class);
+        MongoCollection<Document> notes = template.getCollection(template.getCollectionName(Note.class));
+        if (notes.countDocuments() == documentCount) {
+            return;
+        }
+        notes.drop();
+        ensureNoteIndexes(template);
+
+        LocalDate today = LocalDate.now();
+        List<Document> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int id = 1; id <= documentCount; id++) {
+            LocalDate date = today.minusDays(id % 3650);
+            batch.add(new Document("_id", id)
+                    .append("patientId", patientOf(id, notesPerPatient))
+                    .append("note", noteBody(id))
+                    .append("date", Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant())));
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                notes.insertMany(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            notes.insertMany(batch);
+        }
+    }
+
+
+    /**
+     * Remove the notes created by a benchmark on top of the seeded ones.
+     * @param template the template
+     * @param documentCount the number of seeded notes
+     */
+    static void removeCreatedNotes(MongoTemplate template, int documentCount) {
+        template.remove(query(where("_id").gt(documentCount)), Note.class);
+    }
+
+
+    /**
+     * The notes {@link #seedNotes(MongoTemplate, int, int)} stores, as entities.
+     * @param documentCount the number of notes
+     * @param notesPerPatient the number of notes per patient
+     * @return the notes
+     */
+    static List<Note> seededNotes(int documentCount, int notesPerPatient) {
+        LocalDate today = LocalDate.now();
+        List<Note> notes = new ArrayList<>(documentCount);
+        for (int id = 1; id <= documentCount; id++) {
+            Note note = new Note(patientOf(id, notesPerPatient), noteBody(id));
+            note.setId(id);
+            note.setDate(today.minusDays(id % 3650));
+            notes.add(note);
+        }
+        return notes;
+    }
+
+
+    static int patientOf(int noteId, int notesPerPatient) {
+        return (noteId - 1) / notesPerPatient + 1;
+    }
+
+
+    static String noteBody(int seed) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            if (i > 0) {
+                body.append(' ');
+            }
+            body.append(SENTENCES[(seed + i * 3) % SENTENCES.length]);
+        }
+        if (seed % RARE_SENTENCE_PERIOD == 0) {
+            body.append(' ').append(RARE_SENTENCE);
+        }
+        return body.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.model.DatabaseSequence;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process replacements of the database, so that the service benchmarks measure the cost of the service itself:
+ * mapping, caching, sorting and id generation, without network or storage noise.
+ * Only the calls made by the benchmarked methods are implemented, any other call fails.
+ */
+final class InMemoryStandIns {
+
+
+    private InMemoryStandIns() {
+    }
+
+
+    /**
+     * A note repository answering from maps, indexed by id and by patient id like the collection.
+     * @param notes the initial notes
+     * @return the repository
+     */
+    static NoteRepository noteRepository(List<Note> notes) {
+        Map<Integer, Note> byId = new ConcurrentSkipListMap<>();
+        Map<Integer, List<Note>> byPatientId = new ConcurrentHashMap<>();
+        Map<Integer, AtomicLong> patientVersions = new ConcurrentHashMap<>();
+        notes.forEach(note -> store(byId, byPatientId, note));
+        return (NoteRepository) Proxy.newProxyInstance(NoteRepository.class.getClassLoader(),
+                new Class<?>[]{NoteRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.ofNullable(byId.get((Integer) args[0]));
+                    case "findVersionById" -> {
+                        Note note = byId.get((Integer) args[0]);
+                        yield note == null ? OptionalLong.empty() : OptionalLong.of(note.getVersion());
+                    }
+                    case "findAll", "readAll" -> new ArrayList<>(byId.values());
+                    case "findByPatientIdOrderByDateAsc" -> {
+                        List<Note> patientNotes = new ArrayList<>(byPatientId.getOrDefault((Integer) args[0], List.of()));
+                        patientNotes.sort(Comparator.comparing(Note::getDate));
+                        yield patientNotes;
+                    }
+                    case "save" -> store(byId, byPatientId, (Note) args[0]);
+                    case "findPatientNotesVersion" -> {
+                        AtomicLong version = patientVersions.get((Integer) args[0]);
+                        yield version == null ? 0L : version.get();
+                    }
+                    case "incrementPatientNotesVersions" -> {
+                        ((Collection<?>) args[0]).forEach(patientId -> patientVersions
+                                .computeIfAbsent((Integer) patientId, id -> new AtomicLong()).incrementAndGet());
+                        yield null;
+                    }
+                    case "deleteAll" -> {
+                        byId.clear();
+                        byPatientId.clear();
+                        yield null;
+                    }
+                    case "count" -> (long) byId.size();
+                    case "toString" -> "InMemoryNoteRepository";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+
+    /**
+     * Mongo operations supporting only the counter increments of the sequence generator.
+     * @return the operations
+     */
+    static MongoOperations sequenceOperations() {
+        Map<Object, AtomicLong> counters = new ConcurrentHashMap<>();
+        return (MongoOperations) Proxy.newProxyInstance(MongoOperations.class.getClassLoader(),
+                new Class<?>[]{MongoOperations.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAndModify" -> {
+                        Object seqName = ((Query) args[0]).getQueryObject().get("_id");
+                        Document inc = (Document) ((UpdateDefinition) args[1]).getUpdateObject().get("$inc");
+                        DatabaseSequence sequence = new DatabaseSequence();
+                        sequence.setId(String.valueOf(seqName));
+                        sequence.setSeq(counters.computeIfAbsent(seqName, name -> new AtomicLong())
+                                .addAndGet(((Number) inc.get("seq")).longValue()));
+                        yield sequence;
+                    }
+                    case "toString" -> "InMemorySequenceOperations";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+
+    private static Note store(Map<Integer, Note> byId, Map<Integer, List<Note>> byPatientId, Note note) {
+        Note previous = byId.put(note.getId(), note);
+        if (previous != null) {
+            byPatientId.get(previous.getPatientId()).remove(previous);
+        }
+        byPatientId.computeIfAbsent(note.getPatientId(), patientId -> new CopyOnWriteArrayList<>()).add(note);
+        return note;
+    }
+}
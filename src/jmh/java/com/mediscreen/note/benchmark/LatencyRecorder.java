@@ -0,0 +1,57 @@
+package com.mediscreen.note.benchmark;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram shared by the load test threads, recording successful responses in buckets of 100 µs up to 30 s
+ * and counting failed ones apart.
+ */
+final class LatencyRecorder {
+
+
+    private static final long BUCKET_NANOS = 100_000;
+    private static final int BUCKETS = 300_000;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder errors = new LongAdder();
+
+
+    void record(long nanos, boolean success) {
+        if (!success) {
+            errors.increment();
+            return;
+        }
+        buckets.incrementAndGet((int) Math.min(BUCKETS - 1, nanos / BUCKET_NANOS));
+    }
+
+
+    long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+
+    long errors() {
+        return errors.sum();
+    }
+
+
+    /**
+     * @return the upper bound in milliseconds of the bucket holding the given percentile
+     */
+    double percentile(double percentile) {
+        long rank = (long) Math.ceil(count() * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return (i + 1) * BUCKET_NANOS / 1e6;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.service.NoteService;
+import com.mongodb.client.MongoClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a batch of note operations executed one by one through NoteService versus as a single bulk.
+ * Each batch mixes 70% creates and 30% updates of seeded notes; the HTTP round trip saved per operation is not included.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class NoteBulkBenchmark {
+
+
+    private static final int SEEDED_NOTES = 100_000;
+    private static final int BATCH_SIZE = 1000;
+
+    private MongoClient client;
+    private NoteService noteService;
+    private List<BulkNoteOperation> batch;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = BenchmarkMongo.client();
+        var template = BenchmarkMongo.template(client);
+        BenchmarkMongo.seedNotes(template, SEEDED_NOTES, 10);
+        noteService = BenchmarkMongo.noteService(template);
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            NoteDto note = new NoteDto(i % 100 + 1, BenchmarkMongo.noteBody(i));
+            batch.add(i % 10 < 7 ? BulkNoteOperation.create(note) : BulkNoteOperation.update(i * 97 % SEEDED_NOTES + 1, note));
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int singleCalls() throws NoteNotFoundException {
+        int applied = 0;
+        for (BulkNoteOperation operation : batch) {
+            if (operation.getType() == BulkNoteOperation.Type.CREATE) {
+                noteService.createNote(operation.getNote());
+            } else {
+                noteService.updateNote(operation.getId(), operation.getNote());
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BulkNoteResult> bulk() {
+        return noteService.executeBulk(batch);
+    }
+}
@@ -0,0 +1,137 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteBodyCompression;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of storing note bodies deflated, through the mapping the repository uses, without MongoDB:
+ * converting a note to its document on write, and back on read, inflating the body or, as reads projecting the body
+ * out do, only its metadata.
+ * Reads convert the documents as the repository reads them, without their search terms.
+ * The average BSON sizes of the documents, what the collection stores and what a read carries over the wire, both before
+ * WiredTiger block compression, are printed once per trial. Bodies are random sequences of the words of the benchmark sentences.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteCompressionBenchmark {
+
+
+    private static final int NOTE_COUNT = 1024;
+
+    @Param({"DISABLED", "DEFLATE"})
+    public NoteBodyCompression.Mode mode;
+
+    @Param({"500", "2000", "8000"})
+    public int noteLength;
+
+    private MappingMongoConverter converter;
+    private NoteBodyCompression compression;
+    private List<Note> notes;
+    private List<Document> documents;
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        compression = new NoteBodyCompression(mode, 1024);
+
+        Random random = new Random(42);
+        List<String> words = vocabulary();
+        notes = new ArrayList<>(NOTE_COUNT);
+        documents = new ArrayList<>(NOTE_COUNT);
+        long storedBytes = 0;
+        long readBytes = 0;
+        for (int id = 1; id <= NOTE_COUNT; id++) {
+            StringBuilder body = new StringBuilder(noteLength + 16);
+            while (body.length() < noteLength) {
+                body.append(words.get(random.nextInt(words.size()))).append(' ');
+            }
+            Note note = new Note(BenchmarkMongo.patientOf(id, 10), body.toString());
+            note.setId(id);
+            note.setDate(LocalDate.now());
+            notes.add(note);
+            Document document = write(note);
+            storedBytes += bsonSize(document);
+            document.remove(Note.SEARCH_TERMS_FIELD);
+            readBytes += bsonSize(document);
+            documents.add(document);
+        }
+        System.out.printf("%n%s, %d chars: %d bytes stored, %d bytes read per document%n", mode, noteLength,
+                storedBytes / NOTE_COUNT, readBytes / NOTE_COUNT);
+    }
+
+
+    @Benchmark
+    public Document write() {
+        return write(notes.get(next()));
+    }
+
+
+    @Benchmark
+    public String readBody() {
+        Document document = documents.get(next());
+        return compression.inflate(converter.read(Note.class, document), document).getNote();
+    }
+
+
+    @Benchmark
+    public LocalDate readWithoutBody() {
+        return converter.read(Note.class, documents.get(next())).getDate();
+    }
+
+
+    private Document write(Note note) {
+        Document document = new Document();
+        converter.write(note, document);
+        compression.onBeforeSave(note, document, "notes");
+        return document;
+    }
+
+
+    private static int bsonSize(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+
+    private int next() {
+        next = (next + 1) % NOTE_COUNT;
+        return next;
+    }
+
+
+    private static List<String> vocabulary() {
+        Set<String> words = new LinkedHashSet<>();
+        for (int seed = 0; seed < 100; seed++) {
+            for (String word : BenchmarkMongo.noteBody(seed).split(" ")) {
+                words.add(word);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mediscreen.note.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.config.MessageConverterConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of encoding and decoding the 100k-note list of {@code /api/note/list} in each negotiable format,
+ * with the mappers the application registers. The payload size of each format is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class NoteEncodingBenchmark {
+
+
+    private static final int LIST_SIZE = 100_000;
+    private static final TypeReference<List<NoteDto>> NOTE_LIST = new TypeReference<>() {};
+
+    @Param({"json", "smile", "cbor", "ndjson-gzip"})
+    public String format;
+
+    private List<NoteDto> notes;
+    private ObjectMapper mapper;
+    private byte[] payload;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        notes = new ArrayList<>(LIST_SIZE);
+        LocalDate today = LocalDate.now();
+        for (int id = 1; id <= LIST_SIZE; id++) {
+            NoteDto note = new NoteDto(BenchmarkMongo.patientOf(id, 10), BenchmarkMongo.noteBody(id));
+            note.setId(id);
+            note.setDate(today.minusDays(id % 3650));
+            notes.add(note);
+        }
+        MessageConverterConfig config = new MessageConverterConfig();
+        mapper = switch (format) {
+            case "smile" -> config.smileHttpMessageConverter(new Jackson2ObjectMapperBuilder()).getObjectMapper();
+            case "cbor" -> config.cborHttpMessageConverter(new Jackson2ObjectMapperBuilder()).getObjectMapper();
+            default -> new Jackson2ObjectMapperBuilder().build();
+        };
+        payload = encode();
+        System.out.printf("%n%s payload of %d notes: %d bytes%n", format, LIST_SIZE, payload.length);
+    }
+
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (format.equals("ndjson-gzip")) {
+            try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+                for (NoteDto note : notes) {
+                    gzip.write(mapper.writeValueAsBytes(note));
+                    gzip.write('\n');
+                }
+            }
+        } else {
+            mapper.writeValue(bytes, notes);
+        }
+        return bytes.toByteArray();
+    }
+
+
+    @Benchmark
+    public List<NoteDto> decode() throws IOException {
+        if (format.equals("ndjson-gzip")) {
+            ObjectReader reader = mapper.readerFor(NoteDto.class);
+            try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload));
+                 MappingIterator<NoteDto> iterator = reader.readValues(gzip)) {
+                return iterator.readAll(new ArrayList<>(LIST_SIZE));
+            }
+        }
+        return mapper.readValue(payload, NOTE_LIST);
+    }
+}
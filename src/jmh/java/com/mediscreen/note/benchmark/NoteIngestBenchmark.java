@@ -0,0 +1,93 @@
+package com.mediscreen.note.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.ingest.NoteIngestService;
+import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.SequenceGeneratorService;
+import com.mongodb.client.MongoClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained throughput of /patHistory/add back-loading, with 8 concurrent clients:
+ * one sequence value and one insert per note ({@code sync}), or a journal append acknowledged once on disk
+ * and batched inserts in the background ({@code journal}).
+ * A journaled client refused by the full queue retries at once, so past the queue capacity the journal
+ * scores the rate at which the background inserts drain it, not the rate of appends.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class NoteIngestBenchmark {
+
+
+    private static final int DOCUMENT_COUNT = 100_000;
+    private static final int NOTES_PER_PATIENT = 10;
+
+    @Param({"sync", "journal"})
+    public String mode;
+
+    private MongoClient client;
+    private MongoTemplate template;
+    private NoteService noteService;
+    private NoteIngestService noteIngestService;
+    private Path journalDirectory;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        client = BenchmarkMongo.client();
+        template = BenchmarkMongo.template(client);
+        BenchmarkMongo.seedNotes(template, DOCUMENT_COUNT, NOTES_PER_PATIENT);
+        noteService = BenchmarkMongo.noteService(template);
+        if (mode.equals("journal")) {
+            journalDirectory = Files.createTempDirectory("note-journal");
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            noteIngestService = new NoteIngestService(noteService, new SequenceGeneratorService(template, meterRegistry, 50),
+                    new ObjectMapper().findAndRegisterModules(), meterRegistry, journalDirectory.toString(), 10_000, 500);
+            noteIngestService.start();
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (noteIngestService != null) {
+            noteIngestService.stop();
+            try (var files = Files.list(journalDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(journalDirectory);
+        }
+        BenchmarkMongo.removeCreatedNotes(template, DOCUMENT_COUNT);
+        client.close();
+    }
+
+
+    @Benchmark
+    public void addPatientNote() {
+        int patientId = ThreadLocalRandom.current().nextInt(DOCUMENT_COUNT / NOTES_PER_PATIENT) + 1;
+        String note = BenchmarkMongo.noteBody(patientId);
+        if (noteIngestService == null) {
+            noteService.createNote(new NoteDto(patientId, note));
+            return;
+        }
+        while (!noteIngestService.accept(patientId, note)) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.mediscreen.note.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load against a running note service, reporting throughput and latency percentiles per concurrency level.
+ * Every virtual user waits for its response before sending the next request, all users share a non-blocking client
+ * so that thousands of open connections do not need thousands of client threads.
+ * <p>
+ * Run it once against a service started with {@code note.threads.mode=platform} and once with {@code virtual},
+ * arguments are {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code url}, the service, {@code http://localhost:8082} by default</li>
+ *     <li>{@code concurrency}, the comma separated numbers of users, {@code 1000,2000,5000,10000} by default</li>
+ *     <li>{@code duration}, the seconds measured per level after a warmup of a third of it, {@code 30} by default</li>
+ *     <li>{@code patients}, the patients read at random, {@code 1000} by default</li>
+ *     <li>{@code seed}, the notes first created through the bulk endpoint, {@code 0} by default</li>
+ * </ul>
+ */
+public final class NoteLoadTest {
+
+
+    private static final int SEED_BATCH_SIZE = 5000;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+    private final String url;
+    private final int patients;
+    private volatile boolean running;
+    private volatile LatencyRecorder recorder;
+
+
+    private NoteLoadTest(String url, int patients) {
+        this.url = url;
+        this.patients = patients;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        NoteLoadTest loadTest = new NoteLoadTest(options.getOrDefault("url", "http://localhost:8082"),
+                Integer.parseInt(options.getOrDefault("patients", "1000")));
+        int seed = Integer.parseInt(options.getOrDefault("seed", "0"));
+        if (seed > 0) {
+            loadTest.seed(seed);
+        }
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        System.out.printf("%12s %12s %10s %10s %10s %10s%n", "concurrency", "requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (String concurrency : options.getOrDefault("concurrency", "1000,2000,5000,10000").split(",")) {
+            loadTest.run(Integer.parseInt(concurrency.trim()), duration);
+        }
+    }
+
+
+    private void seed(int count) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        for (int created = 0; created < count; created += SEED_BATCH_SIZE) {
+            List<BulkNoteOperation> operations = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = created; i < Math.min(count, created + SEED_BATCH_SIZE); i++) {
+                operations.add(BulkNoteOperation.create(new NoteDto(i % patients + 1, BenchmarkMongo.noteBody(i))));
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/note/bulk"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(operations)))
+                    .build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+        System.out.printf("Seeded %d notes%n", count);
+    }
+
+
+    private void run(int concurrency, Duration duration) throws InterruptedException {
+        running = true;
+        recorder = new LatencyRecorder();
+        List<CompletableFuture<Void>> users = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            CompletableFuture<Void> user = new CompletableFuture<>();
+            next(user);
+            users.add(user);
+        }
+        Thread.sleep(duration.toMillis() / 3);
+        LatencyRecorder measured = new LatencyRecorder();
+        recorder = measured;
+        long start = System.nanoTime();
+        Thread.sleep(duration.toMillis());
+        recorder = new LatencyRecorder();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        CompletableFuture.allOf(users.toArray(new CompletableFuture[0])).join();
+        System.out.printf("%12d %12.0f %10.1f %10.1f %10.1f %10d%n", concurrency, measured.count() / seconds,
+                measured.percentile(0.50), measured.percentile(0.99), measured.percentile(1.0), measured.errors());
+    }
+
+
+    /**
+     * Send the request of a user, chaining the next one on its response until the level ends.
+     */
+    private void next(CompletableFuture<Void> user) {
+        if (!running) {
+            user.complete(null);
+            return;
+        }
+        int patientId = ThreadLocalRandom.current().nextInt(patients) + 1;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/note/list/" + patientId))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            recorder.record(System.nanoTime() - sent, error == null && response.statusCode() == 200);
+            next(user);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.mapper.NoteMapper;
+import com.mediscreen.note.model.Note;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping notes to dtos with the former ModelMapper bean and with {@link NoteMapper},
+ * for a single note and for the 100k-note list of a full export. Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteMapperBenchmark {
+
+
+    private static final int LIST_SIZE = 100_000;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final NoteMapper noteMapper = new NoteMapper();
+    private Note note;
+    private List<Note> notes;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        notes = new ArrayList<>(LIST_SIZE);
+        LocalDate today = LocalDate.now();
+        for (int id = 1; id <= LIST_SIZE; id++) {
+            Note current = new Note(BenchmarkMongo.patientOf(id, 10), BenchmarkMongo.noteBody(id));
+            current.setId(id);
+            current.setDate(today.minusDays(id % 3650));
+            notes.add(current);
+        }
+        note = notes.get(0);
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public NoteDto modelMapperSingle() {
+        return modelMapper.map(note, NoteDto.class);
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public NoteDto noteMapperSingle() {
+        return noteMapper.toDto(note);
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void modelMapperList(Blackhole blackhole) {
+        List<NoteDto> noteDtos = new ArrayList<>();
+        for (Note current : notes) {
+            noteDtos.add(modelMapper.map(current, NoteDto.class));
+        }
+        blackhole.consume(noteDtos);
+    }
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<NoteDto> noteMapperList() {
+        return noteMapper.toDtoList(notes);
+    }
+}
@@ -0,0 +1,106 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.dto.NoteSummaryDto;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mongodb.client.MongoClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Latency of loading the notes of one patient as the notes collection grows.
+ * Compares the indexed derived query, full and projected on the note summary, with the former findAll-and-filter approach.
+ * The dashboard pair loads the notes of {@value #DASHBOARD_PATIENTS} patients, one query each or a single $in query.
+ * The full scan materializes the whole collection, restrict it on small heaps, e.g. {@code -p documentCount=10000,100000}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NotePatientQueryBenchmark {
+
+
+    private static final int NOTES_PER_PATIENT = 10;
+    private static final int DASHBOARD_PATIENTS = 50;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int documentCount;
+
+    private MongoClient client;
+    private NoteRepository noteRepository;
+    private int patientCount;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = BenchmarkMongo.client();
+        var template = BenchmarkMongo.template(client);
+        BenchmarkMongo.seedNotes(template, documentCount, NOTES_PER_PATIENT);
+        noteRepository = BenchmarkMongo.noteRepository(template);
+        patientCount = documentCount / NOTES_PER_PATIENT;
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+
+    @Benchmark
+    public List<Note> indexedPatientQuery() {
+        return noteRepository.findByPatientIdOrderByDateAsc(randomPatient());
+    }
+
+
+    @Benchmark
+    public List<NoteSummaryDto> indexedPatientSummaryQuery() {
+        return noteRepository.findByPatientIdOrderByDateAsc(randomPatient(), NoteSummaryDto.class);
+    }
+
+
+    @Benchmark
+    public List<List<Note>> dashboardPerPatientQueries() {
+        List<List<Note>> notes = new ArrayList<>(DASHBOARD_PATIENTS);
+        for (int patientId : dashboardPatients()) {
+            notes.add(noteRepository.findByPatientIdOrderByDateAsc(patientId));
+        }
+        return notes;
+    }
+
+
+    @Benchmark
+    public List<Note> dashboardInQuery() {
+        return noteRepository.findByPatientIdInOrderByPatientIdAscDateAsc(dashboardPatients());
+    }
+
+
+    @Benchmark
+    public List<Note> fullScanPatientFilter() {
+        int patientId = randomPatient();
+        return noteRepository.findAll().stream()
+                .filter(note -> note.getPatientId() == patientId)
+                .collect(Collectors.toList());
+    }
+
+
+    private List<Integer> dashboardPatients() {
+        List<Integer> patientIds = new ArrayList<>(DASHBOARD_PATIENTS);
+        for (int i = 0; i < DASHBOARD_PATIENTS; i++) {
+            patientIds.add(randomPatient());
+        }
+        return patientIds;
+    }
+
+
+    private int randomPatient() {
+        return ThreadLocalRandom.current().nextInt(patientCount) + 1;
+    }
+}
@@ -0,0 +1,350 @@
+package com.mediscreen.note.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Replays the traffic mix of the note service against a running instance and its MongoDB, reporting the throughput
+ * and latency percentiles of each endpoint per number of users, on the console and in {@code report.json}
+ * and {@code report.html}. As in {@link NoteLoadTest}, every virtual user waits for its response before sending
+ * its next request, picking each time one of the scenarios at random with the weight given by {@code mix}:
+ * <ul>
+ *     <li>{@code list}, the notes of a random patient, {@code GET /api/note/list/{patientId}}, most of the reads</li>
+ *     <li>{@code find}, a random note, {@code GET /api/note/find/{id}}</li>
+ *     <li>{@code add}, a burst of {@code burst} notes of one patient sent back to back to {@code POST /patHistory/add},
+ *     as a practitioner uploading a visit does</li>
+ *     <li>{@code export}, every note, {@code GET /api/note/list}</li>
+ * </ul>
+ * Arguments are {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code url}, the service, {@code http://localhost:8082} by default</li>
+ *     <li>{@code users}, the comma separated numbers of users, {@code 50,200} by default</li>
+ *     <li>{@code duration}, the seconds measured per level after a warmup of a third of it, {@code 60} by default</li>
+ *     <li>{@code mix}, the weight of each scenario, {@code list=70,find=22,add=7,export=1} by default</li>
+ *     <li>{@code burst}, the notes sent per {@code add}, {@code 10} by default</li>
+ *     <li>{@code patients}, the patients read and written at random, {@code 1000} by default</li>
+ *     <li>{@code seed}, the notes first created through the bulk endpoint, {@code 10000} by default,
+ *     {@code 0} to run against the notes already there</li>
+ *     <li>{@code note-length}, the characters of each note created, those of the benchmark notes when {@code 0}, the default</li>
+ *     <li>{@code report}, the directory of the reports, {@code target/load-report} by default</li>
+ * </ul>
+ * Point reads pick among the ids of the notes present once seeding is done.
+ * Seeding and the id listing stop the run on any other status than 200.
+ */
+public final class NoteScenarioLoadTest {
+
+
+    private enum Scenario {
+        LIST, FIND, ADD, EXPORT;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final int SEED_BATCH_SIZE = 5000;
+    private static final int ID_PAGE_SIZE = 1000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    private final ExecutorService userExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Map<String, String> options;
+    private final String url;
+    private final int patients;
+    private final int burst;
+    private final int noteLength;
+    private final Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+    private final int totalWeight;
+    private int[] noteIds = new int[0];
+    private volatile boolean running;
+    private volatile Map<Scenario, LatencyRecorder> recorders;
+
+
+    private NoteScenarioLoadTest(Map<String, String> options) {
+        this.options = options;
+        this.url = options.getOrDefault("url", "http://localhost:8082");
+        this.patients = Integer.parseInt(options.getOrDefault("patients", "1000"));
+        this.burst = Math.max(1, Integer.parseInt(options.getOrDefault("burst", "10")));
+        this.noteLength = Integer.parseInt(options.getOrDefault("note-length", "0"));
+        for (String weight : options.getOrDefault("mix", "list=70,find=22,add=7,export=1").split(",")) {
+            int separator = weight.indexOf('=');
+            weights.put(Scenario.valueOf(weight.substring(0, separator).trim().toUpperCase(Locale.ROOT)),
+                    Integer.parseInt(weight.substring(separator + 1).trim()));
+        }
+        this.totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The mix must give a positive weight to a scenario");
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        NoteScenarioLoadTest loadTest = new NoteScenarioLoadTest(options);
+        try {
+            int seed = Integer.parseInt(options.getOrDefault("seed", "10000"));
+            if (seed > 0) {
+                loadTest.seed(seed);
+            }
+            loadTest.loadNoteIds();
+            Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+            List<Map<String, Object>> levels = new ArrayList<>();
+            for (String users : options.getOrDefault("users", "50,200").split(",")) {
+                levels.add(loadTest.run(Integer.parseInt(users.trim()), duration));
+            }
+            loadTest.writeReports(Path.of(options.getOrDefault("report", "target/load-report")), duration, levels);
+        } finally {
+            loadTest.userExecutor.shutdownNow();
+        }
+    }
+
+
+    private void seed(int count) throws Exception {
+        for (int created = 0; created < count; created += SEED_BATCH_SIZE) {
+            List<BulkNoteOperation> operations = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = created; i < Math.min(count, created + SEED_BATCH_SIZE); i++) {
+                operations.add(BulkNoteOperation.create(new NoteDto(i % patients + 1, note(i))));
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/note/bulk"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(operations)))
+                    .build();
+            send(request);
+        }
+        System.out.printf("Seeded %d notes%n", count);
+    }
+
+
+    /**
+     * Page through the note summaries to learn the ids the point reads pick from.
+     */
+    private void loadNoteIds() throws Exception {
+        IntStream.Builder ids = IntStream.builder();
+        int after = 0;
+        int pageSize;
+        do {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/note/list?view=summary&limit=" + ID_PAGE_SIZE
+                    + "&after=" + after)).timeout(TIMEOUT).build();
+            JsonNode page = objectMapper.readTree(send(request));
+            pageSize = page.size();
+            for (JsonNode summary : page) {
+                after = summary.get("id").asInt();
+                ids.add(after);
+            }
+        } while (pageSize == ID_PAGE_SIZE);
+        noteIds = ids.build().toArray();
+        if (noteIds.length == 0 && weights.getOrDefault(Scenario.FIND, 0) > 0) {
+            throw new IllegalStateException("No note to read by id, seed some first");
+        }
+        System.out.printf("Reading among %d notes%n", noteIds.length);
+    }
+
+
+    /**
+     * Send a setup request, failing on any other status than 200: the levels would otherwise run against missing notes.
+     * @return the body of the response
+     */
+    private byte[] send(HttpRequest request) throws Exception {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " answered " + response.statusCode()
+                    + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return response.body();
+    }
+
+
+    private Map<String, Object> run(int users, Duration duration) throws InterruptedException {
+        running = true;
+        recorders = newRecorders();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            CompletableFuture<Void> user = new CompletableFuture<>();
+            next(user, 0, 0);
+            futures.add(user);
+        }
+        Thread.sleep(duration.toMillis() / 3);
+        Map<Scenario, LatencyRecorder> measured = newRecorders();
+        recorders = measured;
+        long start = System.nanoTime();
+        Thread.sleep(duration.toMillis());
+        recorders = newRecorders();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        System.out.printf("%n%d users%n%10s %12s %12s %10s %10s %10s %10s %10s%n", users, "endpoint", "requests", "requests/s",
+                "p50 ms", "p90 ms", "p99 ms", "max ms", "errors");
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        double throughput = 0;
+        for (Scenario scenario : weights.keySet()) {
+            LatencyRecorder recorder = measured.get(scenario);
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", recorder.count());
+            endpoint.put("throughput", recorder.count() / seconds);
+            endpoint.put("p50", recorder.percentile(0.50));
+            endpoint.put("p90", recorder.percentile(0.90));
+            endpoint.put("p99", recorder.percentile(0.99));
+            endpoint.put("max", recorder.percentile(1.0));
+            endpoint.put("errors", recorder.errors());
+            endpoints.put(scenario.key(), endpoint);
+            throughput += recorder.count() / seconds;
+            System.out.printf("%10s %12d %12.0f %10.1f %10.1f %10.1f %10.1f %10d%n", scenario.key(), recorder.count(),
+                    recorder.count() / seconds, recorder.percentile(0.50), recorder.percentile(0.90),
+                    recorder.percentile(0.99), recorder.percentile(1.0), recorder.errors());
+        }
+        Map<String, Object> level = new LinkedHashMap<>();
+        level.put("users", users);
+        level.put("seconds", seconds);
+        level.put("throughput", throughput);
+        level.put("endpoints", endpoints);
+        return level;
+    }
+
+
+    /**
+     * Send the next request of a user, chaining the one after on its response until the level ends.
+     * The one after is handed to the executor of the users rather than sent from the completion: a request failing at once,
+     * such as a refused connection, completes on the calling thread and would otherwise recurse until the stack overflows.
+     * @param burstLeft the notes of the current burst still to send
+     * @param burstPatientId the patient of the current burst
+     */
+    private void next(CompletableFuture<Void> user, int burstLeft, int burstPatientId) {
+        if (!running) {
+            user.complete(null);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Scenario scenario = burstLeft > 0 ? Scenario.ADD : pick(random.nextInt(totalWeight));
+        int patientId = burstLeft > 0 ? burstPatientId : random.nextInt(patients) + 1;
+        int nextBurstLeft = scenario != Scenario.ADD ? 0 : (burstLeft > 0 ? burstLeft : burst) - 1;
+        HttpRequest request = request(scenario, patientId, random);
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenCompleteAsync((response, error) -> {
+            boolean success = error == null && (response.statusCode() == 200
+                    || scenario == Scenario.ADD && response.statusCode() == 202);
+            recorders.get(scenario).record(System.nanoTime() - sent, success);
+            next(user, nextBurstLeft, patientId);
+        }, userExecutor);
+    }
+
+
+    private Scenario pick(int draw) {
+        for (Map.Entry<Scenario, Integer> weight : weights.entrySet()) {
+            draw -= weight.getValue();
+            if (draw < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Draw beyond the total weight");
+    }
+
+
+    private HttpRequest request(Scenario scenario, int patientId, ThreadLocalRandom random) {
+        HttpRequest.Builder request = switch (scenario) {
+            case LIST -> HttpRequest.newBuilder(URI.create(url + "/api/note/list/" + patientId));
+            case FIND -> HttpRequest.newBuilder(URI.create(url + "/api/note/find/" + noteIds[random.nextInt(noteIds.length)]));
+            case ADD -> HttpRequest.newBuilder(URI.create(url + "/patHistory/add"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString("patId=" + patientId + "&e="
+                            + URLEncoder.encode(note(random.nextInt(1_000_000)), StandardCharsets.UTF_8)));
+            case EXPORT -> HttpRequest.newBuilder(URI.create(url + "/api/note/list"));
+        };
+        return request.timeout(TIMEOUT).build();
+    }
+
+
+    /**
+     * @return a benchmark note body, repeated or cut to note-length characters when given
+     */
+    private String note(int seed) {
+        String body = BenchmarkMongo.noteBody(seed);
+        if (noteLength <= 0) {
+            return body;
+        }
+        return (body + " ").repeat(noteLength / (body.length() + 1) + 1).substring(0, noteLength);
+    }
+
+
+    private Map<Scenario, LatencyRecorder> newRecorders() {
+        Map<Scenario, LatencyRecorder> newRecorders = new EnumMap<>(Scenario.class);
+        for (Scenario scenario : Scenario.values()) {
+            newRecorders.put(scenario, new LatencyRecorder());
+        }
+        return newRecorders;
+    }
+
+
+    private void writeReports(Path directory, Duration duration, List<Map<String, Object>> levels) throws Exception {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("url", url);
+        settings.put("duration", duration.toSeconds());
+        settings.put("mix", options.getOrDefault("mix", "list=70,find=22,add=7,export=1"));
+        settings.put("burst", burst);
+        settings.put("patients", patients);
+        settings.put("notes", noteIds.length);
+        settings.put("noteLength", noteLength);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("levels", levels);
+        Files.createDirectories(directory);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(directory.resolve("report.json").toFile(), report);
+
+        StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Note load test</title>\n")
+                .append("<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}")
+                .append("th,td{border:1px solid #ccc;padding:4px 10px;text-align:right}</style></head><body>\n")
+                .append("<h1>Note load test</h1>\n<p>");
+        settings.forEach((key, value) -> html.append(key).append(": ").append(escape(String.valueOf(value))).append("<br>"));
+        html.append("</p>\n");
+        for (Map<String, Object> level : levels) {
+            html.append(String.format(Locale.ROOT, "<h2>%d users, %.0f requests/s</h2>%n", (Integer) level.get("users"),
+                    (Double) level.get("throughput")));
+            html.append("<table><tr><th>endpoint</th><th>requests</th><th>requests/s</th><th>p50 ms</th><th>p90 ms</th>")
+                    .append("<th>p99 ms</th><th>max ms</th><th>errors</th></tr>\n");
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> endpoints = (Map<String, Map<String, Object>>) level.get("endpoints");
+            endpoints.forEach((key, endpoint) -> html.append(String.format(Locale.ROOT,
+                    "<tr><td>%s</td><td>%d</td><td>%.0f</td><td>%.1f</td><td>%.1f</td><td>%.1f</td><td>%.1f</td><td>%d</td></tr>%n",
+                    key, endpoint.get("requests"), endpoint.get("throughput"), endpoint.get("p50"), endpoint.get("p90"),
+                    endpoint.get("p99"), endpoint.get("max"), endpoint.get("errors"))));
+            html.append("</table>\n");
+        }
+        html.append("</body></html>\n");
+        Files.writeString(directory.resolve("report.html"), html);
+        System.out.printf("%nReports written to %s%n", directory.toAbsolutePath());
+    }
+
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
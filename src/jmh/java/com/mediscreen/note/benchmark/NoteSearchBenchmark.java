@@ -0,0 +1,86 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.service.NoteSearchService;
+import com.mongodb.client.MongoClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a page of full-text search results on a multi-million note corpus.
+ * Common terms match about half of the corpus and stress the relevance sort, the rare term about one note in a thousand.
+ * Seeding and building the text index of the largest corpus takes several minutes, the corpus is kept between runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class NoteSearchBenchmark {
+
+
+    private static final int NOTES_PER_PATIENT = 10;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000000", "5000000"})
+    public int documentCount;
+
+    @Param({"vertige", "\"cholestérol LDL\"", "hyperkaliémie"})
+    public String text;
+
+    private MongoClient client;
+    private NoteSearchService noteSearchService;
+    private int patientCount;
+    private String secondPageCursor;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = BenchmarkMongo.client();
+        var template = BenchmarkMongo.template(client);
+        BenchmarkMongo.seedNotes(template, documentCount, NOTES_PER_PATIENT);
+        BenchmarkMongo.ensureNoteIndexes(template);
+        var noteRepository = BenchmarkMongo.noteRepository(template);
+        noteSearchService = new NoteSearchService(noteRepository, BenchmarkMongo.disabledArchive(noteRepository));
+        patientCount = documentCount / NOTES_PER_PATIENT;
+        List<NoteSearchHitDto> firstPage = firstPage();
+        secondPageCursor = firstPage.isEmpty() ? null : NoteSearchService.cursorOf(firstPage.get(firstPage.size() - 1));
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+
+    @Benchmark
+    public List<NoteSearchHitDto> firstPage() {
+        return noteSearchService.searchNotes(text, null, null, null, null, PAGE_SIZE, null);
+    }
+
+
+    @Benchmark
+    public List<NoteSearchHitDto> secondPage() {
+        return noteSearchService.searchNotes(text, null, null, null, secondPageCursor, PAGE_SIZE, null);
+    }
+
+
+    @Benchmark
+    public List<NoteSearchHitDto> patientPage() {
+        int patientId = ThreadLocalRandom.current().nextInt(patientCount) + 1;
+        return noteSearchService.searchNotes(text, patientId, null, null, null, PAGE_SIZE, null);
+    }
+
+
+    @Benchmark
+    public List<NoteSearchHitDto> lastYearPage() {
+        LocalDate today = LocalDate.now();
+        return noteSearchService.searchNotes(text, null, today.minusYears(1), today, null, PAGE_SIZE, null);
+    }
+}
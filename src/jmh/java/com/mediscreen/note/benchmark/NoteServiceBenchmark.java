@@ -0,0 +1,152 @@
+package com.mediscreen.note.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.event.NoteOutbox;
+import com.mediscreen.note.mapper.NoteMapper;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.SequenceGeneratorService;
+import com.mongodb.client.MongoClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link NoteService}, against the in-process stand-ins ({@code backend=memory}) to isolate mapping,
+ * caching and serialization costs, and against MongoDB ({@code backend=mongo}) for end-to-end latency.
+ * Ids and patients are drawn from a fixed seed so that every run issues the same requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteServiceBenchmark {
+
+
+    private static final int DOCUMENT_COUNT = 100_000;
+    private static final int NOTES_PER_PATIENT = 10;
+    private static final int REQUESTS = 1 << 16;
+
+    @Param({"memory", "mongo"})
+    public String backend;
+
+    @Param({"DISABLED", "LOCAL"})
+    public NoteCache.Mode cacheMode;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private List<Note> seededNotes;
+    private MongoClient client;
+    private MongoTemplate template;
+    private NoteService noteService;
+    private int[] ids;
+    private int[] patientIds;
+    private int request;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        seededNotes = BenchmarkMongo.seededNotes(DOCUMENT_COUNT, NOTES_PER_PATIENT);
+        if (backend.equals("mongo")) {
+            client = BenchmarkMongo.client();
+            template = BenchmarkMongo.template(client);
+            BenchmarkMongo.seedNotes(template, DOCUMENT_COUNT, NOTES_PER_PATIENT);
+            noteService = BenchmarkMongo.noteService(template, cacheMode);
+        }
+        Random random = new Random(42);
+        ids = new int[REQUESTS];
+        patientIds = new int[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            ids[i] = random.nextInt(DOCUMENT_COUNT) + 1;
+            patientIds[i] = random.nextInt(DOCUMENT_COUNT / NOTES_PER_PATIENT) + 1;
+        }
+    }
+
+
+    /**
+     * Start every iteration from the seeded notes, dropping the ones created by {@link #createNote()}.
+     */
+    @Setup(Level.Iteration)
+    public void resetNotes() {
+        if (backend.equals("mongo")) {
+            BenchmarkMongo.removeCreatedNotes(template, DOCUMENT_COUNT);
+            return;
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SequenceGeneratorService sequenceGenerator = new SequenceGeneratorService(InMemoryStandIns.sequenceOperations(),
+                meterRegistry, 50);
+        sequenceGenerator.reserveSequence(Note.SEQUENCE_NAME, DOCUMENT_COUNT);
+        NoteCache noteCache = new NoteCache(cacheMode, 10_000, Duration.ofMinutes(10), Duration.ofSeconds(5), meterRegistry);
+        NoteRepository noteRepository = InMemoryStandIns.noteRepository(seededNotes);
+        noteService = new NoteService(noteRepository, new NoteMapper(), sequenceGenerator, noteCache,
+                new NoteOutbox(NoteOutbox.Mode.DISABLED, null, null, null),
+                BenchmarkMongo.disabledArchive(noteRepository), meterRegistry);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (client != null) {
+            BenchmarkMongo.removeCreatedNotes(template, DOCUMENT_COUNT);
+            client.close();
+        }
+    }
+
+
+    /**
+     * A note as /find/{id} reads it, with the version its entity tag is built from.
+     */
+    @Benchmark
+    public NoteDto findNoteById() throws NoteNotFoundException {
+        return noteService.findVersionedNoteById(ids[next()]).getValue();
+    }
+
+
+    /**
+     * The notes of a patient as /list/{patientId} reads them, after the version its entity tag is built from.
+     */
+    @Benchmark
+    public List<NoteDto> getNotesByPatientId() {
+        return noteService.getVersionedNotesByPatientId(patientIds[next()]).getValue();
+    }
+
+
+    /**
+     * The notes of a patient as the controller sends them, to follow the serialization cost.
+     */
+    @Benchmark
+    public byte[] getNotesByPatientIdJson() throws Exception {
+        return objectMapper.writeValueAsBytes(noteService.getVersionedNotesByPatientId(patientIds[next()]).getValue());
+    }
+
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5, time = 5)
+    public List<NoteDto> getAllNotes() {
+        return noteService.getAllNotes(null);
+    }
+
+
+    @Benchmark
+    public NoteDto createNote() {
+        int i = next();
+        return noteService.createNote(new NoteDto(patientIds[i], BenchmarkMongo.noteBody(i)));
+    }
+
+
+    private int next() {
+        request = (request + 1) & (REQUESTS - 1);
+        return request;
+    }
+}
@@ -0,0 +1,144 @@
+package com.mediscreen.note.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts the note service repeatedly in each build variant and measures how long it takes to answer its first request,
+ * and the resident memory of the process once it has. Each run starts a new process, so the JIT, class loading
+ * and the Spring context are all paid again, as when an instance is added on a load spike.
+ * <p>
+ * Build the variants first: {@code mvn -Paot package} builds a jar that runs as {@code jvm}, and as {@code aot}
+ * with the AOT-generated bean definitions, {@code mvn -Pnative package} with GraalVM builds {@code native}.
+ * Arguments are {@code key=value} pairs:
+ * <ul>
+ *     <li>{@code variants}, the comma separated variants among {@code jvm}, {@code aot} and {@code native}, {@code jvm,aot} by default</li>
+ *     <li>{@code jar}, the executable jar, {@code target/note-0.0.1-SNAPSHOT.jar} by default</li>
+ *     <li>{@code image}, the native executable, {@code target/note} by default</li>
+ *     <li>{@code runs}, the starts per variant, {@code 5} by default</li>
+ *     <li>{@code port}, the port the service is started on, {@code 18082} by default</li>
+ *     <li>{@code path}, the first request, {@code /api/note/list/1} by default, which needs MongoDB</li>
+ *     <li>{@code timeout}, the seconds a start may take, {@code 120} by default</li>
+ * </ul>
+ * The resident memory is read from /proc, other systems report 0.
+ */
+public final class NoteStartupTest {
+
+
+    private static final long POLL_MILLIS = 5;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private final Map<String, String> options;
+
+
+    private NoteStartupTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        NoteStartupTest startupTest = new NoteStartupTest(options);
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        System.out.printf("%8s %14s %14s %14s %12s%n", "variant", "min ms", "median ms", "max ms", "RSS MB");
+        for (String variant : options.getOrDefault("variants", "jvm,aot").split(",")) {
+            startupTest.measure(variant.trim(), runs);
+        }
+    }
+
+
+    private void measure(String variant, int runs) throws Exception {
+        List<Long> millis = new ArrayList<>(runs);
+        List<Long> rssKilobytes = new ArrayList<>(runs);
+        for (int run = 0; run < runs; run++) {
+            long[] sample = start(command(variant));
+            millis.add(sample[0]);
+            rssKilobytes.add(sample[1]);
+        }
+        millis.sort(null);
+        rssKilobytes.sort(null);
+        System.out.printf("%8s %14d %14d %14d %12.1f%n", variant, millis.get(0), millis.get(runs / 2), millis.get(runs - 1),
+                rssKilobytes.get(runs / 2) / 1024.0);
+    }
+
+
+    /**
+     * Start the service and wait for its first successful response.
+     * @return the milliseconds from the process start to the response, and the resident kilobytes of the process then
+     */
+    private long[] start(List<String> command) throws Exception {
+        long timeout = Long.parseLong(options.getOrDefault("timeout", "120")) * 1_000_000_000L;
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port() + options.getOrDefault("path", "/api/note/list/1")))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            while (System.nanoTime() - start < timeout) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The service exited with status " + process.exitValue() + ": " + command);
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 500) {
+                        return new long[]{(System.nanoTime() - start) / 1_000_000, residentKilobytes(process.pid())};
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            throw new IllegalStateException("The service did not answer within the timeout: " + command);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+
+    private List<String> command(String variant) {
+        String server = "--server.port=" + port();
+        String jar = options.getOrDefault("jar", "target/note-0.0.1-SNAPSHOT.jar");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return switch (variant) {
+            case "jvm" -> List.of(java, "-jar", jar, server);
+            case "aot" -> List.of(java, "-Dspring.aot.enabled=true", "-jar", jar, server);
+            case "native" -> List.of(options.getOrDefault("image", "target/note"), server);
+            default -> throw new IllegalArgumentException("Unknown variant: " + variant);
+        };
+    }
+
+
+    private String port() {
+        return options.getOrDefault("port", "18082");
+    }
+
+
+    private static long residentKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.DateBucket;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.service.NoteStatsService;
+import com.mongodb.client.MongoClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the note statistics computed by aggregation pipelines, against downloading every note
+ * and aggregating in memory as the reporting jobs used to do.
+ * The in-memory variant materializes the whole collection, restrict it on small heaps, e.g. {@code -p documentCount=1000000}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class NoteStatsBenchmark {
+
+
+    private static final int NOTES_PER_PATIENT = 10;
+
+    @Param({"1000000", "5000000"})
+    public int documentCount;
+
+    private MongoClient client;
+    private NoteRepository noteRepository;
+    private NoteStatsService noteStatsService;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = BenchmarkMongo.client();
+        var template = BenchmarkMongo.template(client);
+        BenchmarkMongo.seedNotes(template, documentCount, NOTES_PER_PATIENT);
+        BenchmarkMongo.ensureNoteIndexes(template);
+        noteRepository = BenchmarkMongo.noteRepository(template);
+        noteStatsService = new NoteStatsService(noteRepository, BenchmarkMongo.disabledArchive(noteRepository));
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+
+    @Benchmark
+    public List<PatientNoteStatsDto> patientStats() {
+        return noteStatsService.getPatientStats(List.of(), null, null, null);
+    }
+
+
+    @Benchmark
+    public List<NotePeriodStatsDto> monthStats() {
+        return noteStatsService.getPeriodStats(DateBucket.MONTH, List.of(), null, null, null);
+    }
+
+
+    @Benchmark
+    public List<NotePeriodStatsDto> lastYearDayStats() {
+        LocalDate today = LocalDate.now();
+        return noteStatsService.getPeriodStats(DateBucket.DAY, List.of(), today.minusYears(1), today, null);
+    }
+
+
+    @Benchmark
+    public Map<String, Long> monthStatsInMemory() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Note note : noteRepository.findAll()) {
+            counts.merge(note.getDate().toString().substring(0, 7), 1L, Long::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,126 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.service.NoteService;
+import com.mongodb.client.MongoClient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of updating and deleting one note, through the former read-then-write path (two round trips)
+ * and through {@link NoteService}, which uses a single findAndModify or findAndRemove.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NoteWriteBenchmark {
+
+
+    private static final int DOCUMENT_COUNT = 100_000;
+    private static final int NOTES_PER_PATIENT = 10;
+    private static final int DELETE_BATCH_SIZE = 100;
+    private static final int FIRST_DELETED_ID = 10_000_000;
+
+    private MongoClient client;
+    private MongoTemplate template;
+    private NoteRepository noteRepository;
+    private NoteService noteService;
+    private final Random random = new Random(42);
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        client = BenchmarkMongo.client();
+        template = BenchmarkMongo.template(client);
+        BenchmarkMongo.seedNotes(template, DOCUMENT_COUNT, NOTES_PER_PATIENT);
+        noteRepository = BenchmarkMongo.noteRepository(template);
+        noteService = BenchmarkMongo.noteService(template);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkMongo.removeCreatedNotes(template, DOCUMENT_COUNT);
+        client.close();
+    }
+
+
+    @Benchmark
+    public Note updateTwoRoundTrips() {
+        int id = randomId();
+        Note note = noteRepository.findById(id).orElseThrow();
+        note.setPatientId(BenchmarkMongo.patientOf(id, NOTES_PER_PATIENT));
+        note.setNote(BenchmarkMongo.noteBody(id + 1));
+        note.setDate(LocalDate.now());
+        return noteRepository.save(note);
+    }
+
+
+    @Benchmark
+    public NoteDto updateSingleRoundTrip() throws NoteNotFoundException {
+        int id = randomId();
+        return noteService.updateNote(id, new NoteDto(BenchmarkMongo.patientOf(id, NOTES_PER_PATIENT), BenchmarkMongo.noteBody(id + 1)));
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(DELETE_BATCH_SIZE)
+    public void deleteTwoRoundTrips(DeletedNotes deletedNotes) {
+        for (int id : deletedNotes.ids) {
+            noteRepository.delete(noteRepository.findById(id).orElseThrow());
+        }
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(DELETE_BATCH_SIZE)
+    public void deleteSingleRoundTrip(DeletedNotes deletedNotes) throws NoteNotFoundException {
+        for (int id : deletedNotes.ids) {
+            noteService.deleteNote(id);
+        }
+    }
+
+
+    private int randomId() {
+        return random.nextInt(DOCUMENT_COUNT) + 1;
+    }
+
+
+    /**
+     * The notes the next delete invocation removes, inserted outside of the measurement.
+     */
+    @State(Scope.Thread)
+    public static class DeletedNotes {
+
+
+        private int nextId = FIRST_DELETED_ID;
+        private List<Integer> ids;
+
+
+        @Setup(Level.Invocation)
+        public void insert(NoteWriteBenchmark benchmark) {
+            List<Note> notes = new ArrayList<>(DELETE_BATCH_SIZE);
+            ids = new ArrayList<>(DELETE_BATCH_SIZE);
+            for (int i = 0; i < DELETE_BATCH_SIZE; i++) {
+                Note note = new Note(benchmark.random.nextInt(DOCUMENT_COUNT / NOTES_PER_PATIENT) + 1, BenchmarkMongo.noteBody(i));
+                note.setId(nextId++);
+                note.setDate(LocalDate.now());
+                notes.add(note);
+                ids.add(note.getId());
+            }
+            benchmark.template.insertAll(notes);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.mediscreen.note.benchmark;
+
+import com.mediscreen.note.service.SequenceGeneratorService;
+import com.mongodb.client.MongoClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link SequenceGeneratorService#generateSequence(String)} per id, for one id per round trip
+ * ({@code blockSize=1}) and for the default block size, against the in-process counter or MongoDB.
+ * Run with {@code -t 4} or more to include contention on block refills.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SequenceGeneratorBenchmark {
+
+
+    private static final String SEQUENCE_NAME = "benchmark_sequence";
+
+    @Param({"memory", "mongo"})
+    public String backend;
+
+    @Param({"1", "50"})
+    public int blockSize;
+
+    private MongoClient client;
+    private SequenceGeneratorService sequenceGenerator;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MongoOperations mongoOperations;
+        if (backend.equals("mongo")) {
+            client = BenchmarkMongo.client();
+            mongoOperations = BenchmarkMongo.template(client);
+        } else {
+            mongoOperations = InMemoryStandIns.sequenceOperations();
+        }
+        sequenceGenerator = new SequenceGeneratorService(mongoOperations, new SimpleMeterRegistry(), blockSize);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+
+    @Benchmark
+    public long generateSequence() {
+        return sequenceGenerator.generateSequence(SEQUENCE_NAME);
+    }
+}
@@ -1,21 +1,19 @@
 package com.mediscreen.note;
 
-import org.modelmapper.ModelMapper;
+import com.mediscreen.note.config.NoteRuntimeHints;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
 @SpringBootApplication
 @EnableMongoRepositories
+@EnableReactiveMongoRepositories
+@ImportRuntimeHints(NoteRuntimeHints.class)
 public class NoteApplication implements CommandLineRunner {
 
-	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
-	}
-
 	public static void main(String[] args) {
 		SpringApplication.run(NoteApplication.class, args);
 	}
@@ -0,0 +1,234 @@
+package com.mediscreen.note.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.repository.Versioned;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of notes by id and of note lists by patient id, bounded by the number of notes it holds and by age.
+ * Writers invalidate the affected entries; a read only keeps what it loaded if no invalidation ran meanwhile,
+ * so a load racing with a write cannot leave a stale entry behind.
+ * Invalidations are local to the instance, so the default short-ttl mode bounds the staleness of entries written
+ * by other instances; the local mode keeps entries longer and is only safe with a single instance writing notes.
+ * Notes are mutable, so the cache holds copies of them and hands out copies.
+ * Each entry keeps the version it was loaded at, when known, so that a reader holding the current version from a cheap
+ * version read can serve the entry only when it is still current.
+ */
+@Component
+public class NoteCache {
+
+
+    public enum Mode {
+        /** Entries live for note.cache.ttl, for a single instance. */
+        LOCAL,
+        /** Entries live for note.cache.short-ttl, for several instances writing the same notes. */
+        SHORT_TTL,
+        DISABLED
+    }
+
+    /** Version of an entry loaded without reading its version, which never matches a version read. */
+    public static final long UNKNOWN_VERSION = -1;
+
+    private static final Logger log = LogManager.getLogger(NoteCache.class);
+
+    private final Mode mode;
+    private final Cache<Integer, Versioned<NoteDto>> notesById;
+    private final Cache<Integer, Versioned<List<NoteDto>>> notesByPatientId;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter invalidationCounter;
+
+
+    public NoteCache(@Value("${note.cache.mode:short-ttl}") Mode mode,
+                     @Value("${note.cache.maximum-notes:10000}") long maximumNotes,
+                     @Value("${note.cache.ttl:10m}") Duration ttl,
+                     @Value("${note.cache.short-ttl:5s}") Duration shortTtl,
+                     MeterRegistry meterRegistry) {
+        this.mode = mode;
+        Duration expiry = mode == Mode.SHORT_TTL ? shortTtl : ttl;
+        this.notesById = Caffeine.newBuilder()
+                .maximumSize(maximumNotes)
+                .expireAfterWrite(expiry)
+                .recordStats()
+                .build();
+        this.notesByPatientId = Caffeine.newBuilder()
+                .maximumWeight(maximumNotes)
+                .<Integer, Versioned<List<NoteDto>>>weigher((patientId, notes) -> notes.getValue().size() + 1)
+                .expireAfterWrite(expiry)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, notesById, "notes");
+        CaffeineCacheMetrics.monitor(meterRegistry, notesByPatientId, "patientNotes");
+        this.invalidationCounter = meterRegistry.counter("note.cache.invalidations");
+        log.info("Note cache mode: {}, maximum notes: {}, ttl: {}", mode, maximumNotes, expiry);
+    }
+
+
+    /**
+     * Stamp to take before loading from the database, to hand back to the put methods.
+     * @return the current invalidation stamp
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+
+    /**
+     * @param id the note id
+     * @return a copy of the cached note, or null
+     */
+    public NoteDto getNote(int id) {
+        return mode == Mode.DISABLED ? null : copy(valueOf(notesById.getIfPresent(id)));
+    }
+
+
+    /**
+     * @param id the note id
+     * @param version the current version of the note
+     * @return a copy of the cached note if it was loaded at that version, or null
+     */
+    public NoteDto getNote(int id, long version) {
+        return mode == Mode.DISABLED ? null : copy(valueAt(notesById.getIfPresent(id), version));
+    }
+
+
+    /**
+     * @param id the note id
+     * @return the version the cached note was loaded at, empty when it is not cached or its version is unknown
+     */
+    public OptionalLong getNoteVersion(int id) {
+        return mode == Mode.DISABLED ? OptionalLong.empty() : versionOf(notesById.getIfPresent(id));
+    }
+
+
+    /**
+     * Cache a note loaded after the given stamp was taken.
+     * @param note the note
+     * @param version the version the note was loaded at
+     * @param stamp the stamp taken before the load
+     */
+    public void putNote(NoteDto note, long version, long stamp) {
+        if (mode == Mode.DISABLED) {
+            return;
+        }
+        notesById.put(note.getId(), new Versioned<>(copy(note), version));
+        if (invalidations.get() != stamp) {
+            notesById.invalidate(note.getId());
+        }
+    }
+
+
+    /**
+     * @param patientId the patient id
+     * @return an unmodifiable list of copies of the cached notes of the patient, or null
+     */
+    public List<NoteDto> getPatientNotes(int patientId) {
+        return mode == Mode.DISABLED ? null : copy(valueOf(notesByPatientId.getIfPresent(patientId)));
+    }
+
+
+    /**
+     * @param patientId the patient id
+     * @param version the current version of the patient notes
+     * @return an unmodifiable list of copies of the cached notes of the patient if they were loaded at that version, or null
+     */
+    public List<NoteDto> getPatientNotes(int patientId, long version) {
+        return mode == Mode.DISABLED ? null : copy(valueAt(notesByPatientId.getIfPresent(patientId), version));
+    }
+
+
+    /**
+     * @param patientId the patient id
+     * @return the version the cached notes of the patient were loaded at, empty when they are not cached or their version is unknown
+     */
+    public OptionalLong getPatientNotesVersion(int patientId) {
+        return mode == Mode.DISABLED ? OptionalLong.empty() : versionOf(notesByPatientId.getIfPresent(patientId));
+    }
+
+
+    /**
+     * Cache the notes of a patient loaded after the given stamp was taken.
+     * @param patientId the patient id
+     * @param notes the notes of the patient
+     * @param version the version of the patient notes read before loading them, or {@link #UNKNOWN_VERSION}
+     * @param stamp the stamp taken before the load
+     * @return the given notes, as an unmodifiable list
+     */
+    public List<NoteDto> putPatientNotes(int patientId, List<NoteDto> notes, long version, long stamp) {
+        List<NoteDto> loaded = Collections.unmodifiableList(notes);
+        if (mode == Mode.DISABLED) {
+            return loaded;
+        }
+        notesByPatientId.put(patientId, new Versioned<>(copy(loaded), version));
+        if (invalidations.get() != stamp) {
+            notesByPatientId.invalidate(patientId);
+        }
+        return loaded;
+    }
+
+
+    /**
+     * Drop a note after it was written.
+     * @param id the note id
+     */
+    public void evictNote(int id) {
+        invalidations.incrementAndGet();
+        invalidationCounter.increment();
+        notesById.invalidate(id);
+    }
+
+
+    /**
+     * Drop the notes of a patient after one of them was created, moved, updated or deleted.
+     * @param patientId the patient id
+     */
+    public void evictPatient(int patientId) {
+        invalidations.incrementAndGet();
+        invalidationCounter.increment();
+        notesByPatientId.invalidate(patientId);
+    }
+
+
+    private static <T> T valueOf(Versioned<T> entry) {
+        return entry == null ? null : entry.getValue();
+    }
+
+
+    private static <T> T valueAt(Versioned<T> entry, long version) {
+        return entry == null || entry.getVersion() == UNKNOWN_VERSION || entry.getVersion() != version ? null : entry.getValue();
+    }
+
+
+    private static OptionalLong versionOf(Versioned<?> entry) {
+        return entry == null || entry.getVersion() == UNKNOWN_VERSION ? OptionalLong.empty() : OptionalLong.of(entry.getVersion());
+    }
+
+
+    private static NoteDto copy(NoteDto note) {
+        if (note == null) {
+            return null;
+        }
+        NoteDto copy = new NoteDto(note.getPatientId(), note.getNote());
+        copy.setId(note.getId());
+        copy.setDate(note.getDate());
+        return copy;
+    }
+
+
+    private static List<NoteDto> copy(List<NoteDto> notes) {
+        return notes == null ? null : notes.stream().map(NoteCache::copy).toList();
+    }
+}
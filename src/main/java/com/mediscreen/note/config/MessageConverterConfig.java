@@ -0,0 +1,40 @@
+package com.mediscreen.note.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary encodings of the note payloads, negotiated with the Accept header next to the default JSON:
+ * application/cbor and application/x-jackson-smile.
+ * Both mappers come from the builder configured by Spring Boot, so dates and features match the JSON ones.
+ */
+@Configuration
+public class MessageConverterConfig {
+
+
+    /**
+     * The CBOR converter, replacing the one Spring MVC would build with default Jackson settings.
+     * @param builder the Jackson builder configured by Spring Boot
+     * @return the converter
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+
+    /**
+     * The Smile converter, replacing the one Spring MVC would build with default Jackson settings.
+     * @param builder the Jackson builder configured by Spring Boot
+     * @return the converter
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
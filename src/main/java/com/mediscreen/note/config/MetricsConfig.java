@@ -0,0 +1,25 @@
+package com.mediscreen.note.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Times the methods of the beans annotated with {@link io.micrometer.core.annotation.Timed},
+ * the HTTP endpoints being timed by Spring MVC itself under http.server.requests.
+ */
+@Configuration
+public class MetricsConfig {
+
+
+    /**
+     * The aspect recording the {@link io.micrometer.core.annotation.Timed} timers.
+     * @param meterRegistry the meter registry
+     * @return the aspect
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.mediscreen.note.config;
+
+import com.mediscreen.note.service.NoteArchiveService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Schedules the archiving of old notes by the {@link NoteArchiveService}.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "note.archive.mode", havingValue = "scheduled")
+public class NoteArchiveConfig {
+
+
+    private final NoteArchiveService noteArchiveService;
+
+
+    public NoteArchiveConfig(NoteArchiveService noteArchiveService) {
+        this.noteArchiveService = noteArchiveService;
+    }
+
+
+    @Scheduled(initialDelayString = "${note.archive.initial-delay-ms:60000}", fixedDelayString = "${note.archive.interval-ms:3600000}")
+    public void archiveOldNotes() {
+        noteArchiveService.archiveOldNotes();
+    }
+}
@@ -0,0 +1,14 @@
+package com.mediscreen.note.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Schedules the {@link com.mediscreen.note.event.NoteEventPublisher} when note events are recorded.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "note.events.mode", havingValue = "transactional")
+public class NoteEventConfig {
+}
@@ -0,0 +1,24 @@
+package com.mediscreen.note.config;
+
+import com.mediscreen.note.repository.OperationTimeListener;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets the {@link com.mediscreen.note.repository.NoteReadRouting} give the cluster time of a write from its own reply.
+ */
+@Configuration
+public class NoteReadRoutingConfig {
+
+
+    /**
+     * Registers the listener recording the operation time of every reply on the Mongo clients.
+     * @param operationTimeListener the listener
+     * @return the customizer of the client settings
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer operationTimeCustomizer(OperationTimeListener operationTimeListener) {
+        return builder -> builder.addCommandListener(operationTimeListener);
+    }
+}
@@ -0,0 +1,70 @@
+package com.mediscreen.note.config;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteBatchDto;
+import com.mediscreen.note.dto.NoteEventDto;
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.dto.NoteSummaryDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.ingest.JournalEntry;
+import com.mediscreen.note.ingest.JournalState;
+import com.mediscreen.note.model.DatabaseSequence;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.model.NoteEvent;
+import com.mediscreen.note.model.NoteEventCheckpoint;
+import com.mediscreen.note.model.PatientNotesVersion;
+import com.mediscreen.note.repository.NoteEventRepository;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteRepositoryCustomImpl;
+import com.mediscreen.note.repository.ReactiveNoteRepository;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.interceptor.TransactionalProxy;
+
+import java.util.List;
+
+/**
+ * Reflection and proxy hints of a native image of the application, registered on top of those Spring infers itself.
+ * Documents are instantiated and read field by field by the MongoDB converter, payloads are bound by Jackson,
+ * including the journal entries written outside of any controller, and repositories are JDK proxies
+ * built with the interfaces {@code RepositoryFactorySupport} gives them, in that order; TransactionalProxy
+ * already extends SpringProxy, which the proxy therefore does not list.
+ */
+public class NoteRuntimeHints implements RuntimeHintsRegistrar {
+
+
+    private static final List<Class<?>> DOCUMENTS = List.of(Note.class, DatabaseSequence.class, NoteEvent.class,
+            NoteEventCheckpoint.class, PatientNotesVersion.class);
+
+    private static final List<Class<?>> PAYLOADS = List.of(NoteDto.class, BulkNoteOperation.class, BulkNoteResult.class,
+            NoteBatchDto.class, NoteEventDto.class, NotePeriodStatsDto.class, NoteSearchHitDto.class, NoteSummaryDto.class,
+            PatientNoteStatsDto.class, TriggerTermCountDto.class, JournalEntry.class, JournalState.class);
+
+    private static final List<Class<?>> REPOSITORIES = List.of(NoteRepository.class, ReactiveNoteRepository.class,
+            NoteEventRepository.class);
+
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> document : DOCUMENTS) {
+            hints.reflection().registerType(document, MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), PAYLOADS.toArray(Class<?>[]::new));
+        hints.reflection().registerType(NoteRepositoryCustomImpl.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                MemberCategory.INVOKE_PUBLIC_METHODS);
+        for (Class<?> repository : REPOSITORIES) {
+            hints.proxies().registerJdkProxy(repository, Repository.class, TransactionalProxy.class, Advised.class,
+                    DecoratingProxy.class);
+        }
+    }
+}
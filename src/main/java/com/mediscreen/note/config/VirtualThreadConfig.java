@@ -0,0 +1,78 @@
+package com.mediscreen.note.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs every request, and so every repository call it makes, on its own virtual thread instead of the Tomcat worker pool.
+ * Enabled with {@code note.threads.mode=virtual}. Virtual threads are a preview feature of Java 19,
+ * the JVM must then be started with {@code --enable-preview}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "note.threads.mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+
+    private static final Logger log = LogManager.getLogger(VirtualThreadConfig.class);
+
+
+    /**
+     * The executor starting a virtual thread per task.
+     * @return the executor
+     */
+    @Bean
+    public ExecutorService virtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Requests run on virtual threads");
+        return executor;
+    }
+
+
+    /**
+     * Hand the Tomcat connector the virtual thread executor in place of its worker pool.
+     * @param virtualThreadExecutor the virtual thread executor
+     * @return the customizer
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+
+    /**
+     * Run the asynchronous part of requests, such as the NDJSON streams, on virtual threads too.
+     * @param virtualThreadExecutor the virtual thread executor
+     * @return the application task executor
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+
+    /**
+     * Looked up reflectively, so the code compiles and runs without preview features when the mode is off.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Virtual threads are disabled, start the JVM with --enable-preview", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need Java 19 or later", e);
+        }
+    }
+}
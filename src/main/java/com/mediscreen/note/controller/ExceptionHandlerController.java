@@ -1,6 +1,10 @@
 package com.mediscreen.note.controller;
 
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.exception.NoteIngestUnavailableException;
 import com.mediscreen.note.exception.NoteNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.http.HttpStatus;
@@ -14,6 +18,16 @@ public class ExceptionHandlerController {
 
     private static final Logger log = LogManager.getLogger(ExceptionHandlerController.class);
 
+    private final Counter notFoundCounter;
+
+
+    public ExceptionHandlerController(MeterRegistry meterRegistry) {
+        this.notFoundCounter = Counter.builder("note.not.found")
+                .description("Requests answered 404 because the note does not exist")
+                .register(meterRegistry);
+    }
+
+
     /**
      * Handle NoteNotFoundException response entity.
      * @param ex the ex
@@ -22,6 +36,31 @@ public class ExceptionHandlerController {
     @ExceptionHandler(NoteNotFoundException.class)
     public ResponseEntity<String> handleNoteNotFoundException(NoteNotFoundException ex) {
         log.error("NoteNotFoundException", ex);
+        notFoundCounter.increment();
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
+
+
+    /**
+     * Handle InvalidNoteRequestException response entity, other exceptions being server errors.
+     * @param ex the ex
+     * @return the response entity
+     */
+    @ExceptionHandler(InvalidNoteRequestException.class)
+    public ResponseEntity<String> handleInvalidNoteRequestException(InvalidNoteRequestException ex) {
+        log.debug("InvalidNoteRequestException: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+
+    /**
+     * Handle NoteIngestUnavailableException response entity.
+     * @param ex the ex
+     * @return the response entity
+     */
+    @ExceptionHandler(NoteIngestUnavailableException.class)
+    public ResponseEntity<String> handleNoteIngestUnavailableException(NoteIngestUnavailableException ex) {
+        log.error("NoteIngestUnavailableException", ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
 }
@@ -1,8 +1,22 @@
 package com.mediscreen.note.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteBatchDto;
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.dto.NoteSummaryDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
 import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.repository.DateBucket;
+import com.mediscreen.note.repository.Versioned;
+import com.mediscreen.note.service.NoteSearchService;
 import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.NoteStatsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,21 +26,43 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/note")
 public class NoteController {
 
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String CLUSTER_TIME_HEADER = "X-Note-Cluster-Time";
+    public static final String SUMMARY_VIEW = "view=summary";
+
     private final NoteService noteService;
+    private final NoteSearchService noteSearchService;
+    private final NoteStatsService noteStatsService;
+    private final ObjectMapper objectMapper;
 
 
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, NoteSearchService noteSearchService, NoteStatsService noteStatsService,
+                          ObjectMapper objectMapper) {
         this.noteService = noteService;
+        this.noteSearchService = noteSearchService;
+        this.noteStatsService = noteStatsService;
+        this.objectMapper = objectMapper;
     }
 
 
@@ -36,10 +72,11 @@ public class NoteController {
 
 
     /**
-     * Find note by id response entity.
+     * Find note by id response entity, tagged with the version of the note.
      *
      * @param id the id
-     * @return the response entity
+     * @param ifNoneMatch the entity tags the client already holds, if any
+     * @return the response entity, 304 without body when the note did not change
      * @throws NoteNotFoundException the note not found exception
      */
     @GetMapping("/find/{id}")
@@ -47,20 +84,61 @@ public class NoteController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Note retrieved successfully",
                     content = @Content(schema = @Schema(implementation = NoteDto.class))),
+            @ApiResponse(responseCode = "304", description = "Note not modified"),
             @ApiResponse(responseCode = "404", description = "Note not found"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<NoteDto> findNoteById(@PathVariable int id) throws NoteNotFoundException {
-        log.debug("Find note by id request received, id: {}", id);
-        NoteDto note = noteService.findNoteById(id);
-        log.debug("Find note by id request processed, note: {}", note);
-        return ResponseEntity.ok(note);
+    public ResponseEntity<NoteDto> findNoteById(@PathVariable int id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+            throws NoteNotFoundException {
+        log.debug("Find note by id request received, id: {}, If-None-Match: {}", id, ifNoneMatch);
+        Versioned<NoteDto> note;
+        if (ifNoneMatch != null) {
+            long version = noteService.getNoteVersion(id);
+            String eTag = eTag("note", id, version);
+            if (matches(ifNoneMatch, eTag)) {
+                log.debug("Find note by id request processed, note not modified: {}", eTag);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            note = noteService.findVersionedNoteById(id, version);
+        } else {
+            note = noteService.findVersionedNoteById(id);
+        }
+        log.debug("Find note by id request processed, note: {}", note.getValue());
+        return ResponseEntity.ok().eTag(eTag("note", id, note.getVersion())).body(note.getValue());
+    }
+
+
+    /**
+     * Find notes by ids response entity, missing ids are reported in the body instead of answering 404.
+     *
+     * @param ids the ids, at most {@link NoteService#MAX_BATCH_KEYS}
+     * @return the response entity
+     */
+    @GetMapping(value = "/find", params = "ids")
+    @Operation(summary = "Find notes by IDs", description = "Retrieves the notes of several IDs in a single query, reporting the IDs matching no note")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = NoteBatchDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<NoteBatchDto> findNotesByIds(@RequestParam List<Integer> ids) {
+        log.debug("Find notes by ids request received, ids count: {}", ids.size());
+        if (ids.size() > NoteService.MAX_BATCH_KEYS) {
+            throw new InvalidNoteRequestException("At most " + NoteService.MAX_BATCH_KEYS + " ids per request, got "
+                    + ids.size());
+        }
+        NoteBatchDto notes = noteService.findNotesByIds(ids);
+        log.debug("Find notes by ids request processed, notes count: {}, missing ids: {}", notes.getNotes().size(),
+                notes.getMissingIds());
+        return ResponseEntity.ok(notes);
     }
 
 
     /**
      * Get all notes response entity.
      *
+     * @param afterClusterTime the cluster time of the last write of the client, to read it back from a secondary
      * @return the response entity
      */
     @GetMapping("/list")
@@ -68,34 +146,378 @@ public class NoteController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
                     content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<NoteDto>> getAllNotes() {
-        log.debug("Get all notes request received");
-        List<NoteDto> noteDtoList = noteService.getAllNotes();
+    public ResponseEntity<List<NoteDto>> getAllNotes(@RequestHeader(value = CLUSTER_TIME_HEADER, required = false) Long afterClusterTime) {
+        log.debug("Get all notes request received, afterClusterTime: {}", afterClusterTime);
+        List<NoteDto> noteDtoList = noteService.getAllNotes(afterClusterTime);
         log.debug("Get all notes request processed, notes count: {}", noteDtoList.size());
         return ResponseEntity.ok(noteDtoList);
     }
 
 
     /**
-     * Get notes by patient id response entity.
+     * Get a page of notes response entity.
+     *
+     * @param after the id of the last note of the previous page
+     * @param limit the page size
+     * @return the response entity, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping(value = "/list", params = "limit")
+    @Operation(summary = "Get a page of notes", description = "Retrieves the notes following a cursor, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class)))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteDto>> getNotesPage(@RequestParam(defaultValue = "0") int after,
+                                                      @RequestParam int limit) {
+        log.debug("Get notes page request received, after: {}, limit: {}", after, limit);
+        List<NoteDto> noteDtoList = noteService.getNotesPage(after, limit);
+        log.debug("Get notes page request processed, notes count: {}", noteDtoList.size());
+        return NotePages.page(noteDtoList, limit, NoteDto::getId);
+    }
+
+
+    /**
+     * Get the summary of all notes response entity, without their body.
+     *
+     * @return the response entity
+     */
+    @GetMapping(value = "/list", params = SUMMARY_VIEW)
+    @Operation(summary = "Get all note summaries", description = "Retrieves the ID, patient ID and date of all notes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note summaries retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteSummaryDto.class)))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteSummaryDto>> getAllNoteSummaries() {
+        log.debug("Get all note summaries request received");
+        List<NoteSummaryDto> summaries = noteService.getAllNoteSummaries();
+        log.debug("Get all note summaries request processed, notes count: {}", summaries.size());
+        return ResponseEntity.ok(summaries);
+    }
+
+
+    /**
+     * Get a page of note summaries response entity, without their body.
+     *
+     * @param after the id of the last note of the previous page
+     * @param limit the page size
+     * @return the response entity, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping(value = "/list", params = {SUMMARY_VIEW, "limit"})
+    @Operation(summary = "Get a page of note summaries", description = "Retrieves the ID, patient ID and date of the notes following a cursor, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note summaries retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteSummaryDto.class)))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteSummaryDto>> getNoteSummariesPage(@RequestParam(defaultValue = "0") int after,
+                                                                     @RequestParam int limit) {
+        log.debug("Get note summaries page request received, after: {}, limit: {}", after, limit);
+        List<NoteSummaryDto> summaries = noteService.getNoteSummariesPage(after, limit);
+        log.debug("Get note summaries page request processed, notes count: {}", summaries.size());
+        return NotePages.page(summaries, limit, NoteSummaryDto::getId);
+    }
+
+
+    /**
+     * Stream all notes as newline delimited JSON.
      *
-     * @param patientId the patient id
      * @return the response entity
      */
+    @GetMapping(value = "/list/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all notes", description = "Streams all notes as newline delimited JSON, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes streamed successfully"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<StreamingResponseBody> streamAllNotes() {
+        log.debug("Stream all notes request received");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> writeNdjson(noteService.streamAllNotes(), outputStream));
+    }
+
+
+    /**
+     * Get the notes of several patient ids response entity, keyed by patient id.
+     *
+     * @param ids the patient ids, at most {@link NoteService#MAX_BATCH_KEYS}
+     * @return the response entity, a patient without notes maps to an empty list
+     */
+    @GetMapping(value = "/list/patients", params = "ids")
+    @Operation(summary = "Get notes by patient IDs", description = "Retrieves the notes of several patients in a single query, keyed by patient ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<Map<Integer, List<NoteDto>>> getNotesByPatientIds(@RequestParam List<Integer> ids) {
+        log.debug("Get notes by patientIds request received, patientIds count: {}", ids.size());
+        if (ids.size() > NoteService.MAX_BATCH_KEYS) {
+            throw new InvalidNoteRequestException("At most " + NoteService.MAX_BATCH_KEYS + " patient ids per request, got "
+                    + ids.size());
+        }
+        Map<Integer, List<NoteDto>> notes = noteService.getNotesByPatientIds(ids);
+        log.debug("Get notes by patientIds request processed, patients count: {}", notes.size());
+        return ResponseEntity.ok(notes);
+    }
+
+
+    /**
+     * Get notes by patient id response entity, tagged with the version of the patient notes.
+     *
+     * @param patientId the patient id
+     * @param archive whether the archived notes of the patient are returned too
+     * @param ifNoneMatch the entity tags the client already holds, if any
+     * @return the response entity, 304 without body when the notes of the patient did not change
+     */
     @GetMapping("/list/{patientId}")
     @Operation(summary = "Get notes by patient ID", description = "Retrieves a list of notes for a given patient ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
                     content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Notes not modified"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteDto>> getNotesByPatientId(@PathVariable int patientId,
+                                                             @RequestParam(defaultValue = "false") boolean archive,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.debug("Get notes by patientId request received, patientId: {}, archive: {}, If-None-Match: {}", patientId, archive, ifNoneMatch);
+        String kind = archive ? "patient-archive" : "patient";
+        long version = noteService.getPatientNotesVersion(patientId);
+        if (ifNoneMatch != null) {
+            String eTag = eTag(kind, patientId, version);
+            if (matches(ifNoneMatch, eTag)) {
+                log.debug("Get notes by patientId request processed, notes not modified: {}", eTag);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+        Versioned<List<NoteDto>> notesList = archive
+                ? noteService.getVersionedNotesWithArchiveByPatientId(patientId, version)
+                : noteService.getVersionedNotesByPatientId(patientId, version);
+        log.debug("Get notes by patientId request processed, notes count: {}", notesList.getValue().size());
+        return ResponseEntity.ok().eTag(eTag(kind, patientId, notesList.getVersion())).body(notesList.getValue());
+    }
+
+
+    /**
+     * Get the summary of the notes of a patient id response entity, tagged with the version of the patient notes.
+     *
+     * @param patientId the patient id
+     * @param ifNoneMatch the entity tags the client already holds, if any
+     * @return the response entity, 304 without body when the notes of the patient did not change
+     */
+    @GetMapping(value = "/list/{patientId}", params = SUMMARY_VIEW)
+    @Operation(summary = "Get note summaries by patient ID", description = "Retrieves the ID, patient ID and date of the notes of a given patient ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note summaries retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteSummaryDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Notes not modified"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteSummaryDto>> getNoteSummariesByPatientId(@PathVariable int patientId,
+                                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.debug("Get note summaries by patientId request received, patientId: {}, If-None-Match: {}", patientId, ifNoneMatch);
+        if (ifNoneMatch != null) {
+            String eTag = eTag("patient-summary", patientId, noteService.getPatientNotesVersion(patientId));
+            if (matches(ifNoneMatch, eTag)) {
+                log.debug("Get note summaries by patientId request processed, notes not modified: {}", eTag);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+        }
+        Versioned<List<NoteSummaryDto>> summaries = noteService.getVersionedNoteSummariesByPatientId(patientId);
+        log.debug("Get note summaries by patientId request processed, notes count: {}", summaries.getValue().size());
+        return ResponseEntity.ok().eTag(eTag("patient-summary", patientId, summaries.getVersion())).body(summaries.getValue());
+    }
+
+
+    /**
+     * Get a page of notes by patient id response entity.
+     *
+     * @param patientId the patient id
+     * @param after the id of the last note of the previous page
+     * @param limit the page size
+     * @return the response entity, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping(value = "/list/{patientId}", params = "limit")
+    @Operation(summary = "Get a page of notes by patient ID", description = "Retrieves the notes of a patient following a cursor, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class)))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteDto>> getNotesByPatientIdPage(@PathVariable int patientId,
+                                                                 @RequestParam(defaultValue = "0") int after,
+                                                                 @RequestParam int limit) {
+        log.debug("Get notes page by patientId request received, patientId: {}, after: {}, limit: {}", patientId, after, limit);
+        List<NoteDto> notesList = noteService.getNotesByPatientIdPage(patientId, after, limit);
+        log.debug("Get notes page by patientId request processed, notes count: {}", notesList.size());
+        return NotePages.page(notesList, limit, NoteDto::getId);
+    }
+
+
+    /**
+     * Get a page of note summaries by patient id response entity, without their body.
+     *
+     * @param patientId the patient id
+     * @param after the id of the last note of the previous page
+     * @param limit the page size
+     * @return the response entity, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping(value = "/list/{patientId}", params = {SUMMARY_VIEW, "limit"})
+    @Operation(summary = "Get a page of note summaries by patient ID", description = "Retrieves the ID, patient ID and date of the notes of a patient following a cursor, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note summaries retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteSummaryDto.class)))),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<List<NoteDto>> getNotesByPatientId(@PathVariable int patientId) {
-        log.debug("Get notes by patientId request received, patientId: {}", patientId);
-        List<NoteDto> notesList = noteService.getNotesByPatientId(patientId);
-        log.debug("Get notes by patientId request processed, notes count: {}", notesList.size());
-        return ResponseEntity.ok(notesList);
+    public ResponseEntity<List<NoteSummaryDto>> getNoteSummariesByPatientIdPage(@PathVariable int patientId,
+                                                                                @RequestParam(defaultValue = "0") int after,
+                                                                                @RequestParam int limit) {
+        log.debug("Get note summaries page by patientId request received, patientId: {}, after: {}, limit: {}", patientId, after, limit);
+        List<NoteSummaryDto> summaries = noteService.getNoteSummariesByPatientIdPage(patientId, after, limit);
+        log.debug("Get note summaries page by patientId request processed, notes count: {}", summaries.size());
+        return NotePages.page(summaries, limit, NoteSummaryDto::getId);
+    }
+
+
+    /**
+     * Stream the notes of a patient as newline delimited JSON.
+     *
+     * @param patientId the patient id
+     * @return the response entity
+     */
+    @GetMapping(value = "/list/{patientId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream notes by patient ID", description = "Streams the notes of a patient as newline delimited JSON, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes streamed successfully"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<StreamingResponseBody> streamNotesByPatientId(@PathVariable int patientId) {
+        log.debug("Stream notes by patientId request received, patientId: {}", patientId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> writeNdjson(noteService.streamNotesByPatientId(patientId), outputStream));
+    }
+
+
+    /**
+     * Search notes response entity.
+     *
+     * @param q the text to search
+     * @param patientId the patient id, all patients when absent
+     * @param from the first date included
+     * @param to the last date included
+     * @param after the cursor of the last hit of the previous page
+     * @param limit the page size
+     * @param afterClusterTime the cluster time of the last write of the client, to read it back from a secondary
+     * @return the response entity, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Search notes",
+            description = "Searches note bodies, most relevant first, returning the passages around the searched terms")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes searched successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteSearchHitDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<List<NoteSearchHitDto>> searchNotes(@RequestParam String q,
+                                                              @RequestParam(required = false) Integer patientId,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              @RequestHeader(value = CLUSTER_TIME_HEADER, required = false) Long afterClusterTime) {
+        log.debug("Search notes request received, q: {}, patientId: {}, from: {}, to: {}, after: {}, limit: {}",
+                q, patientId, from, to, after, limit);
+        List<NoteSearchHitDto> hits = noteSearchService.searchNotes(q, patientId, from, to, after, limit, afterClusterTime);
+        log.debug("Search notes request processed, hits count: {}", hits.size());
+        return NotePages.page(hits, limit, NoteSearchService::cursorOf);
+    }
+
+
+    /**
+     * Count trigger terms in the notes of a patient response entity.
+     *
+     * @param patientId the patient id
+     * @param terms the trigger terms
+     * @return the response entity
+     */
+    @GetMapping("/triggers/{patientId}")
+    @Operation(summary = "Count trigger terms by patient ID",
+            description = "Counts the occurrences of each trigger term in the notes of a patient, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Trigger terms counted successfully",
+                    content = @Content(schema = @Schema(implementation = TriggerTermCountDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<TriggerTermCountDto> countTriggerTerms(@PathVariable int patientId,
+                                                                 @RequestParam List<String> terms) {
+        log.debug("Count trigger terms request received, patientId: {}, terms: {}", patientId, terms);
+        TriggerTermCountDto triggerTermCount = noteService.countTriggerTerms(patientId, terms);
+        log.debug("Count trigger terms request processed, counts: {}", triggerTermCount);
+        return ResponseEntity.ok(triggerTermCount);
+    }
+
+
+    /**
+     * Get the note statistics of each patient response entity.
+     *
+     * @param patientIds the patient ids, every patient when absent
+     * @param from the first date included
+     * @param to the last date included
+     * @param afterClusterTime the cluster time of the last write of the client, to read it back from a secondary
+     * @return the response entity
+     */
+    @GetMapping("/stats/patients")
+    @Operation(summary = "Get note statistics by patient",
+            description = "Counts the notes of each patient and finds its first and last visit dates")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics computed successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = PatientNoteStatsDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<List<PatientNoteStatsDto>> getPatientStats(@RequestParam(required = false) List<Integer> patientIds,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                     @RequestHeader(value = CLUSTER_TIME_HEADER, required = false) Long afterClusterTime) {
+        log.debug("Get patient stats request received, patientIds: {}, from: {}, to: {}", patientIds, from, to);
+        List<PatientNoteStatsDto> stats = noteStatsService.getPatientStats(patientIds, from, to, afterClusterTime);
+        log.debug("Get patient stats request processed, patients count: {}", stats.size());
+        return ResponseEntity.ok(stats);
+    }
+
+
+    /**
+     * Get the note statistics of each period response entity.
+     *
+     * @param bucket the length of the periods
+     * @param patientIds the patient ids, every patient when absent
+     * @param from the first date included
+     * @param to the last date included
+     * @param afterClusterTime the cluster time of the last write of the client, to read it back from a secondary
+     * @return the response entity
+     */
+    @GetMapping("/stats/periods")
+    @Operation(summary = "Get note statistics by period",
+            description = "Counts the notes written during each day, month or year, and the patients they were written for")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics computed successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NotePeriodStatsDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<List<NotePeriodStatsDto>> getPeriodStats(@RequestParam(defaultValue = "MONTH") DateBucket bucket,
+                                                                   @RequestParam(required = false) List<Integer> patientIds,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                   @RequestHeader(value = CLUSTER_TIME_HEADER, required = false) Long afterClusterTime) {
+        log.debug("Get period stats request received, bucket: {}, patientIds: {}, from: {}, to: {}", bucket, patientIds, from, to);
+        List<NotePeriodStatsDto> stats = noteStatsService.getPeriodStats(bucket, patientIds, from, to, afterClusterTime);
+        log.debug("Get period stats request processed, periods count: {}", stats.size());
+        return ResponseEntity.ok(stats);
     }
 
 
@@ -103,7 +525,7 @@ public class NoteController {
      * Validate note response entity.
      *
      * @param noteDto the note dto
-     * @return the response entity
+     * @return the response entity, with the cluster time of the write in the X-Note-Cluster-Time header when reads are routed
      */
     @PostMapping("/validate")
     @Operation(summary = "Validate note", description = "Validates and creates a new note")
@@ -116,7 +538,7 @@ public class NoteController {
         log.debug("Validate note request received, note: {}", noteDto);
         NoteDto note = noteService.createNote(noteDto);
         log.debug("Validate note request processed, note: {}", note);
-        return ResponseEntity.ok(note);
+        return ResponseEntity.ok().headers(clusterTimeHeaders()).body(note);
     }
 
 
@@ -125,7 +547,7 @@ public class NoteController {
      *
      * @param id the id
      * @param noteDto the note dto
-     * @return the response entity
+     * @return the response entity, with the cluster time of the write in the X-Note-Cluster-Time header when reads are routed
      * @throws NoteNotFoundException the note not found exception
      */
     @PostMapping("/update/{id}")
@@ -140,7 +562,7 @@ public class NoteController {
         log.debug("Update note request received, id: {}, note: {}", id, noteDto);
         NoteDto note = noteService.updateNote(id, noteDto);
         log.debug("Update note request processed, note: {}", note);
-        return ResponseEntity.ok(note);
+        return ResponseEntity.ok().headers(clusterTimeHeaders()).body(note);
     }
 
 
@@ -161,6 +583,81 @@ public class NoteController {
     public ResponseEntity<Void> deleteNote(@PathVariable int id) throws NoteNotFoundException {
         noteService.deleteNote(id);
         log.debug("Deleted note with id: {}", id);
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.noContent().headers(clusterTimeHeaders()).build();
+    }
+
+
+    /**
+     * Execute a batch of note operations response entity.
+     *
+     * @param operations the create, update and delete operations
+     * @return the response entity holding one result per operation, in the same order,
+     * with the cluster time of the writes in the X-Note-Cluster-Time header when reads are routed
+     */
+    @PostMapping("/bulk")
+    @Operation(summary = "Execute note operations in bulk",
+            description = "Creates, updates and deletes notes in a single unordered bulk write, reporting the outcome of each operation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch executed, see the status of each result",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = BulkNoteResult.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public ResponseEntity<List<BulkNoteResult>> executeBulk(@RequestBody List<BulkNoteOperation> operations) {
+        log.debug("Bulk request received, operations count: {}", operations.size());
+        if (operations.size() > NoteService.MAX_BULK_OPERATIONS) {
+            log.debug("Bulk request rejected, more than {} operations", NoteService.MAX_BULK_OPERATIONS);
+            return ResponseEntity.badRequest().build();
+        }
+        List<BulkNoteResult> results = noteService.executeBulk(operations);
+        log.debug("Bulk request processed, results count: {}", results.size());
+        return ResponseEntity.ok().headers(clusterTimeHeaders()).body(results);
+    }
+
+
+    /**
+     * The cluster time following the writes of a request, which the client passes to its next reads to see them
+     * even when those go to a secondary.
+     */
+    private HttpHeaders clusterTimeHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        noteService.getClusterTime().ifPresent(clusterTime -> headers.set(CLUSTER_TIME_HEADER, Long.toString(clusterTime)));
+        return headers;
+    }
+
+
+    /**
+     * A strong entity tag, unique per resource and version.
+     */
+    static String eTag(String resource, int id, long version) {
+        return "\"" + resource + "-" + id + "-" + version + "\"";
+    }
+
+
+    /**
+     * Whether an If-None-Match header holds the given entity tag, using the weak comparison the header calls for.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Write each note on its own line, holding a single note in memory at a time.
+     */
+    private void writeNdjson(Stream<NoteDto> notes, OutputStream outputStream) throws IOException {
+        try (notes) {
+            Iterator<NoteDto> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                outputStream.write(objectMapper.writeValueAsBytes(iterator.next()));
+                outputStream.write('\n');
+            }
+        }
+        log.debug("Notes stream written");
     }
 }
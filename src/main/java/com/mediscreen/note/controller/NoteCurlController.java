@@ -1,6 +1,7 @@
 package com.mediscreen.note.controller;
 
 import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.ingest.NoteIngestService;
 import com.mediscreen.note.service.NoteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,7 +10,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -19,24 +23,35 @@ public class NoteCurlController {
 
 
     private static final Logger log = LogManager.getLogger(NoteCurlController.class);
+    private static final String RETRY_AFTER_SECONDS = "1";
 
     private final NoteService noteService;
+    private final NoteIngestService noteIngestService;
 
-    public NoteCurlController(NoteService noteService) {
+    /**
+     * @param noteService the note service
+     * @param noteIngestService the asynchronous ingestion, null unless note.ingest.mode is journal
+     */
+    public NoteCurlController(NoteService noteService, @Nullable NoteIngestService noteIngestService) {
         this.noteService = noteService;
+        this.noteIngestService = noteIngestService;
     }
 
     /**
-     * Adds a new patient note
+     * Adds a new patient note, or journals it for a background insert when asynchronous ingestion is enabled
      * @param patId the ID of the patient
      * @param note the patient's note to add
-     * @return ResponseEntity with a message indicating that the patient note has been added
+     * @return ResponseEntity with a message indicating that the patient note has been added or accepted,
+     * 503 with a Retry-After header when too many accepted notes are waiting to be inserted,
+     * 503 without one when the journal failed
      */
     @PostMapping("/patHistory/add")
     @Operation(summary = "Add a new patient note", description = "Endpoint for adding a new patient note")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "OK"),
-            @ApiResponse(responseCode = "400", description = "Invalid parameter")
+            @ApiResponse(responseCode = "202", description = "Accepted, the note will be inserted in the background"),
+            @ApiResponse(responseCode = "400", description = "Invalid parameter"),
+            @ApiResponse(responseCode = "503", description = "Too many notes waiting to be inserted, retry later, or journal unavailable")
     })
     @Parameters({
             @Parameter(name = "patId", description = "Patient's ID", required = true, example = "1"),
@@ -47,6 +62,17 @@ public class NoteCurlController {
 
         log.debug("Received request to add a patient note: patId: {}, note: {}", patId, note);
 
+        if (noteIngestService != null) {
+            if (!noteIngestService.accept(patId, note)) {
+                log.debug("Refused patient note, ingestion queue full: patId: {}", patId);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                        .body("Too many patient notes waiting, retry later");
+            }
+            log.debug("Accepted patient note: patId: {}", patId);
+            return ResponseEntity.accepted().body("Patient note accepted");
+        }
+
         NoteDto patientNote = new NoteDto(patId, note);
         noteService.createNote(patientNote);
 
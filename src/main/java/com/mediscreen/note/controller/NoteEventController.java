@@ -0,0 +1,63 @@
+package com.mediscreen.note.controller;
+
+import com.mediscreen.note.dto.NoteEventDto;
+import com.mediscreen.note.event.NoteOutbox;
+import com.mediscreen.note.service.NoteService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/note/events")
+public class NoteEventController {
+
+
+    private static final Logger log = LogManager.getLogger(NoteEventController.class);
+
+    private final NoteOutbox noteOutbox;
+
+
+    public NoteEventController(NoteOutbox noteOutbox) {
+        this.noteOutbox = noteOutbox;
+    }
+
+
+    /**
+     * Get the note events following an offset response entity, for consumers resuming where they stopped.
+     * Events show up once the publisher gave them their offset, within note.events.publish-interval-ms of their commit.
+     *
+     * @param after the offset of the last event already processed
+     * @param limit the page size
+     * @return the response entity, with the offset to resume from in the X-Next-Cursor header
+     */
+    @GetMapping
+    @Operation(summary = "Get note events", description = "Retrieves the note changes recorded after an offset, in offset order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note events retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteEventDto.class)))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<List<NoteEventDto>> getEvents(@RequestParam(defaultValue = "0") long after,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        log.debug("Get note events request received, after: {}, limit: {}", after, limit);
+        List<NoteEventDto> events = noteOutbox.eventsAfter(after, Math.max(1, Math.min(limit, NoteService.MAX_PAGE_SIZE)))
+                .stream()
+                .map(NoteEventDto::new)
+                .toList();
+        log.debug("Get note events request processed, events count: {}", events.size());
+        String nextCursor = String.valueOf(events.isEmpty() ? after : events.get(events.size() - 1).getOffset());
+        return ResponseEntity.ok().header(NoteController.NEXT_CURSOR_HEADER, nextCursor).body(events);
+    }
+}
@@ -0,0 +1,36 @@
+package com.mediscreen.note.controller;
+
+import com.mediscreen.note.service.NoteService;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The keyset pages of the note controllers, blocking and reactive alike.
+ */
+final class NotePages {
+
+
+    private NotePages() {
+    }
+
+
+    /**
+     * Wrap a page, a full page advertises the cursor of its last item in the {@value NoteController#NEXT_CURSOR_HEADER}
+     * header, a shorter one is the last page.
+     * @param items the items of the page
+     * @param limit the requested page size, capped to {@link NoteService#MAX_PAGE_SIZE} as the services cap it
+     * @param cursorOf the cursor of the page following an item
+     * @param <T> the type of the items
+     * @return the response
+     */
+    static <T> ResponseEntity<List<T>> page(List<T> items, int limit, Function<? super T, ?> cursorOf) {
+        int pageSize = Math.max(1, Math.min(limit, NoteService.MAX_PAGE_SIZE));
+        if (!items.isEmpty() && items.size() >= pageSize) {
+            String nextCursor = String.valueOf(cursorOf.apply(items.get(items.size() - 1)));
+            return ResponseEntity.ok().header(NoteController.NEXT_CURSOR_HEADER, nextCursor).body(items);
+        }
+        return ResponseEntity.ok(items);
+    }
+}
@@ -0,0 +1,280 @@
+package com.mediscreen.note.controller;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.service.NoteSearchService;
+import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.ReactiveNoteService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Non-blocking mirror of {@link NoteController}: no request thread is held while MongoDB answers,
+ * and the list endpoints stream newline delimited JSON at the pace the client reads it.
+ */
+@RestController
+@RequestMapping("/api/reactive/note")
+public class ReactiveNoteController {
+
+
+    private final ReactiveNoteService reactiveNoteService;
+
+
+    public ReactiveNoteController(ReactiveNoteService reactiveNoteService) {
+        this.reactiveNoteService = reactiveNoteService;
+    }
+
+
+
+    private static final Logger log = LogManager.getLogger(ReactiveNoteController.class);
+
+
+
+    /**
+     * Find note by id.
+     *
+     * @param id the id
+     * @return the note, or a 404 response if it does not exist
+     */
+    @GetMapping("/find/{id}")
+    @Operation(summary = "Find note by ID", description = "Retrieves a note for a given ID without blocking")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = NoteDto.class))),
+            @ApiResponse(responseCode = "404", description = "Note not found")
+    })
+    public Mono<NoteDto> findNoteById(@PathVariable int id) {
+        log.debug("Reactive find note by id request received, id: {}", id);
+        return reactiveNoteService.findNoteById(id);
+    }
+
+
+    /**
+     * Stream all notes, ordered by id.
+     *
+     * @return the notes, as newline delimited JSON unless a JSON array is asked for
+     */
+    @GetMapping(value = "/list", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Stream all notes", description = "Streams all notes ordered by ID, with backpressure")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes streamed successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class))))
+    })
+    public Flux<NoteDto> getAllNotes() {
+        log.debug("Reactive get all notes request received");
+        return reactiveNoteService.getAllNotes();
+    }
+
+
+    /**
+     * Get a page of notes.
+     *
+     * @param after the id of the last note of the previous page
+     * @param limit the page size
+     * @return the notes, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping(value = "/list", params = "limit")
+    @Operation(summary = "Get a page of notes", description = "Retrieves the notes following a cursor, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class))))
+    })
+    public Mono<ResponseEntity<List<NoteDto>>> getNotesPage(@RequestParam(defaultValue = "0") int after,
+                                                            @RequestParam int limit) {
+        log.debug("Reactive get notes page request received, after: {}, limit: {}", after, limit);
+        return reactiveNoteService.getNotesPage(after, limit).collectList()
+                .map(notes -> NotePages.page(notes, limit, NoteDto::getId));
+    }
+
+
+    /**
+     * Stream the notes of a patient, oldest first.
+     *
+     * @param patientId the patient id
+     * @return the notes, as newline delimited JSON unless a JSON array is asked for
+     */
+    @GetMapping(value = "/list/{patientId}", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @Operation(summary = "Stream notes by patient ID", description = "Streams the notes of a patient, oldest first, with backpressure")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes streamed successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class))))
+    })
+    public Flux<NoteDto> getNotesByPatientId(@PathVariable int patientId) {
+        log.debug("Reactive get notes by patientId request received, patientId: {}", patientId);
+        return reactiveNoteService.getNotesByPatientId(patientId);
+    }
+
+
+    /**
+     * Get a page of notes of a patient.
+     *
+     * @param patientId the patient id
+     * @param after the id of the last note of the previous page
+     * @param limit the page size
+     * @return the notes, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping(value = "/list/{patientId}", params = "limit")
+    @Operation(summary = "Get a page of notes by patient ID", description = "Retrieves the notes of a patient following a cursor, ordered by ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteDto.class))))
+    })
+    public Mono<ResponseEntity<List<NoteDto>>> getNotesByPatientIdPage(@PathVariable int patientId,
+                                                                       @RequestParam(defaultValue = "0") int after,
+                                                                       @RequestParam int limit) {
+        log.debug("Reactive get notes page by patientId request received, patientId: {}, after: {}, limit: {}", patientId, after, limit);
+        return reactiveNoteService.getNotesByPatientIdPage(patientId, after, limit).collectList()
+                .map(notes -> NotePages.page(notes, limit, NoteDto::getId));
+    }
+
+
+    /**
+     * Search notes.
+     *
+     * @param q the text to search
+     * @param patientId the patient id, all patients when absent
+     * @param from the first date included
+     * @param to the last date included
+     * @param after the cursor of the last hit of the previous page
+     * @param limit the page size
+     * @return the hits, with the cursor of the next page in the X-Next-Cursor header
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Search notes",
+            description = "Searches note bodies, most relevant first, returning the passages around the searched terms")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Notes searched successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = NoteSearchHitDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public Mono<ResponseEntity<List<NoteSearchHitDto>>> searchNotes(@RequestParam String q,
+                                                                    @RequestParam(required = false) Integer patientId,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                    @RequestParam(required = false) String after,
+                                                                    @RequestParam(defaultValue = "20") int limit) {
+        log.debug("Reactive search notes request received, q: {}, patientId: {}, after: {}, limit: {}", q, patientId, after, limit);
+        return reactiveNoteService.searchNotes(q, patientId, from, to, after, limit)
+                .map(hits -> NotePages.page(hits, limit, NoteSearchService::cursorOf));
+    }
+
+
+    /**
+     * Count trigger terms in the notes of a patient.
+     *
+     * @param patientId the patient id
+     * @param terms the trigger terms
+     * @return the occurrences of each term
+     */
+    @GetMapping("/triggers/{patientId}")
+    @Operation(summary = "Count trigger terms by patient ID",
+            description = "Counts the occurrences of each trigger term in the notes of a patient, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Trigger terms counted successfully",
+                    content = @Content(schema = @Schema(implementation = TriggerTermCountDto.class)))
+    })
+    public Mono<TriggerTermCountDto> countTriggerTerms(@PathVariable int patientId, @RequestParam List<String> terms) {
+        log.debug("Reactive count trigger terms request received, patientId: {}, terms: {}", patientId, terms);
+        return reactiveNoteService.countTriggerTerms(patientId, terms);
+    }
+
+
+    /**
+     * Validate and create a note.
+     *
+     * @param noteDto the note dto
+     * @return the created note
+     */
+    @PostMapping("/validate")
+    @Operation(summary = "Validate note", description = "Validates and creates a new note")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note created successfully",
+                    content = @Content(schema = @Schema(implementation = NoteDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public Mono<NoteDto> validateNote(@Valid @RequestBody NoteDto noteDto) {
+        log.debug("Reactive validate note request received, note: {}", noteDto);
+        return reactiveNoteService.createNote(noteDto);
+    }
+
+
+    /**
+     * Update a note.
+     *
+     * @param id the id
+     * @param noteDto the note dto
+     * @return the updated note, or a 404 response if it does not exist
+     */
+    @PostMapping("/update/{id}")
+    @Operation(summary = "Update note", description = "Updates an existing note with a given ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Note updated successfully",
+                    content = @Content(schema = @Schema(implementation = NoteDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad request"),
+            @ApiResponse(responseCode = "404", description = "Note not found")
+    })
+    public Mono<NoteDto> updateNote(@PathVariable int id, @Valid @RequestBody NoteDto noteDto) {
+        log.debug("Reactive update note request received, id: {}, note: {}", id, noteDto);
+        return reactiveNoteService.updateNote(id, noteDto);
+    }
+
+
+    /**
+     * Delete a note.
+     *
+     * @param id the id
+     * @return a 204 response, or a 404 response if the note does not exist
+     */
+    @PostMapping("/delete/{id}")
+    @Operation(summary = "Delete note", description = "Deletes an existing note with a given ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Note deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Note not found")
+    })
+    public Mono<ResponseEntity<Void>> deleteNote(@PathVariable int id) {
+        log.debug("Reactive delete note request received, id: {}", id);
+        return reactiveNoteService.deleteNote(id).then(Mono.fromSupplier(() -> ResponseEntity.noContent().build()));
+    }
+
+
+    /**
+     * Execute a batch of note operations.
+     *
+     * @param operations the create, update and delete operations
+     * @return one result per operation, in the same order
+     */
+    @PostMapping("/bulk")
+    @Operation(summary = "Execute note operations in bulk",
+            description = "Creates, updates and deletes notes in a single unordered bulk write, reporting the outcome of each operation")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch executed, see the status of each result",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = BulkNoteResult.class)))),
+            @ApiResponse(responseCode = "400", description = "Bad request")
+    })
+    public Mono<ResponseEntity<List<BulkNoteResult>>> executeBulk(@RequestBody List<BulkNoteOperation> operations) {
+        log.debug("Reactive bulk request received, operations count: {}", operations.size());
+        if (operations.size() > NoteService.MAX_BULK_OPERATIONS) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return reactiveNoteService.executeBulk(operations).map(ResponseEntity::ok);
+    }
+}
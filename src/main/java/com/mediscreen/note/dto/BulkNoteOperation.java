@@ -0,0 +1,74 @@
+package com.mediscreen.note.dto;
+
+import com.mediscreen.library.dto.NoteDto;
+
+/**
+ * One create, update or delete of a bulk request.
+ * Creates carry a note, updates carry an id and a note, deletes carry an id.
+ */
+public class BulkNoteOperation {
+
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private Type type;
+
+    private Integer id;
+
+    private NoteDto note;
+
+
+    public BulkNoteOperation() {
+    }
+
+    public BulkNoteOperation(Type type, Integer id, NoteDto note) {
+        this.type = type;
+        this.id = id;
+        this.note = note;
+    }
+
+    public static BulkNoteOperation create(NoteDto note) {
+        return new BulkNoteOperation(Type.CREATE, null, note);
+    }
+
+    public static BulkNoteOperation update(int id, NoteDto note) {
+        return new BulkNoteOperation(Type.UPDATE, id, note);
+    }
+
+    public static BulkNoteOperation delete(int id) {
+        return new BulkNoteOperation(Type.DELETE, id, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public NoteDto getNote() {
+        return note;
+    }
+
+    public void setNote(NoteDto note) {
+        this.note = note;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkNoteOperation{type=" + type + ", id=" + id + "}";
+    }
+}
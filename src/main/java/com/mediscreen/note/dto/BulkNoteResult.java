@@ -0,0 +1,96 @@
+package com.mediscreen.note.dto;
+
+import com.mediscreen.library.dto.NoteDto;
+
+/**
+ * Outcome of one operation of a bulk request, at the same index as the operation.
+ */
+public class BulkNoteResult {
+
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        INVALID,
+        FAILED
+    }
+
+    private int index;
+
+    private BulkNoteOperation.Type type;
+
+    private Integer id;
+
+    private Status status;
+
+    private NoteDto note;
+
+    private String message;
+
+
+    public BulkNoteResult() {
+    }
+
+    public BulkNoteResult(int index, BulkNoteOperation.Type type, Integer id, Status status) {
+        this.index = index;
+        this.type = type;
+        this.id = id;
+        this.status = status;
+    }
+
+    public static BulkNoteResult failure(int index, BulkNoteOperation operation, Status status, String message) {
+        BulkNoteResult result = new BulkNoteResult(index, operation.getType(), operation.getId(), status);
+        result.setMessage(message);
+        return result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public BulkNoteOperation.Type getType() {
+        return type;
+    }
+
+    public void setType(BulkNoteOperation.Type type) {
+        this.type = type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public NoteDto getNote() {
+        return note;
+    }
+
+    public void setNote(NoteDto note) {
+        this.note = note;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mediscreen.note.dto;
+
+import com.mediscreen.library.dto.NoteDto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The notes found for a batch of ids, keyed by id in request order, and the requested ids matching no note.
+ */
+public class NoteBatchDto {
+
+
+    private Map<Integer, NoteDto> notes;
+
+    private List<Integer> missingIds;
+
+
+    public NoteBatchDto() {
+    }
+
+    public NoteBatchDto(Map<Integer, NoteDto> notes, List<Integer> missingIds) {
+        this.notes = notes;
+        this.missingIds = missingIds;
+    }
+
+    public Map<Integer, NoteDto> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(Map<Integer, NoteDto> notes) {
+        this.notes = notes;
+    }
+
+    public List<Integer> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Integer> missingIds) {
+        this.missingIds = missingIds;
+    }
+}
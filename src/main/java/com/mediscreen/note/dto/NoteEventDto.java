@@ -0,0 +1,85 @@
+package com.mediscreen.note.dto;
+
+import com.mediscreen.note.model.NoteEvent;
+
+import java.time.Instant;
+
+/**
+ * A change of a note, identified by its offset in the outbox.
+ */
+public class NoteEventDto {
+
+
+    private long offset;
+
+    private NoteEvent.Type type;
+
+    private int noteId;
+
+    private int patientId;
+
+    private long version;
+
+    private Instant recordedAt;
+
+
+    public NoteEventDto() {
+    }
+
+    public NoteEventDto(NoteEvent event) {
+        this.offset = event.getOffset();
+        this.type = event.getType();
+        this.noteId = event.getNoteId();
+        this.patientId = event.getPatientId();
+        this.version = event.getVersion();
+        this.recordedAt = event.getRecordedAt();
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public NoteEvent.Type getType() {
+        return type;
+    }
+
+    public void setType(NoteEvent.Type type) {
+        this.type = type;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(Instant recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+}
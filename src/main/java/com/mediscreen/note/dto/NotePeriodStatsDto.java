@@ -0,0 +1,48 @@
+package com.mediscreen.note.dto;
+
+/**
+ * The number of notes written during a period, and of patients they were written for.
+ */
+public class NotePeriodStatsDto {
+
+
+    private String period;
+
+    private long noteCount;
+
+    private long patientCount;
+
+
+    public NotePeriodStatsDto() {
+    }
+
+    public NotePeriodStatsDto(String period, long noteCount, long patientCount) {
+        this.period = period;
+        this.noteCount = noteCount;
+        this.patientCount = patientCount;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    public long getNoteCount() {
+        return noteCount;
+    }
+
+    public void setNoteCount(long noteCount) {
+        this.noteCount = noteCount;
+    }
+
+    public long getPatientCount() {
+        return patientCount;
+    }
+
+    public void setPatientCount(long patientCount) {
+        this.patientCount = patientCount;
+    }
+}
@@ -0,0 +1,78 @@
+package com.mediscreen.note.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A note matched by a full-text search, reduced to the passages around the searched terms.
+ */
+public class NoteSearchHitDto {
+
+
+    private int id;
+
+    private int patientId;
+
+    private LocalDate date;
+
+    private double score;
+
+    private List<String> snippets;
+
+
+    public NoteSearchHitDto() {
+    }
+
+    public NoteSearchHitDto(int id, int patientId, LocalDate date, double score, List<String> snippets) {
+        this.id = id;
+        this.patientId = patientId;
+        this.date = date;
+        this.score = score;
+        this.snippets = snippets;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public List<String> getSnippets() {
+        return snippets;
+    }
+
+    public void setSnippets(List<String> snippets) {
+        this.snippets = snippets;
+    }
+
+    @Override
+    public String toString() {
+        return "NoteSearchHitDto{id=" + id + ", patientId=" + patientId + ", score=" + score + "}";
+    }
+}
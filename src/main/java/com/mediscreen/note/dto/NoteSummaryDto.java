@@ -0,0 +1,50 @@
+package com.mediscreen.note.dto;
+
+import java.time.LocalDate;
+
+/**
+ * A note without its body, read from MongoDB with a projection so that the body never leaves the server.
+ */
+public class NoteSummaryDto {
+
+
+    private int id;
+
+    private int patientId;
+
+    private LocalDate date;
+
+
+    public NoteSummaryDto() {
+    }
+
+    public NoteSummaryDto(int id, int patientId, LocalDate date) {
+        this.id = id;
+        this.patientId = patientId;
+        this.date = date;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mediscreen.note.dto;
+
+import java.time.LocalDate;
+
+/**
+ * The number of notes of a patient and the dates of its first and last visits.
+ */
+public class PatientNoteStatsDto {
+
+
+    private int patientId;
+
+    private long noteCount;
+
+    private LocalDate firstVisit;
+
+    private LocalDate lastVisit;
+
+
+    public PatientNoteStatsDto() {
+    }
+
+    public PatientNoteStatsDto(int patientId, long noteCount, LocalDate firstVisit, LocalDate lastVisit) {
+        this.patientId = patientId;
+        this.noteCount = noteCount;
+        this.firstVisit = firstVisit;
+        this.lastVisit = lastVisit;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public long getNoteCount() {
+        return noteCount;
+    }
+
+    public void setNoteCount(long noteCount) {
+        this.noteCount = noteCount;
+    }
+
+    public LocalDate getFirstVisit() {
+        return firstVisit;
+    }
+
+    public void setFirstVisit(LocalDate firstVisit) {
+        this.firstVisit = firstVisit;
+    }
+
+    public LocalDate getLastVisit() {
+        return lastVisit;
+    }
+
+    public void setLastVisit(LocalDate lastVisit) {
+        this.lastVisit = lastVisit;
+    }
+}
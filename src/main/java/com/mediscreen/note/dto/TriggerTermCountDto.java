@@ -0,0 +1,66 @@
+package com.mediscreen.note.dto;
+
+import java.util.Map;
+
+/**
+ * Occurrences of trigger terms across the notes of a patient.
+ */
+public class TriggerTermCountDto {
+
+
+    private int patientId;
+
+    private int noteCount;
+
+    private Map<String, Integer> counts;
+
+    private int total;
+
+
+    public TriggerTermCountDto() {
+    }
+
+    public TriggerTermCountDto(int patientId, int noteCount, Map<String, Integer> counts, int total) {
+        this.patientId = patientId;
+        this.noteCount = noteCount;
+        this.counts = counts;
+        this.total = total;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public int getNoteCount() {
+        return noteCount;
+    }
+
+    public void setNoteCount(int noteCount) {
+        this.noteCount = noteCount;
+    }
+
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Integer> counts) {
+        this.counts = counts;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerTermCountDto{patientId=" + patientId + ", noteCount=" + noteCount + ", total=" + total + "}";
+    }
+}
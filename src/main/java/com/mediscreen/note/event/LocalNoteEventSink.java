@@ -0,0 +1,73 @@
+package com.mediscreen.note.event;
+
+import com.mediscreen.note.model.NoteEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers note events to in-process subscribers, each one resuming after the offset it last processed.
+ * Redelivered events, at or below the offset of a subscriber, are skipped.
+ */
+@Component
+public class LocalNoteEventSink implements NoteEventSink {
+
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * @param afterOffset the offset of the last event the subscriber processed, 0 for none
+     * @param consumer the subscriber
+     * @return the subscription
+     */
+    public Subscription subscribe(long afterOffset, Consumer<NoteEvent> consumer) {
+        Subscription subscription = new Subscription(afterOffset, consumer);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+
+    @Override
+    public void publish(List<NoteEvent> events) {
+        for (Subscription subscription : subscriptions) {
+            subscription.deliver(events);
+        }
+    }
+
+
+    public final class Subscription {
+
+
+        private final Consumer<NoteEvent> consumer;
+        private volatile long offset;
+
+
+        private Subscription(long offset, Consumer<NoteEvent> consumer) {
+            this.offset = offset;
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return the offset of the last event delivered to the subscriber, to resume from
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+
+        private synchronized void deliver(List<NoteEvent> events) {
+            for (NoteEvent event : events) {
+                if (event.getOffset() > offset) {
+                    consumer.accept(event);
+                    offset = event.getOffset();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mediscreen.note.event;
+
+import com.mediscreen.note.model.NoteEvent;
+import com.mediscreen.note.model.NoteEventCheckpoint;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Sequences the events committed to the outbox, reads them after the offset last published and hands them
+ * to every {@link NoteEventSink}.
+ * The offset is checkpointed in note_event_checkpoints once all sinks accepted a batch, so a restart resumes after it.
+ * Each instance publishes under the application name: with several instances, sinks may receive an event more than once.
+ */
+@Component
+@ConditionalOnProperty(name = "note.events.mode", havingValue = "transactional")
+public class NoteEventPublisher {
+
+
+    private static final Logger log = LogManager.getLogger(NoteEventPublisher.class);
+
+    private final NoteOutbox noteOutbox;
+    private final MongoOperations mongoOperations;
+    private final List<NoteEventSink> sinks;
+    private final String publisher;
+    private final int batchSize;
+    private long offset = -1;
+
+
+    public NoteEventPublisher(NoteOutbox noteOutbox,
+                              MongoOperations mongoOperations,
+                              List<NoteEventSink> sinks,
+                              @Value("${spring.application.name}") String publisher,
+                              @Value("${note.events.batch-size:500}") int batchSize) {
+        this.noteOutbox = noteOutbox;
+        this.mongoOperations = mongoOperations;
+        this.sinks = sinks;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Sequence and publish every event recorded since the last call, batch by batch.
+     * @return the number of events published
+     */
+    @Scheduled(fixedDelayString = "${note.events.publish-interval-ms:500}")
+    public synchronized int publishPending() {
+        if (offset < 0) {
+            NoteEventCheckpoint checkpoint = mongoOperations.findById(publisher, NoteEventCheckpoint.class);
+            offset = checkpoint == null ? 0 : checkpoint.getOffset();
+        }
+        int published = 0;
+        List<NoteEvent> events;
+        do {
+            noteOutbox.sequencePending(batchSize);
+            events = noteOutbox.eventsAfter(offset, batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            for (NoteEventSink sink : sinks) {
+                sink.publish(events);
+            }
+            offset = events.get(events.size() - 1).getOffset();
+            mongoOperations.save(new NoteEventCheckpoint(publisher, offset));
+            published += events.size();
+        } while (events.size() == batchSize);
+        if (published > 0) {
+            log.debug("Published {} note events, up to offset: {}", published, offset);
+        }
+        return published;
+    }
+}
@@ -0,0 +1,18 @@
+package com.mediscreen.note.event;
+
+import com.mediscreen.note.model.NoteEvent;
+
+import java.util.List;
+
+/**
+ * Where {@link NoteEventPublisher} fans the recorded note events out to.
+ * Events are delivered at least once and in offset order; a sink failing makes the batch be delivered again.
+ */
+public interface NoteEventSink {
+
+
+    /**
+     * @param events the events following the last batch delivered, in offset order
+     */
+    void publish(List<NoteEvent> events);
+}
@@ -0,0 +1,201 @@
+package com.mediscreen.note.event;
+
+import com.mediscreen.note.model.DatabaseSequence;
+import com.mediscreen.note.model.NoteEvent;
+import com.mediscreen.note.repository.NoteEventRepository;
+import com.mongodb.MongoException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Records the events of note writes in the note_events collection, in the same MongoDB transaction as the writes.
+ * Writes insert their events without offset, so concurrent writes share no document and only conflict on the notes.
+ * The {@link NoteEventPublisher} then sequences the committed events: a short transaction gives the pending events
+ * the next offsets of a counter, in _id order. Concurrent sequencings conflict on the counter and are retried, so offsets
+ * become visible in increasing order and a reader resuming after an offset never misses an event.
+ * Reads only return sequenced events and never write.
+ * Transactions need MongoDB to run as a replica set, a single node one is enough.
+ * A write error inside a transaction aborts it whole: the per-write failures of a bulk write are lost and the call throws.
+ * Note writes also bump the note list versions of their patients within the write they pass, so that a conditional read
+ * never answers 304 over a committed write; without transactions the bump merely follows the write.
+ */
+@Component
+public class NoteOutbox {
+
+
+    public enum Mode {
+        /** Writes and their events commit together. */
+        TRANSACTIONAL,
+        /** Writes run alone and no event is recorded, for standalone MongoDB servers. */
+        DISABLED
+    }
+
+    public static final String SEQUENCE_NAME = "note_events_sequence";
+    static final int MAX_ATTEMPTS = 5;
+    static final long BACKOFF_MILLIS = 5;
+
+    private static final Logger log = LogManager.getLogger(NoteOutbox.class);
+
+    private final Mode mode;
+    private final MongoOperations mongoOperations;
+    private final NoteEventRepository noteEventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+
+    public NoteOutbox(@Value("${note.events.mode:disabled}") Mode mode,
+                      MongoOperations mongoOperations,
+                      MongoDatabaseFactory databaseFactory,
+                      NoteEventRepository noteEventRepository) {
+        this.mode = mode;
+        this.mongoOperations = mongoOperations;
+        this.noteEventRepository = noteEventRepository;
+        this.transactionTemplate = mode == Mode.TRANSACTIONAL
+                ? new TransactionTemplate(new MongoTransactionManager(databaseFactory))
+                : null;
+        log.info("Note outbox mode: {}", mode);
+    }
+
+
+    public Mode getMode() {
+        return mode;
+    }
+
+
+    /**
+     * Run a write and record its events atomically, retrying the whole transaction when it conflicts with another one.
+     * The write may run several times and must not reserve sequence values, which would not be rolled back locally.
+     * A write error aborts the transaction, so a bulk write inside it throws instead of reporting its failed writes.
+     * @param write the write
+     * @param events the events of the write, from its result
+     * @param <T> the result of the write
+     * @return the result of the committed write
+     */
+    public <T> T write(Supplier<T> write, Function<T, List<NoteEvent>> events) {
+        if (mode == Mode.DISABLED) {
+            return write.get();
+        }
+        return inTransaction(() -> {
+            T result = write.get();
+            record(events.apply(result));
+            return result;
+        });
+    }
+
+
+    /**
+     * @param offset the offset of the last event already read, 0 to read from the oldest event kept
+     * @param limit the maximum number of events
+     * @return the sequenced events following the offset, in offset order
+     */
+    public List<NoteEvent> eventsAfter(long offset, int limit) {
+        return noteEventRepository.findByOffsetGreaterThan(offset, PageRequest.of(0, limit, Sort.by("offset")));
+    }
+
+
+    private void record(List<NoteEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (NoteEvent event : events) {
+            event.setRecordedAt(now);
+        }
+        mongoOperations.insertAll(events);
+    }
+
+
+    /**
+     * Give the next offsets to the oldest pending events, one sequencing at a time per instance.
+     * @param limit the maximum number of events to sequence
+     * @return the number of events sequenced
+     */
+    public synchronized int sequencePending(int limit) {
+        if (mode == Mode.DISABLED || !mongoOperations.exists(pending(), NoteEvent.class)) {
+            return 0;
+        }
+        return inTransaction(() -> {
+            List<NoteEvent> pending = mongoOperations.find(pending().with(Sort.by("_id")).limit(limit), NoteEvent.class);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            DatabaseSequence sequence = mongoOperations.findAndModify(query(where("_id").is(SEQUENCE_NAME)),
+                    new Update().inc("seq", pending.size()), options().returnNew(true).upsert(true), DatabaseSequence.class);
+            long offset = sequence.getSeq() - pending.size();
+            BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.ORDERED, NoteEvent.class);
+            for (NoteEvent event : pending) {
+                bulk.updateOne(query(where("_id").is(event.getId())), Update.update("offset", ++offset));
+            }
+            bulk.execute();
+            log.debug("Sequenced {} note events, up to offset: {}", pending.size(), offset);
+            return pending.size();
+        });
+    }
+
+
+    /**
+     * The events without offset yet.
+     */
+    private static Query pending() {
+        return query(where("offset").is(null));
+    }
+
+
+    /**
+     * Run a transaction, retrying it after a random backoff doubling at each attempt when it conflicts with another one.
+     */
+    private <T> T inTransaction(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                log.debug("Retrying note transaction after transient transaction error, attempt: {}", attempt, e);
+                backOff(attempt, e);
+            }
+        }
+    }
+
+
+    private static void backOff(int attempt, RuntimeException e) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(BACKOFF_MILLIS << attempt) + 1);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException
+                    && mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,15 @@
+package com.mediscreen.note.exception;
+
+public class InvalidNoteRequestException extends RuntimeException {
+
+
+    /**
+     * Defines a custom exception named InvalidNoteRequestException.
+     * Indicates that the criteria or the content sent by a client are invalid, answered with a 400.
+     * @param message what is invalid, returned to the client
+     */
+    public InvalidNoteRequestException(String message) {
+
+        super(message);
+    }
+}
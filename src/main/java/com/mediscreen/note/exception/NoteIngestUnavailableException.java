@@ -0,0 +1,15 @@
+package com.mediscreen.note.exception;
+
+public class NoteIngestUnavailableException extends RuntimeException {
+
+
+    /**
+     * Defines a custom exception named NoteIngestUnavailableException.
+     * Indicates that the journal of the asynchronous ingestion cannot take notes, answered with a 503.
+     * @param cause the failure of the journal
+     */
+    public NoteIngestUnavailableException(Throwable cause) {
+
+        super("Patient notes cannot be journaled: " + cause.getMessage(), cause);
+    }
+}
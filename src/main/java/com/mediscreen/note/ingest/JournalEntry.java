@@ -0,0 +1,76 @@
+package com.mediscreen.note.ingest;
+
+import java.time.LocalDate;
+
+/**
+ * A note accepted by the asynchronous ingestion, as written to the journal.
+ * Sequence numbers are assigned in append order and never reused, even after the journal is compacted.
+ */
+public class JournalEntry {
+
+
+    private long seq;
+
+    private int patientId;
+
+    private String note;
+
+    private LocalDate date;
+
+    private long acceptedAt;
+
+
+    public JournalEntry() {
+    }
+
+    public JournalEntry(long seq, int patientId, String note, LocalDate date, long acceptedAt) {
+        this.seq = seq;
+        this.patientId = patientId;
+        this.note = note;
+        this.date = date;
+        this.acceptedAt = acceptedAt;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    /**
+     * @return the epoch millisecond the entry was accepted at, to measure how long it waited before being inserted
+     */
+    public long getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    public void setAcceptedAt(long acceptedAt) {
+        this.acceptedAt = acceptedAt;
+    }
+}
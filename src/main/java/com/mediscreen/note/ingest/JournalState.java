@@ -0,0 +1,68 @@
+package com.mediscreen.note.ingest;
+
+/**
+ * How far the journal was applied to the notes collection.
+ * While a batch is in flight, its range of entries and the first note id reserved for it are recorded,
+ * so that after a crash the batch is inserted again with the same ids instead of new ones.
+ */
+public class JournalState {
+
+
+    private long applied;
+
+    private long batchFrom;
+
+    private long batchTo;
+
+    private long firstId;
+
+
+    public JournalState() {
+    }
+
+    public JournalState(long applied, long batchFrom, long batchTo, long firstId) {
+        this.applied = applied;
+        this.batchFrom = batchFrom;
+        this.batchTo = batchTo;
+        this.firstId = firstId;
+    }
+
+    /**
+     * @return whether a batch was started and not recorded as applied
+     */
+    public boolean inFlight() {
+        return batchTo > applied;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    public void setApplied(long applied) {
+        this.applied = applied;
+    }
+
+    public long getBatchFrom() {
+        return batchFrom;
+    }
+
+    public void setBatchFrom(long batchFrom) {
+        this.batchFrom = batchFrom;
+    }
+
+    public long getBatchTo() {
+        return batchTo;
+    }
+
+    public void setBatchTo(long batchTo) {
+        this.batchTo = batchTo;
+    }
+
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public void setFirstId(long firstId) {
+        this.firstId = firstId;
+    }
+}
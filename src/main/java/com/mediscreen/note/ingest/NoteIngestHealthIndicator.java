@@ -0,0 +1,35 @@
+package com.mediscreen.note.ingest;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reports the asynchronous ingestion down once its journal failed to flush or its drain stopped,
+ * as it then refuses every note until the service restarts.
+ */
+@Component
+@ConditionalOnProperty(name = "note.ingest.mode", havingValue = "journal")
+public class NoteIngestHealthIndicator implements HealthIndicator {
+
+
+    private final NoteIngestService noteIngestService;
+
+
+    public NoteIngestHealthIndicator(NoteIngestService noteIngestService) {
+        this.noteIngestService = noteIngestService;
+    }
+
+
+    @Override
+    public Health health() {
+        IOException failure = noteIngestService.getFailure();
+        Health.Builder builder = failure == null ? Health.up() : Health.down(failure);
+        return builder.withDetail("queueDepth", noteIngestService.getQueueDepth())
+                .withDetail("capacity", noteIngestService.getCapacity())
+                .build();
+    }
+}
@@ -0,0 +1,335 @@
+package com.mediscreen.note.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.exception.NoteIngestUnavailableException;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.SequenceGeneratorService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts notes into a {@link NoteJournal} and inserts them in the background, in batches.
+ * A note is acknowledged once its journal entry is on disk; a single drain thread then takes up to a batch of entries,
+ * reserves their ids in one round trip and inserts them with one bulk write.
+ * At most {@code capacity} notes wait at a time: past that, {@link #accept} refuses new notes until the drain catches up.
+ * The ids of a batch are recorded in the journal state before the insert, so a batch interrupted by a crash
+ * is inserted again with the same ids on the next start.
+ * Only entries on disk are inserted: after a failed flush of the journal, the entries whose accept failed are dropped.
+ * A batch the database refuses {@value #MAX_FLUSH_ATTEMPTS} times in a row is moved to the dead letter file of the journal,
+ * so that it releases its capacity and the following batches go on.
+ * A batch inserted but not recorded as applied stops the drain: the next batch would overwrite the ids recorded for it,
+ * so it is left in flight for the next start, which inserts it again idempotently.
+ * After a failed flush of the journal or once the drain stopped, every note is refused until the service restarts,
+ * and {@link NoteIngestHealthIndicator} reports the ingestion down.
+ */
+@Service
+@ConditionalOnProperty(name = "note.ingest.mode", havingValue = "journal")
+public class NoteIngestService implements SmartLifecycle {
+
+
+    private static final long NOT_RESERVED = 0;
+    static final int MAX_FLUSH_ATTEMPTS = 10;
+    private static final Duration MAX_RETRY_DELAY = Duration.ofSeconds(5);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final Logger log = LogManager.getLogger(NoteIngestService.class);
+
+    private final NoteService noteService;
+    private final SequenceGeneratorService sequenceGenerator;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int capacity;
+    private final int batchSize;
+    private final BlockingQueue<JournalEntry> queue = new LinkedBlockingQueue<>();
+    private final Object appendLock = new Object();
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+    private final Timer delayTimer;
+    private Semaphore permits;
+    private NoteJournal journal;
+    private List<JournalEntry> inFlight = List.of();
+    private Thread drainThread;
+    private volatile boolean running;
+    private volatile IOException drainFailure;
+
+
+    public NoteIngestService(NoteService noteService,
+                             SequenceGeneratorService sequenceGenerator,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${note.ingest.journal-dir:journal}") String directory,
+                             @Value("${note.ingest.capacity:10000}") int capacity,
+                             @Value("${note.ingest.batch-size:500}") int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("note.ingest.capacity and note.ingest.batch-size must be positive");
+        }
+        this.noteService = noteService;
+        this.sequenceGenerator = sequenceGenerator;
+        this.objectMapper = objectMapper;
+        this.directory = Path.of(directory);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        Gauge.builder("note.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Notes accepted and waiting to be inserted")
+                .register(meterRegistry);
+        Gauge.builder("note.ingest.queue.capacity", this::getCapacity)
+                .description("Notes that can wait before new ones are refused")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("note.ingest.rejected")
+                .description("Notes refused because the ingestion queue was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("note.ingest.failed")
+                .description("Accepted notes the database refused to insert, dead lettered ones included")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("note.ingest.flush")
+                .description("Duration of the batch inserts of accepted notes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.delayTimer = Timer.builder("note.ingest.delay")
+                .description("Time from the acceptance of the oldest note of a batch to its insert")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Accept a note for asynchronous insertion once it is written to the journal.
+     * When the journal cannot be flushed the call fails and the note is not inserted, the drain skipping entries
+     * that are not on disk.
+     * @param patientId the patient ID
+     * @param note the note
+     * @return whether the note was accepted, false when too many notes are waiting or the service is stopped
+     * @throws InvalidNoteRequestException if the note is blank
+     * @throws NoteIngestUnavailableException if the note cannot be written to the journal, or the ingestion failed
+     */
+    public boolean accept(int patientId, String note) {
+        if (note == null || note.isBlank()) {
+            throw new InvalidNoteRequestException("Note is mandatory");
+        }
+        IOException failure = getFailure();
+        if (failure != null) {
+            throw new NoteIngestUnavailableException(failure);
+        }
+        if (!running || !permits.tryAcquire()) {
+            rejectedCounter.increment();
+            return false;
+        }
+        JournalEntry entry;
+        try {
+            synchronized (appendLock) {
+                entry = journal.append(patientId, note, LocalDate.now());
+                queue.add(entry);
+            }
+        } catch (IOException e) {
+            permits.release();
+            throw new NoteIngestUnavailableException(e);
+        }
+        try {
+            journal.sync(entry.getSeq());
+        } catch (IOException e) {
+            throw new NoteIngestUnavailableException(e);
+        }
+        return true;
+    }
+
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the failure of the journal or of the drain after which every note is refused, or null
+     */
+    public IOException getFailure() {
+        if (drainFailure != null) {
+            return drainFailure;
+        }
+        return journal == null ? null : journal.getFailure();
+    }
+
+
+    @Override
+    public synchronized void start() {
+        try {
+            journal = new NoteJournal(directory, objectMapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        JournalState state = journal.getState();
+        List<JournalEntry> recovered = journal.getRecovered();
+        inFlight = state.inFlight()
+                ? recovered.stream().filter(entry -> entry.getSeq() <= state.getBatchTo()).toList()
+                : List.of();
+        queue.addAll(recovered.subList(inFlight.size(), recovered.size()));
+        permits = new Semaphore(capacity - recovered.size());
+        running = true;
+        drainThread = new Thread(this::drain, "note-ingest-drain");
+        drainThread.start();
+        log.info("Note ingestion started, {} journaled notes to insert", recovered.size());
+    }
+
+
+    /**
+     * Refuse new notes and give the drain thread some time to insert the waiting ones;
+     * the notes still waiting afterwards stay in the journal for the next start.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (drainThread == null) {
+            return;
+        }
+        try {
+            drainThread.join(STOP_TIMEOUT.toMillis());
+            if (drainThread.isAlive()) {
+                drainThread.interrupt();
+                drainThread.join(STOP_TIMEOUT.toMillis());
+            }
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Could not close the note journal", e);
+        }
+        log.info("Note ingestion stopped, {} notes left in the journal", queue.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before the web server accepts requests and stop once it stopped.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+
+    private void drain() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        try {
+            if (!inFlight.isEmpty()) {
+                JournalState state = journal.getState();
+                flush(inFlight, state.getFirstId());
+            }
+            while (running || !queue.isEmpty()) {
+                JournalEntry first = queue.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch, NOT_RESERVED);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            log.warn("Note ingestion interrupted, {} notes left in the journal", batch.size() + queue.size());
+        } catch (IOException e) {
+            drainFailure = e;
+            log.error("Note ingestion stopped, an inserted batch could not be recorded in the journal state: "
+                    + "{} notes left in the journal are inserted again, with the same ids, on the next start",
+                    batch.size() + queue.size(), e);
+        }
+    }
+
+
+    /**
+     * Insert the entries of a batch that are on disk, retrying with a backoff until the database accepts them or
+     * moving them to the dead letter file after {@value #MAX_FLUSH_ATTEMPTS} attempts, then record them as applied.
+     * @param firstId the id reserved for the first entry by an interrupted run, {@link #NOT_RESERVED} to reserve new ones
+     * @throws IOException if the batch cannot be recorded as applied, once it was inserted or dead lettered
+     */
+    private void flush(List<JournalEntry> batch, long firstId) throws InterruptedException, IOException {
+        List<JournalEntry> synced = synced(batch);
+        if (synced.size() < batch.size()) {
+            log.error("Dropping {} notes whose journal entry could not be flushed", batch.size() - synced.size());
+            permits.release(batch.size() - synced.size());
+            if (synced.isEmpty()) {
+                return;
+            }
+        }
+        long from = synced.get(0).getSeq();
+        long to = synced.get(synced.size() - 1).getSeq();
+        long retryDelay = 100;
+        int failed = -1;
+        for (int attempt = 1; failed < 0; attempt++) {
+            try {
+                if (attempt > MAX_FLUSH_ATTEMPTS) {
+                    journal.deadLetter(synced);
+                    log.error("Moved {} journaled notes to the dead letter file after {} failed inserts",
+                            synced.size(), MAX_FLUSH_ATTEMPTS);
+                    failed = synced.size();
+                    continue;
+                }
+                if (firstId == NOT_RESERVED) {
+                    firstId = sequenceGenerator.reserveSequence(Note.SEQUENCE_NAME, synced.size());
+                    journal.begin(from, to, firstId);
+                }
+                List<Note> notes = new ArrayList<>(synced.size());
+                for (JournalEntry entry : synced) {
+                    Note note = new Note(entry.getPatientId(), entry.getNote());
+                    note.setId((int) (firstId + entry.getSeq() - from));
+                    note.setDate(entry.getDate());
+                    notes.add(note);
+                }
+                failed = flushTimer.recordCallable(() -> noteService.insertNotes(notes));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                log.warn("Could not insert {} journaled notes, attempt: {}, retrying in {} ms",
+                        synced.size(), attempt, retryDelay, e);
+                Thread.sleep(retryDelay);
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY.toMillis());
+            }
+        }
+        journal.applied(to);
+        failedCounter.increment(failed);
+        delayTimer.record(Duration.ofMillis(System.currentTimeMillis() - synced.get(0).getAcceptedAt()));
+        permits.release(synced.size());
+    }
+
+
+    /**
+     * @return the leading entries of a batch that are on disk, flushing the journal first
+     */
+    private List<JournalEntry> synced(List<JournalEntry> batch) {
+        try {
+            journal.sync(batch.get(batch.size() - 1).getSeq());
+            return batch;
+        } catch (IOException e) {
+            long syncedSeq = journal.getSyncedSeq();
+            return batch.stream().filter(entry -> entry.getSeq() <= syncedSeq).toList();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.mediscreen.note.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of the notes accepted for asynchronous ingestion, one JSON line per entry,
+ * next to a state file recording how far the entries were applied.
+ * Concurrent appends share their fsync: a caller waiting for the disk finds its entry already synced by the previous flush.
+ * The state file is replaced atomically, and the journal is truncated whenever every entry it holds was applied.
+ * A failed flush leaves the entries it covered in an unknown state on disk: the journal then refuses every later append
+ * and sync, so that no entry past the last successful flush is acknowledged or applied by this run, and reports the failure
+ * until it is reopened by the next start.
+ * Batches the database keeps refusing are moved to a dead letter file, one JSON line per entry.
+ */
+public class NoteJournal implements Closeable {
+
+
+    static final String JOURNAL_FILE = "notes.journal";
+    static final String STATE_FILE = "notes.state";
+    static final String DEAD_LETTER_FILE = "notes.dead";
+
+    private static final Logger log = LogManager.getLogger(NoteJournal.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path statePath;
+    private final Path deadLetterPath;
+    private final FileChannel channel;
+    private final Object syncLock = new Object();
+    private final List<JournalEntry> recovered;
+    private volatile JournalState state;
+    private long lastSeq;
+    private volatile long syncedSeq;
+    private volatile IOException syncFailure;
+
+
+    /**
+     * Open the journal of a directory, creating it when missing, and read the entries left unapplied by the previous run.
+     * A last line torn by a crash is dropped: its append was never acknowledged.
+     * @param directory the journal directory
+     * @param objectMapper the mapper of the entries
+     * @throws IOException if the journal cannot be read
+     */
+    public NoteJournal(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directory);
+        this.statePath = directory.resolve(STATE_FILE);
+        this.deadLetterPath = directory.resolve(DEAD_LETTER_FILE);
+        this.state = Files.exists(statePath)
+                ? objectMapper.readValue(statePath.toFile(), JournalState.class)
+                : new JournalState();
+        this.channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.recovered = new ArrayList<>();
+        this.lastSeq = Math.max(state.getApplied(), state.getBatchTo());
+        long validLength = 0;
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel.position(0), StandardCharsets.UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            JournalEntry entry;
+            try {
+                entry = objectMapper.readValue(line, JournalEntry.class);
+            } catch (JsonProcessingException e) {
+                log.warn("Dropping torn journal entry after {} bytes", validLength);
+                break;
+            }
+            validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            lastSeq = Math.max(lastSeq, entry.getSeq());
+            if (entry.getSeq() > state.getApplied()) {
+                recovered.add(entry);
+            }
+        }
+        channel.truncate(validLength);
+        channel.position(validLength);
+        this.syncedSeq = lastSeq;
+        log.info("Opened note journal {}, {} entries left to apply", directory, recovered.size());
+    }
+
+
+    /**
+     * @return the entries the previous run accepted and did not apply, in sequence order
+     */
+    public List<JournalEntry> getRecovered() {
+        return recovered;
+    }
+
+    public JournalState getState() {
+        return state;
+    }
+
+    /**
+     * @return the sequence number of the last entry known to be on disk
+     */
+    public long getSyncedSeq() {
+        return syncedSeq;
+    }
+
+
+    /**
+     * @return the failure of a previous flush, after which the journal refuses appends and syncs, or null
+     */
+    public IOException getFailure() {
+        return syncFailure;
+    }
+
+
+    /**
+     * Write an entry at the end of the journal, without waiting for the disk.
+     * @param patientId the patient ID
+     * @param note the note
+     * @param date the date of the note
+     * @return the entry, with its sequence number
+     * @throws IOException if the entry cannot be written, or a previous flush failed
+     */
+    public synchronized JournalEntry append(int patientId, String note, LocalDate date) throws IOException {
+        if (syncFailure != null) {
+            throw new IOException("Note journal refuses appends after a failed flush", syncFailure);
+        }
+        JournalEntry entry = new JournalEntry(lastSeq + 1, patientId, note, date, System.currentTimeMillis());
+        byte[] line = objectMapper.writeValueAsBytes(entry);
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        lastSeq = entry.getSeq();
+        return entry;
+    }
+
+
+    /**
+     * Wait until an entry is on disk. Callers arriving during a flush are covered by the next one.
+     * @param seq the sequence number of the entry
+     * @throws IOException if the journal cannot be flushed, now or by a previous flush
+     */
+    public void sync(long seq) throws IOException {
+        if (syncedSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) {
+                return;
+            }
+            if (syncFailure != null) {
+                throw new IOException("Note journal could not be flushed", syncFailure);
+            }
+            long written;
+            synchronized (this) {
+                written = lastSeq;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                syncFailure = e;
+                throw e;
+            }
+            syncedSeq = written;
+        }
+    }
+
+
+    /**
+     * Record that a batch is about to be inserted with a range of reserved ids.
+     * @param from the sequence number of the first entry of the batch
+     * @param to the sequence number of the last entry of the batch
+     * @param firstId the id of the note of the first entry, the following entries take the following ids
+     * @throws IOException if the state cannot be written
+     */
+    public void begin(long from, long to, long firstId) throws IOException {
+        writeState(new JournalState(state.getApplied(), from, to, firstId));
+    }
+
+
+    /**
+     * Record that every entry up to a sequence number was inserted, truncating the journal when it holds no other entry.
+     * @param to the sequence number of the last inserted entry
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized void applied(long to) throws IOException {
+        writeState(new JournalState(to, 0, 0, 0));
+        if (to == lastSeq) {
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+
+    /**
+     * Set entries aside in the dead letter file, for an operator to insert them once the cause is fixed.
+     * @param entries the entries
+     * @throws IOException if the dead letter file cannot be written
+     */
+    public void deadLetter(List<JournalEntry> entries) throws IOException {
+        try (FileChannel deadLetterChannel = FileChannel.open(deadLetterPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (JournalEntry entry : entries) {
+                byte[] line = objectMapper.writeValueAsBytes(entry);
+                ByteBuffer buffer = ByteBuffer.allocate(line.length + 1).put(line).put((byte) '\n').flip();
+                while (buffer.hasRemaining()) {
+                    deadLetterChannel.write(buffer);
+                }
+            }
+            deadLetterChannel.force(false);
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private void writeState(JournalState newState) throws IOException {
+        Path temporary = statePath.resolveSibling(STATE_FILE + ".tmp");
+        try (FileChannel stateChannel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            stateChannel.write(ByteBuffer.wrap(objectMapper.writeValueAsBytes(newState)));
+            stateChannel.force(true);
+        }
+        Files.move(temporary, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        state = newState;
+    }
+}
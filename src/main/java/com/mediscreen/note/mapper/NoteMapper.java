@@ -0,0 +1,55 @@
+package com.mediscreen.note.mapper;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.model.Note;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps between {@link Note} and {@link NoteDto} with plain accessor calls, without reflection or type maps.
+ */
+@Component
+public class NoteMapper {
+
+
+    /**
+     * Map a note entity to its dto.
+     * @param note the note
+     * @return the dto
+     */
+    public NoteDto toDto(Note note) {
+        NoteDto noteDto = new NoteDto(note.getPatientId(), note.getNote());
+        noteDto.setId(note.getId());
+        noteDto.setDate(note.getDate());
+        return noteDto;
+    }
+
+
+    /**
+     * Map a note dto to a new entity.
+     * @param noteDto the dto
+     * @return the note
+     */
+    public Note toEntity(NoteDto noteDto) {
+        Note note = new Note(noteDto.getPatientId(), noteDto.getNote());
+        note.setId(noteDto.getId());
+        note.setDate(noteDto.getDate());
+        return note;
+    }
+
+
+    /**
+     * Map a list of note entities to a list of dtos sized upfront.
+     * @param notes the notes
+     * @return the dtos, in the same order
+     */
+    public List<NoteDto> toDtoList(List<Note> notes) {
+        List<NoteDto> noteDtos = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            noteDtos.add(toDto(note));
+        }
+        return noteDtos;
+    }
+}
@@ -0,0 +1,123 @@
+package com.mediscreen.note.matcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cuts the passages of a text around the occurrences of a set of terms.
+ * Terms are found after {@link TextNormalizer#normalize(String)} while snippets keep the original spelling.
+ */
+public final class SnippetExtractor {
+
+
+    private static final String ELLIPSIS = "…";
+
+    private final List<String> patterns = new ArrayList<>();
+    private final int radius;
+    private final int maxSnippets;
+
+
+    /**
+     * @param terms the terms to highlight, blank and duplicate terms are ignored
+     * @param radius the number of characters kept on each side of an occurrence
+     * @param maxSnippets the maximum number of snippets per text
+     */
+    public SnippetExtractor(Collection<String> terms, int radius, int maxSnippets) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String term : terms) {
+            String pattern = term == null ? "" : TextNormalizer.normalize(term).strip();
+            if (!pattern.isEmpty()) {
+                distinct.add(pattern);
+            }
+        }
+        this.patterns.addAll(distinct);
+        this.radius = radius;
+        this.maxSnippets = maxSnippets;
+    }
+
+
+    /**
+     * Extract the snippets of a text, in text order, overlapping passages being merged.
+     * A text without any occurrence yields its beginning, as the search may have matched a stemmed form.
+     * @param text the text
+     * @return the snippets
+     */
+    public List<String> extract(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        int[] offsets = new int[text.length() * 4 + 1];
+        String normalized = normalize(text, offsets);
+
+        List<int[]> occurrences = new ArrayList<>();
+        for (String pattern : patterns) {
+            for (int i = normalized.indexOf(pattern); i >= 0; i = normalized.indexOf(pattern, i + 1)) {
+                occurrences.add(new int[]{offsets[i], offsets[i + pattern.length() - 1] + 1});
+            }
+        }
+        if (occurrences.isEmpty()) {
+            return List.of(snippet(text, 0, 0, 0, Math.min(text.length(), 2 * radius)));
+        }
+        occurrences.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+
+        List<String> snippets = new ArrayList<>(maxSnippets);
+        int first = occurrences.get(0)[0];
+        int last = occurrences.get(0)[1];
+        for (int[] occurrence : occurrences) {
+            if (occurrence[0] - radius > last + radius) {
+                snippets.add(snippet(text, first, last, first - radius, last + radius));
+                if (snippets.size() == maxSnippets) {
+                    return snippets;
+                }
+                first = occurrence[0];
+            }
+            last = Math.max(last, occurrence[1]);
+        }
+        snippets.add(snippet(text, first, last, first - radius, last + radius));
+        return snippets;
+    }
+
+
+    /**
+     * Cut the window to whole words, without cutting into the occurrences it surrounds.
+     */
+    private static String snippet(String text, int matchStart, int matchEnd, int start, int end) {
+        start = Math.max(0, start);
+        end = Math.min(text.length(), end);
+        while (start > 0 && start < matchStart && !Character.isWhitespace(text.charAt(start - 1))) {
+            start++;
+        }
+        while (end < text.length() && end > matchEnd && !Character.isWhitespace(text.charAt(end))) {
+            end--;
+        }
+        return (start > 0 ? ELLIPSIS : "") + text.substring(start, end).strip() + (end < text.length() ? ELLIPSIS : "");
+    }
+
+
+    /**
+     * Normalize character by character, recording the index in the original text of every normalized character.
+     */
+    private static String normalize(String text, int[] offsets) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) == ' ') {
+                    continue;
+                }
+                offsets[normalized.length()] = i;
+                normalized.append(' ');
+                continue;
+            }
+            String folded = TextNormalizer.normalize(String.valueOf(c));
+            for (int j = 0; j < folded.length(); j++) {
+                offsets[normalized.length()] = i;
+                normalized.append(folded.charAt(j));
+            }
+        }
+        return normalized.toString();
+    }
+}
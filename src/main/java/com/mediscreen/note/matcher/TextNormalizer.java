@@ -0,0 +1,42 @@
+package com.mediscreen.note.matcher;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Folds text so that matching ignores case, accents, typographic apostrophes and runs of whitespace.
+ */
+public final class TextNormalizer {
+
+
+    private TextNormalizer() {
+    }
+
+
+    /**
+     * Normalize a text for matching.
+     * @param text the text
+     * @return the text lower-cased, without diacritics, with straight apostrophes and single spaces
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean previousSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (!previousSpace) {
+                    normalized.append(' ');
+                }
+                previousSpace = true;
+                continue;
+            }
+            previousSpace = false;
+            normalized.append(c == '’' || c == '‘' ? '\'' : c);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,148 @@
+package com.mediscreen.note.matcher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton counting the occurrences of a set of terms in a single pass over a text.
+ * Terms and texts are compared after {@link TextNormalizer#normalize(String)}, terms equal once normalized are counted once,
+ * under their first spelling. Only whole words count: an occurrence directly preceded or followed by a letter is part
+ * of another word. Occurrences nested in or overlapping with those of other terms all count.
+ */
+public final class TriggerTermMatcher {
+
+
+    private final List<String> terms = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<int[]> outputs = new ArrayList<>();
+    private int[] failure;
+
+
+    /**
+     * Build the automaton of the given terms, blank and duplicate terms are ignored.
+     * @param terms the terms to count
+     */
+    public TriggerTermMatcher(Collection<String> terms) {
+        newState();
+        Set<String> patterns = new HashSet<>();
+        for (String term : terms) {
+            String pattern = term == null ? "" : TextNormalizer.normalize(term).strip();
+            if (pattern.isEmpty() || !patterns.add(pattern)) {
+                continue;
+            }
+            addPattern(pattern, this.terms.size());
+            this.terms.add(term);
+            this.lengths.add(pattern.length());
+        }
+        buildFailureLinks();
+    }
+
+
+    /**
+     * @return the counted terms, in the order of the counts
+     */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+
+    /**
+     * Add the occurrences of each term in a text to the given counts.
+     * @param text the text to scan
+     * @param counts the counts, indexed like {@link #getTerms()}
+     */
+    public void count(String text, int[] counts) {
+        if (text == null || terms.isEmpty()) {
+            return;
+        }
+        String normalized = TextNormalizer.normalize(text);
+        int state = 0;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            Integer next = transitions.get(state).get(c);
+            while (next == null && state != 0) {
+                state = failure[state];
+                next = transitions.get(state).get(c);
+            }
+            state = next == null ? 0 : next;
+            for (int term : outputs.get(state)) {
+                if (isWord(normalized, i + 1 - lengths.get(term), i + 1)) {
+                    counts[term]++;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Whether the occurrence between the given indexes, end excluded, stands as words of its own in the text.
+     */
+    private static boolean isWord(String text, int start, int end) {
+        return (start == 0 || !Character.isLetter(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetter(text.charAt(end)));
+    }
+
+
+    private int newState() {
+        transitions.add(new HashMap<>());
+        outputs.add(new int[0]);
+        return transitions.size() - 1;
+    }
+
+
+    private void addPattern(String pattern, int term) {
+        int state = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            Integer next = transitions.get(state).get(pattern.charAt(i));
+            if (next == null) {
+                next = newState();
+                transitions.get(state).put(pattern.charAt(i), next);
+            }
+            state = next;
+        }
+        outputs.set(state, new int[]{term});
+    }
+
+
+    /**
+     * Breadth-first, so the failure state of a state is complete before its children merge its outputs.
+     */
+    private void buildFailureLinks() {
+        failure = new int[transitions.size()];
+        Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                int child = transition.getValue();
+                int fallback = failure[state];
+                Integer target = transitions.get(fallback).get(transition.getKey());
+                while (target == null && fallback != 0) {
+                    fallback = failure[fallback];
+                    target = transitions.get(fallback).get(transition.getKey());
+                }
+                failure[child] = target == null || target == child ? 0 : target;
+                outputs.set(child, append(outputs.get(child), outputs.get(failure[child])));
+                queue.add(child);
+            }
+        }
+    }
+
+
+    private static int[] append(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        int[] merged = new int[first.length + second.length];
+        System.arraycopy(first, 0, merged, 0, first.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+}
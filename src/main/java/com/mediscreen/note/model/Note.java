@@ -4,18 +4,36 @@ package com.mediscreen.note.model;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.LocalDate;
 
-@Document(collection = "notes")
+@Document(collection = "notes", language = "french")
+@CompoundIndexes({
+        @CompoundIndex(name = "patientId_date", def = "{'patientId': 1, 'date': 1}"),
+        @CompoundIndex(name = "patientId_id", def = "{'patientId': 1, '_id': 1}"),
+        @CompoundIndex(name = "date_patientId", def = "{'date': 1, 'patientId': 1}")
+})
 public class Note {
 
 
     @Transient
     public static final String SEQUENCE_NAME = "users_sequence";
+    @Transient
+    public static final String COMPRESSED_NOTE_FIELD = "noteZ";
+    @Transient
+    public static final String SEARCH_TERMS_FIELD = "noteTerms";
+    /** The fields of a document read into a note: all but the search terms, which only the text index reads. */
+    @Transient
+    public static final String ENTITY_FIELDS = "{ '" + SEARCH_TERMS_FIELD + "' : 0 }";
+    @Transient
+    public static final String ARCHIVE_COLLECTION = "notes_archive";
 
     @Id
     private int id;
@@ -27,11 +45,25 @@ public class Note {
 
     @NotBlank(message = "Note is mandatory")
     @Field
+    @TextIndexed
     private String note;
 
+    /**
+     * The distinct words of a body stored deflated, written by the compression callback so that the text index still
+     * matches the note. Never read: they take about as many bytes as the deflated body, so every read of notes leaves
+     * them out with {@link #ENTITY_FIELDS}.
+     */
+    @Field(SEARCH_TERMS_FIELD)
+    @TextIndexed
+    @ReadOnlyProperty
+    private String searchTerms;
+
     @Field
     private LocalDate date;
 
+    @Field
+    private long version;
+
 
     public Note() {
     }
@@ -73,6 +105,12 @@ public class Note {
     public void setDate(LocalDate date) {
         this.date = date;
     }
-}
 
+    public long getVersion() {
+        return version;
+    }
 
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,108 @@
+package com.mediscreen.note.model;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A change of a note recorded in the outbox, in the same transaction as the change itself.
+ * The event gets its offset once sequenced after the commit; offsets become visible in increasing order.
+ * Events are dropped a week after being recorded.
+ */
+@Document(collection = "note_events")
+@CompoundIndex(name = "offset_id", def = "{'offset': 1, '_id': 1}")
+public class NoteEvent {
+
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    @Id
+    private ObjectId id;
+
+    private Long offset;
+
+    private Type type;
+
+    private int noteId;
+
+    private int patientId;
+
+    private long version;
+
+    @Indexed(expireAfter = "7d")
+    private Instant recordedAt;
+
+
+    public NoteEvent() {}
+
+    public NoteEvent(Type type, int noteId, int patientId, long version) {
+        this.type = type;
+        this.noteId = noteId;
+        this.patientId = patientId;
+        this.version = version;
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    public void setId(ObjectId id) {
+        this.id = id;
+    }
+
+    public Long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(Instant recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mediscreen.note.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+
+@Document(collection = "note_event_checkpoints")
+public class NoteEventCheckpoint {
+
+    @Id
+    private String publisher;
+
+    private long offset;
+
+    public NoteEventCheckpoint() {}
+
+    public NoteEventCheckpoint(String publisher, long offset) {
+        this.publisher = publisher;
+        this.offset = offset;
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(String publisher) {
+        this.publisher = publisher;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mediscreen.note.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+
+@Document(collection = "patient_note_versions")
+public class PatientNotesVersion {
+
+    @Id
+    private int patientId;
+
+    private long version;
+
+    public PatientNotesVersion() {}
+
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
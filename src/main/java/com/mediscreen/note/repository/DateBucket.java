@@ -0,0 +1,23 @@
+package com.mediscreen.note.repository;
+
+/**
+ * The periods notes can be counted by, with the $dateToString format naming each period.
+ */
+public enum DateBucket {
+
+    DAY("%Y-%m-%d"),
+    MONTH("%Y-%m"),
+    YEAR("%Y");
+
+
+    private final String format;
+
+
+    DateBucket(String format) {
+        this.format = format;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+}
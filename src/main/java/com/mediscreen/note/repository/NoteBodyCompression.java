@@ -0,0 +1,217 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.Note;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertCallback;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveAfterConvertCallback;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores the bodies of long notes deflated in the {@value Note#COMPRESSED_NOTE_FIELD} field instead of the note field.
+ * Applies to the documents of every save, insert and bulk insert, and to the updates built with {@link #setBody};
+ * the body is inflated back into the note after its document is read, by the template or by {@link #inflate}.
+ * A body is only stored deflated when that saves space. Its distinct words are then kept in the
+ * {@value Note#SEARCH_TERMS_FIELD} field, covered by the text index, so that the $text search still matches the note;
+ * phrases, which the words alone cannot match, are checked against the inflated body by the search.
+ * Bodies are inflated as soon as they are read rather than on first access: the reads that do not need a body, the targets
+ * of writes and the summaries, project it out and never fetch it, and every other read uses it, mapped to a DTO, exported
+ * or copied to the archive.
+ */
+@Component
+public class NoteBodyCompression implements BeforeSaveCallback<Note>, AfterConvertCallback<Note> {
+
+
+    public enum Mode {
+        /** Bodies of at least note.compression.min-length characters are stored deflated. */
+        DEFLATE,
+        /** Bodies are stored as plain strings. */
+        DISABLED
+    }
+
+    private static final Logger log = LogManager.getLogger(NoteBodyCompression.class);
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Mode mode;
+    private final int minLength;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+
+    public NoteBodyCompression(@Value("${note.compression.mode:disabled}") Mode mode,
+                               @Value("${note.compression.min-length:1024}") int minLength) {
+        this.mode = mode;
+        this.minLength = minLength;
+        log.info("Note body compression mode: {}, min length: {}", mode, minLength);
+    }
+
+
+    public Mode getMode() {
+        return mode;
+    }
+
+
+    @Override
+    public Note onBeforeSave(Note entity, Document document, String collection) {
+        String note = document.getString("note");
+        byte[] deflated = deflate(note);
+        if (deflated != null) {
+            document.remove("note");
+            document.put(Note.COMPRESSED_NOTE_FIELD, new Binary(deflated));
+            document.put(Note.SEARCH_TERMS_FIELD, searchTerms(note));
+        }
+        return entity;
+    }
+
+
+    @Override
+    public Note onAfterConvert(Note entity, Document document, String collection) {
+        return inflate(entity, document);
+    }
+
+
+    /**
+     * Set the body of a note read from a document with the raw driver, inflating it when it was stored deflated.
+     * @param note the note converted from the document
+     * @param document the document
+     * @return the note
+     */
+    public Note inflate(Note note, Document document) {
+        Object deflated = document.get(Note.COMPRESSED_NOTE_FIELD);
+        if (deflated instanceof Binary binary) {
+            note.setNote(inflate(binary.getData()));
+        } else if (deflated instanceof byte[] bytes) {
+            note.setNote(inflate(bytes));
+        }
+        return note;
+    }
+
+
+    /**
+     * Set the body of a note in an update, clearing the field of the other representation.
+     * @param update the update
+     * @param note the new body
+     * @return the update
+     */
+    public Update setBody(Update update, String note) {
+        byte[] deflated = deflate(note);
+        if (deflated != null) {
+            return update.set(Note.COMPRESSED_NOTE_FIELD, new Binary(deflated)).set(Note.SEARCH_TERMS_FIELD, searchTerms(note))
+                    .unset("note");
+        }
+        return update.set("note", note).unset(Note.COMPRESSED_NOTE_FIELD).unset(Note.SEARCH_TERMS_FIELD);
+    }
+
+
+    /**
+     * Deflaters are pooled rather than created per note: allocating the native zlib state costs more than deflating a note.
+     * @return the deflated body, or null when it should be stored as a plain string
+     */
+    private byte[] deflate(String note) {
+        if (mode == Mode.DISABLED || note == null || note.length() < minLength) {
+            return null;
+        }
+        byte[] plain = note.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(plain.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                deflated.write(buffer, 0, deflater.deflate(buffer));
+                if (deflated.size() >= plain.length) {
+                    return null;
+                }
+            }
+            return deflated.toByteArray();
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+
+    /**
+     * Inflaters are pooled for the same reason as deflaters.
+     */
+    private String inflate(byte[] deflated) {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(deflated);
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream(deflated.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed note");
+                }
+                inflated.write(buffer, 0, count);
+            }
+            return inflated.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed note", e);
+        } finally {
+            inflater.reset();
+            inflaters.offer(inflater);
+        }
+    }
+
+
+    /**
+     * The distinct words of a body, lower-cased, in order of first occurrence; the text index stems them as it stems bodies.
+     */
+    static String searchTerms(String note) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : WORD_SEPARATOR.split(note)) {
+            if (!word.isEmpty()) {
+                terms.add(word.toLowerCase(Locale.ROOT));
+            }
+        }
+        return String.join(" ", terms);
+    }
+
+
+    /**
+     * Inflates the bodies of the notes read by the reactive repository.
+     */
+    @Component
+    public static class ReactiveInflation implements ReactiveAfterConvertCallback<Note> {
+
+        private final NoteBodyCompression bodyCompression;
+
+        public ReactiveInflation(NoteBodyCompression bodyCompression) {
+            this.bodyCompression = bodyCompression;
+        }
+
+        @Override
+        public Publisher<Note> onAfterConvert(Note entity, Document document, String collection) {
+            return Mono.just(bodyCompression.inflate(entity, document));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.NoteEvent;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NoteEventRepository extends MongoRepository<NoteEvent, ObjectId> {
+
+
+    /**
+     * Find the events recorded after a given offset, served by the offset index.
+     * @param offset the offset of the last event already read
+     * @param pageable the page size and the offset ordering
+     * @return the events with an offset greater than the given one
+     */
+    List<NoteEvent> findByOffsetGreaterThan(long offset, Pageable pageable);
+}
@@ -0,0 +1,136 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoServerException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Sends the heavy reads to the read preference configured for them, so that a replica set spreads them over its secondaries,
+ * every other read and every write staying on the primary.
+ * A secondary may lag behind the primary by at most note.read.max-staleness, which MongoDB bounds to at least 90 seconds.
+ * A client that must see its own writes passes back the cluster time its last write answered with, taken from the reply
+ * to the write by the {@link OperationTimeListener}:
+ * the read then runs in a causally consistent session started after that time, so a secondary waits until it has applied it.
+ * A cluster time ahead of the cluster's own, which no write of the cluster answered with, is rejected as an invalid request.
+ */
+@Component
+public class NoteReadRouting {
+
+
+    public enum Operation {
+        /** Reading every note at once. */
+        ALL_NOTES,
+        /** Aggregating the note statistics. */
+        STATS,
+        /** Searching the note bodies. */
+        SEARCH
+    }
+
+    private static final Logger log = LogManager.getLogger(NoteReadRouting.class);
+    private static final ClientSessionOptions CAUSAL = ClientSessionOptions.builder().causallyConsistent(true).build();
+    /** The error of a read whose afterClusterTime is greater than the current cluster time. */
+    private static final int INVALID_OPTIONS = 72;
+
+    private final MongoClient mongoClient;
+    private final OperationTimeListener operationTimeListener;
+    private final Map<Operation, ReadPreference> readPreferences = new EnumMap<>(Operation.class);
+
+
+    public NoteReadRouting(@Nullable MongoClient mongoClient, OperationTimeListener operationTimeListener,
+                           @Value("${note.read.all-notes:primary}") String allNotes,
+                           @Value("${note.read.stats:primary}") String stats,
+                           @Value("${note.read.search:primary}") String search,
+                           @Value("${note.read.max-staleness:90s}") Duration maxStaleness) {
+        this.mongoClient = mongoClient;
+        this.operationTimeListener = operationTimeListener;
+        readPreferences.put(Operation.ALL_NOTES, readPreferenceOf(allNotes, maxStaleness));
+        readPreferences.put(Operation.STATS, readPreferenceOf(stats, maxStaleness));
+        readPreferences.put(Operation.SEARCH, readPreferenceOf(search, maxStaleness));
+        log.info("Note read preferences: {}", readPreferences);
+    }
+
+
+    /**
+     * @param operation the read
+     * @return the read preference of the read
+     */
+    public ReadPreference getReadPreference(Operation operation) {
+        return readPreferences.get(operation);
+    }
+
+
+    /**
+     * @return true if some reads may go to a secondary, so that clients need a cluster time to read their own writes
+     */
+    public boolean isRouted() {
+        return readPreferences.values().stream().anyMatch(readPreference -> !readPreference.equals(ReadPreference.primary()));
+    }
+
+
+    /**
+     * Run a read with the read preference of its operation.
+     * @param collection the collection read
+     * @param operation the read
+     * @param afterClusterTime the cluster time the read must follow, or null
+     * @param read the read, given the routed collection and the session to pass to the driver, null when there is none
+     * @return the result of the read
+     * @throws InvalidNoteRequestException if the cluster time is ahead of the cluster
+     */
+    public <T> T read(MongoCollection<Document> collection, Operation operation, Long afterClusterTime,
+                      BiFunction<MongoCollection<Document>, ClientSession, T> read) {
+        ReadPreference readPreference = getReadPreference(operation);
+        MongoCollection<Document> routed = collection.withReadPreference(readPreference);
+        if (afterClusterTime == null || readPreference.equals(ReadPreference.primary())) {
+            return read.apply(routed, null);
+        }
+        try (ClientSession session = mongoClient.startSession(CAUSAL)) {
+            session.advanceOperationTime(new BsonTimestamp(afterClusterTime));
+            return read.apply(routed, session);
+        } catch (MongoServerException e) {
+            if (e.getCode() == INVALID_OPTIONS) {
+                throw new InvalidNoteRequestException("Cluster time " + afterClusterTime + " is ahead of the cluster: "
+                        + e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Give the cluster time of the writes the current thread just made, as their replies carried it.
+     * @return the cluster time, empty when every read goes to the primary or the server is not part of a replica set
+     */
+    public OptionalLong clusterTime() {
+        if (!isRouted()) {
+            return OptionalLong.empty();
+        }
+        return operationTimeListener.lastOperationTime();
+    }
+
+
+    private static ReadPreference readPreferenceOf(String name, Duration maxStaleness) {
+        if (name.equals("primary")) {
+            return ReadPreference.primary();
+        }
+        return ReadPreference.valueOf(name, List.of(), maxStaleness.toSeconds(), TimeUnit.SECONDS);
+    }
+}
@@ -1,9 +1,115 @@
 package com.mediscreen.note.repository;
 
 import com.mediscreen.note.model.Note;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface NoteRepository extends MongoRepository<Note, Integer> {
+public interface NoteRepository extends MongoRepository<Note, Integer>, NoteRepositoryCustom {
+
+
+    /**
+     * Find a note by id, without its search terms.
+     * @param id the note id
+     * @return the note, empty if it does not exist
+     */
+    @Override
+    @Query(fields = Note.ENTITY_FIELDS)
+    Optional<Note> findById(Integer id);
+
+
+    /**
+     * Find several notes by id in a single $in query, without their search terms.
+     * @param ids the note ids
+     * @return the notes found, in no particular order
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    List<Note> findByIdIn(Collection<Integer> ids);
+
+
+    /**
+     * Find all notes of a patient ordered by visit date, served by the patientId_date index.
+     * @param patientId the patient id
+     * @return the notes of the patient, oldest first
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    List<Note> findByPatientIdOrderByDateAsc(int patientId);
+
+
+    /**
+     * Find all notes of several patients in a single $in query, served in index order by the patientId_date index.
+     * @param patientIds the patient ids
+     * @return the notes of the patients, grouped by patient and oldest first within a patient
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    List<Note> findByPatientIdInOrderByPatientIdAscDateAsc(Collection<Integer> patientIds);
+
+
+    /**
+     * Find the page of notes following a given id, served by the _id index.
+     * @param id the last id of the previous page
+     * @param pageable the page size and the id ordering
+     * @return the notes with an id greater than the given one
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    List<Note> findByIdGreaterThan(int id, Pageable pageable);
+
+
+    /**
+     * Find the page of notes of a patient following a given id, served by the patientId_id index.
+     * @param patientId the patient id
+     * @param id the last id of the previous page
+     * @param pageable the page size and the id ordering
+     * @return the notes of the patient with an id greater than the given one
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    List<Note> findByPatientIdAndIdGreaterThan(int patientId, int id, Pageable pageable);
+
+
+    /**
+     * Find all notes projected on the fields of the given type, the others are never read.
+     * @param type the projection
+     * @param <T> the type of the projection
+     * @return the projected notes
+     */
+    <T> List<T> findAllBy(Class<T> type);
+
+
+    /**
+     * Find all notes of a patient ordered by visit date, projected on the fields of the given type.
+     * @param patientId the patient id
+     * @param type the projection
+     * @param <T> the type of the projection
+     * @return the projected notes of the patient, oldest first
+     */
+    <T> List<T> findByPatientIdOrderByDateAsc(int patientId, Class<T> type);
+
+
+    /**
+     * Find the page of notes following a given id, projected on the fields of the given type.
+     * @param id the last id of the previous page
+     * @param pageable the page size and the id ordering
+     * @param type the projection
+     * @param <T> the type of the projection
+     * @return the projected notes with an id greater than the given one
+     */
+    <T> List<T> findByIdGreaterThan(int id, Pageable pageable, Class<T> type);
+
+
+    /**
+     * Find the page of notes of a patient following a given id, projected on the fields of the given type.
+     * @param patientId the patient id
+     * @param id the last id of the previous page
+     * @param pageable the page size and the id ordering
+     * @param type the projection
+     * @param <T> the type of the projection
+     * @return the projected notes of the patient with an id greater than the given one
+     */
+    <T> List<T> findByPatientIdAndIdGreaterThan(int patientId, int id, Pageable pageable, Class<T> type);
 }
@@ -0,0 +1,214 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.model.Note;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/**
+ * Note queries that need {@link org.springframework.data.mongodb.core.MongoOperations} rather than derived queries.
+ */
+public interface NoteRepositoryCustom {
+
+
+    /**
+     * Stream all notes in id order from a server-side cursor.
+     * The stream holds the cursor open and must be closed by the caller.
+     * @return the notes
+     */
+    Stream<Note> streamAll();
+
+
+    /**
+     * Read every note with the read preference of {@link NoteReadRouting.Operation#ALL_NOTES}.
+     * @param afterClusterTime the cluster time the read must follow, or null
+     * @return the notes
+     */
+    List<Note> readAll(Long afterClusterTime);
+
+
+    /**
+     * Read the cluster time a client must read after to see the writes already acknowledged.
+     * @return the cluster time, empty when every read goes to the primary
+     */
+    OptionalLong findClusterTime();
+
+
+    /**
+     * Stream the notes of a patient in id order from a server-side cursor.
+     * The stream holds the cursor open and must be closed by the caller.
+     * @param patientId the patient id
+     * @return the notes of the patient
+     */
+    Stream<Note> streamByPatientId(int patientId);
+
+
+    /**
+     * Find which of the given notes exist, reading only their id, patient id and version.
+     * @param ids the note ids
+     * @return each existing note, holding only its id, patient id and version, by note id
+     */
+    Map<Integer, Note> findTargetsByIds(Collection<Integer> ids);
+
+
+    /**
+     * Read the version of a note, without its body.
+     * @param id the note id
+     * @return the version of the note, empty if the note does not exist
+     */
+    OptionalLong findVersionById(int id);
+
+
+    /**
+     * Read the version of the notes of a patient, which changes whenever one of them is created, updated or deleted.
+     * @param patientId the patient id
+     * @return the version, 0 if the notes of the patient never changed
+     */
+    long findPatientNotesVersion(int patientId);
+
+
+    /**
+     * Increment the notes version of each given patient in a single round trip.
+     * @param patientIds the patient ids
+     */
+    void incrementPatientNotesVersions(Collection<Integer> patientIds);
+
+
+    /**
+     * Set the patient id, body and date of a note and increment its version in a single round trip,
+     * leaving the rest of the document untouched.
+     * @param note the new content of the note, identified by its id
+     * @return the note before the update, holding only its id, patient id and version, empty if the note does not exist
+     */
+    Optional<Note> updateContent(Note note);
+
+
+    /**
+     * Remove a note in a single round trip.
+     * @param id the note id
+     * @return the removed note, holding only its id, patient id and version, empty if the note does not exist
+     */
+    Optional<Note> removeById(int id);
+
+
+    /**
+     * Execute the given writes as a single unordered bulk write.
+     * @param writes the writes, which must not target the same note twice
+     * @return the error message of each failed write, by position in {@code writes}
+     */
+    Map<Integer, String> bulkWrite(List<NoteWrite> writes);
+
+
+    /**
+     * Search note bodies with the text index, most relevant first and by id among equal scores.
+     * The archive, when included, is searched apart and its hits merged with the hot ones, a note found in both kept once.
+     * @param query the search
+     * @param limit the maximum number of hits
+     * @return the hits following the cursor of the query
+     */
+    List<ScoredNote> searchText(NoteSearchQuery query, int limit);
+
+
+    /**
+     * Count the notes of each patient and find its first and last visit dates, in patient id order.
+     * @param query the notes to aggregate
+     * @return the statistics of each patient having notes matching the query
+     */
+    List<PatientNoteStatsDto> aggregateByPatient(NoteStatsQuery query);
+
+
+    /**
+     * Count the notes written during each period, and the patients they were written for, in period order.
+     * @param query the notes to aggregate
+     * @param bucket the length of the periods
+     * @return the statistics of each period having notes matching the query
+     */
+    List<NotePeriodStatsDto> aggregateByPeriod(NoteStatsQuery query, DateBucket bucket);
+
+
+    /**
+     * Find notes dated before a day in the hot collection, reading the date_patientId index.
+     * @param cutoff the first day not matched
+     * @param limit the maximum number of notes
+     * @return the notes, in no particular order
+     */
+    List<Note> findDatedBefore(LocalDate cutoff, int limit);
+
+
+    /**
+     * Copy notes into the {@value Note#ARCHIVE_COLLECTION} collection in a single round trip, replacing any earlier copy.
+     * @param notes the notes
+     */
+    void copyToArchive(List<Note> notes);
+
+
+    /**
+     * Remove from the hot collection those of the given notes that are still dated before a day.
+     * @param ids the note ids
+     * @param cutoff the first day not removed
+     * @return the number of notes removed
+     */
+    long removeDatedBefore(Collection<Integer> ids, LocalDate cutoff);
+
+
+    /**
+     * Remove notes from the {@value Note#ARCHIVE_COLLECTION} collection.
+     * @param ids the note ids
+     */
+    void removeFromArchive(Collection<Integer> ids);
+
+
+    /**
+     * Find an archived note.
+     * @param id the note id
+     * @return the note, empty if it is not archived
+     */
+    Optional<Note> findArchivedById(int id);
+
+
+    /**
+     * Find archived notes with a single $in query.
+     * @param ids the note ids
+     * @return the archived notes, in no particular order
+     */
+    List<Note> findArchivedByIds(Collection<Integer> ids);
+
+
+    /**
+     * Find the archived notes of a patient.
+     * @param patientId the patient id
+     * @return the archived notes of the patient, oldest first
+     */
+    List<Note> findArchivedByPatientId(int patientId);
+
+
+    /**
+     * Remove an archived note in a single round trip.
+     * @param id the note id
+     * @return the removed note, holding only its id, patient id and version, empty if it is not archived
+     */
+    Optional<Note> removeArchivedById(int id);
+
+
+    /**
+     * Move an archived note back to the hot collection. The note is inserted before its archived copy is removed,
+     * so an interrupted restore can be run again without losing it.
+     * @param id the note id
+     * @return true if the note was archived
+     */
+    boolean restoreArchived(int id);
+
+
+    /**
+     * Create the indexes of the {@value Note#ARCHIVE_COLLECTION} collection if they do not exist.
+     * Archived notes are read by id or by patient and searched by text: patientId_date and the text index are kept.
+     */
+    void ensureArchiveIndexes();
+}
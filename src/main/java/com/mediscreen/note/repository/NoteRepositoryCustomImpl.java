@@ -0,0 +1,509 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.model.PatientNotesVersion;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+public class NoteRepositoryCustomImpl implements NoteRepositoryCustom {
+
+
+    static final int CURSOR_BATCH_SIZE = 500;
+    static final String SCORE_FIELD = "score";
+    static final String DATE_PATIENT_INDEX = "date_patientId";
+    static final String PATIENT_DATE_INDEX = "patientId_date";
+    private static final String TEXT_LANGUAGE = "french";
+    private static final Pattern PHRASE = Pattern.compile("(-?)\"([^\"]*)\"");
+    private static final Document ENTITY_PROJECTION = Document.parse(Note.ENTITY_FIELDS);
+
+    private final MongoOperations mongoOperations;
+    private final NoteBodyCompression bodyCompression;
+    private final NoteReadRouting readRouting;
+
+
+    public NoteRepositoryCustomImpl(MongoOperations mongoOperations, NoteBodyCompression bodyCompression,
+                                    NoteReadRouting readRouting) {
+        this.mongoOperations = mongoOperations;
+        this.bodyCompression = bodyCompression;
+        this.readRouting = readRouting;
+    }
+
+
+    @Override
+    public Stream<Note> streamAll() {
+        return stream(new Query());
+    }
+
+
+    /**
+     * The routed read goes through the driver, so it runs, cursor included, in a MongoTemplate callback
+     * which translates the driver exceptions as every other repository method does.
+     */
+    @Override
+    public List<Note> readAll(Long afterClusterTime) {
+        return mongoOperations.execute(Note.class, collection -> readRouting.read(collection,
+                NoteReadRouting.Operation.ALL_NOTES, afterClusterTime, (routed, session) -> {
+                    FindIterable<Document> documents = session == null ? routed.find() : routed.find(session);
+                    List<Note> notes = new ArrayList<>();
+                    try (MongoCursor<Document> cursor = documents.projection(ENTITY_PROJECTION).batchSize(CURSOR_BATCH_SIZE)
+                            .iterator()) {
+                        cursor.forEachRemaining(document -> notes.add(readNote(document)));
+                    }
+                    return notes;
+                }));
+    }
+
+
+    @Override
+    public OptionalLong findClusterTime() {
+        return readRouting.clusterTime();
+    }
+
+
+    @Override
+    public Stream<Note> streamByPatientId(int patientId) {
+        return stream(query(where("patientId").is(patientId)));
+    }
+
+
+    @Override
+    public Map<Integer, Note> findTargetsByIds(Collection<Integer> ids) {
+        Query query = query(where("id").in(ids));
+        query.fields().include("patientId", "version");
+        Map<Integer, Note> targets = new HashMap<>();
+        mongoOperations.find(query, Note.class).forEach(note -> targets.put(note.getId(), note));
+        return targets;
+    }
+
+
+    @Override
+    public OptionalLong findVersionById(int id) {
+        Query query = query(where("id").is(id));
+        query.fields().include("version");
+        Note note = mongoOperations.findOne(query, Note.class);
+        return note == null ? OptionalLong.empty() : OptionalLong.of(note.getVersion());
+    }
+
+
+    @Override
+    public long findPatientNotesVersion(int patientId) {
+        PatientNotesVersion version = mongoOperations.findById(patientId, PatientNotesVersion.class);
+        return version == null ? 0 : version.getVersion();
+    }
+
+
+    @Override
+    public void incrementPatientNotesVersions(Collection<Integer> patientIds) {
+        if (patientIds.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, PatientNotesVersion.class);
+        for (Integer patientId : patientIds) {
+            bulk.upsert(query(where("patientId").is(patientId)), new Update().inc("version", 1));
+        }
+        bulk.execute();
+    }
+
+
+    @Override
+    public Optional<Note> updateContent(Note note) {
+        return Optional.ofNullable(mongoOperations.findAndModify(target(note.getId()), contentOf(note),
+                FindAndModifyOptions.options().returnNew(false), Note.class));
+    }
+
+
+    @Override
+    public Optional<Note> removeById(int id) {
+        return Optional.ofNullable(mongoOperations.findAndRemove(target(id), Note.class));
+    }
+
+
+    @Override
+    public Map<Integer, String> bulkWrite(List<NoteWrite> writes) {
+        if (writes.isEmpty()) {
+            return Map.of();
+        }
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class);
+        for (NoteWrite write : writes) {
+            switch (write.getType()) {
+                case INSERT -> bulk.insert(write.getNote());
+                case UPDATE -> bulk.updateOne(query(where("id").is(write.getId())), contentOf(write.getNote()));
+                case DELETE -> bulk.remove(query(where("id").is(write.getId())));
+            }
+        }
+        try {
+            bulk.execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            Map<Integer, String> failures = new HashMap<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failures.put(error.getIndex(), error.getMessage());
+            }
+            return failures;
+        }
+    }
+
+
+    /**
+     * Runs as a raw pipeline: the keyset condition has to filter on the text score, which only exists once
+     * the $text match has run, and $sort followed by $limit keeps only the top hits in memory.
+     * With compression on, the words of deflated bodies are indexed but not their phrases: phrases are searched as words
+     * and checked against the inflated bodies, reading further pages until the page is full.
+     */
+    @Override
+    public List<ScoredNote> searchText(NoteSearchQuery query, int limit) {
+        List<ScoredNote> hits = searchText(query, mongoOperations.getCollectionName(Note.class), limit);
+        if (!query.isIncludeArchive()) {
+            return hits;
+        }
+        Map<Integer, ScoredNote> merged = new LinkedHashMap<>();
+        Stream.concat(hits.stream(), searchText(query, Note.ARCHIVE_COLLECTION, limit).stream())
+                .sorted(Comparator.comparingDouble(ScoredNote::getScore).reversed()
+                        .thenComparingInt(hit -> hit.getNote().getId()))
+                .forEach(hit -> merged.putIfAbsent(hit.getNote().getId(), hit));
+        return merged.values().stream().limit(limit).toList();
+    }
+
+
+    private List<ScoredNote> searchText(NoteSearchQuery query, String collectionName, int limit) {
+        Matcher phraseMatcher = PHRASE.matcher(query.getText());
+        if (bodyCompression.getMode() == NoteBodyCompression.Mode.DISABLED || !phraseMatcher.find()) {
+            return searchText(query, collectionName, query.getText(), query.getAfterScore(), query.getAfterId(), limit);
+        }
+        List<String> phrases = new ArrayList<>();
+        List<String> excludedPhrases = new ArrayList<>();
+        StringBuilder words = new StringBuilder();
+        do {
+            (phraseMatcher.group(1).isEmpty() ? phrases : excludedPhrases).add(phraseMatcher.group(2).toLowerCase(Locale.ROOT));
+            phraseMatcher.appendReplacement(words, phraseMatcher.group(1).isEmpty()
+                    ? Matcher.quoteReplacement(phraseMatcher.group(2)) : "");
+        } while (phraseMatcher.find());
+        phraseMatcher.appendTail(words);
+
+        List<ScoredNote> hits = new ArrayList<>(limit);
+        Double afterScore = query.getAfterScore();
+        Integer afterId = query.getAfterId();
+        List<ScoredNote> candidates;
+        do {
+            candidates = searchText(query, collectionName, words.toString(), afterScore, afterId, limit);
+            for (ScoredNote candidate : candidates) {
+                String body = candidate.getNote().getNote().toLowerCase(Locale.ROOT);
+                if (hits.size() < limit && phrases.stream().allMatch(body::contains)
+                        && excludedPhrases.stream().noneMatch(body::contains)) {
+                    hits.add(candidate);
+                }
+            }
+            if (!candidates.isEmpty()) {
+                ScoredNote last = candidates.get(candidates.size() - 1);
+                afterScore = last.getScore();
+                afterId = last.getNote().getId();
+            }
+        } while (hits.size() < limit && candidates.size() == limit);
+        return hits;
+    }
+
+
+    private List<ScoredNote> searchText(NoteSearchQuery query, String collectionName, String text, Double afterScore,
+                                        Integer afterId, int limit) {
+        Document match = new Document("$text", new Document("$search", text));
+        if (query.getPatientId() != null) {
+            match.append("patientId", query.getPatientId());
+        }
+        Document date = new Document();
+        if (query.getFrom() != null) {
+            date.append("$gte", mongoOperations.getConverter().convertToMongoType(query.getFrom()));
+        }
+        if (query.getTo() != null) {
+            date.append("$lte", mongoOperations.getConverter().convertToMongoType(query.getTo()));
+        }
+        if (!date.isEmpty()) {
+            match.append("date", date);
+        }
+
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", match));
+        pipeline.add(new Document("$project", new Document(Note.SEARCH_TERMS_FIELD, 0)));
+        pipeline.add(new Document("$addFields", new Document(SCORE_FIELD, new Document("$meta", "textScore"))));
+        if (afterScore != null && afterId != null) {
+            pipeline.add(new Document("$match", new Document("$or", List.of(
+                    new Document(SCORE_FIELD, new Document("$lt", afterScore)),
+                    new Document(SCORE_FIELD, afterScore).append("_id", new Document("$gt", afterId))))));
+        }
+        pipeline.add(new Document("$sort", new Document(SCORE_FIELD, -1).append("_id", 1)));
+        pipeline.add(new Document("$limit", limit));
+
+        return mongoOperations.execute(collectionName, collection -> readRouting.read(collection,
+                NoteReadRouting.Operation.SEARCH, query.getAfterClusterTime(), (routed, session) -> {
+                    List<ScoredNote> hits = new ArrayList<>(limit);
+                    for (Document document : aggregate(routed, session, pipeline)) {
+                        hits.add(new ScoredNote(readNote(document), document.get(SCORE_FIELD, Number.class).doubleValue()));
+                    }
+                    return hits;
+                }));
+    }
+
+
+    /**
+     * Sorting on patientId and date lets the patientId_date index feed $first and $last in order,
+     * and as only these two fields are read the index covers the whole pipeline without fetching a document.
+     */
+    @Override
+    public List<PatientNoteStatsDto> aggregateByPatient(NoteStatsQuery query) {
+        List<Document> pipeline = statsSource(query);
+        pipeline.add(new Document("$sort", new Document("patientId", 1).append("date", 1)));
+        pipeline.add(new Document("$group", new Document("_id", "$patientId")
+                .append("noteCount", new Document("$sum", 1))
+                .append("firstVisit", new Document("$first", "$date"))
+                .append("lastVisit", new Document("$last", "$date"))));
+        pipeline.add(new Document("$sort", new Document("_id", 1)));
+        pipeline.add(new Document("$project", new Document("_id", 0).append("patientId", "$_id")
+                .append("noteCount", 1).append("firstVisit", 1).append("lastVisit", 1)));
+        return aggregate(pipeline, null, query.getAfterClusterTime(), PatientNoteStatsDto.class);
+    }
+
+
+    /**
+     * Groups by period and patient first, so that patients are counted without holding a set of ids per period.
+     * Without a patient filter the date_patientId index is hinted: the pipeline reads only these two fields,
+     * so scanning the index replaces scanning the documents and their bodies.
+     * A LocalDate is stored as its midnight in the default zone of the JVM, so the periods are named in that zone too.
+     */
+    @Override
+    public List<NotePeriodStatsDto> aggregateByPeriod(NoteStatsQuery query, DateBucket bucket) {
+        List<Document> pipeline = statsSource(query);
+        Document period = new Document("$dateToString", new Document("format", bucket.getFormat()).append("date", "$date")
+                .append("timezone", ZoneId.systemDefault().getId()));
+        pipeline.add(new Document("$group", new Document("_id", new Document("period", period).append("patientId", "$patientId"))
+                .append("noteCount", new Document("$sum", 1))));
+        pipeline.add(new Document("$group", new Document("_id", "$_id.period")
+                .append("noteCount", new Document("$sum", "$noteCount"))
+                .append("patientCount", new Document("$sum", 1))));
+        pipeline.add(new Document("$sort", new Document("_id", 1)));
+        pipeline.add(new Document("$project", new Document("_id", 0).append("period", "$_id")
+                .append("noteCount", 1).append("patientCount", 1)));
+        return aggregate(pipeline, query.getPatientIds().isEmpty() ? DATE_PATIENT_INDEX : null, query.getAfterClusterTime(),
+                NotePeriodStatsDto.class);
+    }
+
+
+    @Override
+    public List<Note> findDatedBefore(LocalDate cutoff, int limit) {
+        return mongoOperations.find(entities(query(where("date").lt(cutoff)).limit(limit).withHint(DATE_PATIENT_INDEX)),
+                Note.class);
+    }
+
+
+    /**
+     * Replacing rather than inserting lets a batch interrupted before its notes left the hot collection be copied again.
+     */
+    @Override
+    public void copyToArchive(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, Note.class, Note.ARCHIVE_COLLECTION);
+        for (Note note : notes) {
+            bulk.replaceOne(query(where("id").is(note.getId())), note, FindAndReplaceOptions.options().upsert());
+        }
+        bulk.execute();
+    }
+
+
+    @Override
+    public long removeDatedBefore(Collection<Integer> ids, LocalDate cutoff) {
+        return mongoOperations.remove(query(where("id").in(ids).and("date").lt(cutoff)), Note.class).getDeletedCount();
+    }
+
+
+    @Override
+    public void removeFromArchive(Collection<Integer> ids) {
+        mongoOperations.remove(query(where("id").in(ids)), Note.class, Note.ARCHIVE_COLLECTION);
+    }
+
+
+    @Override
+    public Optional<Note> findArchivedById(int id) {
+        return Optional.ofNullable(mongoOperations.findOne(entities(query(where("id").is(id))), Note.class,
+                Note.ARCHIVE_COLLECTION));
+    }
+
+
+    @Override
+    public List<Note> findArchivedByIds(Collection<Integer> ids) {
+        return mongoOperations.find(entities(query(where("id").in(ids))), Note.class, Note.ARCHIVE_COLLECTION);
+    }
+
+
+    @Override
+    public List<Note> findArchivedByPatientId(int patientId) {
+        return mongoOperations.find(entities(query(where("patientId").is(patientId)).with(Sort.by("date", "id"))),
+                Note.class, Note.ARCHIVE_COLLECTION);
+    }
+
+
+    @Override
+    public Optional<Note> removeArchivedById(int id) {
+        return Optional.ofNullable(mongoOperations.findAndRemove(target(id), Note.class, Note.ARCHIVE_COLLECTION));
+    }
+
+
+    @Override
+    public boolean restoreArchived(int id) {
+        Note note = mongoOperations.findOne(entities(query(where("id").is(id))), Note.class, Note.ARCHIVE_COLLECTION);
+        if (note == null) {
+            return false;
+        }
+        try {
+            mongoOperations.insert(note);
+        } catch (DuplicateKeyException e) {
+            // restored by an earlier attempt that did not reach the removal
+        }
+        mongoOperations.remove(query(where("id").is(id)), Note.class, Note.ARCHIVE_COLLECTION);
+        return true;
+    }
+
+
+    @Override
+    public void ensureArchiveIndexes() {
+        IndexOperations indexOps = mongoOperations.indexOps(Note.ARCHIVE_COLLECTION);
+        indexOps.ensureIndex(new Index()
+                .on("patientId", Sort.Direction.ASC).on("date", Sort.Direction.ASC).named(PATIENT_DATE_INDEX));
+        indexOps.ensureIndex(new TextIndexDefinition.TextIndexDefinitionBuilder()
+                .onField("note").onField(Note.SEARCH_TERMS_FIELD).withDefaultLanguage(TEXT_LANGUAGE).build());
+    }
+
+
+    /**
+     * The fields a note update rewrites, and its new version.
+     */
+    private Update contentOf(Note note) {
+        return bodyCompression.setBody(new Update(), note.getNote())
+                .set("patientId", note.getPatientId())
+                .set("date", note.getDate())
+                .inc("version", 1);
+    }
+
+
+    /**
+     * Select a note, returning only what cache eviction and change events need rather than the whole body.
+     */
+    private static Query target(int id) {
+        Query query = query(where("id").is(id));
+        query.fields().include("patientId", "version");
+        return query;
+    }
+
+
+    /**
+     * The first stages of a stats pipeline: the matching hot notes, followed by the matching archived notes
+     * when the query includes the archive. The indexes only serve the hot collection once the archive is included.
+     */
+    private List<Document> statsSource(NoteStatsQuery query) {
+        List<Document> pipeline = new ArrayList<>();
+        Document match = statsMatch(query);
+        List<Document> matchStages = match.isEmpty() ? List.of() : List.of(new Document("$match", match));
+        pipeline.addAll(matchStages);
+        if (query.isIncludeArchive()) {
+            pipeline.add(new Document("$unionWith", new Document("coll", Note.ARCHIVE_COLLECTION).append("pipeline", matchStages)));
+        }
+        return pipeline;
+    }
+
+
+    private Document statsMatch(NoteStatsQuery query) {
+        Document match = new Document();
+        if (!query.getPatientIds().isEmpty()) {
+            match.append("patientId", new Document("$in", query.getPatientIds()));
+        }
+        Document date = new Document();
+        if (query.getFrom() != null) {
+            date.append("$gte", mongoOperations.getConverter().convertToMongoType(query.getFrom()));
+        }
+        if (query.getTo() != null) {
+            date.append("$lte", mongoOperations.getConverter().convertToMongoType(query.getTo()));
+        }
+        if (!date.isEmpty()) {
+            match.append("date", date);
+        }
+        return match;
+    }
+
+
+    private <T> List<T> aggregate(List<Document> pipeline, String hint, Long afterClusterTime, Class<T> type) {
+        return mongoOperations.execute(Note.class, collection -> readRouting.read(collection,
+                NoteReadRouting.Operation.STATS, afterClusterTime, (routed, session) -> {
+                    AggregateIterable<Document> documents = aggregate(routed, session, pipeline).allowDiskUse(true);
+                    if (hint != null) {
+                        documents.hintString(hint);
+                    }
+                    List<T> results = new ArrayList<>();
+                    for (Document document : documents) {
+                        results.add(mongoOperations.getConverter().read(type, document));
+                    }
+                    return results;
+                }));
+    }
+
+
+    private Note readNote(Document document) {
+        return bodyCompression.inflate(mongoOperations.getConverter().read(Note.class, document), document);
+    }
+
+
+    private static AggregateIterable<Document> aggregate(MongoCollection<Document> collection, ClientSession session,
+                                                         List<Document> pipeline) {
+        return session == null ? collection.aggregate(pipeline) : collection.aggregate(session, pipeline);
+    }
+
+
+    private Stream<Note> stream(Query query) {
+        return mongoOperations.stream(entities(query).with(Sort.by("id")).cursorBatchSize(CURSOR_BATCH_SIZE), Note.class);
+    }
+
+
+    /**
+     * The search terms of a deflated body are written for the text index only, see {@link Note#ENTITY_FIELDS}.
+     */
+    private static Query entities(Query query) {
+        query.fields().exclude(Note.SEARCH_TERMS_FIELD);
+        return query;
+    }
+}
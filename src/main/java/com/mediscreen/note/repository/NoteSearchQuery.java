@@ -0,0 +1,75 @@
+package com.mediscreen.note.repository;
+
+import java.time.LocalDate;
+
+/**
+ * A full-text search over note bodies, optionally restricted to a patient and a date range, extended to the archived notes
+ * and resumed after the last hit of a previous page, read after a cluster time when the client must see its own writes.
+ */
+public final class NoteSearchQuery {
+
+
+    private final String text;
+    private final Integer patientId;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Double afterScore;
+    private final Integer afterId;
+    private final boolean includeArchive;
+    private final Long afterClusterTime;
+
+
+    /**
+     * @param text the text search, in MongoDB $text syntax
+     * @param patientId the patient id, or null for every patient
+     * @param from the first date included, or null
+     * @param to the last date included, or null
+     * @param afterScore the score of the last hit of the previous page, or null for the first page
+     * @param afterId the id of the last hit of the previous page, or null for the first page
+     * @param includeArchive whether the archived notes are searched with the hot ones
+     * @param afterClusterTime the cluster time the search must follow, or null
+     */
+    public NoteSearchQuery(String text, Integer patientId, LocalDate from, LocalDate to, Double afterScore, Integer afterId,
+                           boolean includeArchive, Long afterClusterTime) {
+        this.text = text;
+        this.patientId = patientId;
+        this.from = from;
+        this.to = to;
+        this.afterScore = afterScore;
+        this.afterId = afterId;
+        this.includeArchive = includeArchive;
+        this.afterClusterTime = afterClusterTime;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Integer getPatientId() {
+        return patientId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public Double getAfterScore() {
+        return afterScore;
+    }
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public boolean isIncludeArchive() {
+        return includeArchive;
+    }
+
+    public Long getAfterClusterTime() {
+        return afterClusterTime;
+    }
+}
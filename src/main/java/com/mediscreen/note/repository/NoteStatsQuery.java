@@ -0,0 +1,54 @@
+package com.mediscreen.note.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The notes a statistic is computed over, optionally restricted to some patients and a date range,
+ * whether archived notes are included and the cluster time the statistic must be read after.
+ */
+public final class NoteStatsQuery {
+
+
+    private final List<Integer> patientIds;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final boolean includeArchive;
+    private final Long afterClusterTime;
+
+
+    /**
+     * @param patientIds the patient ids, or an empty list for every patient
+     * @param from the first date included, or null
+     * @param to the last date included, or null
+     * @param includeArchive whether the archived notes are aggregated with the hot ones
+     * @param afterClusterTime the cluster time the aggregation must follow, or null
+     */
+    public NoteStatsQuery(List<Integer> patientIds, LocalDate from, LocalDate to, boolean includeArchive, Long afterClusterTime) {
+        this.patientIds = patientIds;
+        this.from = from;
+        this.to = to;
+        this.includeArchive = includeArchive;
+        this.afterClusterTime = afterClusterTime;
+    }
+
+    public List<Integer> getPatientIds() {
+        return patientIds;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public boolean isIncludeArchive() {
+        return includeArchive;
+    }
+
+    public Long getAfterClusterTime() {
+        return afterClusterTime;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.Note;
+
+/**
+ * One write of an unordered bulk write on the notes collection.
+ */
+public final class NoteWrite {
+
+
+    public enum Type {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private final Type type;
+    private final int id;
+    private final Note note;
+
+
+    private NoteWrite(Type type, int id, Note note) {
+        this.type = type;
+        this.id = id;
+        this.note = note;
+    }
+
+    /**
+     * Insert a note that already holds its id.
+     */
+    public static NoteWrite insert(Note note) {
+        return new NoteWrite(Type.INSERT, note.getId(), note);
+    }
+
+    /**
+     * Set the patientId, note and date of the note with the same id.
+     */
+    public static NoteWrite update(Note note) {
+        return new NoteWrite(Type.UPDATE, note.getId(), note);
+    }
+
+    public static NoteWrite delete(int id) {
+        return new NoteWrite(Type.DELETE, id, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Note getNote() {
+        return note;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mediscreen.note.repository;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Keeps, per thread, the operation time of the last reply the server sent to that thread.
+ * The sync driver notifies its listeners on the thread running the command, so after a write, or after the commit of the
+ * transaction holding it, this is the cluster time the write was applied at, read without another round trip.
+ * Replies of a server outside a replica set carry no operation time and leave it unchanged.
+ * The time is cleared when a write command starts, so that a pooled thread never hands the time of an earlier request
+ * to a write that got none back.
+ */
+@Component
+public class OperationTimeListener implements CommandListener {
+
+
+    private static final String OPERATION_TIME = "operationTime";
+    private static final Set<String> WRITE_COMMANDS = Set.of("insert", "update", "delete", "findAndModify", "commitTransaction");
+
+    private final ThreadLocal<BsonTimestamp> operationTime = new ThreadLocal<>();
+
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (WRITE_COMMANDS.contains(event.getCommandName())) {
+            operationTime.remove();
+        }
+    }
+
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        BsonValue value = event.getResponse().get(OPERATION_TIME);
+        if (value != null && value.isTimestamp()) {
+            BsonTimestamp last = operationTime.get();
+            if (last == null || last.compareTo(value.asTimestamp()) < 0) {
+                operationTime.set(value.asTimestamp());
+            }
+        }
+    }
+
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+    }
+
+
+    /**
+     * @return the operation time of the last reply received by the current thread, empty when none carried one
+     */
+    public OptionalLong lastOperationTime() {
+        BsonTimestamp last = operationTime.get();
+        return last == null ? OptionalLong.empty() : OptionalLong.of(last.getValue());
+    }
+}
@@ -0,0 +1,67 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.Note;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link NoteRepository}, on the reactive MongoDB driver.
+ * Like it, reads notes without their search terms.
+ */
+@Repository
+public interface ReactiveNoteRepository extends ReactiveMongoRepository<Note, Integer> {
+
+
+    /**
+     * Find a note by id.
+     * @param id the note id
+     * @return the note, empty if it does not exist
+     */
+    @Override
+    @Query(fields = Note.ENTITY_FIELDS)
+    Mono<Note> findById(Integer id);
+
+
+    /**
+     * Find all notes, in the given order.
+     * @param sort the order
+     * @return the notes
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    Flux<Note> findAllBy(Sort sort);
+
+
+    /**
+     * Find the notes of a patient, oldest first.
+     * @param patientId the patient id
+     * @return the notes of the patient
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    Flux<Note> findByPatientIdOrderByDateAsc(int patientId);
+
+
+    /**
+     * Find the notes following an id, in the order of the pageable.
+     * @param id the id of the last note of the previous page
+     * @param pageable the page size and order
+     * @return the notes
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    Flux<Note> findByIdGreaterThan(int id, Pageable pageable);
+
+
+    /**
+     * Find the notes of a patient following an id, in the order of the pageable.
+     * @param patientId the patient id
+     * @param id the id of the last note of the previous page
+     * @param pageable the page size and order
+     * @return the notes of the patient
+     */
+    @Query(fields = Note.ENTITY_FIELDS)
+    Flux<Note> findByPatientIdAndIdGreaterThan(int patientId, int id, Pageable pageable);
+}
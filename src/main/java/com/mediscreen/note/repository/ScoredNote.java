@@ -0,0 +1,27 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.Note;
+
+/**
+ * A note matched by a full-text search, with its relevance score.
+ */
+public final class ScoredNote {
+
+
+    private final Note note;
+    private final double score;
+
+
+    public ScoredNote(Note note, double score) {
+        this.note = note;
+        this.score = score;
+    }
+
+    public Note getNote() {
+        return note;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
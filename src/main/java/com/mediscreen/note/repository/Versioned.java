@@ -0,0 +1,26 @@
+package com.mediscreen.note.repository;
+
+/**
+ * A value read together with the version it was read at.
+ * @param <T> the type of the value
+ */
+public final class Versioned<T> {
+
+
+    private final T value;
+    private final long version;
+
+
+    public Versioned(T value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
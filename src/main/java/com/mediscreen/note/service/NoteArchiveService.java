@@ -0,0 +1,165 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the notes older than note.archive.max-age from the hot notes collection to {@value Note#ARCHIVE_COLLECTION},
+ * so that the hot collection and its indexes only grow with the notes written during that period.
+ * Each batch is copied before it is removed, and a copy is replaced when copied again,
+ * so an interrupted run is completed by the next one; until then a note may be found in both collections.
+ * A note deleted while its batch is archived must not come back from the archive: the copies of notes no longer hot
+ * once copied are removed, and a delete following the copy removes the note from both collections.
+ */
+@Service
+public class NoteArchiveService {
+
+
+    public enum Mode {
+        /** Old notes are archived every note.archive.interval-ms and reads reach the archive when needed. */
+        SCHEDULED,
+        /** Notes are never archived and reads only query the hot collection. */
+        DISABLED
+    }
+
+    private static final Logger log = LogManager.getLogger(NoteArchiveService.class);
+
+    private final NoteRepository noteRepository;
+    private final NoteCache noteCache;
+    private final Mode mode;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final Counter archived;
+    private volatile boolean indexesEnsured;
+
+
+    public NoteArchiveService(NoteRepository noteRepository,
+                              NoteCache noteCache,
+                              MeterRegistry meterRegistry,
+                              @Value("${note.archive.mode:disabled}") Mode mode,
+                              @Value("${note.archive.max-age:730d}") Duration maxAge,
+                              @Value("${note.archive.batch-size:1000}") int batchSize) {
+        this.noteRepository = noteRepository;
+        this.noteCache = noteCache;
+        this.mode = mode;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.archived = Counter.builder("note.archive.archived")
+                .description("Number of notes moved to the archive")
+                .register(meterRegistry);
+        log.info("Note archive mode: {}, max age: {}", mode, maxAge);
+    }
+
+
+    /**
+     * @return true if old notes are archived, and reads may have to reach the archive
+     */
+    public boolean isEnabled() {
+        return mode != Mode.DISABLED;
+    }
+
+
+    /**
+     * @return the first day of the notes kept in the hot collection
+     */
+    public LocalDate cutoff() {
+        return LocalDate.now().minusDays(maxAge.toDays());
+    }
+
+
+    /**
+     * Tell whether a date range may match archived notes.
+     * @param from the first date of the range, or null for a range without start
+     * @return true if archiving is enabled and the range starts before the cutoff
+     */
+    public boolean reachesArchive(LocalDate from) {
+        return isEnabled() && (from == null || from.isBefore(cutoff()));
+    }
+
+
+    /**
+     * Create the indexes of the archive collection the first time the archive is written or searched.
+     */
+    public void ensureIndexes() {
+        if (!indexesEnsured) {
+            noteRepository.ensureArchiveIndexes();
+            indexesEnsured = true;
+        }
+    }
+
+
+    /**
+     * Archive every note dated before the cutoff, batch by batch.
+     * @return the number of notes archived
+     */
+    public synchronized int archiveOldNotes() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        ensureIndexes();
+        LocalDate cutoff = cutoff();
+        int total = 0;
+        List<Note> notes;
+        do {
+            notes = noteRepository.findDatedBefore(cutoff, batchSize);
+            if (notes.isEmpty()) {
+                break;
+            }
+            int moved = archive(notes, cutoff);
+            total += moved;
+            if (moved == 0) {
+                break;
+            }
+        } while (notes.size() == batchSize);
+        if (total > 0) {
+            log.debug("Archived {} notes dated before: {}", total, cutoff);
+        }
+        return total;
+    }
+
+
+    /**
+     * A note deleted between its read and its copy is missing from the hot collection once copied, so its copy is removed.
+     * A note updated between its copy and its removal is dated today, so it is not removed and its stale copy is.
+     */
+    private int archive(List<Note> notes, LocalDate cutoff) {
+        noteRepository.copyToArchive(notes);
+        List<Integer> ids = notes.stream().map(Note::getId).toList();
+        Set<Integer> deleted = new HashSet<>(ids);
+        deleted.removeAll(noteRepository.findTargetsByIds(ids).keySet());
+        if (!deleted.isEmpty()) {
+            noteRepository.removeFromArchive(deleted);
+        }
+        noteRepository.removeDatedBefore(ids, cutoff);
+        Set<Integer> stillHot = noteRepository.findTargetsByIds(ids).keySet();
+        if (!stillHot.isEmpty()) {
+            noteRepository.removeFromArchive(stillHot);
+        }
+
+        Set<Integer> patientIds = new HashSet<>();
+        for (Note note : notes) {
+            noteCache.evictNote(note.getId());
+            if (!stillHot.contains(note.getId()) && !deleted.contains(note.getId())) {
+                patientIds.add(note.getPatientId());
+            }
+        }
+        patientIds.forEach(noteCache::evictPatient);
+        noteRepository.incrementPatientNotesVersions(patientIds);
+        int moved = notes.size() - stillHot.size() - deleted.size();
+        archived.increment(moved);
+        return moved;
+    }
+}
@@ -0,0 +1,123 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.matcher.SnippetExtractor;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteSearchQuery;
+import com.mediscreen.note.repository.ScoredNote;
+import io.micrometer.core.annotation.Timed;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Service
+@Timed(value = "note.service", description = "Duration of the note service methods", histogram = true)
+public class NoteSearchService {
+
+
+    public static final int SNIPPET_RADIUS = 60;
+    public static final int MAX_SNIPPETS = 3;
+
+    private static final Pattern SEARCH_TERM = Pattern.compile("(-?)\"([^\"]+)\"|(\\S+)");
+
+    private final NoteRepository noteRepository;
+    private final NoteArchiveService noteArchive;
+
+
+    public NoteSearchService(NoteRepository noteRepository, NoteArchiveService noteArchive) {
+        this.noteRepository = noteRepository;
+        this.noteArchive = noteArchive;
+    }
+
+    private static final Logger log = LogManager.getLogger(NoteSearchService.class);
+
+
+
+    /**
+     * Search note bodies, most relevant first, returning the passages around the searched terms instead of the bodies.
+     * The archived notes are searched too when the range starts before the archive cutoff.
+     * @param text the text to search: words, "quoted phrases" and -excluded words
+     * @param patientId the patient id, or null for every patient
+     * @param from the first date included, or null
+     * @param to the last date included, or null
+     * @param after the cursor of the last hit of the previous page, or null for the first page
+     * @param limit the page size, capped to {@link NoteService#MAX_PAGE_SIZE}
+     * @param afterClusterTime the cluster time the notes must be read after, or null
+     * @return the hits
+     * @throws InvalidNoteRequestException if the text is blank, the dates are inverted or the cursor is malformed
+     */
+    public List<NoteSearchHitDto> searchNotes(String text, Integer patientId, LocalDate from, LocalDate to,
+                                              String after, int limit, Long afterClusterTime) {
+        if (text == null || text.isBlank()) {
+            throw new InvalidNoteRequestException("Search text is mandatory");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidNoteRequestException("Search date range is inverted: " + from + " > " + to);
+        }
+        Double afterScore = null;
+        Integer afterId = null;
+        if (after != null && !after.isEmpty()) {
+            int separator = after.lastIndexOf(':');
+            try {
+                afterScore = Double.parseDouble(after.substring(0, separator));
+                afterId = Integer.parseInt(after.substring(separator + 1));
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new InvalidNoteRequestException("Malformed search cursor: " + after);
+            }
+        }
+
+        boolean includeArchive = noteArchive.reachesArchive(from);
+        if (includeArchive) {
+            noteArchive.ensureIndexes();
+        }
+        NoteSearchQuery query = new NoteSearchQuery(text, patientId, from, to, afterScore, afterId, includeArchive,
+                afterClusterTime);
+        List<ScoredNote> scoredNotes = noteRepository.searchText(query, Math.max(1, Math.min(limit, NoteService.MAX_PAGE_SIZE)));
+        SnippetExtractor snippetExtractor = new SnippetExtractor(searchTerms(text), SNIPPET_RADIUS, MAX_SNIPPETS);
+        List<NoteSearchHitDto> hits = new ArrayList<>(scoredNotes.size());
+        for (ScoredNote scoredNote : scoredNotes) {
+            Note note = scoredNote.getNote();
+            hits.add(new NoteSearchHitDto(note.getId(), note.getPatientId(), note.getDate(), scoredNote.getScore(),
+                    snippetExtractor.extract(note.getNote())));
+        }
+        log.debug("Search for '{}' returned {} notes", text, hits.size());
+        return hits;
+    }
+
+
+    /**
+     * The cursor resuming a search after the given hit.
+     * @param hit the last hit of a page
+     * @return the cursor, made of the score and the id of the hit
+     */
+    public static String cursorOf(NoteSearchHitDto hit) {
+        return hit.getScore() + ":" + hit.getId();
+    }
+
+
+    /**
+     * The words and phrases of a search to highlight, excluded words and phrases are left out.
+     */
+    static List<String> searchTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = SEARCH_TERM.matcher(text);
+        while (matcher.find()) {
+            if (matcher.group(2) != null) {
+                if (matcher.group(1).isEmpty()) {
+                    terms.add(matcher.group(2));
+                }
+            } else if (!matcher.group(3).startsWith("-")) {
+                terms.add(matcher.group(3));
+            }
+        }
+        return terms;
+    }
+}
@@ -1,39 +1,87 @@
 package com.mediscreen.note.service;
 
 import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteBatchDto;
+import com.mediscreen.note.dto.NoteSummaryDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.event.NoteOutbox;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
 import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.mapper.NoteMapper;
+import com.mediscreen.note.matcher.TriggerTermMatcher;
 import com.mediscreen.note.model.Note;
+import com.mediscreen.note.model.NoteEvent;
 import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteWrite;
+import com.mediscreen.note.repository.Versioned;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "note.service", description = "Duration of the note service methods", histogram = true)
 public class NoteService {
 
 
     private final NoteRepository noteRepository;
-    private final ModelMapper modelMapper;
+    private final NoteMapper noteMapper;
     private final SequenceGeneratorService sequenceGenerator;
+    private final NoteCache noteCache;
+    private final NoteOutbox noteOutbox;
+    private final NoteArchiveService noteArchive;
+    private final MeterRegistry meterRegistry;
 
 
-    public NoteService(NoteRepository noteRepository, ModelMapper modelMapper, SequenceGeneratorService sequenceGenerator) {
+    public NoteService(NoteRepository noteRepository, NoteMapper noteMapper, SequenceGeneratorService sequenceGenerator,
+                       NoteCache noteCache, NoteOutbox noteOutbox, NoteArchiveService noteArchive, MeterRegistry meterRegistry) {
         this.noteRepository = noteRepository;
-        this.modelMapper = modelMapper;
+        this.noteMapper = noteMapper;
         this.sequenceGenerator = sequenceGenerator;
+        this.noteCache = noteCache;
+        this.noteOutbox = noteOutbox;
+        this.noteArchive = noteArchive;
+        this.meterRegistry = meterRegistry;
     }
 
     private static final Logger log = LogManager.getLogger(NoteService.class);
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BULK_OPERATIONS = 5000;
+    public static final int MAX_BATCH_KEYS = 1000;
+    public static final int MAX_TRIGGER_TERMS = 100;
+    public static final int MAX_TRIGGER_TERM_LENGTH = 100;
+    private static final String DUPLICATE_KEY_ERROR = "E11000";
+    private static final String ALREADY_INSERTED = "Note already inserted";
+
 
 
     /**
-     Find a note by id.
+     Find a note by id, from the cache when possible, then from the hot notes and from the archive.
      @param id The id of the note to retrieve.
      @return A {@link NoteDto} representing the note with the given id, or an HTTP 404 (Not Found) response if the note could not be found.
      @throws NoteNotFoundException if the note could not be found.
@@ -41,63 +89,464 @@ public class NoteService {
     public NoteDto findNoteById(int id) throws NoteNotFoundException {
 
         log.debug("Finding note with id: {}", id);
-        Note note = noteRepository.findById(id).orElseThrow(() -> new NoteNotFoundException(id));
+        NoteDto cached = noteCache.getNote(id);
+        if (cached != null) {
+            log.debug("Found cached note: {}", cached);
+            return cached;
+        }
+        long stamp = noteCache.stamp();
+        Note note = findHotOrArchived(id).orElseThrow(() -> new NoteNotFoundException(id));
 
         log.debug("Found note: {}", note);
-        return modelMapper.map(note, NoteDto.class);
+        NoteDto noteDto = noteMapper.toDto(note);
+        noteCache.putNote(noteDto, note.getVersion(), stamp);
+        return noteDto;
+    }
+
+
+    /**
+     Find a note by id with the version it was read at.
+     A cached note is only served once a version read shows it is still current, a note missing from the cache is read
+     with its version in a single round trip.
+     @param id The id of the note to retrieve.
+     @return The {@link NoteDto} with the given id and its version.
+     @throws NoteNotFoundException if the note could not be found.
+     */
+    public Versioned<NoteDto> findVersionedNoteById(int id) throws NoteNotFoundException {
+
+        if (noteCache.getNoteVersion(id).isPresent()) {
+            return findVersionedNoteById(id, getNoteVersion(id));
+        }
+        return loadVersionedNote(id);
+    }
+
+
+    /**
+     Find a note by id with the version it was read at, given its current version.
+     @param id The id of the note to retrieve.
+     @param version The version of the note the caller just read.
+     @return The cached {@link NoteDto} if it was loaded at that version, else the note read from the database, with its version.
+     @throws NoteNotFoundException if the note could not be found.
+     */
+    public Versioned<NoteDto> findVersionedNoteById(int id, long version) throws NoteNotFoundException {
+
+        log.debug("Finding note with id: {} at version: {}", id, version);
+        NoteDto cached = noteCache.getNote(id, version);
+        if (cached != null) {
+            log.debug("Found cached note: {}", cached);
+            return new Versioned<>(cached, version);
+        }
+        return loadVersionedNote(id);
     }
 
 
     /**
-     Get all notes.
+     Find several notes by id, from the cache when possible and with a single $in query for the others,
+     followed by a single $in query on the archive for the ids matching no hot note.
+     @param ids The ids of the notes to retrieve, at most {@link #MAX_BATCH_KEYS}.
+     @return The notes found, keyed by id in request order, and the ids matching no note.
+     */
+    public NoteBatchDto findNotesByIds(Collection<Integer> ids) {
+
+        log.debug("Finding notes with ids: {}", ids);
+        Set<Integer> requested = new LinkedHashSet<>(ids);
+        Map<Integer, NoteDto> found = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (int id : requested) {
+            NoteDto cached = noteCache.getNote(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long stamp = noteCache.stamp();
+            List<Note> loaded = new ArrayList<>();
+            noteRepository.findByIdIn(misses).forEach(loaded::add);
+            if (noteArchive.isEnabled() && loaded.size() < misses.size()) {
+                Set<Integer> archivedIds = new HashSet<>(misses);
+                loaded.forEach(note -> archivedIds.remove(note.getId()));
+                loaded.addAll(noteRepository.findArchivedByIds(archivedIds));
+            }
+            for (Note note : loaded) {
+                NoteDto noteDto = noteMapper.toDto(note);
+                noteCache.putNote(noteDto, note.getVersion(), stamp);
+                found.put(note.getId(), noteDto);
+            }
+        }
+
+        Map<Integer, NoteDto> notes = new LinkedHashMap<>();
+        List<Integer> missingIds = new ArrayList<>();
+        for (int id : requested) {
+            NoteDto note = found.get(id);
+            if (note != null) {
+                notes.put(id, note);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        log.debug("Found {} notes, {} cached, {} missing", notes.size(), requested.size() - misses.size(), missingIds.size());
+        return new NoteBatchDto(notes, missingIds);
+    }
+
+
+    /**
+     Get all notes of several patient ids, from the cache when possible and with a single $in query for the others.
+     @param patientIds The ids of the patients, at most {@link #MAX_BATCH_KEYS}.
+     @return The unmodifiable notes of each patient, oldest first, keyed by patient id in request order;
+     a patient without notes maps to an empty list.
+     */
+    public Map<Integer, List<NoteDto>> getNotesByPatientIds(Collection<Integer> patientIds) {
+
+        log.debug("Getting notes by patientIds: {}", patientIds);
+        Map<Integer, List<NoteDto>> notesByPatientId = new LinkedHashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (int patientId : new LinkedHashSet<>(patientIds)) {
+            List<NoteDto> cached = noteCache.getPatientNotes(patientId);
+            notesByPatientId.put(patientId, cached);
+            if (cached == null) {
+                misses.add(patientId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long stamp = noteCache.stamp();
+            Map<Integer, List<NoteDto>> loaded = new HashMap<>();
+            for (Note note : noteRepository.findByPatientIdInOrderByPatientIdAscDateAsc(misses)) {
+                loaded.computeIfAbsent(note.getPatientId(), patientId -> new ArrayList<>()).add(noteMapper.toDto(note));
+            }
+            for (int patientId : misses) {
+                notesByPatientId.put(patientId,
+                        noteCache.putPatientNotes(patientId, loaded.getOrDefault(patientId, new ArrayList<>()),
+                                NoteCache.UNKNOWN_VERSION, stamp));
+            }
+        }
+        log.debug("Found notes of {} patients, {} loaded", notesByPatientId.size(), misses.size());
+        return notesByPatientId;
+    }
+
+
+    /**
+     Get the version of a note without reading its content.
+     @param id The id of the note.
+     @return The version of the note, incremented by each update.
+     @throws NoteNotFoundException if the note could not be found.
+     */
+    public long getNoteVersion(int id) throws NoteNotFoundException {
+
+        log.debug("Getting version of note with id: {}", id);
+        OptionalLong version = noteRepository.findVersionById(id);
+        if (version.isPresent() || !noteArchive.isEnabled()) {
+            return version.orElseThrow(() -> new NoteNotFoundException(id));
+        }
+        return noteRepository.findArchivedById(id).map(Note::getVersion).orElseThrow(() -> new NoteNotFoundException(id));
+    }
+
+
+    /**
+     Get all notes, from a secondary when note.read.all-notes allows it.
+     @param afterClusterTime The cluster time the notes must be read after, null when the client did not write.
      @return A list of {@link NoteDto} representing all notes.
      */
-    public List<NoteDto> getAllNotes() {
+    public List<NoteDto> getAllNotes(Long afterClusterTime) {
 
-        log.debug("Getting all notes");
-        List<Note> notes = noteRepository.findAll();
+        log.debug("Getting all notes after cluster time: {}", afterClusterTime);
+        List<Note> notes = noteRepository.readAll(afterClusterTime);
 
         log.debug("Found notes: {}", notes);
-        return notes.stream()
-                .map(note -> modelMapper.map(note, NoteDto.class))
-                .collect(Collectors.toList());
+        return recordSize("getAllNotes", noteMapper.toDtoList(notes));
     }
 
 
     /**
-     Get all notes of a patient id.
-     @return A list of {@link NoteDto} representing all notes of a patient id.
+     Get the cluster time a client passes back to read its own writes from a secondary.
+     @return The cluster time following every acknowledged write, empty when every read goes to the primary.
+     */
+    public OptionalLong getClusterTime() {
+
+        return noteRepository.findClusterTime();
+    }
+
+
+    /**
+     Get all notes of a patient id, from the cache when possible.
+     @return An unmodifiable list of {@link NoteDto} representing all notes of a patient id.
      */
     public List<NoteDto> getNotesByPatientId(int patientId) {
         log.debug("Getting notes by patientId: {}", patientId);
-        List<Note> notes = noteRepository.findAll().stream()
-                .filter(note -> note.getPatientId() == patientId)
-                .collect(Collectors.toList());
-        log.debug("Found notes: {}", notes);
-        return notes.stream()
-                .map(note -> modelMapper.map(note, NoteDto.class))
-                .collect(Collectors.toList());
+        List<NoteDto> cached = noteCache.getPatientNotes(patientId);
+        if (cached != null) {
+            log.debug("Found {} cached notes", cached.size());
+            return recordSize("getNotesByPatientId", cached);
+        }
+        return recordSize("getNotesByPatientId", loadNotesByPatientId(patientId, NoteCache.UNKNOWN_VERSION));
     }
 
 
     /**
-     Create a new note.
+     Get all notes of a patient id with the version of the patient notes they were read at.
+     The version is read first and only incremented once a write has completed, so the notes are never older than it.
+     @param patientId The id of the patient.
+     @return An unmodifiable list of {@link NoteDto} representing all notes of the patient, and its version.
+     */
+    public Versioned<List<NoteDto>> getVersionedNotesByPatientId(int patientId) {
+
+        return getVersionedNotesByPatientId(patientId, noteRepository.findPatientNotesVersion(patientId));
+    }
+
+
+    /**
+     Get all notes of a patient id given the version of the patient notes, from the cache when they were loaded at that version.
+     @param patientId The id of the patient.
+     @param version The version of the patient notes the caller just read.
+     @return An unmodifiable list of {@link NoteDto} representing all notes of the patient, and its version.
+     */
+    public Versioned<List<NoteDto>> getVersionedNotesByPatientId(int patientId, long version) {
+
+        log.debug("Getting notes by patientId: {} at version: {}", patientId, version);
+        List<NoteDto> notes = noteCache.getPatientNotes(patientId, version);
+        if (notes != null) {
+            log.debug("Found {} cached notes", notes.size());
+        } else {
+            notes = loadNotesByPatientId(patientId, version);
+            log.debug("Found {} notes", notes.size());
+        }
+        return new Versioned<>(recordSize("getVersionedNotesByPatientId", notes), version);
+    }
+
+
+    /**
+     Get all notes of a patient id, archived ones included, from the database, with the version of the patient notes they were read at.
+     A note found in both collections, while the archiving of its batch is interrupted, is returned once.
+     @param patientId The id of the patient.
+     @return A list of {@link NoteDto} representing all notes of the patient, oldest first, and its version.
+     */
+    public Versioned<List<NoteDto>> getVersionedNotesWithArchiveByPatientId(int patientId) {
+
+        return getVersionedNotesWithArchiveByPatientId(patientId, noteRepository.findPatientNotesVersion(patientId));
+    }
+
+
+    /**
+     Get all notes of a patient id, archived ones included, from the database, given the version of the patient notes
+     the caller just read.
+     @param patientId The id of the patient.
+     @param version The version of the patient notes, read before the notes.
+     @return A list of {@link NoteDto} representing all notes of the patient, oldest first, and its version.
+     */
+    public Versioned<List<NoteDto>> getVersionedNotesWithArchiveByPatientId(int patientId, long version) {
+
+        log.debug("Getting notes with archive by patientId: {} at version: {}", patientId, version);
+        List<Note> hotNotes = noteRepository.findByPatientIdOrderByDateAsc(patientId);
+        if (!noteArchive.isEnabled()) {
+            return new Versioned<>(recordSize("getVersionedNotesWithArchiveByPatientId", noteMapper.toDtoList(hotNotes)), version);
+        }
+        Set<Integer> hotIds = new HashSet<>();
+        hotNotes.forEach(note -> hotIds.add(note.getId()));
+        List<Note> notes = new ArrayList<>();
+        for (Note note : noteRepository.findArchivedByPatientId(patientId)) {
+            if (!hotIds.contains(note.getId())) {
+                notes.add(note);
+            }
+        }
+        notes.addAll(hotNotes);
+        notes.sort(Comparator.comparing(Note::getDate).thenComparing(Note::getId));
+        log.debug("Found {} notes, {} archived, at version: {}", notes.size(), notes.size() - hotNotes.size(), version);
+        return new Versioned<>(recordSize("getVersionedNotesWithArchiveByPatientId", noteMapper.toDtoList(notes)), version);
+    }
+
+
+    /**
+     Get the version of the notes of a patient id without reading them.
+     @param patientId The id of the patient.
+     @return The version of the patient notes, incremented by each create, update or delete of one of them.
+     */
+    public long getPatientNotesVersion(int patientId) {
+
+        log.debug("Getting version of notes of patientId: {}", patientId);
+        return noteRepository.findPatientNotesVersion(patientId);
+    }
+
+
+    /**
+     Count the occurrences of trigger terms in the notes of a patient id.
+     All terms are searched in a single pass over each note, ignoring case and accents.
+     @param patientId The id of the patient.
+     @param terms The trigger terms, at most {@link #MAX_TRIGGER_TERMS} of at most {@link #MAX_TRIGGER_TERM_LENGTH} characters,
+     blank ones and repeated ones are ignored.
+     @return A {@link TriggerTermCountDto} holding the occurrences of each term and their total.
+     @throws InvalidNoteRequestException if there are too many terms or a term is too long.
+     */
+    public TriggerTermCountDto countTriggerTerms(int patientId, Collection<String> terms) {
+
+        log.debug("Counting {} trigger terms in notes of patientId: {}", terms.size(), patientId);
+        if (terms.size() > MAX_TRIGGER_TERMS) {
+            throw new InvalidNoteRequestException("At most " + MAX_TRIGGER_TERMS + " trigger terms per request, got "
+                    + terms.size());
+        }
+        for (String term : terms) {
+            if (term != null && term.length() > MAX_TRIGGER_TERM_LENGTH) {
+                throw new InvalidNoteRequestException("Trigger terms are at most " + MAX_TRIGGER_TERM_LENGTH
+                        + " characters long, got " + term.length());
+            }
+        }
+        TriggerTermMatcher matcher = new TriggerTermMatcher(terms);
+        List<NoteDto> notes = getNotesByPatientId(patientId);
+        int[] counts = new int[matcher.getTerms().size()];
+        for (NoteDto note : notes) {
+            matcher.count(note.getNote(), counts);
+        }
+
+        Map<String, Integer> countsByTerm = new LinkedHashMap<>();
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            countsByTerm.put(matcher.getTerms().get(i), counts[i]);
+            total += counts[i];
+        }
+        log.debug("Counted {} trigger term occurrences in {} notes", total, notes.size());
+        return new TriggerTermCountDto(patientId, notes.size(), countsByTerm, total);
+    }
+
+
+    /**
+     Get a page of notes, ordered by id.
+     @param afterId The id of the last note of the previous page, 0 for the first page.
+     @param limit The maximum number of notes to return, capped to {@link #MAX_PAGE_SIZE}.
+     @return A list of {@link NoteDto} representing the notes following the given id.
+     */
+    public List<NoteDto> getNotesPage(int afterId, int limit) {
+
+        log.debug("Getting notes page after id: {}, limit: {}", afterId, limit);
+        List<Note> notes = noteRepository.findByIdGreaterThan(afterId, pageOf(limit));
+
+        log.debug("Found {} notes", notes.size());
+        return recordSize("getNotesPage", noteMapper.toDtoList(notes));
+    }
+
+
+    /**
+     Get a page of notes of a patient id, ordered by id.
+     @param patientId The id of the patient.
+     @param afterId The id of the last note of the previous page, 0 for the first page.
+     @param limit The maximum number of notes to return, capped to {@link #MAX_PAGE_SIZE}.
+     @return A list of {@link NoteDto} representing the notes of the patient following the given id.
+     */
+    public List<NoteDto> getNotesByPatientIdPage(int patientId, int afterId, int limit) {
+
+        log.debug("Getting notes page of patientId: {} after id: {}, limit: {}", patientId, afterId, limit);
+        List<Note> notes = noteRepository.findByPatientIdAndIdGreaterThan(patientId, afterId, pageOf(limit));
+
+        log.debug("Found {} notes", notes.size());
+        return recordSize("getNotesByPatientIdPage", noteMapper.toDtoList(notes));
+    }
+
+
+    /**
+     Get the summary of all notes, reading neither their body nor any other field it does not hold.
+     @return A list of {@link NoteSummaryDto} representing all notes.
+     */
+    public List<NoteSummaryDto> getAllNoteSummaries() {
+
+        log.debug("Getting all note summaries");
+        return recordSize("getAllNoteSummaries", noteRepository.findAllBy(NoteSummaryDto.class));
+    }
+
+
+    /**
+     Get a page of note summaries, ordered by id.
+     @param afterId The id of the last note of the previous page, 0 for the first page.
+     @param limit The maximum number of notes to return, capped to {@link #MAX_PAGE_SIZE}.
+     @return A list of {@link NoteSummaryDto} representing the notes following the given id.
+     */
+    public List<NoteSummaryDto> getNoteSummariesPage(int afterId, int limit) {
+
+        log.debug("Getting note summaries page after id: {}, limit: {}", afterId, limit);
+        return recordSize("getNoteSummariesPage",
+                noteRepository.findByIdGreaterThan(afterId, pageOf(limit), NoteSummaryDto.class));
+    }
+
+
+    /**
+     Get the summary of all notes of a patient id, with the version of the patient notes they were read at.
+     @param patientId The id of the patient.
+     @return A list of {@link NoteSummaryDto} representing all notes of the patient, oldest first, and its version.
+     */
+    public Versioned<List<NoteSummaryDto>> getVersionedNoteSummariesByPatientId(int patientId) {
+
+        log.debug("Getting versioned note summaries by patientId: {}", patientId);
+        long version = noteRepository.findPatientNotesVersion(patientId);
+        List<NoteSummaryDto> summaries = noteRepository.findByPatientIdOrderByDateAsc(patientId, NoteSummaryDto.class);
+        log.debug("Found {} note summaries at version: {}", summaries.size(), version);
+        return new Versioned<>(recordSize("getVersionedNoteSummariesByPatientId", summaries), version);
+    }
+
+
+    /**
+     Get a page of note summaries of a patient id, ordered by id.
+     @param patientId The id of the patient.
+     @param afterId The id of the last note of the previous page, 0 for the first page.
+     @param limit The maximum number of notes to return, capped to {@link #MAX_PAGE_SIZE}.
+     @return A list of {@link NoteSummaryDto} representing the notes of the patient following the given id.
+     */
+    public List<NoteSummaryDto> getNoteSummariesByPatientIdPage(int patientId, int afterId, int limit) {
+
+        log.debug("Getting note summaries page of patientId: {} after id: {}, limit: {}", patientId, afterId, limit);
+        return recordSize("getNoteSummariesByPatientIdPage",
+                noteRepository.findByPatientIdAndIdGreaterThan(patientId, afterId, pageOf(limit), NoteSummaryDto.class));
+    }
+
+
+    /**
+     Stream all notes from a database cursor, ordered by id.
+     The returned stream holds the cursor open and must be closed by the caller.
+     @return A stream of {@link NoteDto} representing all notes.
+     */
+    public Stream<NoteDto> streamAllNotes() {
+
+        log.debug("Streaming all notes");
+        return noteRepository.streamAll()
+                .map(noteMapper::toDto);
+    }
+
+
+    /**
+     Stream the notes of a patient id from a database cursor, ordered by id.
+     The returned stream holds the cursor open and must be closed by the caller.
+     @param patientId The id of the patient.
+     @return A stream of {@link NoteDto} representing the notes of the patient.
+     */
+    public Stream<NoteDto> streamNotesByPatientId(int patientId) {
+
+        log.debug("Streaming notes of patientId: {}", patientId);
+        return noteRepository.streamByPatientId(patientId)
+                .map(noteMapper::toDto);
+    }
+
+
+    /**
+     Create a new note, recording a CREATED event with it.
      @param noteDto A {@link NoteDto} representing the note to create.
      @return A {@link NoteDto} representing the created note.
      */
     public NoteDto createNote(NoteDto noteDto) {
         log.debug("Creating note: {}", noteDto);
-        Note note = modelMapper.map(noteDto, Note.class);
-        note.setId((int) sequenceGenerator.generateSequence(Note.SEQUENCE_NAME));
-        note.setDate(LocalDate.now());
-        note = noteRepository.save(note);
+        Note toCreate = noteMapper.toEntity(noteDto);
+        toCreate.setId((int) sequenceGenerator.generateSequence(Note.SEQUENCE_NAME));
+        toCreate.setDate(LocalDate.now());
+        Note note = noteOutbox.write(() -> {
+            Note created = noteRepository.save(toCreate);
+            noteRepository.incrementPatientNotesVersions(Set.of(created.getPatientId()));
+            return created;
+        }, created -> List.of(new NoteEvent(NoteEvent.Type.CREATED, created.getId(), created.getPatientId(), created.getVersion())));
+        noteCache.evictPatient(note.getPatientId());
         log.debug("Created note: {}", note);
-        return modelMapper.map(note, NoteDto.class);
+        return noteMapper.toDto(note);
     }
 
 
     /**
-     Update an existing note.
+     Update an existing note in a single round trip, setting only its patient id, content and date, recording an UPDATED event with it.
+     An archived note is first moved back to the hot notes, which its new date keeps it in.
      @param id The id of the note to update.
      @param noteDto A {@link NoteDto} representing the updated note information.
      @return A {@link NoteDto} representing the updated note.
@@ -106,31 +555,313 @@ public class NoteService {
     public NoteDto updateNote(int id, NoteDto noteDto) throws NoteNotFoundException {
 
         log.debug("Updating note with id: {} and data: {}", id, noteDto);
-        Note note = noteRepository.findById(id).orElseThrow(() -> new NoteNotFoundException(id));
+        Note note = noteMapper.toEntity(noteDto);
+        note.setId(id);
         note.setDate(LocalDate.now());
-        note.setPatientId(noteDto.getPatientId());
-        note.setNote(noteDto.getNote());
-        note = noteRepository.save(note);
+        Optional<Note> updated = updateContent(note);
+        if (updated.isEmpty() && noteArchive.isEnabled() && noteRepository.restoreArchived(id)) {
+            log.debug("Restored archived note with id: {}", id);
+            updated = updateContent(note);
+        }
+        Note previous = updated.orElseThrow(() -> new NoteNotFoundException(id));
+        noteCache.evictNote(id);
+        noteCache.evictPatient(previous.getPatientId());
+        noteCache.evictPatient(note.getPatientId());
 
         log.debug("Updated note: {}", note);
-        return modelMapper.map(note, NoteDto.class);
+        return noteMapper.toDto(note);
     }
 
 
     /**
-     Delete a note by id.
+     Delete a note by id in a single round trip, recording a DELETED event with it.
+     With archiving enabled, the note is also removed from the archive in a second round trip, even when it was hot:
+     a note being archived may already have its copy there.
      @param id the id of the note to delete
      @throws NoteNotFoundException if the note with the given id does not exist
      */
     public void deleteNote(int id) throws NoteNotFoundException {
 
         log.debug("Processing delete note request for id: {}", id);
-        Note note = noteRepository.findById(id).orElseThrow(() -> new NoteNotFoundException(id));
-
-        noteRepository.delete(note);
+        Note note = noteOutbox.write(() -> {
+            Optional<Note> removed = noteRepository.removeById(id);
+            if (noteArchive.isEnabled()) {
+                Optional<Note> archived = noteRepository.removeArchivedById(id);
+                removed = removed.or(() -> archived);
+            }
+            removed.ifPresent(target -> noteRepository.incrementPatientNotesVersions(Set.of(target.getPatientId())));
+            return removed;
+        }, removed -> removed
+                .map(target -> List.of(new NoteEvent(NoteEvent.Type.DELETED, id, target.getPatientId(), target.getVersion())))
+                .orElse(List.of()))
+                .orElseThrow(() -> new NoteNotFoundException(id));
+
+        noteCache.evictNote(id);
+        noteCache.evictPatient(note.getPatientId());
         log.debug("Note with id: {} deleted successfully", id);
     }
 
 
+    /**
+     Execute a batch of creates, updates and deletes as one unordered bulk write.
+     The ids of all creates are reserved in a single round trip and the existence of the notes to update or delete
+     is checked with a single query, so a batch costs four round trips whatever its size: the reservation, the check,
+     the bulk write and the bump of the note list versions of the touched patients. With events recorded, the bulk write
+     and the bump run in one transaction that also inserts the events, and commits, in two more round trips.
+     Updates and deletes only target hot notes: an archived note is reported NOT_FOUND.
+     The events of the successful writes are recorded with them. With events recorded, a write error aborts the
+     transaction: no write of the batch applies, no FAILED result is reported and the call throws.
+     @param operations The operations, at most {@link #MAX_BULK_OPERATIONS}, targeting each existing note at most once.
+     @return A {@link BulkNoteResult} per operation, in the same order.
+     */
+    public List<BulkNoteResult> executeBulk(List<BulkNoteOperation> operations) {
+
+        log.debug("Executing bulk of {} operations", operations.size());
+        BulkNoteResult[] results = new BulkNoteResult[operations.size()];
+        Set<Integer> targetedIds = new HashSet<>();
+        int createCount = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            BulkNoteOperation operation = operations.get(i);
+            String violation = validate(operation);
+            if (violation == null && operation.getType() != BulkNoteOperation.Type.CREATE
+                    && !targetedIds.add(operation.getId())) {
+                violation = "Note " + operation.getId() + " is already targeted by this batch";
+            }
+            if (violation != null) {
+                results[i] = BulkNoteResult.failure(i, operation, BulkNoteResult.Status.INVALID, violation);
+            } else if (operation.getType() == BulkNoteOperation.Type.CREATE) {
+                createCount++;
+            }
+        }
+
+        Map<Integer, Note> existingNotes = targetedIds.isEmpty() ? Map.of() : noteRepository.findTargetsByIds(targetedIds);
+        long nextId = createCount > 0 ? sequenceGenerator.reserveSequence(Note.SEQUENCE_NAME, createCount) : 0;
+
+        LocalDate today = LocalDate.now();
+        List<NoteWrite> writes = new ArrayList<>();
+        List<Integer> writePositions = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            BulkNoteOperation operation = operations.get(i);
+            if (operation.getType() != BulkNoteOperation.Type.CREATE && !existingNotes.containsKey(operation.getId())) {
+                results[i] = BulkNoteResult.failure(i, operation, BulkNoteResult.Status.NOT_FOUND,
+                        new NoteNotFoundException(operation.getId()).getMessage());
+                continue;
+            }
+            Note note = null;
+            if (operation.getType() != BulkNoteOperation.Type.DELETE) {
+                note = noteMapper.toEntity(operation.getNote());
+                note.setId(operation.getType() == BulkNoteOperation.Type.CREATE ? (int) nextId++ : operation.getId());
+                note.setDate(today);
+            }
+            writes.add(switch (operation.getType()) {
+                case CREATE -> NoteWrite.insert(note);
+                case UPDATE -> NoteWrite.update(note);
+                case DELETE -> NoteWrite.delete(operation.getId());
+            });
+            writePositions.add(i);
+        }
+
+        Set<Integer> touchedPatientIds = patientIdsOf(writes, existingNotes);
+        Map<Integer, String> failures = noteOutbox.write(() -> {
+            Map<Integer, String> writeFailures = noteRepository.bulkWrite(writes);
+            noteRepository.incrementPatientNotesVersions(touchedPatientIds);
+            return writeFailures;
+        }, writeFailures -> eventsOf(writes, writeFailures, existingNotes));
+        for (int w = 0; w < writes.size(); w++) {
+            int i = writePositions.get(w);
+            BulkNoteOperation operation = operations.get(i);
+            NoteWrite write = writes.get(w);
+            evict(write, existingNotes.get(write.getId()));
+            if (failures.containsKey(w)) {
+                results[i] = BulkNoteResult.failure(i, operation, BulkNoteResult.Status.FAILED, failures.get(w));
+                continue;
+            }
+            results[i] = new BulkNoteResult(i, operation.getType(), write.getId(), switch (write.getType()) {
+                case INSERT -> BulkNoteResult.Status.CREATED;
+                case UPDATE -> BulkNoteResult.Status.UPDATED;
+                case DELETE -> BulkNoteResult.Status.DELETED;
+            });
+            if (write.getNote() != null) {
+                results[i].setNote(noteMapper.toDto(write.getNote()));
+            }
+        }
+        log.debug("Executed bulk of {} operations, {} writes failed", operations.size(), failures.size());
+        return Arrays.asList(results);
+    }
+
+
+    /**
+     Insert notes whose ids are already assigned, as one unordered bulk write.
+     A note whose id already exists was inserted by an earlier attempt of the same batch and counts as inserted:
+     the existing ids are looked up in the same transaction as the insert and skipped, so a batch replayed after a crash
+     neither duplicates notes nor hits a duplicate key, which would abort the whole transaction with events recorded.
+     @param notes The notes to insert, with their id and date set.
+     @return The number of notes that could not be inserted for another reason than their id already existing.
+     */
+    public int insertNotes(List<Note> notes) {
+
+        log.debug("Inserting {} notes with assigned ids", notes.size());
+        List<NoteWrite> writes = notes.stream().map(NoteWrite::insert).toList();
+        Set<Integer> touchedPatientIds = patientIdsOf(writes, Map.of());
+        Map<Integer, String> failures = noteOutbox.write(() -> {
+            Set<Integer> existingIds = noteRepository.findTargetsByIds(
+                    writes.stream().map(NoteWrite::getId).toList()).keySet();
+            Map<Integer, String> writeFailures = new HashMap<>();
+            List<NoteWrite> missingWrites = new ArrayList<>();
+            List<Integer> missingPositions = new ArrayList<>();
+            for (int w = 0; w < writes.size(); w++) {
+                if (existingIds.contains(writes.get(w).getId())) {
+                    writeFailures.put(w, ALREADY_INSERTED);
+                } else {
+                    missingWrites.add(writes.get(w));
+                    missingPositions.add(w);
+                }
+            }
+            noteRepository.bulkWrite(missingWrites)
+                    .forEach((m, failure) -> writeFailures.put(missingPositions.get(m), failure));
+            noteRepository.incrementPatientNotesVersions(touchedPatientIds);
+            return writeFailures;
+        }, writeFailures -> eventsOf(writes, writeFailures, Map.of()));
+        int rejected = 0;
+        for (int w = 0; w < writes.size(); w++) {
+            evict(writes.get(w), null);
+            String failure = failures.get(w);
+            if (failure != null && !failure.equals(ALREADY_INSERTED) && !failure.contains(DUPLICATE_KEY_ERROR)) {
+                log.warn("Note {} could not be inserted: {}", writes.get(w).getId(), failure);
+                rejected++;
+            }
+        }
+        log.debug("Inserted {} notes, {} rejected", notes.size() - rejected, rejected);
+        return rejected;
+    }
+
+
+    private Optional<Note> updateContent(Note note) {
+        return noteOutbox.write(() -> {
+            Optional<Note> previous = noteRepository.updateContent(note);
+            previous.ifPresent(target -> noteRepository.incrementPatientNotesVersions(
+                    new HashSet<>(List.of(target.getPatientId(), note.getPatientId()))));
+            return previous;
+        }, updated -> updated
+                .map(target -> List.of(new NoteEvent(NoteEvent.Type.UPDATED, note.getId(), note.getPatientId(), target.getVersion() + 1)))
+                .orElse(List.of()));
+    }
+
+
+    private Optional<Note> findHotOrArchived(int id) {
+        Optional<Note> note = noteRepository.findById(id);
+        if (note.isPresent() || !noteArchive.isEnabled()) {
+            return note;
+        }
+        return noteRepository.findArchivedById(id);
+    }
+
+
+    private static List<NoteEvent> eventsOf(List<NoteWrite> writes, Map<Integer, String> failures, Map<Integer, Note> targets) {
+        List<NoteEvent> events = new ArrayList<>(writes.size());
+        for (int w = 0; w < writes.size(); w++) {
+            if (failures.containsKey(w)) {
+                continue;
+            }
+            NoteWrite write = writes.get(w);
+            Note target = targets.get(write.getId());
+            events.add(switch (write.getType()) {
+                case INSERT -> new NoteEvent(NoteEvent.Type.CREATED, write.getId(), write.getNote().getPatientId(), 0);
+                case UPDATE -> new NoteEvent(NoteEvent.Type.UPDATED, write.getId(), write.getNote().getPatientId(),
+                        target.getVersion() + 1);
+                case DELETE -> new NoteEvent(NoteEvent.Type.DELETED, write.getId(), target.getPatientId(), target.getVersion());
+            });
+        }
+        return events;
+    }
+
+
+    private void evict(NoteWrite write, Note target) {
+        if (write.getType() != NoteWrite.Type.INSERT) {
+            noteCache.evictNote(write.getId());
+        }
+        if (target != null) {
+            noteCache.evictPatient(target.getPatientId());
+        }
+        if (write.getNote() != null) {
+            noteCache.evictPatient(write.getNote().getPatientId());
+        }
+    }
+
+
+    /**
+     The patients whose note list a batch of writes may change, the previous patient of each targeted note included.
+     */
+    private static Set<Integer> patientIdsOf(List<NoteWrite> writes, Map<Integer, Note> existingNotes) {
+        Set<Integer> patientIds = new HashSet<>();
+        for (NoteWrite write : writes) {
+            Note target = existingNotes.get(write.getId());
+            if (target != null) {
+                patientIds.add(target.getPatientId());
+            }
+            if (write.getNote() != null) {
+                patientIds.add(write.getNote().getPatientId());
+            }
+        }
+        return patientIds;
+    }
+
+
+    private static String validate(BulkNoteOperation operation) {
+        if (operation.getType() == null) {
+            return "Operation type is mandatory";
+        }
+        if (operation.getType() != BulkNoteOperation.Type.CREATE && operation.getId() == null) {
+            return "Id of the note is mandatory";
+        }
+        if (operation.getType() != BulkNoteOperation.Type.DELETE
+                && (operation.getNote() == null || operation.getNote().getNote() == null
+                || operation.getNote().getNote().isBlank())) {
+            return "Note is mandatory";
+        }
+        return null;
+    }
+
+
+    /**
+     * Record the number of notes a method returned, so that unusually large results show up next to its latency.
+     */
+    private <T> List<T> recordSize(String method, List<T> results) {
+        DistributionSummary.builder("note.service.result.size")
+                .description("Number of notes returned by the note service methods")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(results.size());
+        return results;
+    }
+
+
+    private Versioned<NoteDto> loadVersionedNote(int id) throws NoteNotFoundException {
+        long stamp = noteCache.stamp();
+        Note note = findHotOrArchived(id).orElseThrow(() -> new NoteNotFoundException(id));
+        log.debug("Found note: {} at version: {}", note, note.getVersion());
+        NoteDto noteDto = noteMapper.toDto(note);
+        noteCache.putNote(noteDto, note.getVersion(), stamp);
+        return new Versioned<>(noteDto, note.getVersion());
+    }
+
+
+    private List<NoteDto> loadNotesByPatientId(int patientId, long version) {
+        long stamp = noteCache.stamp();
+        List<Note> notes = noteRepository.findByPatientIdOrderByDateAsc(patientId);
+        log.debug("Found notes: {}", notes);
+        return noteCache.putPatientNotes(patientId, noteMapper.toDtoList(notes), version, stamp);
+    }
+
+
+    private static Pageable pageOf(int limit) {
+        return PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)), Sort.by("id"));
+    }
+
+
 
 }
@@ -0,0 +1,83 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.repository.DateBucket;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteStatsQuery;
+import io.micrometer.core.annotation.Timed;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Service
+@Timed(value = "note.service", description = "Duration of the note service methods", histogram = true)
+public class NoteStatsService {
+
+
+    private final NoteRepository noteRepository;
+    private final NoteArchiveService noteArchive;
+
+
+    public NoteStatsService(NoteRepository noteRepository, NoteArchiveService noteArchive) {
+        this.noteRepository = noteRepository;
+        this.noteArchive = noteArchive;
+    }
+
+    private static final Logger log = LogManager.getLogger(NoteStatsService.class);
+
+
+
+    /**
+     * Count the notes of each patient and find its first and last visits, aggregated by MongoDB.
+     * @param patientIds the patient ids, or an empty list for every patient
+     * @param from the first date included, or null
+     * @param to the last date included, or null
+     * @param afterClusterTime the cluster time the notes must be read after, or null
+     * @return the statistics of each patient, in patient id order
+     * @throws InvalidNoteRequestException if the dates are inverted
+     */
+    public List<PatientNoteStatsDto> getPatientStats(List<Integer> patientIds, LocalDate from, LocalDate to, Long afterClusterTime) {
+
+        log.debug("Aggregating note stats by patient, patientIds: {}, from: {}, to: {}", patientIds, from, to);
+        List<PatientNoteStatsDto> stats = noteRepository.aggregateByPatient(queryOf(patientIds, from, to, afterClusterTime));
+        log.debug("Aggregated note stats of {} patients", stats.size());
+        return stats;
+    }
+
+
+    /**
+     * Count the notes written during each period and the patients they were written for, aggregated by MongoDB.
+     * @param bucket the length of the periods
+     * @param patientIds the patient ids, or an empty list for every patient
+     * @param from the first date included, or null
+     * @param to the last date included, or null
+     * @param afterClusterTime the cluster time the notes must be read after, or null
+     * @return the statistics of each period having notes, in period order
+     * @throws InvalidNoteRequestException if the dates are inverted
+     */
+    public List<NotePeriodStatsDto> getPeriodStats(DateBucket bucket, List<Integer> patientIds, LocalDate from, LocalDate to,
+                                                   Long afterClusterTime) {
+
+        log.debug("Aggregating note stats by {}, patientIds: {}, from: {}, to: {}", bucket, patientIds, from, to);
+        List<NotePeriodStatsDto> stats = noteRepository.aggregateByPeriod(queryOf(patientIds, from, to, afterClusterTime), bucket);
+        log.debug("Aggregated note stats of {} periods", stats.size());
+        return stats;
+    }
+
+
+    /**
+     * The archived notes are only aggregated when the range starts before the archive cutoff.
+     */
+    private NoteStatsQuery queryOf(List<Integer> patientIds, LocalDate from, LocalDate to, Long afterClusterTime) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidNoteRequestException("Stats date range is inverted: " + from + " > " + to);
+        }
+        return new NoteStatsQuery(patientIds == null ? List.of() : List.copyOf(patientIds), from, to,
+                noteArchive.reachesArchive(from), afterClusterTime);
+    }
+}
@@ -0,0 +1,226 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.mapper.NoteMapper;
+import com.mediscreen.note.repository.ReactiveNoteRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Non-blocking counterpart of {@link NoteService}.
+ * Reads go through the reactive driver and share the note cache, writes and searches delegate to the blocking
+ * services on the bounded elastic scheduler so that id reservation and cache eviction stay in one place.
+ */
+@Service
+public class ReactiveNoteService {
+
+
+    private final ReactiveNoteRepository reactiveNoteRepository;
+    private final NoteService noteService;
+    private final NoteSearchService noteSearchService;
+    private final NoteMapper noteMapper;
+    private final NoteCache noteCache;
+    private final NoteArchiveService noteArchive;
+
+
+    public ReactiveNoteService(ReactiveNoteRepository reactiveNoteRepository, NoteService noteService,
+                               NoteSearchService noteSearchService, NoteMapper noteMapper, NoteCache noteCache,
+                               NoteArchiveService noteArchive) {
+        this.reactiveNoteRepository = reactiveNoteRepository;
+        this.noteService = noteService;
+        this.noteSearchService = noteSearchService;
+        this.noteMapper = noteMapper;
+        this.noteCache = noteCache;
+        this.noteArchive = noteArchive;
+    }
+
+    private static final Logger log = LogManager.getLogger(ReactiveNoteService.class);
+
+
+
+    /**
+     Find a note by id, from the cache when possible, then from the hot notes and, through the blocking service, the archive.
+     @param id The id of the note to retrieve.
+     @return A {@link Mono} of the note, failing with {@link NoteNotFoundException} if the note could not be found.
+     */
+    public Mono<NoteDto> findNoteById(int id) {
+        return Mono.defer(() -> {
+            log.debug("Finding note with id: {}", id);
+            NoteDto cached = noteCache.getNote(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long stamp = noteCache.stamp();
+            return reactiveNoteRepository.findById(id)
+                    .map(note -> {
+                        NoteDto noteDto = noteMapper.toDto(note);
+                        noteCache.putNote(noteDto, note.getVersion(), stamp);
+                        return noteDto;
+                    })
+                    .switchIfEmpty(Mono.defer(() -> noteArchive.isEnabled()
+                            ? blocking(() -> noteService.findNoteById(id))
+                            : Mono.error(new NoteNotFoundException(id))));
+        });
+    }
+
+
+    /**
+     Get all notes, ordered by id, as the database cursor delivers them.
+     @return A {@link Flux} of all notes.
+     */
+    public Flux<NoteDto> getAllNotes() {
+        log.debug("Getting all notes");
+        return reactiveNoteRepository.findAllBy(Sort.by("id"))
+                .map(noteMapper::toDto);
+    }
+
+
+    /**
+     Get all notes of a patient id, oldest first, from the cache when possible.
+     A miss streams the notes as the database cursor delivers them, at the pace of the subscriber, and caches them
+     once the last one was delivered; a cancelled stream caches nothing.
+     @param patientId The id of the patient.
+     @return A {@link Flux} of the notes of the patient.
+     */
+    public Flux<NoteDto> getNotesByPatientId(int patientId) {
+        return Flux.defer(() -> {
+            log.debug("Getting notes by patientId: {}", patientId);
+            List<NoteDto> cached = noteCache.getPatientNotes(patientId);
+            if (cached != null) {
+                return Flux.fromIterable(cached);
+            }
+            long stamp = noteCache.stamp();
+            List<NoteDto> loaded = new ArrayList<>();
+            return reactiveNoteRepository.findByPatientIdOrderByDateAsc(patientId)
+                    .map(noteMapper::toDto)
+                    .doOnNext(loaded::add)
+                    .doOnComplete(() -> noteCache.putPatientNotes(patientId, loaded, NoteCache.UNKNOWN_VERSION, stamp));
+        });
+    }
+
+
+    /**
+     Get a page of notes, ordered by id.
+     @param afterId The id of the last note of the previous page, 0 for the first page.
+     @param limit The maximum number of notes to return, capped to {@link NoteService#MAX_PAGE_SIZE}.
+     @return A {@link Flux} of the notes following the given id.
+     */
+    public Flux<NoteDto> getNotesPage(int afterId, int limit) {
+        log.debug("Getting notes page after id: {}, limit: {}", afterId, limit);
+        return reactiveNoteRepository.findByIdGreaterThan(afterId, pageOf(limit))
+                .map(noteMapper::toDto);
+    }
+
+
+    /**
+     Get a page of notes of a patient id, ordered by id.
+     @param patientId The id of the patient.
+     @param afterId The id of the last note of the previous page, 0 for the first page.
+     @param limit The maximum number of notes to return, capped to {@link NoteService#MAX_PAGE_SIZE}.
+     @return A {@link Flux} of the notes of the patient following the given id.
+     */
+    public Flux<NoteDto> getNotesByPatientIdPage(int patientId, int afterId, int limit) {
+        log.debug("Getting notes page of patientId: {} after id: {}, limit: {}", patientId, afterId, limit);
+        return reactiveNoteRepository.findByPatientIdAndIdGreaterThan(patientId, afterId, pageOf(limit))
+                .map(noteMapper::toDto);
+    }
+
+
+    /**
+     Count the occurrences of trigger terms in the notes of a patient id.
+     @param patientId The id of the patient.
+     @param terms The trigger terms.
+     @return A {@link Mono} of the occurrences of each term and their total.
+     */
+    public Mono<TriggerTermCountDto> countTriggerTerms(int patientId, Collection<String> terms) {
+        return blocking(() -> noteService.countTriggerTerms(patientId, terms));
+    }
+
+
+    /**
+     Search note bodies, most relevant first.
+     @see NoteSearchService#searchNotes(String, Integer, LocalDate, LocalDate, String, int, Long)
+     @return A {@link Mono} of the hits, failing with {@link InvalidNoteRequestException} on invalid criteria.
+     */
+    public Mono<List<NoteSearchHitDto>> searchNotes(String text, Integer patientId, LocalDate from, LocalDate to,
+                                                    String after, int limit) {
+        return blocking(() -> noteSearchService.searchNotes(text, patientId, from, to, after, limit, null));
+    }
+
+
+    /**
+     Create a note.
+     @param noteDto The note to create.
+     @return A {@link Mono} of the created note.
+     */
+    public Mono<NoteDto> createNote(NoteDto noteDto) {
+        return blocking(() -> noteService.createNote(noteDto));
+    }
+
+
+    /**
+     Update a note.
+     @param id The id of the note to update.
+     @param noteDto The new content of the note.
+     @return A {@link Mono} of the updated note, failing with {@link NoteNotFoundException} if the note could not be found.
+     */
+    public Mono<NoteDto> updateNote(int id, NoteDto noteDto) {
+        return blocking(() -> noteService.updateNote(id, noteDto));
+    }
+
+
+    /**
+     Delete a note.
+     @param id The id of the note to delete.
+     @return An empty {@link Mono}, failing with {@link NoteNotFoundException} if the note could not be found.
+     */
+    public Mono<Void> deleteNote(int id) {
+        return blocking(() -> {
+            noteService.deleteNote(id);
+            return null;
+        });
+    }
+
+
+    /**
+     Execute create, update and delete operations in one bulk write.
+     @param operations The operations.
+     @return A {@link Mono} of the result of each operation, in the same order.
+     */
+    public Mono<List<BulkNoteResult>> executeBulk(List<BulkNoteOperation> operations) {
+        return blocking(() -> noteService.executeBulk(operations));
+    }
+
+
+    /**
+     * Run a call of the blocking service off the event loop threads.
+     */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+
+    private static Pageable pageOf(int limit) {
+        return PageRequest.of(0, Math.max(1, Math.min(limit, NoteService.MAX_PAGE_SIZE)), Sort.by("id"));
+    }
+}
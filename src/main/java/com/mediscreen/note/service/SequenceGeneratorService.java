@@ -1,33 +1,142 @@
 package com.mediscreen.note.service;
 
 import com.mediscreen.note.model.DatabaseSequence;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
 
+/**
+ * Hands out sequence values from blocks reserved in the database_sequences collection.
+ * Each refill atomically increments the stored counter by the block size, so concurrent instances
+ * always reserve disjoint ranges; values of a block left unused at shutdown are skipped.
+ */
 @Service
 public class SequenceGeneratorService {
 
 
+    private static final Logger log = LogManager.getLogger(SequenceGeneratorService.class);
+
     private final MongoOperations mongoOperations;
+    private final MeterRegistry meterRegistry;
+    private final int blockSize;
+    private final Map<String, SequenceBlock> blocks = new ConcurrentHashMap<>();
 
     @Autowired
-    public SequenceGeneratorService(MongoOperations mongoOperations) {
+    public SequenceGeneratorService(MongoOperations mongoOperations,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${note.sequence.block-size:50}") int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("note.sequence.block-size must be positive, was " + blockSize);
+        }
         this.mongoOperations = mongoOperations;
+        this.meterRegistry = meterRegistry;
+        this.blockSize = blockSize;
+        Gauge.builder("note.sequence.block.size", this::getBlockSize)
+                .description("Number of sequence values reserved per database round trip")
+                .register(meterRegistry);
     }
 
 
+    /**
+     * Get the next value of a sequence, reserving a new block when the local one is exhausted.
+     * @param seqName the sequence name
+     * @return the next value
+     */
     public long generateSequence(String seqName) {
 
-        DatabaseSequence counter = mongoOperations.findAndModify(query(where("_id").is(seqName)),
-                new Update().inc("seq",1), options().returnNew(true).upsert(true),
-                DatabaseSequence.class);
-        return counter != null ? counter.getSeq() : 1;
+        while (true) {
+            SequenceBlock block = blocks.get(seqName);
+            if (block != null) {
+                long value = block.next();
+                if (value <= block.last) {
+                    return value;
+                }
+            }
+            refill(seqName, block);
+        }
+    }
+
+
+    /**
+     * Reserve a contiguous range of sequence values in a single round trip, bypassing the local block.
+     * @param seqName the sequence name
+     * @param count the number of values to reserve
+     * @return the first value of the range, the following {@code count - 1} values belong to the caller
+     */
+    public long reserveSequence(String seqName, int count) {
+
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive, was " + count);
+        }
+        long last = reserve(seqName, count);
+        log.debug("Reserved range [{}, {}] of sequence {}", last - count + 1, last, seqName);
+        return last - count + 1;
+    }
+
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+
+    private synchronized void refill(String seqName, SequenceBlock exhausted) {
+
+        if (blocks.get(seqName) != exhausted) {
+            return;
+        }
+        long last = reserve(seqName, blockSize);
+        blocks.put(seqName, new SequenceBlock(last - blockSize + 1, last));
+        meterRegistry.counter("note.sequence.block.refills", "sequence", seqName).increment();
+        log.debug("Reserved block [{}, {}] of sequence {}", last - blockSize + 1, last, seqName);
+    }
+
+
+    /**
+     * Increment the stored counter of a sequence in a single round trip.
+     * @return the last value of the reserved range
+     */
+    private long reserve(String seqName, int count) {
+
+        Timer roundTrip = Timer.builder("note.sequence.round.trip")
+                .description("Duration of the database round trips reserving sequence values")
+                .tag("sequence", seqName)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        DatabaseSequence counter = roundTrip.record(() -> mongoOperations.findAndModify(query(where("_id").is(seqName)),
+                new Update().inc("seq", count), options().returnNew(true).upsert(true),
+                DatabaseSequence.class));
+        return counter != null ? counter.getSeq() : count;
+    }
+
+
+    private static final class SequenceBlock {
+
+        private final AtomicLong next;
+        private final long last;
+
+        private SequenceBlock(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+
+        private long next() {
+            return next.getAndIncrement();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package com.mediscreen.note.cache;
+
+import com.mediscreen.library.dto.NoteDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteCacheTest {
+
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+
+    private NoteCache cache(NoteCache.Mode mode) {
+        return new NoteCache(mode, 100, Duration.ofMinutes(10), Duration.ofSeconds(5), meterRegistry);
+    }
+
+
+    private static NoteDto note(int id, int patientId) {
+        NoteDto note = new NoteDto(patientId, "note " + id);
+        note.setId(id);
+        return note;
+    }
+
+
+    @Test
+    @DisplayName("Should return what was put")
+    void putNoteTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.LOCAL);
+        NoteDto note = note(1, 2);
+
+        // Act
+        noteCache.putNote(note, 1, noteCache.stamp());
+
+        // Assert
+        NoteDto cached = noteCache.getNote(1);
+        assertNotSame(note, cached);
+        assertEquals(2, cached.getPatientId());
+        assertNull(noteCache.getNote(2));
+    }
+
+
+    @Test
+    @DisplayName("Should serve an entry for the version it was loaded at only")
+    void versionedEntryTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.LOCAL);
+        noteCache.putNote(note(1, 2), 3, noteCache.stamp());
+        noteCache.putPatientNotes(2, List.of(note(1, 2)), 7, noteCache.stamp());
+        noteCache.putPatientNotes(4, List.of(note(5, 4)), NoteCache.UNKNOWN_VERSION, noteCache.stamp());
+
+        // Act
+        // Assert
+        assertEquals(OptionalLong.of(3), noteCache.getNoteVersion(1));
+        assertNotNull(noteCache.getNote(1, 3));
+        assertNull(noteCache.getNote(1, 4));
+        assertEquals(OptionalLong.of(7), noteCache.getPatientNotesVersion(2));
+        assertEquals(1, noteCache.getPatientNotes(2, 7).size());
+        assertNull(noteCache.getPatientNotes(2, 8));
+        assertEquals(OptionalLong.empty(), noteCache.getPatientNotesVersion(4));
+        assertNull(noteCache.getPatientNotes(4, NoteCache.UNKNOWN_VERSION));
+    }
+
+
+    @Test
+    @DisplayName("Should not let callers change the cached notes")
+    void cachedNotesCopiedTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.LOCAL);
+        NoteDto note = note(1, 2);
+        noteCache.putNote(note, 1, noteCache.stamp());
+        noteCache.putPatientNotes(2, new ArrayList<>(List.of(note)), NoteCache.UNKNOWN_VERSION, noteCache.stamp());
+
+        // Act
+        note.setNote("changed");
+        noteCache.getNote(1).setNote("changed");
+        noteCache.getPatientNotes(2).get(0).setNote("changed");
+
+        // Assert
+        assertNotEquals("changed", noteCache.getNote(1).getNote());
+        assertNotEquals("changed", noteCache.getPatientNotes(2).get(0).getNote());
+    }
+
+
+    @Test
+    @DisplayName("Should not keep a load that raced with an invalidation")
+    void putNoteAfterInvalidationTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.LOCAL);
+        long stamp = noteCache.stamp();
+        noteCache.evictPatient(5);
+
+        // Act
+        noteCache.putNote(note(1, 2), 1, stamp);
+        noteCache.putPatientNotes(2, List.of(note(1, 2)), NoteCache.UNKNOWN_VERSION, stamp);
+
+        // Assert
+        assertNull(noteCache.getNote(1));
+        assertNull(noteCache.getPatientNotes(2));
+    }
+
+
+    @Test
+    @DisplayName("Should evict the notes of a patient")
+    void evictPatientTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.SHORT_TTL);
+        noteCache.putPatientNotes(2, new ArrayList<>(List.of(note(1, 2))), NoteCache.UNKNOWN_VERSION, noteCache.stamp());
+        noteCache.putPatientNotes(3, new ArrayList<>(List.of(note(4, 3))), NoteCache.UNKNOWN_VERSION, noteCache.stamp());
+
+        // Act
+        noteCache.evictPatient(2);
+
+        // Assert
+        assertNull(noteCache.getPatientNotes(2));
+        assertEquals(1, noteCache.getPatientNotes(3).size());
+        assertThrows(UnsupportedOperationException.class, () -> noteCache.getPatientNotes(3).add(note(5, 3)));
+        assertEquals(1, meterRegistry.get("note.cache.invalidations").counter().count());
+    }
+
+
+    @Test
+    @DisplayName("Should count hits and misses")
+    void statisticsTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.LOCAL);
+        noteCache.putNote(note(1, 2), 1, noteCache.stamp());
+
+        // Act
+        noteCache.getNote(1);
+        noteCache.getNote(2);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "notes").tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "notes").tag("result", "miss").functionCounter().count());
+    }
+
+
+    @Test
+    @DisplayName("Should not cache when disabled")
+    void disabledTest() {
+
+        // Arrange
+        NoteCache noteCache = cache(NoteCache.Mode.DISABLED);
+
+        // Act
+        noteCache.putNote(note(1, 2), 1, noteCache.stamp());
+        List<NoteDto> notes = noteCache.putPatientNotes(2, List.of(note(1, 2)), NoteCache.UNKNOWN_VERSION, noteCache.stamp());
+
+        // Assert
+        assertNull(noteCache.getNote(1));
+        assertNull(noteCache.getPatientNotes(2));
+        assertEquals(1, notes.size());
+    }
+}
@@ -0,0 +1,58 @@
+package com.mediscreen.note.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.library.dto.NoteDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageConverterConfigTest {
+
+
+    private final MessageConverterConfig config = new MessageConverterConfig();
+
+
+    @Test
+    @DisplayName("should encode notes in CBOR and Smile smaller than in JSON and decode them back")
+    void binaryEncodingsTest() throws Exception {
+
+        // Arrange
+        List<NoteDto> notes = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            NoteDto note = new NoteDto(id % 10, "Le patient déclare qu'il est fumeur depuis " + id + " ans.");
+            note.setId(id);
+            note.setDate(LocalDate.of(2023, 1, 1).plusDays(id));
+            notes.add(note);
+        }
+        ObjectMapper json = new Jackson2ObjectMapperBuilder().build();
+        List<AbstractJackson2HttpMessageConverter> converters = List.of(
+                config.cborHttpMessageConverter(new Jackson2ObjectMapperBuilder()),
+                config.smileHttpMessageConverter(new Jackson2ObjectMapperBuilder()));
+        int jsonSize = json.writeValueAsBytes(notes).length;
+
+        for (AbstractJackson2HttpMessageConverter converter : converters) {
+            // Act
+            ObjectMapper mapper = converter.getObjectMapper();
+            byte[] payload = mapper.writeValueAsBytes(notes);
+            List<NoteDto> decoded = mapper.readValue(payload, new TypeReference<>() {});
+
+            // Assert
+            MediaType mediaType = converter.getSupportedMediaTypes().get(0);
+            assertTrue(payload.length < jsonSize, mediaType + " payload should be smaller than JSON");
+            assertEquals(notes.size(), decoded.size());
+            assertEquals(notes.get(42).getNote(), decoded.get(42).getNote());
+            assertEquals(notes.get(42).getDate(), decoded.get(42).getDate());
+            assertEquals(notes.get(42).getPatientId(), decoded.get(42).getPatientId());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mediscreen.note.config;
+
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.service.NoteArchiveService;
+import com.mediscreen.note.service.NoteSearchService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MetricsConfigTest {
+
+
+    @Test
+    @DisplayName("should time every call of a timed service, tagged with its method and outcome")
+    void timedAspectTest() {
+
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NoteRepository noteRepository = mock(NoteRepository.class);
+        when(noteRepository.searchText(any(), anyInt())).thenReturn(List.of());
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new NoteSearchService(noteRepository,
+                mock(NoteArchiveService.class)));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new MetricsConfig().timedAspect(meterRegistry));
+        NoteSearchService noteSearchService = proxyFactory.getProxy();
+
+        // Act
+        noteSearchService.searchNotes("vertige", null, null, null, null, 20, null);
+        assertThrows(InvalidNoteRequestException.class, () -> noteSearchService.searchNotes(" ", null, null, null, null, 20, null));
+
+        // Assert
+        Timer success = meterRegistry.get("note.service").tag("method", "searchNotes").tag("exception", "none").timer();
+        Timer failure = meterRegistry.get("note.service").tag("method", "searchNotes")
+                .tag("exception", "InvalidNoteRequestException").timer();
+        assertEquals(1, success.count());
+        assertEquals(1, failure.count());
+    }
+}
@@ -0,0 +1,85 @@
+package com.mediscreen.note.config;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.ingest.JournalEntry;
+import com.mediscreen.note.model.DatabaseSequence;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteBodyCompression;
+import com.mediscreen.note.repository.NoteReadRouting;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteRepositoryCustomImpl;
+import com.mediscreen.note.repository.OperationTimeListener;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NoteRuntimeHintsTest {
+
+
+    @Test
+    @DisplayName("should let the MongoDB converter instantiate and fill the documents")
+    void documentHintsTest() {
+
+        // Arrange
+        RuntimeHints hints = new RuntimeHints();
+
+        // Act
+        new NoteRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        // Assert
+        for (Class<?> document : new Class<?>[]{Note.class, DatabaseSequence.class}) {
+            assertTrue(RuntimeHintsPredicates.reflection().onType(document)
+                    .withMemberCategories(MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        }
+    }
+
+
+    @Test
+    @DisplayName("should let Jackson bind the payloads, including the journal entries")
+    void payloadHintsTest() {
+
+        // Arrange
+        RuntimeHints hints = new RuntimeHints();
+
+        // Act
+        new NoteRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        // Assert
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(NoteDto.class, "getNote").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(NoteDto.class, "setNote").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(JournalEntry.class, "getPatientId").test(hints));
+    }
+
+
+    @Test
+    @DisplayName("should register the proxy interfaces of the repository exactly as Spring Data builds them")
+    void repositoryProxyHintsTest() {
+
+        // Arrange
+        RuntimeHints hints = new RuntimeHints();
+        NoteRepository noteRepository;
+        try (MongoClient client = MongoClients.create("mongodb://localhost:27017")) {
+            MongoTemplate template = new MongoTemplate(client, "hints");
+            noteRepository = new MongoRepositoryFactory(template).getRepository(NoteRepository.class, RepositoryFragments.just(
+                    new NoteRepositoryCustomImpl(template, new NoteBodyCompression(NoteBodyCompression.Mode.DISABLED, 0),
+                            new NoteReadRouting(null, new OperationTimeListener(), "primary", "primary", "primary", Duration.ofSeconds(90)))));
+        }
+
+        // Act
+        new NoteRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        // Assert
+        assertTrue(RuntimeHintsPredicates.proxies().forInterfaces(noteRepository.getClass().getInterfaces()).test(hints));
+    }
+}
@@ -0,0 +1,60 @@
+package com.mediscreen.note.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class VirtualThreadConfigTest {
+
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadConfig.class);
+
+
+    @Test
+    @DisplayName("should keep the platform thread pool by default")
+    void platformModeTest() {
+
+        // Act
+        // Assert
+        contextRunner.run(context -> assertFalse(context.containsBean("virtualThreadProtocolHandlerCustomizer")));
+        contextRunner.withPropertyValues("note.threads.mode=platform")
+                .run(context -> assertFalse(context.containsBean("virtualThreadProtocolHandlerCustomizer")));
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("should give Tomcat and the async requests a virtual thread executor")
+    void virtualModeTest() {
+
+        contextRunner.withPropertyValues("note.threads.mode=virtual").run(context -> {
+
+            // Arrange
+            ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+            TomcatProtocolHandlerCustomizer<ProtocolHandler> customizer = context.getBean(TomcatProtocolHandlerCustomizer.class);
+            AsyncTaskExecutor taskExecutor = context.getBean("applicationTaskExecutor", AsyncTaskExecutor.class);
+
+            // Act
+            customizer.customize(protocolHandler);
+            Future<String> threadClass = taskExecutor.submit(() -> Thread.currentThread().getClass().getName());
+
+            // Assert
+            verify(protocolHandler).setExecutor(any(Executor.class));
+            assertTrue(threadClass.get().contains("VirtualThread"));
+            assertSame(context.getBean(ExecutorService.class), context.getBean("virtualThreadExecutor"));
+        });
+    }
+}
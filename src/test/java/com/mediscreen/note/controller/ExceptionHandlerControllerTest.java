@@ -1,19 +1,27 @@
 package com.mediscreen.note.controller;
 
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.exception.NoteIngestUnavailableException;
 import com.mediscreen.note.exception.NoteNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.io.IOException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @ExtendWith(MockitoExtension.class)
 public class ExceptionHandlerControllerTest {
 
 
+    @Spy
+    private SimpleMeterRegistry meterRegistry;
     @InjectMocks
     private ExceptionHandlerController exceptionHandlerController;
 
@@ -26,5 +34,28 @@ public class ExceptionHandlerControllerTest {
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertEquals(" Note does not exist with id : 1", response.getBody());
+        assertEquals(1, meterRegistry.get("note.not.found").counter().count());
+    }
+
+
+    @Test
+    public void handleInvalidNoteRequestExceptionTest() {
+
+        InvalidNoteRequestException ex = new InvalidNoteRequestException("Search text is mandatory");
+        ResponseEntity<String> response = exceptionHandlerController.handleInvalidNoteRequestException(ex);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Search text is mandatory", response.getBody());
+    }
+
+
+    @Test
+    public void handleNoteIngestUnavailableExceptionTest() {
+
+        NoteIngestUnavailableException ex = new NoteIngestUnavailableException(new IOException("No space left on device"));
+        ResponseEntity<String> response = exceptionHandlerController.handleNoteIngestUnavailableException(ex);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("Patient notes cannot be journaled: No space left on device", response.getBody());
     }
 }
@@ -1,23 +1,44 @@
 package com.mediscreen.note.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteBatchDto;
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.dto.NoteSummaryDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
 import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.repository.DateBucket;
+import com.mediscreen.note.repository.Versioned;
+import com.mediscreen.note.service.NoteSearchService;
 import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.NoteStatsService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +48,12 @@ public class NoteControllerTest {
 
     @Mock
     private NoteService noteService;
+    @Mock
+    private NoteSearchService noteSearchService;
+    @Mock
+    private NoteStatsService noteStatsService;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
     @InjectMocks
     private NoteController noteController;
 
@@ -38,15 +65,57 @@ public class NoteControllerTest {
         // Arrange
         int id = 1;
         NoteDto note = new NoteDto();
-        when(noteService.findNoteById(id)).thenReturn(note);
+        when(noteService.findVersionedNoteById(id)).thenReturn(new Versioned<>(note, 3));
 
         // Act
-        ResponseEntity<NoteDto> response = noteController.findNoteById(id);
+        ResponseEntity<NoteDto> response = noteController.findNoteById(id, null);
 
         // Assert
         assertEquals(note, response.getBody());
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(noteService).findNoteById(id);
+        assertEquals("\"note-1-3\"", response.getHeaders().getETag());
+        verify(noteService).findVersionedNoteById(id);
+        verify(noteService, never()).getNoteVersion(anyInt());
+    }
+
+
+    @Test
+    @DisplayName("Should return 304 without reading the note when its version did not change")
+    void findNoteByIdNotModifiedTest() throws NoteNotFoundException {
+
+        // Arrange
+        int id = 1;
+        when(noteService.getNoteVersion(id)).thenReturn(3L);
+
+        // Act
+        ResponseEntity<NoteDto> response = noteController.findNoteById(id, "\"note-1-2\", W/\"note-1-3\"");
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"note-1-3\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(noteService, never()).findVersionedNoteById(anyInt());
+        verify(noteService, never()).findVersionedNoteById(anyInt(), anyLong());
+    }
+
+
+    @Test
+    @DisplayName("Should return the note when the version held by the client is outdated")
+    void findNoteByIdModifiedTest() throws NoteNotFoundException {
+
+        // Arrange
+        int id = 1;
+        NoteDto note = new NoteDto();
+        when(noteService.getNoteVersion(id)).thenReturn(4L);
+        when(noteService.findVersionedNoteById(id, 4L)).thenReturn(new Versioned<>(note, 4));
+
+        // Act
+        ResponseEntity<NoteDto> response = noteController.findNoteById(id, "\"note-1-3\"");
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"note-1-4\"", response.getHeaders().getETag());
+        assertEquals(note, response.getBody());
     }
 
 
@@ -56,12 +125,12 @@ public class NoteControllerTest {
 
         // Arrange
         int id = 1;
-        when(noteService.findNoteById(id)).thenThrow(NoteNotFoundException.class);
+        when(noteService.findVersionedNoteById(id)).thenThrow(NoteNotFoundException.class);
 
         // Act
         // Assert
-        assertThrows(NoteNotFoundException.class, () -> noteController.findNoteById(id));
-        verify(noteService).findNoteById(id);
+        assertThrows(NoteNotFoundException.class, () -> noteController.findNoteById(id, null));
+        verify(noteService).findVersionedNoteById(id);
     }
 
 
@@ -71,10 +140,10 @@ public class NoteControllerTest {
 
         // Arrange
         List<NoteDto> notes = Collections.singletonList(new NoteDto());
-        when(noteService.getAllNotes()).thenReturn(notes);
+        when(noteService.getAllNotes(null)).thenReturn(notes);
 
         // Act
-        ResponseEntity<List<NoteDto>> response = noteController.getAllNotes();
+        ResponseEntity<List<NoteDto>> response = noteController.getAllNotes(null);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -82,6 +151,123 @@ public class NoteControllerTest {
     }
 
 
+    @Test
+    @DisplayName("Should return next cursor when page is full")
+    void getNotesPageTest() {
+
+        // Arrange
+        NoteDto note1 = new NoteDto(1, "note1");
+        note1.setId(4);
+        NoteDto note2 = new NoteDto(1, "note2");
+        note2.setId(7);
+        List<NoteDto> notes = Arrays.asList(note1, note2);
+        when(noteService.getNotesPage(3, 2)).thenReturn(notes);
+
+        // Act
+        ResponseEntity<List<NoteDto>> response = noteController.getNotesPage(3, 2);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(notes, response.getBody());
+        assertEquals("7", response.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should not return next cursor on last page")
+    void getNotesByPatientIdPageTest() {
+
+        // Arrange
+        List<NoteDto> notes = Collections.singletonList(new NoteDto(1, "note"));
+        when(noteService.getNotesByPatientIdPage(1, 0, 10)).thenReturn(notes);
+
+        // Act
+        ResponseEntity<List<NoteDto>> response = noteController.getNotesByPatientIdPage(1, 0, 10);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(notes, response.getBody());
+        assertFalse(response.getHeaders().containsKey(NoteController.NEXT_CURSOR_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should return a full page of note summaries with the cursor of the next page")
+    void getNoteSummariesByPatientIdPageTest() {
+
+        // Arrange
+        List<NoteSummaryDto> summaries = List.of(new NoteSummaryDto(4, 1, LocalDate.of(2023, 1, 1)),
+                new NoteSummaryDto(9, 1, LocalDate.of(2023, 2, 1)));
+        when(noteService.getNoteSummariesByPatientIdPage(1, 0, 2)).thenReturn(summaries);
+
+        // Act
+        ResponseEntity<List<NoteSummaryDto>> response = noteController.getNoteSummariesByPatientIdPage(1, 0, 2);
+
+        // Assert
+        assertEquals(summaries, response.getBody());
+        assertEquals("9", response.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should tag the note summaries of a patient apart from its full notes")
+    void getNoteSummariesByPatientIdTest() {
+
+        // Arrange
+        List<NoteSummaryDto> summaries = List.of(new NoteSummaryDto(4, 1, LocalDate.of(2023, 1, 1)));
+        when(noteService.getVersionedNoteSummariesByPatientId(1)).thenReturn(new Versioned<>(summaries, 7));
+
+        // Act
+        ResponseEntity<List<NoteSummaryDto>> response = noteController.getNoteSummariesByPatientId(1, "\"patient-1-7\"");
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"patient-summary-1-7\"", response.getHeaders().getETag());
+        assertEquals(summaries, response.getBody());
+    }
+
+
+    @Test
+    @DisplayName("Should return the note statistics of each period")
+    void getPeriodStatsTest() {
+
+        // Arrange
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        List<NotePeriodStatsDto> stats = List.of(new NotePeriodStatsDto("2023", 12, 5));
+        when(noteStatsService.getPeriodStats(DateBucket.YEAR, List.of(1), from, null, null)).thenReturn(stats);
+
+        // Act
+        ResponseEntity<List<NotePeriodStatsDto>> response = noteController.getPeriodStats(DateBucket.YEAR, List.of(1), from, null, null);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(stats, response.getBody());
+    }
+
+
+    @Test
+    @DisplayName("Should write one note per line")
+    void streamAllNotesTest() throws IOException {
+
+        // Arrange
+        NoteDto note1 = new NoteDto(1, "note1");
+        NoteDto note2 = new NoteDto(2, "note2");
+        when(noteService.streamAllNotes()).thenReturn(Stream.of(note1, note2));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = noteController.streamAllNotes();
+        response.getBody().writeTo(outputStream);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("note1", objectMapper.readValue(lines[0], NoteDto.class).getNote());
+        assertEquals("note2", objectMapper.readValue(lines[1], NoteDto.class).getNote());
+    }
+
+
     @Test
     @DisplayName("Should assert equality")
     void getNotesByPatientIdTest() {
@@ -91,13 +277,108 @@ public class NoteControllerTest {
         NoteDto note1 = new NoteDto();
         NoteDto note2 = new NoteDto();
         List<NoteDto> notes = Arrays.asList(note1, note2);
-        when(noteService.getNotesByPatientId(eq(patientId))).thenReturn(notes);
+        when(noteService.getPatientNotesVersion(patientId)).thenReturn(7L);
+        when(noteService.getVersionedNotesByPatientId(patientId, 7L)).thenReturn(new Versioned<>(notes, 7));
+
+        // Act
+        ResponseEntity<List<NoteDto>> result = noteController.getNotesByPatientId(patientId, false, null);
+
+        // Assert
+        assertEquals(ResponseEntity.ok().eTag("\"patient-1-7\"").body(notes), result);
+    }
+
+
+    @Test
+    @DisplayName("Should return 304 without reading the notes when the patient notes version did not change")
+    void getNotesByPatientIdNotModifiedTest() {
+
+        // Arrange
+        int patientId = 1;
+        when(noteService.getPatientNotesVersion(patientId)).thenReturn(7L);
+
+        // Act
+        ResponseEntity<List<NoteDto>> result = noteController.getNotesByPatientId(patientId, false, "\"patient-1-7\"");
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        assertEquals("\"patient-1-7\"", result.getHeaders().getETag());
+        verify(noteService, never()).getVersionedNotesByPatientId(anyInt(), anyLong());
+        verify(noteService, never()).getNotesByPatientId(anyInt());
+    }
+
+
+    @Test
+    @DisplayName("Should return the archived notes too, under their own entity tag, when asked")
+    void getNotesByPatientIdWithArchiveTest() {
+
+        // Arrange
+        int patientId = 1;
+        List<NoteDto> notes = List.of(new NoteDto());
+        when(noteService.getPatientNotesVersion(patientId)).thenReturn(7L);
+        when(noteService.getVersionedNotesWithArchiveByPatientId(patientId, 7L)).thenReturn(new Versioned<>(notes, 7));
+
+        // Act
+        ResponseEntity<List<NoteDto>> result = noteController.getNotesByPatientId(patientId, true, null);
+
+        // Assert
+        assertEquals(ResponseEntity.ok().eTag("\"patient-archive-1-7\"").body(notes), result);
+        verify(noteService, never()).getVersionedNotesByPatientId(anyInt(), anyLong());
+    }
+
+
+    @Test
+    @DisplayName("Should return search hits with the cursor of the next page when the page is full")
+    void searchNotesTest() {
+
+        // Arrange
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        List<NoteSearchHitDto> hits = List.of(
+                new NoteSearchHitDto(4, 1, from, 1.5, List.of("Fumeur depuis 10 ans")),
+                new NoteSearchHitDto(2, 3, from, 0.75, List.of("…ancien fumeur…")));
+        when(noteSearchService.searchNotes("fumeur", null, from, null, null, 2, null)).thenReturn(hits);
+
+        // Act
+        ResponseEntity<List<NoteSearchHitDto>> response = noteController.searchNotes("fumeur", null, from, null, null, 2, null);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(hits, response.getBody());
+        assertEquals("0.75:2", response.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should not return a cursor on the last search page")
+    void searchNotesLastPageTest() {
+
+        // Arrange
+        List<NoteSearchHitDto> hits = List.of(new NoteSearchHitDto(4, 1, null, 1.5, List.of("Fumeur")));
+        when(noteSearchService.searchNotes("fumeur", 1, null, null, "2.0:1", 20, null)).thenReturn(hits);
 
         // Act
-        ResponseEntity<List<NoteDto>> result = noteController.getNotesByPatientId(patientId);
+        ResponseEntity<List<NoteSearchHitDto>> response = noteController.searchNotes("fumeur", 1, null, null, "2.0:1", 20, null);
 
         // Assert
-        assertEquals(ResponseEntity.ok(notes), result);
+        assertEquals(hits, response.getBody());
+        assertNull(response.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should return trigger term counts")
+    void countTriggerTermsTest() {
+
+        // Arrange
+        List<String> terms = List.of("Fumeur", "Vertige");
+        TriggerTermCountDto counts = new TriggerTermCountDto(1, 2, Map.of("Fumeur", 1, "Vertige", 0), 1);
+        when(noteService.countTriggerTerms(1, terms)).thenReturn(counts);
+
+        // Act
+        ResponseEntity<TriggerTermCountDto> response = noteController.countTriggerTerms(1, terms);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(counts, response.getBody());
     }
 
 
@@ -116,6 +397,58 @@ public class NoteControllerTest {
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(note, response.getBody());
+        assertNull(response.getHeaders().getFirst(NoteController.CLUSTER_TIME_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should hand back the cluster time of the write when reads are routed")
+    void validateNoteClusterTimeTest() {
+
+        // Arrange
+        NoteDto noteDto = new NoteDto();
+        when(noteService.createNote(noteDto)).thenReturn(noteDto);
+        when(noteService.getClusterTime()).thenReturn(OptionalLong.of(7_000_000_000_001L));
+
+        // Act
+        ResponseEntity<NoteDto> response = noteController.validateNote(noteDto);
+
+        // Assert
+        assertEquals("7000000000001", response.getHeaders().getFirst(NoteController.CLUSTER_TIME_HEADER));
+    }
+
+
+    @Test
+    @DisplayName("Should return one result per operation")
+    void executeBulkTest() {
+
+        // Arrange
+        List<BulkNoteOperation> operations = List.of(BulkNoteOperation.delete(1));
+        List<BulkNoteResult> results = List.of(new BulkNoteResult(0, BulkNoteOperation.Type.DELETE, 1, BulkNoteResult.Status.DELETED));
+        when(noteService.executeBulk(operations)).thenReturn(results);
+
+        // Act
+        ResponseEntity<List<BulkNoteResult>> response = noteController.executeBulk(operations);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+    }
+
+
+    @Test
+    @DisplayName("Should reject an oversized bulk")
+    void executeBulkTooLargeTest() {
+
+        // Arrange
+        List<BulkNoteOperation> operations = Collections.nCopies(NoteService.MAX_BULK_OPERATIONS + 1, BulkNoteOperation.delete(1));
+
+        // Act
+        ResponseEntity<List<BulkNoteResult>> response = noteController.executeBulk(operations);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(noteService, never()).executeBulk(any());
     }
 
 
@@ -185,4 +518,56 @@ public class NoteControllerTest {
         assertThrows(NoteNotFoundException.class, () -> noteController.deleteNote(id));
         verify(noteService, times(1)).deleteNote(id);
     }
+
+
+    @Test
+    @DisplayName("should find several notes by id and report the missing ones")
+    void findNotesByIdsTest() {
+
+        // Arrange
+        NoteBatchDto batch = new NoteBatchDto(Map.of(1, new NoteDto(2, "note")), List.of(3));
+        when(noteService.findNotesByIds(List.of(1, 3))).thenReturn(batch);
+
+        // Act
+        ResponseEntity<NoteBatchDto> response = noteController.findNotesByIds(List.of(1, 3));
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(batch, response.getBody());
+    }
+
+
+    @Test
+    @DisplayName("should reject a batch of more ids than allowed")
+    void findNotesByIdsTooManyTest() {
+
+        // Arrange
+        List<Integer> ids = Collections.nCopies(NoteService.MAX_BATCH_KEYS + 1, 1);
+
+        // Act
+        // Assert
+        InvalidNoteRequestException exception = assertThrows(InvalidNoteRequestException.class,
+                () -> noteController.getNotesByPatientIds(ids));
+        assertEquals("At most " + NoteService.MAX_BATCH_KEYS + " patient ids per request, got "
+                + (NoteService.MAX_BATCH_KEYS + 1), exception.getMessage());
+        assertThrows(InvalidNoteRequestException.class, () -> noteController.findNotesByIds(ids));
+        verifyNoInteractions(noteService);
+    }
+
+
+    @Test
+    @DisplayName("should get the notes of several patients keyed by patient id")
+    void getNotesByPatientIdsTest() {
+
+        // Arrange
+        Map<Integer, List<NoteDto>> notes = Map.of(1, List.of(new NoteDto(1, "note")), 2, List.of());
+        when(noteService.getNotesByPatientIds(List.of(1, 2))).thenReturn(notes);
+
+        // Act
+        ResponseEntity<Map<Integer, List<NoteDto>>> response = noteController.getNotesByPatientIds(List.of(1, 2));
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(notes, response.getBody());
+    }
 }
@@ -1,6 +1,7 @@
 package com.mediscreen.note.controller;
 
 import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.ingest.NoteIngestService;
 import com.mediscreen.note.service.NoteService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,12 +9,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class NoteCurlControllerTest {
@@ -39,4 +44,38 @@ public class NoteCurlControllerTest {
         assertEquals("Patient note added", response.getBody());
         verify(noteService, Mockito.times(1)).createNote(any(NoteDto.class));
     }
+
+
+    @Test
+    void testAddPatientJournaled() {
+
+        // Arrange
+        NoteIngestService noteIngestService = mock(NoteIngestService.class);
+        NoteCurlController journaledController = new NoteCurlController(noteService, noteIngestService);
+        when(noteIngestService.accept(1, "note")).thenReturn(true);
+
+        // Act
+        ResponseEntity<String> response = journaledController.addPatientNote(1, "note");
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        verify(noteService, never()).createNote(any(NoteDto.class));
+    }
+
+
+    @Test
+    void testAddPatientJournalFull() {
+
+        // Arrange
+        NoteIngestService noteIngestService = mock(NoteIngestService.class);
+        NoteCurlController journaledController = new NoteCurlController(noteService, noteIngestService);
+        when(noteIngestService.accept(1, "note")).thenReturn(false);
+
+        // Act
+        ResponseEntity<String> response = journaledController.addPatientNote(1, "note");
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
 }
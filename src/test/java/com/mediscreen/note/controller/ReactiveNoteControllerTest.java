@@ -0,0 +1,123 @@
+package com.mediscreen.note.controller;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.service.ReactiveNoteService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveNoteControllerTest {
+
+
+    @Mock
+    private ReactiveNoteService reactiveNoteService;
+    @InjectMocks
+    private ReactiveNoteController reactiveNoteController;
+
+
+    private static NoteDto noteDto(int id) {
+        NoteDto noteDto = new NoteDto(1, "note" + id);
+        noteDto.setId(id);
+        return noteDto;
+    }
+
+
+    @Test
+    @DisplayName("Should propagate NoteNotFoundException")
+    void findNoteByIdNegativeTest() {
+
+        // Arrange
+        when(reactiveNoteService.findNoteById(1)).thenReturn(Mono.error(new NoteNotFoundException(1)));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteController.findNoteById(1))
+                .expectError(NoteNotFoundException.class)
+                .verify();
+    }
+
+
+    @Test
+    @DisplayName("Should stream the notes of a patient")
+    void getNotesByPatientIdTest() {
+
+        // Arrange
+        NoteDto first = noteDto(1);
+        NoteDto second = noteDto(2);
+        when(reactiveNoteService.getNotesByPatientId(1)).thenReturn(Flux.just(first, second));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteController.getNotesByPatientId(1))
+                .expectNext(first, second)
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("Should return the cursor of the next page when the page is full")
+    void getNotesPageTest() {
+
+        // Arrange
+        when(reactiveNoteService.getNotesPage(0, 2)).thenReturn(Flux.just(noteDto(1), noteDto(2)));
+        when(reactiveNoteService.getNotesPage(2, 2)).thenReturn(Flux.just(noteDto(3)));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteController.getNotesPage(0, 2))
+                .assertNext(response -> assertEquals("2", response.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER)))
+                .verifyComplete();
+        StepVerifier.create(reactiveNoteController.getNotesPage(2, 2))
+                .assertNext(response -> assertNull(response.getHeaders().getFirst(NoteController.NEXT_CURSOR_HEADER)))
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("Should answer 204 once the note is deleted")
+    void deleteNoteTest() {
+
+        // Arrange
+        when(reactiveNoteService.deleteNote(1)).thenReturn(Mono.empty());
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteController.deleteNote(1))
+                .assertNext(response -> assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode()))
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("Should reject a batch above the maximum size")
+    void executeBulkTooLargeTest() {
+
+        // Arrange
+        List<BulkNoteOperation> operations = Collections.nCopies(5001, BulkNoteOperation.delete(1));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteController.executeBulk(operations))
+                .assertNext(response -> assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode()))
+                .verifyComplete();
+        verifyNoInteractions(reactiveNoteService);
+    }
+}
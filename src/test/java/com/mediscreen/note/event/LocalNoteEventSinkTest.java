@@ -0,0 +1,59 @@
+package com.mediscreen.note.event;
+
+import com.mediscreen.note.model.NoteEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalNoteEventSinkTest {
+
+
+    private final LocalNoteEventSink sink = new LocalNoteEventSink();
+
+
+    @Test
+    @DisplayName("should deliver the events following the offset of the subscriber once")
+    void publishTest() {
+
+        // Arrange
+        List<Long> delivered = new ArrayList<>();
+        LocalNoteEventSink.Subscription subscription = sink.subscribe(1, event -> delivered.add(event.getOffset()));
+
+        // Act
+        sink.publish(List.of(event(1), event(2), event(3)));
+        sink.publish(List.of(event(3), event(4)));
+
+        // Assert
+        assertEquals(List.of(2L, 3L, 4L), delivered);
+        assertEquals(4, subscription.getOffset());
+    }
+
+
+    @Test
+    @DisplayName("should stop delivering to a cancelled subscription")
+    void cancelTest() {
+
+        // Arrange
+        List<Long> delivered = new ArrayList<>();
+        LocalNoteEventSink.Subscription subscription = sink.subscribe(0, event -> delivered.add(event.getOffset()));
+        sink.publish(List.of(event(1)));
+
+        // Act
+        subscription.cancel();
+        sink.publish(List.of(event(2)));
+
+        // Assert
+        assertEquals(List.of(1L), delivered);
+    }
+
+
+    private static NoteEvent event(long offset) {
+        NoteEvent event = new NoteEvent(NoteEvent.Type.CREATED, (int) offset, 1, 0);
+        event.setOffset(offset);
+        return event;
+    }
+}
@@ -0,0 +1,109 @@
+package com.mediscreen.note.event;
+
+import com.mediscreen.note.model.NoteEvent;
+import com.mediscreen.note.model.NoteEventCheckpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteEventPublisherTest {
+
+
+    @Mock
+    private NoteOutbox noteOutbox;
+    @Mock
+    private MongoOperations mongoOperations;
+    @Mock
+    private NoteEventSink sink;
+
+    private NoteEventPublisher publisher;
+
+
+    @BeforeEach
+    void setUp() {
+        publisher = new NoteEventPublisher(noteOutbox, mongoOperations, List.of(sink), "note", 2);
+    }
+
+
+    @Test
+    @DisplayName("should publish the events after the checkpoint batch by batch and checkpoint each batch")
+    void publishPendingTest() {
+
+        // Arrange
+        when(mongoOperations.findById("note", NoteEventCheckpoint.class)).thenReturn(new NoteEventCheckpoint("note", 10));
+        List<NoteEvent> first = List.of(event(11), event(12));
+        List<NoteEvent> second = List.of(event(13));
+        when(noteOutbox.eventsAfter(10, 2)).thenReturn(first);
+        when(noteOutbox.eventsAfter(12, 2)).thenReturn(second);
+
+        // Act
+        int published = publisher.publishPending();
+
+        // Assert
+        assertEquals(3, published);
+        verify(sink).publish(first);
+        verify(sink).publish(second);
+        verify(mongoOperations).save(argThat((NoteEventCheckpoint checkpoint) -> checkpoint.getOffset() == 12));
+        verify(mongoOperations).save(argThat((NoteEventCheckpoint checkpoint) -> checkpoint.getOffset() == 13));
+        InOrder inOrder = inOrder(noteOutbox);
+        inOrder.verify(noteOutbox).sequencePending(2);
+        inOrder.verify(noteOutbox).eventsAfter(10, 2);
+        inOrder.verify(noteOutbox).sequencePending(2);
+        inOrder.verify(noteOutbox).eventsAfter(12, 2);
+    }
+
+
+    @Test
+    @DisplayName("should not checkpoint a batch a sink failed to accept")
+    void publishPendingFailureTest() {
+
+        // Arrange
+        List<NoteEvent> events = List.of(event(1));
+        when(noteOutbox.eventsAfter(0, 2)).thenReturn(events);
+        doThrow(new IllegalStateException("sink down")).when(sink).publish(events);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> publisher.publishPending());
+
+        // Assert
+        verify(mongoOperations, never()).save(any());
+    }
+
+
+    @Test
+    @DisplayName("should resume after the last published offset without reading the checkpoint again")
+    void publishPendingResumeTest() {
+
+        // Arrange
+        when(noteOutbox.eventsAfter(0, 2)).thenReturn(List.of(event(1)));
+        when(noteOutbox.eventsAfter(1, 2)).thenReturn(List.of());
+
+        // Act
+        publisher.publishPending();
+        int published = publisher.publishPending();
+
+        // Assert
+        assertEquals(0, published);
+        verify(mongoOperations, times(1)).findById("note", NoteEventCheckpoint.class);
+    }
+
+
+    private static NoteEvent event(long offset) {
+        NoteEvent event = new NoteEvent(NoteEvent.Type.CREATED, (int) offset, 1, 0);
+        event.setOffset(offset);
+        return event;
+    }
+}
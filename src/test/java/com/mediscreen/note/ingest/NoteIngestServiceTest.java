@@ -0,0 +1,183 @@
+package com.mediscreen.note.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.exception.NoteIngestUnavailableException;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.service.NoteService;
+import com.mediscreen.note.service.SequenceGeneratorService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NoteIngestServiceTest {
+
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Mock
+    private NoteService noteService;
+    @Mock
+    private SequenceGeneratorService sequenceGenerator;
+
+    @TempDir
+    private Path directory;
+
+    private NoteIngestService noteIngestService;
+
+
+    @AfterEach
+    void tearDown() {
+        if (noteIngestService != null && noteIngestService.isRunning()) {
+            noteIngestService.stop();
+        }
+    }
+
+
+    @Test
+    @DisplayName("should insert the accepted notes with the ids reserved for their batch")
+    @SuppressWarnings("unchecked")
+    void acceptTest() {
+
+        // Arrange
+        when(sequenceGenerator.reserveSequence(eq(Note.SEQUENCE_NAME), anyInt())).thenReturn(40L);
+        noteIngestService = ingestService(100);
+        noteIngestService.start();
+
+        // Act
+        boolean accepted = noteIngestService.accept(1, "note");
+
+        // Assert
+        assertTrue(accepted);
+        assertEquals(Status.UP, new NoteIngestHealthIndicator(noteIngestService).health().getStatus());
+        ArgumentCaptor<List<Note>> notes = ArgumentCaptor.forClass(List.class);
+        verify(noteService, timeout(5000)).insertNotes(notes.capture());
+        assertEquals(40, notes.getValue().get(0).getId());
+        assertEquals(1, notes.getValue().get(0).getPatientId());
+        assertEquals(LocalDate.now(), notes.getValue().get(0).getDate());
+    }
+
+
+    @Test
+    @DisplayName("should refuse notes once the capacity is reached until the waiting ones are inserted")
+    void acceptFullTest() throws InterruptedException {
+
+        // Arrange
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(sequenceGenerator.reserveSequence(eq(Note.SEQUENCE_NAME), anyInt())).thenReturn(1L, 2L);
+        when(noteService.insertNotes(anyList())).thenAnswer(invocation -> {
+            inserting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 0;
+        });
+        noteIngestService = ingestService(1);
+        noteIngestService.start();
+
+        // Act
+        boolean first = noteIngestService.accept(1, "first");
+        assertTrue(inserting.await(5, TimeUnit.SECONDS));
+        boolean second = noteIngestService.accept(1, "second");
+        release.countDown();
+
+        // Assert
+        assertTrue(first);
+        assertFalse(second);
+        verify(noteService, timeout(5000)).insertNotes(anyList());
+    }
+
+
+    @Test
+    @DisplayName("should reject a blank note")
+    void acceptBlankTest() {
+
+        // Arrange
+        noteIngestService = ingestService(1);
+
+        // Act & Assert
+        assertThrows(InvalidNoteRequestException.class, () -> noteIngestService.accept(1, " "));
+    }
+
+
+    @Test
+    @DisplayName("should insert an interrupted batch again with the ids it reserved")
+    @SuppressWarnings("unchecked")
+    void recoverInFlightTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            journal.append(1, "first", LocalDate.now());
+            journal.append(2, "second", LocalDate.now());
+            journal.begin(1, 2, 70);
+        }
+        noteIngestService = ingestService(10);
+
+        // Act
+        noteIngestService.start();
+
+        // Assert
+        ArgumentCaptor<List<Note>> notes = ArgumentCaptor.forClass(List.class);
+        verify(noteService, timeout(5000)).insertNotes(notes.capture());
+        assertEquals(List.of(70, 71), notes.getValue().stream().map(Note::getId).toList());
+        verify(sequenceGenerator, never()).reserveSequence(anyString(), anyInt());
+    }
+
+
+    @Test
+    @DisplayName("should stop, not insert again, a batch inserted but not recorded as applied")
+    void appliedFailureTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            journal.append(1, "first", LocalDate.now());
+            journal.begin(1, 1, 70);
+        }
+        Path statePath = directory.resolve(NoteJournal.STATE_FILE);
+        when(noteService.insertNotes(anyList())).thenAnswer(invocation -> {
+            Files.delete(statePath);
+            Files.createDirectories(statePath.resolve("locked"));
+            return 0;
+        });
+        noteIngestService = ingestService(10);
+
+        // Act
+        noteIngestService.start();
+
+        // Assert
+        verify(noteService, timeout(5000)).insertNotes(anyList());
+        verify(noteService, after(500).times(1)).insertNotes(anyList());
+        assertFalse(Files.exists(directory.resolve(NoteJournal.DEAD_LETTER_FILE)));
+        assertThrows(NoteIngestUnavailableException.class, () -> noteIngestService.accept(2, "second"));
+        assertEquals(Status.DOWN, new NoteIngestHealthIndicator(noteIngestService).health().getStatus());
+    }
+
+
+    private NoteIngestService ingestService(int capacity) {
+        return new NoteIngestService(noteService, sequenceGenerator, objectMapper, new SimpleMeterRegistry(),
+                directory.toString(), capacity, 500);
+    }
+}
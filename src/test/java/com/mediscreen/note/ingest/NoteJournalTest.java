@@ -0,0 +1,148 @@
+package com.mediscreen.note.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteJournalTest {
+
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @TempDir
+    private Path directory;
+
+
+    @Test
+    @DisplayName("should recover the synced entries after a restart")
+    void recoverTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            journal.append(1, "first", LocalDate.of(2023, 1, 1));
+            JournalEntry second = journal.append(2, "second", LocalDate.of(2023, 1, 2));
+            journal.sync(second.getSeq());
+        }
+
+        // Act
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+
+            // Assert
+            List<JournalEntry> recovered = journal.getRecovered();
+            assertEquals(2, recovered.size());
+            assertEquals(1, recovered.get(0).getSeq());
+            assertEquals("second", recovered.get(1).getNote());
+            assertEquals(LocalDate.of(2023, 1, 2), recovered.get(1).getDate());
+            assertEquals(3, journal.append(3, "third", LocalDate.now()).getSeq());
+        }
+    }
+
+
+    @Test
+    @DisplayName("should drop a torn last entry")
+    void recoverTornTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            journal.append(1, "first", LocalDate.now());
+        }
+        Files.writeString(directory.resolve(NoteJournal.JOURNAL_FILE), "{\"seq\":2,\"pati", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        // Act
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            JournalEntry next = journal.append(2, "second", LocalDate.now());
+
+            // Assert
+            assertEquals(1, journal.getRecovered().size());
+            assertEquals(2, next.getSeq());
+        }
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            assertEquals(2, journal.getRecovered().size());
+        }
+    }
+
+
+    @Test
+    @DisplayName("should keep the in flight batch and skip the applied entries after a restart")
+    void stateTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            for (int i = 1; i <= 4; i++) {
+                journal.append(i, "note " + i, LocalDate.now());
+            }
+            journal.begin(1, 2, 100);
+            journal.applied(2);
+            journal.begin(3, 4, 200);
+        }
+
+        // Act
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+
+            // Assert
+            JournalState state = journal.getState();
+            assertTrue(state.inFlight());
+            assertEquals(2, state.getApplied());
+            assertEquals(200, state.getFirstId());
+            assertEquals(List.of(3L, 4L), journal.getRecovered().stream().map(JournalEntry::getSeq).toList());
+        }
+    }
+
+
+    @Test
+    @DisplayName("should truncate the journal once every entry is applied, keeping the sequence")
+    void compactTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            journal.append(1, "first", LocalDate.now());
+            journal.append(2, "second", LocalDate.now());
+
+            // Act
+            journal.applied(2);
+        }
+
+        // Assert
+        assertEquals(0, Files.size(directory.resolve(NoteJournal.JOURNAL_FILE)));
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            assertTrue(journal.getRecovered().isEmpty());
+            assertEquals(3, journal.append(3, "third", LocalDate.now()).getSeq());
+        }
+    }
+
+
+    @Test
+    @DisplayName("should append dead lettered entries to the dead letter file")
+    void deadLetterTest() throws IOException {
+
+        // Arrange
+        try (NoteJournal journal = new NoteJournal(directory, objectMapper)) {
+            JournalEntry first = journal.append(1, "first", LocalDate.now());
+            JournalEntry second = journal.append(2, "second", LocalDate.now());
+
+            // Act
+            journal.deadLetter(List.of(first));
+            journal.deadLetter(List.of(second));
+        }
+
+        // Assert
+        List<String> lines = Files.readAllLines(directory.resolve(NoteJournal.DEAD_LETTER_FILE), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("second", objectMapper.readValue(lines.get(1), JournalEntry.class).getNote());
+    }
+}
@@ -1,17 +1,30 @@
 package com.mediscreen.note.integration;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.mediscreen.library.dto.NoteDto;
 import com.mediscreen.note.controller.NoteController;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.model.Note;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -38,6 +51,10 @@ class NoteIT {
     @BeforeAll
     public void setUp() {
         mongoTemplate.getDb().drop();
+        IndexOperations indexOps = mongoTemplate.indexOps(Note.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(Note.class)
+                .forEach(indexOps::ensureIndex);
         NoteDto firstNote = new NoteDto(2, "firstNote");
         NoteDto secondNote = new NoteDto(2, "secondNote");
         noteController.validateNote(firstNote);
@@ -136,5 +153,267 @@ class NoteIT {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
     }
-}
 
+
+    @Test
+    @Order(7)
+    @DisplayName("Should return a page of notes with the next cursor")
+    void getNotesPageTest() throws Exception {
+
+        mockMvc.perform(get("/api/note/list").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "1"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].id").value(1));
+
+        mockMvc.perform(get("/api/note/list/{patientId}", 2).param("after", "1").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].note").value("secondNote"));
+    }
+
+
+    @Test
+    @Order(8)
+    @DisplayName("Should stream notes as newline delimited JSON")
+    void streamNotesByPatientIdTest() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/api/note/list/{patientId}/stream", 2))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"note\":\"firstNote\"")))
+                .andExpect(content().string(containsString("\"note\":\"secondNote\"")));
+    }
+
+
+    @Test
+    @Order(9)
+    @DisplayName("Should report the outcome of each bulk operation")
+    void executeBulkTest() throws Exception {
+
+        List<BulkNoteOperation> operations = List.of(
+                BulkNoteOperation.create(new NoteDto(4, "bulkNote")),
+                BulkNoteOperation.update(2, new NoteDto(2, "updatedSecondNote")),
+                BulkNoteOperation.delete(99));
+
+        mockMvc.perform(post("/api/note/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(operations)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.[0].note.note").value("bulkNote"))
+                .andExpect(jsonPath("$.[1].status").value("UPDATED"))
+                .andExpect(jsonPath("$.[2].status").value("NOT_FOUND"));
+
+        mockMvc.perform(get("/api/note/find/{id}", 2))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.note").value("updatedSecondNote"));
+    }
+
+
+    @Test
+    @Order(10)
+    @DisplayName("Should return snippets of the notes matching a search, most relevant first")
+    void searchNotesTest() throws Exception {
+
+        noteController.validateNote(new NoteDto(5, "Le patient déclare qu'il est fumeur. Fumeur depuis 10 ans."));
+        noteController.validateNote(new NoteDto(6, "Ancien fumeur, il a arrêté dans les 12 mois précédents."));
+        noteController.validateNote(new NoteDto(6, "Le patient déclare avoir eu plusieurs épisodes de vertige."));
+
+        MvcResult firstPage = mockMvc.perform(get("/api/note/search").param("q", "fumeur").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(NoteController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].patientId").value(5))
+                .andExpect(jsonPath("$.[0].snippets[0]").value(containsString("fumeur")))
+                .andReturn();
+
+        mockMvc.perform(get("/api/note/search").param("q", "fumeur").param("limit", "1")
+                        .param("after", firstPage.getResponse().getHeader(NoteController.NEXT_CURSOR_HEADER)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].patientId").value(6));
+
+        mockMvc.perform(get("/api/note/search").param("q", "vertige").param("patientId", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get("/api/note/search").param("q", "fumeur").param("after", "notACursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    @Test
+    @Order(11)
+    @DisplayName("Should stream the notes of a patient from the reactive API")
+    void reactiveNotesByPatientIdTest() throws Exception {
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/note/list/{patientId}", 5)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("fumeur")));
+
+        MvcResult notFound = mockMvc.perform(get("/api/reactive/note/find/{id}", 999))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(notFound))
+                .andExpect(status().isNotFound());
+    }
+
+
+    @Test
+    @Order(12)
+    @DisplayName("Should export the service and endpoint timers in Prometheus format")
+    void prometheusTest() throws Exception {
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("note_service_seconds_bucket")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("note_sequence_round_trip_seconds_count")));
+    }
+
+
+    @Test
+    @Order(13)
+    @DisplayName("Should answer 304 until a note of the patient changes")
+    void conditionalGetTest() throws Exception {
+
+        String patientETag = mockMvc.perform(get("/api/note/list/{patientId}", 2))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String noteETag = mockMvc.perform(get("/api/note/find/{id}", 1))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/note/list/{patientId}", 2).header(HttpHeaders.IF_NONE_MATCH, patientETag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/note/find/{id}", 1).header(HttpHeaders.IF_NONE_MATCH, noteETag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/note/update/{id}", 1)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new NoteDto(2, "updatedNote"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/note/list/{patientId}", 2).header(HttpHeaders.IF_NONE_MATCH, patientETag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("updatedNote")));
+        mockMvc.perform(get("/api/note/find/{id}", 1).header(HttpHeaders.IF_NONE_MATCH, noteETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.note").value("updatedNote"));
+    }
+
+
+    @Test
+    @Order(14)
+    @DisplayName("Should encode the notes in CBOR when the client accepts it")
+    void cborListTest() throws Exception {
+
+        byte[] payload = mockMvc.perform(get("/api/note/list").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<NoteDto> notes = CBORMapper.builder().findAndAddModules().build().readValue(payload, new TypeReference<>() {});
+        Assertions.assertEquals(1, notes.get(0).getId());
+        Assertions.assertEquals("updatedNote", notes.get(0).getNote());
+    }
+
+
+    @Test
+    @Order(15)
+    @DisplayName("Should return note summaries without their body")
+    void noteSummariesTest() throws Exception {
+
+        mockMvc.perform(get("/api/note/list/{patientId}", 2).param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, containsString("patient-summary-2-")))
+                .andExpect(jsonPath("$.[0].id").value(1))
+                .andExpect(jsonPath("$.[0].patientId").value(2))
+                .andExpect(jsonPath("$.[0].date").exists())
+                .andExpect(jsonPath("$.[0].note").doesNotExist());
+
+        mockMvc.perform(get("/api/note/list").param("view", "summary").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NoteController.NEXT_CURSOR_HEADER, "1"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].note").doesNotExist());
+    }
+
+
+    @Test
+    @Order(16)
+    @DisplayName("Should aggregate note statistics by patient and by period")
+    void statsTest() throws Exception {
+
+        String today = LocalDate.now().toString();
+
+        mockMvc.perform(get("/api/note/stats/patients").param("patientIds", "2", "6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$.[0].patientId").value(2))
+                .andExpect(jsonPath("$.[0].noteCount").value(2))
+                .andExpect(jsonPath("$.[0].lastVisit").value(today))
+                .andExpect(jsonPath("$.[1].patientId").value(6));
+
+        mockMvc.perform(get("/api/note/stats/periods").param("bucket", "YEAR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$.[0].period").value(today.substring(0, 4)))
+                .andExpect(jsonPath("$.[0].patientCount").value(4));
+
+        mockMvc.perform(get("/api/note/stats/periods").param("from", "2023-02-01").param("to", "2023-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    @Test
+    @Order(17)
+    @DisplayName("Should fetch several notes and several patients in one request")
+    void batchFetchTest() throws Exception {
+
+        mockMvc.perform(get("/api/note/find").param("ids", "1", "999999"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notes['1'].note").value("updatedNote"))
+                .andExpect(jsonPath("$.missingIds[0]").value(999999));
+
+        mockMvc.perform(get("/api/note/list/patients").param("ids", "2", "999999"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['2'].length()").value(2))
+                .andExpect(jsonPath("$['999999'].length()").value(0));
+    }
+
+
+    @Test
+    @Order(18)
+    @DisplayName("Should read a write back with the cluster time it answered with")
+    void readYourWritesTest() throws Exception {
+
+        String clusterTime = mockMvc.perform(post("/api/note/validate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new NoteDto(6, "causalNote"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(NoteController.CLUSTER_TIME_HEADER);
+
+        HttpHeaders headers = new HttpHeaders();
+        if (clusterTime != null) {
+            headers.set(NoteController.CLUSTER_TIME_HEADER, clusterTime);
+        }
+        mockMvc.perform(get("/api/note/list").headers(headers))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("causalNote")));
+    }
+}
@@ -0,0 +1,77 @@
+package com.mediscreen.note.mapper;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.model.Note;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NoteMapperTest {
+
+
+    private final NoteMapper noteMapper = new NoteMapper();
+
+
+    @Test
+    @DisplayName("Should copy every field to the dto")
+    void toDtoTest() {
+
+        // Arrange
+        Note note = new Note(2, "note");
+        note.setId(7);
+        note.setDate(LocalDate.of(2023, 3, 1));
+
+        // Act
+        NoteDto result = noteMapper.toDto(note);
+
+        // Assert
+        assertEquals(7, result.getId());
+        assertEquals(2, result.getPatientId());
+        assertEquals("note", result.getNote());
+        assertEquals(LocalDate.of(2023, 3, 1), result.getDate());
+    }
+
+
+    @Test
+    @DisplayName("Should copy every field to the entity")
+    void toEntityTest() {
+
+        // Arrange
+        NoteDto noteDto = new NoteDto(2, "note");
+        noteDto.setId(7);
+        noteDto.setDate(LocalDate.of(2023, 3, 1));
+
+        // Act
+        Note result = noteMapper.toEntity(noteDto);
+
+        // Assert
+        assertEquals(7, result.getId());
+        assertEquals(2, result.getPatientId());
+        assertEquals("note", result.getNote());
+        assertEquals(LocalDate.of(2023, 3, 1), result.getDate());
+    }
+
+
+    @Test
+    @DisplayName("Should keep the order of the list")
+    void toDtoListTest() {
+
+        // Arrange
+        Note first = new Note(1, "first");
+        Note second = new Note(1, "second");
+
+        // Act
+        List<NoteDto> result = noteMapper.toDtoList(List.of(first, second));
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals("first", result.get(0).getNote());
+        assertEquals("second", result.get(1).getNote());
+        assertTrue(noteMapper.toDtoList(List.of()).isEmpty());
+    }
+}
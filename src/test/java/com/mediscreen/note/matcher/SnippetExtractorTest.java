@@ -0,0 +1,57 @@
+package com.mediscreen.note.matcher;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SnippetExtractorTest {
+
+
+    @Test
+    @DisplayName("Should cut whole words around an occurrence, keeping the original spelling")
+    void extractTest() {
+
+        // Arrange
+        SnippetExtractor extractor = new SnippetExtractor(List.of("hemoglobine"), 12, 3);
+
+        // Act
+        List<String> snippets = extractor.extract("Le patient déclare que son Hémoglobine A1C est supérieure au niveau recommandé");
+
+        // Assert
+        assertEquals(List.of("…que son Hémoglobine A1C est…"), snippets);
+    }
+
+
+    @Test
+    @DisplayName("Should merge close occurrences and cap the number of snippets")
+    void mergeAndCapTest() {
+
+        // Arrange
+        SnippetExtractor extractor = new SnippetExtractor(List.of("fumeur", "vertige", "FUMEUR"), 5, 2);
+        String text = "Fumeur et vertige. " + "x".repeat(40) + " Vertige " + "y".repeat(40) + " fumeur " + "z".repeat(40);
+
+        // Act
+        List<String> snippets = extractor.extract(text);
+
+        // Assert
+        assertEquals(List.of("Fumeur et vertige.…", "…Vertige…"), snippets);
+    }
+
+
+    @Test
+    @DisplayName("Should return the beginning of the text when no term occurs")
+    void noOccurrenceTest() {
+
+        // Arrange
+        SnippetExtractor extractor = new SnippetExtractor(List.of("cholestérol"), 10, 3);
+
+        // Act
+        List<String> snippets = extractor.extract("Le patient déclare qu'il se sent très bien");
+
+        // Assert
+        assertEquals(List.of("Le patient déclare…"), snippets);
+    }
+}
@@ -0,0 +1,79 @@
+package com.mediscreen.note.matcher;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TriggerTermMatcherTest {
+
+
+    private static int[] count(TriggerTermMatcher matcher, String... texts) {
+        int[] counts = new int[matcher.getTerms().size()];
+        for (String text : texts) {
+            matcher.count(text, counts);
+        }
+        return counts;
+    }
+
+
+    @Test
+    @DisplayName("Should ignore case, accents and apostrophe style")
+    void normalizationTest() {
+
+        // Arrange
+        TriggerTermMatcher matcher = new TriggerTermMatcher(List.of("Hémoglobine A1C", "Cholestérol", "d'apnée"));
+
+        // Act
+        int[] counts = count(matcher,
+                "HEMOGLOBINE  a1c supérieure au niveau recommandé",
+                "Taux de cholesterol LDL élevé, crises d’apnée");
+
+        // Assert
+        assertArrayEquals(new int[]{1, 1, 1}, counts);
+    }
+
+
+    @Test
+    @DisplayName("Should count whole words only, nested occurrences included")
+    void wordBoundaryTest() {
+
+        // Arrange
+        TriggerTermMatcher matcher = new TriggerTermMatcher(List.of("anormal", "anormale", "normal", "aa", "rythme normal"));
+
+        // Act
+        int[] counts = count(matcher, "Audition anormale, rythme normal, aaa", "Normal");
+
+        // Assert
+        assertArrayEquals(new int[]{0, 1, 2, 0, 1}, counts);
+    }
+
+
+    @Test
+    @DisplayName("Should skip blank and duplicate terms")
+    void duplicateTermsTest() {
+
+        // Arrange
+        TriggerTermMatcher matcher = new TriggerTermMatcher(List.of("Fumeur", " ", "FUMEUR", "Réaction", "reaction"));
+
+        // Act
+        int[] counts = count(matcher, "Fumeur. Réaction aux médicaments, réaction apparente", null);
+
+        // Assert
+        assertEquals(List.of("Fumeur", "Réaction"), matcher.getTerms());
+        assertArrayEquals(new int[]{1, 2}, counts);
+    }
+
+
+    @Test
+    @DisplayName("Should normalize text for matching")
+    void textNormalizerTest() {
+
+        // Act
+        // Assert
+        assertEquals("l'hemoglobine a1c depasse", TextNormalizer.normalize("L’Hémoglobine \t A1C  dépasse"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.Note;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteBodyCompressionTest {
+
+
+    private static final String LONG_NOTE = "Le patient déclare qu'il fume depuis peu. ".repeat(100);
+
+    private final NoteBodyCompression compression = new NoteBodyCompression(NoteBodyCompression.Mode.DEFLATE, 1024);
+    private MappingMongoConverter converter;
+
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+    }
+
+
+    @Test
+    @DisplayName("should store a long note deflated and read it back unchanged")
+    void longNoteTest() {
+
+        // Arrange
+        Note note = note(LONG_NOTE);
+
+        // Act
+        Document document = save(note);
+        Note read = compression.onAfterConvert(converter.read(Note.class, document), document, "notes");
+
+        // Assert
+        assertFalse(document.containsKey("note"));
+        assertTrue(document.get(Note.COMPRESSED_NOTE_FIELD, Binary.class).length() < LONG_NOTE.length() / 10);
+        assertEquals("le patient déclare qu il fume depuis peu", document.getString(Note.SEARCH_TERMS_FIELD));
+        assertEquals(LONG_NOTE, note.getNote());
+        assertEquals(LONG_NOTE, read.getNote());
+        assertEquals(LocalDate.of(2023, 3, 1), read.getDate());
+    }
+
+
+    @Test
+    @DisplayName("should keep short notes, and every note when disabled, as plain strings")
+    void plainNoteTest() {
+
+        // Arrange
+        NoteBodyCompression disabled = new NoteBodyCompression(NoteBodyCompression.Mode.DISABLED, 1024);
+
+        // Act
+        Document shortNote = save(note("short"));
+        Document notCompressed = new Document();
+        converter.write(note(LONG_NOTE), notCompressed);
+        disabled.onBeforeSave(null, notCompressed, "notes");
+
+        // Assert
+        assertEquals("short", shortNote.getString("note"));
+        assertEquals(LONG_NOTE, notCompressed.getString("note"));
+        assertFalse(notCompressed.containsKey(Note.COMPRESSED_NOTE_FIELD));
+        assertFalse(notCompressed.containsKey(Note.SEARCH_TERMS_FIELD));
+    }
+
+
+    @Test
+    @DisplayName("should set the representation of the body in an update and clear the other one")
+    void setBodyTest() {
+
+        // Act
+        Document longUpdate = compression.setBody(new Update(), LONG_NOTE).getUpdateObject();
+        Document shortUpdate = compression.setBody(new Update(), "short").getUpdateObject();
+
+        // Assert
+        assertTrue(longUpdate.get("$set", Document.class).containsKey(Note.COMPRESSED_NOTE_FIELD));
+        assertTrue(longUpdate.get("$set", Document.class).containsKey(Note.SEARCH_TERMS_FIELD));
+        assertTrue(longUpdate.get("$unset", Document.class).containsKey("note"));
+        assertEquals("short", shortUpdate.get("$set", Document.class).getString("note"));
+        assertTrue(shortUpdate.get("$unset", Document.class).containsKey(Note.COMPRESSED_NOTE_FIELD));
+        assertTrue(shortUpdate.get("$unset", Document.class).containsKey(Note.SEARCH_TERMS_FIELD));
+    }
+
+
+    private Document save(Note note) {
+        Document document = new Document();
+        converter.write(note, document);
+        compression.onBeforeSave(note, document, "notes");
+        return document;
+    }
+
+
+    private static Note note(String body) {
+        Note note = new Note(1, body);
+        note.setId(1);
+        note.setDate(LocalDate.of(2023, 3, 1));
+        return note;
+    }
+}
@@ -0,0 +1,242 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.TaggableReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NoteReadRoutingTest {
+
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    @Mock
+    private MongoClient mongoClient;
+    @Mock
+    private OperationTimeListener operationTimeListener;
+    @Mock
+    private ClientSession session;
+    @Mock
+    private MongoCollection<Document> collection;
+    @Mock
+    private MongoCollection<Document> routed;
+
+
+    @Test
+    @DisplayName("should bound the staleness of every read preference but the primary")
+    void getReadPreferenceTest() {
+
+        // Arrange
+        NoteReadRouting readRouting = new NoteReadRouting(mongoClient, operationTimeListener, "primary", "secondaryPreferred",
+                "nearest", Duration.ofMinutes(2));
+
+        // Act
+        // Assert
+        assertEquals(ReadPreference.primary(), readRouting.getReadPreference(NoteReadRouting.Operation.ALL_NOTES));
+        ReadPreference stats = readRouting.getReadPreference(NoteReadRouting.Operation.STATS);
+        assertEquals("secondaryPreferred", stats.getName());
+        assertEquals(120, ((TaggableReadPreference) stats).getMaxStaleness(TimeUnit.SECONDS));
+        assertEquals("nearest", readRouting.getReadPreference(NoteReadRouting.Operation.SEARCH).getName());
+        assertTrue(readRouting.isRouted());
+        assertFalse(primary().isRouted());
+    }
+
+
+    @Test
+    @DisplayName("should read from the primary without a session, even given a cluster time")
+    void readPrimaryTest() {
+
+        // Arrange
+        NoteReadRouting readRouting = primary();
+        when(collection.withReadPreference(ReadPreference.primary())).thenReturn(routed);
+
+        // Act
+        String result = readRouting.read(collection, NoteReadRouting.Operation.ALL_NOTES, 42L, (target, clientSession) -> {
+            assertSame(routed, target);
+            assertNull(clientSession);
+            return "read";
+        });
+
+        // Assert
+        assertEquals("read", result);
+        verifyNoInteractions(mongoClient);
+    }
+
+
+    @Test
+    @DisplayName("should read from a secondary in a causally consistent session following the cluster time")
+    void readCausalTest() {
+
+        // Arrange
+        NoteReadRouting readRouting = new NoteReadRouting(mongoClient, operationTimeListener, "secondary", "primary", "primary",
+                Duration.ofSeconds(90));
+        when(collection.withReadPreference(any())).thenReturn(routed);
+        when(mongoClient.startSession(argThat(ClientSessionOptions::isCausallyConsistent))).thenReturn(session);
+
+        // Act
+        String result = readRouting.read(collection, NoteReadRouting.Operation.ALL_NOTES, 42L, (target, clientSession) -> {
+            assertSame(routed, target);
+            assertSame(session, clientSession);
+            return "read";
+        });
+
+        // Assert
+        assertEquals("read", result);
+        verify(session).advanceOperationTime(new BsonTimestamp(42L));
+        verify(session).close();
+    }
+
+
+    @Test
+    @DisplayName("should reject a cluster time ahead of the cluster as an invalid request")
+    void readClusterTimeAheadTest() {
+
+        // Arrange
+        NoteReadRouting readRouting = new NoteReadRouting(mongoClient, operationTimeListener, "secondary", "primary", "primary",
+                Duration.ofSeconds(90));
+        when(collection.withReadPreference(any())).thenReturn(routed);
+        when(mongoClient.startSession(argThat(ClientSessionOptions::isCausallyConsistent))).thenReturn(session);
+        MongoCommandException ahead = new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(72))
+                .append("errmsg", new BsonString("readConcern afterClusterTime value must not be greater than the current clusterTime")),
+                new ServerAddress());
+
+        // Act
+        // Assert
+        assertThrows(InvalidNoteRequestException.class, () -> readRouting.read(collection, NoteReadRouting.Operation.ALL_NOTES,
+                Long.MAX_VALUE, (target, clientSession) -> {
+                    throw ahead;
+                }));
+        verify(session).close();
+    }
+
+
+    @Test
+    @DisplayName("should read from a secondary without a session when the client did not write")
+    void readWithoutClusterTimeTest() {
+
+        // Arrange
+        NoteReadRouting readRouting = new NoteReadRouting(mongoClient, operationTimeListener, "primary", "primary", "secondary",
+                Duration.ofSeconds(90));
+        when(collection.withReadPreference(argThat(readPreference -> readPreference.getName().equals("secondary"))))
+                .thenReturn(routed);
+
+        // Act
+        readRouting.read(collection, NoteReadRouting.Operation.SEARCH, null, (target, clientSession) -> {
+            assertSame(routed, target);
+            assertNull(clientSession);
+            return null;
+        });
+
+        // Assert
+        verifyNoInteractions(mongoClient);
+    }
+
+
+    @Test
+    @DisplayName("should give the operation time of the last write as cluster time, only when reads are routed")
+    void clusterTimeTest() {
+
+        // Arrange
+        NoteReadRouting readRouting = new NoteReadRouting(mongoClient, operationTimeListener, "primary",
+                "secondaryPreferred", "primary", Duration.ofSeconds(90));
+        when(operationTimeListener.lastOperationTime()).thenReturn(OptionalLong.of(7_000_000_000_001L));
+
+        // Act
+        OptionalLong clusterTime = readRouting.clusterTime();
+
+        // Assert
+        assertEquals(OptionalLong.of(7_000_000_000_001L), clusterTime);
+        assertEquals(OptionalLong.empty(), primary().clusterTime());
+        verifyNoInteractions(mongoClient);
+    }
+
+
+    @Test
+    @DisplayName("should keep the latest operation time replied to the current thread")
+    void lastOperationTimeTest() throws InterruptedException {
+
+        // Arrange
+        OperationTimeListener listener = new OperationTimeListener();
+        listener.commandSucceeded(succeeded(new BsonDocument("ok", new BsonInt32(1))));
+        assertEquals(OptionalLong.empty(), listener.lastOperationTime());
+
+        // Act
+        listener.commandSucceeded(succeeded(new BsonDocument("operationTime", new BsonTimestamp(7_000_000_000_002L))));
+        listener.commandSucceeded(succeeded(new BsonDocument("operationTime", new BsonTimestamp(7_000_000_000_001L))));
+        OptionalLong[] otherThread = new OptionalLong[1];
+        Thread thread = new Thread(() -> otherThread[0] = listener.lastOperationTime());
+        thread.start();
+        thread.join();
+
+        // Assert
+        assertEquals(OptionalLong.of(7_000_000_000_002L), listener.lastOperationTime());
+        assertEquals(OptionalLong.empty(), otherThread[0]);
+    }
+
+
+    @Test
+    @DisplayName("should forget the operation time of an earlier request when a write starts")
+    void lastOperationTimeResetTest() {
+
+        // Arrange
+        OperationTimeListener listener = new OperationTimeListener();
+        listener.commandSucceeded(succeeded(new BsonDocument("operationTime", new BsonTimestamp(7_000_000_000_002L))));
+
+        // Act
+        listener.commandStarted(started("find"));
+        OptionalLong afterRead = listener.lastOperationTime();
+        listener.commandStarted(started("update"));
+
+        // Assert
+        assertEquals(OptionalLong.of(7_000_000_000_002L), afterRead);
+        assertEquals(OptionalLong.empty(), listener.lastOperationTime());
+    }
+
+
+    private NoteReadRouting primary() {
+        return new NoteReadRouting(mongoClient, operationTimeListener, "primary", "primary", "primary",
+                Duration.ofSeconds(90));
+    }
+
+
+    private static CommandStartedEvent started(String commandName) {
+        return new CommandStartedEvent(null, 1, CONNECTION, "note", commandName, new BsonDocument(commandName, new BsonString("notes")));
+    }
+
+
+    private static CommandSucceededEvent succeeded(BsonDocument response) {
+        return new CommandSucceededEvent(null, 1, CONNECTION, "insert", response, 1_000);
+    }
+}
@@ -0,0 +1,103 @@
+package com.mediscreen.note.repository;
+
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteRepositoryCustomImplTest {
+
+
+    @Mock
+    private MongoDatabaseFactory databaseFactory;
+    @Mock
+    private MongoDatabase database;
+    @Mock
+    private MongoCollection<Document> collection;
+    @Mock
+    private FindIterable<Document> documents;
+
+
+    @Test
+    @DisplayName("should translate the driver exceptions of the routed read of every note")
+    void readAllTranslationTest() {
+
+        // Arrange
+        when(databaseFactory.getExceptionTranslator()).thenReturn(new MongoExceptionTranslator());
+        when(databaseFactory.getMongoDatabase()).thenReturn(database);
+        when(database.getCollection("notes", Document.class)).thenReturn(collection);
+        when(collection.withReadPreference(any())).thenReturn(collection);
+        when(collection.find()).thenReturn(documents);
+        when(documents.projection(any())).thenReturn(documents);
+        when(documents.batchSize(anyInt())).thenReturn(documents);
+        when(documents.iterator()).thenThrow(new MongoSocketReadException("Connection reset", new ServerAddress()));
+        NoteRepositoryCustomImpl repository = new NoteRepositoryCustomImpl(new MongoTemplate(databaseFactory),
+                new NoteBodyCompression(NoteBodyCompression.Mode.DISABLED, 0),
+                new NoteReadRouting(null, new OperationTimeListener(), "primary", "primary", "primary",
+                        Duration.ofSeconds(90)));
+
+        // Act
+        // Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> repository.readAll(null));
+    }
+
+
+    @Test
+    @DisplayName("should name the periods in the zone the note dates are stored in")
+    @SuppressWarnings("unchecked")
+    void aggregateByPeriodTimezoneTest() {
+
+        // Arrange
+        AggregateIterable<Document> results = mock(AggregateIterable.class);
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        when(databaseFactory.getExceptionTranslator()).thenReturn(new MongoExceptionTranslator());
+        when(databaseFactory.getMongoDatabase()).thenReturn(database);
+        when(database.getCollection("notes", Document.class)).thenReturn(collection);
+        when(collection.withReadPreference(any())).thenReturn(collection);
+        when(collection.aggregate(anyList())).thenReturn(results);
+        when(results.allowDiskUse(true)).thenReturn(results);
+        when(results.iterator()).thenReturn(cursor);
+        NoteRepositoryCustomImpl repository = new NoteRepositoryCustomImpl(new MongoTemplate(databaseFactory),
+                new NoteBodyCompression(NoteBodyCompression.Mode.DISABLED, 0),
+                new NoteReadRouting(null, new OperationTimeListener(), "primary", "primary", "primary",
+                        Duration.ofSeconds(90)));
+
+        // Act
+        repository.aggregateByPeriod(new NoteStatsQuery(List.of(1), null, null, false, null), DateBucket.MONTH);
+
+        // Assert
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(collection).aggregate(pipeline.capture());
+        Document period = pipeline.getValue().stream().filter(stage -> stage.containsKey("$group")).findFirst().orElseThrow()
+                .get("$group", Document.class).get("_id", Document.class).get("period", Document.class);
+        assertEquals(ZoneId.systemDefault().getId(), period.get("$dateToString", Document.class).getString("timezone"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.mediscreen.note.repository;
+
+import com.mediscreen.note.model.Note;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteRepositoryTest {
+
+
+    @Mock
+    private MongoDatabaseFactory databaseFactory;
+    @Mock
+    private MongoDatabase database;
+    @Mock
+    private MongoCollection<Document> collection;
+    @Mock
+    private FindIterable<Document> documents;
+    @Mock
+    private MongoCursor<Document> cursor;
+
+    private NoteRepository noteRepository;
+
+
+    @BeforeEach
+    void setUp() {
+        when(databaseFactory.getExceptionTranslator()).thenReturn(new MongoExceptionTranslator());
+        when(databaseFactory.getMongoDatabase()).thenReturn(database);
+        when(database.getCollection("notes", Document.class)).thenReturn(collection);
+        when(collection.find(any(Document.class), eq(Document.class))).thenReturn(documents);
+        when(documents.projection(any())).thenReturn(documents);
+        when(documents.iterator()).thenReturn(cursor);
+        MongoTemplate mongoTemplate = new MongoTemplate(databaseFactory);
+        noteRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(NoteRepository.class,
+                new NoteRepositoryCustomImpl(mongoTemplate, new NoteBodyCompression(NoteBodyCompression.Mode.DISABLED, 0),
+                        new NoteReadRouting(null, new OperationTimeListener(), "primary", "primary", "primary",
+                                Duration.ofSeconds(90))));
+    }
+
+
+    @Test
+    @DisplayName("should read a note by id without its search terms")
+    void findByIdProjectionTest() {
+
+        // Arrange
+        when(documents.limit(anyInt())).thenReturn(documents);
+
+        // Act
+        noteRepository.findById(1);
+
+        // Assert
+        assertEquals(new Document(Note.SEARCH_TERMS_FIELD, 0), projection());
+    }
+
+
+    @Test
+    @DisplayName("should read the notes of a patient without their search terms")
+    void findByPatientIdProjectionTest() {
+
+        // Arrange
+        when(documents.sort(any())).thenReturn(documents);
+
+        // Act
+        noteRepository.findByPatientIdOrderByDateAsc(1);
+
+        // Assert
+        assertEquals(new Document(Note.SEARCH_TERMS_FIELD, 0), projection());
+    }
+
+
+    @Test
+    @DisplayName("should read the notes of several ids without their search terms")
+    void findByIdInProjectionTest() {
+
+        // Arrange
+        // Act
+        noteRepository.findByIdIn(List.of(1, 2));
+
+        // Assert
+        assertEquals(new Document(Note.SEARCH_TERMS_FIELD, 0), projection());
+    }
+
+
+    private Document projection() {
+        ArgumentCaptor<Document> projection = ArgumentCaptor.forClass(Document.class);
+        verify(documents).projection(projection.capture());
+        return projection.getValue();
+    }
+}
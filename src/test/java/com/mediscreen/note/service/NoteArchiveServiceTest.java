@@ -0,0 +1,157 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NoteArchiveServiceTest {
+
+
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private NoteCache noteCache;
+
+
+    @Test
+    @DisplayName("should copy each batch of old notes to the archive before removing them, until a batch is not full")
+    void archiveOldNotesTest() {
+
+        // Arrange
+        NoteArchiveService archiveService = archiveService(NoteArchiveService.Mode.SCHEDULED, 2);
+        LocalDate cutoff = LocalDate.now().minusDays(365);
+        List<Note> first = List.of(note(1, 10), note(2, 11));
+        List<Note> second = List.of(note(3, 10));
+        when(noteRepository.findDatedBefore(cutoff, 2)).thenReturn(first, second);
+        when(noteRepository.findTargetsByIds(any())).thenReturn(Map.of(1, first.get(0), 2, first.get(1)), Map.of(),
+                Map.of(3, second.get(0)), Map.of());
+
+        // Act
+        int archived = archiveService.archiveOldNotes();
+
+        // Assert
+        assertEquals(3, archived);
+        InOrder inOrder = inOrder(noteRepository);
+        inOrder.verify(noteRepository).ensureArchiveIndexes();
+        inOrder.verify(noteRepository).copyToArchive(first);
+        inOrder.verify(noteRepository).removeDatedBefore(List.of(1, 2), cutoff);
+        inOrder.verify(noteRepository).incrementPatientNotesVersions(Set.of(10, 11));
+        inOrder.verify(noteRepository).copyToArchive(second);
+        inOrder.verify(noteRepository).removeDatedBefore(List.of(3), cutoff);
+        verify(noteRepository, times(2)).findDatedBefore(cutoff, 2);
+        verify(noteRepository, never()).removeFromArchive(any());
+        verify(noteCache).evictNote(1);
+        verify(noteCache, times(2)).evictPatient(10);
+    }
+
+
+    @Test
+    @DisplayName("should remove the archived copy of a note updated before it left the hot notes")
+    void archiveOldNotesUpdatedTest() {
+
+        // Arrange
+        NoteArchiveService archiveService = archiveService(NoteArchiveService.Mode.SCHEDULED, 10);
+        Note old = note(1, 10);
+        Note updated = note(2, 11);
+        when(noteRepository.findDatedBefore(any(), eq(10))).thenReturn(List.of(old, updated));
+        when(noteRepository.findTargetsByIds(List.of(1, 2))).thenReturn(Map.of(1, old, 2, updated), Map.of(2, updated));
+
+        // Act
+        int archived = archiveService.archiveOldNotes();
+
+        // Assert
+        assertEquals(1, archived);
+        verify(noteRepository).removeFromArchive(Set.of(2));
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(10));
+    }
+
+
+    @Test
+    @DisplayName("should remove the archived copy of a note deleted before it was copied")
+    void archiveOldNotesDeletedTest() {
+
+        // Arrange
+        NoteArchiveService archiveService = archiveService(NoteArchiveService.Mode.SCHEDULED, 10);
+        Note old = note(1, 10);
+        when(noteRepository.findDatedBefore(any(), eq(10))).thenReturn(List.of(old, note(2, 11)));
+        when(noteRepository.findTargetsByIds(List.of(1, 2))).thenReturn(Map.of(1, old), Map.of());
+
+        // Act
+        int archived = archiveService.archiveOldNotes();
+
+        // Assert
+        assertEquals(1, archived);
+        InOrder inOrder = inOrder(noteRepository);
+        inOrder.verify(noteRepository).copyToArchive(any());
+        inOrder.verify(noteRepository).removeFromArchive(Set.of(2));
+        inOrder.verify(noteRepository).removeDatedBefore(eq(List.of(1, 2)), any());
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(10));
+    }
+
+
+    @Test
+    @DisplayName("should neither archive nor reach the archive when disabled")
+    void archiveOldNotesDisabledTest() {
+
+        // Arrange
+        NoteArchiveService archiveService = archiveService(NoteArchiveService.Mode.DISABLED, 10);
+
+        // Act
+        int archived = archiveService.archiveOldNotes();
+
+        // Assert
+        assertEquals(0, archived);
+        assertFalse(archiveService.reachesArchive(null));
+        verifyNoInteractions(noteRepository);
+    }
+
+
+    @Test
+    @DisplayName("should reach the archive only for ranges starting before the cutoff")
+    void reachesArchiveTest() {
+
+        // Arrange
+        NoteArchiveService archiveService = archiveService(NoteArchiveService.Mode.SCHEDULED, 10);
+
+        // Act
+        // Assert
+        assertEquals(LocalDate.now().minusDays(365), archiveService.cutoff());
+        assertTrue(archiveService.reachesArchive(null));
+        assertTrue(archiveService.reachesArchive(LocalDate.now().minusYears(3)));
+        assertFalse(archiveService.reachesArchive(LocalDate.now().minusDays(30)));
+        verify(noteCache, never()).evictNote(anyInt());
+    }
+
+
+    private NoteArchiveService archiveService(NoteArchiveService.Mode mode, int batchSize) {
+        return new NoteArchiveService(noteRepository, noteCache, new SimpleMeterRegistry(), mode, Duration.ofDays(365), batchSize);
+    }
+
+
+    private static Note note(int id, int patientId) {
+        Note note = new Note(patientId, "note");
+        note.setId(id);
+        note.setDate(LocalDate.now().minusYears(2));
+        return note;
+    }
+}
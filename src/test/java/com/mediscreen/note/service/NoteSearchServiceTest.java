@@ -0,0 +1,156 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.note.dto.NoteSearchHitDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteSearchQuery;
+import com.mediscreen.note.repository.ScoredNote;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteSearchServiceTest {
+
+
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private NoteArchiveService noteArchive;
+    @InjectMocks
+    private NoteSearchService noteSearchService;
+
+
+    @Test
+    @DisplayName("should return snippets of the matching notes with their score")
+    void searchNotesTest() {
+
+        // Arrange
+        Note note = new Note(3, "Le patient déclare qu'il est fumeur depuis 10 ans");
+        note.setId(7);
+        note.setDate(LocalDate.of(2023, 2, 1));
+        when(noteRepository.searchText(any(NoteSearchQuery.class), eq(20))).thenReturn(List.of(new ScoredNote(note, 1.25)));
+
+        // Act
+        List<NoteSearchHitDto> hits = noteSearchService.searchNotes("Fumeur -vertige", 3, null, null, null, 20, null);
+
+        // Assert
+        assertEquals(1, hits.size());
+        assertEquals(7, hits.get(0).getId());
+        assertEquals(3, hits.get(0).getPatientId());
+        assertEquals(1.25, hits.get(0).getScore());
+        assertEquals(List.of("Le patient déclare qu'il est fumeur depuis 10 ans"), hits.get(0).getSnippets());
+    }
+
+
+    @Test
+    @DisplayName("should resume after the cursor and cap the page size")
+    void searchNotesCursorTest() {
+
+        // Arrange
+        ArgumentCaptor<NoteSearchQuery> query = ArgumentCaptor.forClass(NoteSearchQuery.class);
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        LocalDate to = LocalDate.of(2023, 12, 31);
+        when(noteRepository.searchText(query.capture(), eq(NoteService.MAX_PAGE_SIZE))).thenReturn(List.of());
+
+        // Act
+        List<NoteSearchHitDto> hits = noteSearchService.searchNotes("vertige", 2, from, to, "0.6666666666666666:42", 5000, null);
+
+        // Assert
+        assertTrue(hits.isEmpty());
+        assertEquals("vertige", query.getValue().getText());
+        assertEquals(2, query.getValue().getPatientId());
+        assertEquals(from, query.getValue().getFrom());
+        assertEquals(to, query.getValue().getTo());
+        assertEquals(0.6666666666666666, query.getValue().getAfterScore());
+        assertEquals(42, query.getValue().getAfterId());
+        assertFalse(query.getValue().isIncludeArchive());
+        verify(noteRepository).searchText(any(NoteSearchQuery.class), eq(NoteService.MAX_PAGE_SIZE));
+    }
+
+
+    @Test
+    @DisplayName("should search the archive too when the range starts before the archive cutoff")
+    void searchNotesArchiveTest() {
+
+        // Arrange
+        ArgumentCaptor<NoteSearchQuery> query = ArgumentCaptor.forClass(NoteSearchQuery.class);
+        LocalDate from = LocalDate.of(2015, 1, 1);
+        when(noteArchive.reachesArchive(from)).thenReturn(true);
+        when(noteRepository.searchText(query.capture(), eq(20))).thenReturn(List.of());
+
+        // Act
+        noteSearchService.searchNotes("vertige", null, from, null, null, 20, null);
+
+        // Assert
+        assertTrue(query.getValue().isIncludeArchive());
+        verify(noteArchive).ensureIndexes();
+    }
+
+
+    @Test
+    @DisplayName("should reject a blank text, an inverted date range and a malformed cursor")
+    void searchNotesInvalidTest() {
+
+        // Act
+        // Assert
+        assertThrows(InvalidNoteRequestException.class, () -> noteSearchService.searchNotes(" ", null, null, null, null, 20, null));
+        assertThrows(InvalidNoteRequestException.class, () -> noteSearchService.searchNotes("vertige", null,
+                LocalDate.of(2023, 2, 1), LocalDate.of(2023, 1, 1), null, 20, null));
+        assertThrows(InvalidNoteRequestException.class, () -> noteSearchService.searchNotes("vertige", null, null, null, "42", 20, null));
+        assertThrows(InvalidNoteRequestException.class, () -> noteSearchService.searchNotes("vertige", null, null, null, "a:b", 20, null));
+        verifyNoInteractions(noteRepository);
+    }
+
+
+    @Test
+    @DisplayName("should round-trip the cursor of a hit")
+    void cursorOfTest() {
+
+        // Arrange
+        NoteSearchHitDto hit = new NoteSearchHitDto(42, 1, null, 2.0 / 3, List.of());
+
+        // Act
+        String cursor = NoteSearchService.cursorOf(hit);
+
+        // Assert
+        assertEquals("0.6666666666666666:42", cursor);
+    }
+
+
+    @Test
+    @DisplayName("should highlight words and phrases but not excluded words")
+    void searchTermsTest() {
+
+        // Act
+        // Assert
+        assertEquals(List.of("taux", "cholestérol LDL", "élevé"),
+                NoteSearchService.searchTerms("taux \"cholestérol LDL\" -hdl élevé"));
+    }
+
+
+    @Test
+    @DisplayName("should keep an excluded phrase whole and leave it out of the highlighted terms")
+    void searchTermsExcludedPhraseTest() {
+
+        // Act
+        // Assert
+        assertEquals(List.of("taux", "élevé"),
+                NoteSearchService.searchTerms("taux -\"cholestérol LDL\" élevé"));
+    }
+}
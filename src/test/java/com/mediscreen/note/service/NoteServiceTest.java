@@ -1,20 +1,46 @@
 package com.mediscreen.note.service;
 
 import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.dto.BulkNoteOperation;
+import com.mediscreen.note.dto.BulkNoteResult;
+import com.mediscreen.note.dto.NoteBatchDto;
+import com.mediscreen.note.dto.NoteSummaryDto;
+import com.mediscreen.note.dto.TriggerTermCountDto;
+import com.mediscreen.note.event.NoteOutbox;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
 import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.mapper.NoteMapper;
 import com.mediscreen.note.model.Note;
+import com.mediscreen.note.model.NoteEvent;
 import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteWrite;
+import com.mediscreen.note.repository.Versioned;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,8 +55,17 @@ public class NoteServiceTest {
     private SequenceGeneratorService sequenceGenerator;
     @Mock
     private NoteRepository noteRepository;
+    @Spy
+    private NoteMapper noteMapper;
+    @Spy
+    private SimpleMeterRegistry meterRegistry;
+    @Spy
+    private NoteCache noteCache = new NoteCache(NoteCache.Mode.LOCAL, 100, Duration.ofMinutes(10), Duration.ofSeconds(5),
+            new SimpleMeterRegistry());
+    @Spy
+    private NoteOutbox noteOutbox = new NoteOutbox(NoteOutbox.Mode.DISABLED, null, null, null);
     @Mock
-    private ModelMapper modelMapper;
+    private NoteArchiveService noteArchive;
     @InjectMocks
     private NoteService noteService;
 
@@ -46,7 +81,7 @@ public class NoteServiceTest {
         NoteDto noteDto = new NoteDto(1, "note");
         noteDto.setId(id);
         when(noteRepository.findById(id)).thenReturn(Optional.of(note));
-        when(modelMapper.map(note, NoteDto.class)).thenReturn(noteDto);
+        doReturn(noteDto).when(noteMapper).toDto(note);
 
         // Act
         NoteDto result = noteService.findNoteById(id);
@@ -59,6 +94,133 @@ public class NoteServiceTest {
     }
 
 
+    @Test
+    @DisplayName("Should serve the second read from the cache")
+    public void findNoteByIdCachedTest() throws NoteNotFoundException {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        note.setId(1);
+        when(noteRepository.findById(1)).thenReturn(Optional.of(note));
+
+        // Act
+        NoteDto first = noteService.findNoteById(1);
+        NoteDto second = noteService.findNoteById(1);
+
+        // Assert
+        assertNotSame(first, second);
+        assertEquals(first.getNote(), second.getNote());
+        verify(noteRepository, times(1)).findById(1);
+    }
+
+
+    @Test
+    @DisplayName("Should serve the cached note when a version read shows it is current")
+    public void findVersionedNoteByIdTest() throws NoteNotFoundException {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        note.setId(1);
+        note.setVersion(3);
+        when(noteRepository.findById(1)).thenReturn(Optional.of(note));
+        when(noteRepository.findVersionById(1)).thenReturn(OptionalLong.of(3));
+        noteService.findNoteById(1);
+
+        // Act
+        Versioned<NoteDto> result = noteService.findVersionedNoteById(1);
+
+        // Assert
+        assertEquals(3, result.getVersion());
+        assertEquals("note", result.getValue().getNote());
+        verify(noteRepository, times(1)).findById(1);
+        verify(noteRepository).findVersionById(1);
+    }
+
+
+    @Test
+    @DisplayName("Should read the note from the database when the cached one is outdated, or in one read when none is cached")
+    public void findVersionedNoteByIdOutdatedTest() throws NoteNotFoundException {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        note.setId(1);
+        note.setVersion(3);
+        Note updated = new Note(1, "updated");
+        updated.setId(1);
+        updated.setVersion(4);
+        Note uncached = new Note(1, "uncached");
+        uncached.setId(2);
+        when(noteRepository.findById(1)).thenReturn(Optional.of(note), Optional.of(updated));
+        when(noteRepository.findById(2)).thenReturn(Optional.of(uncached));
+        noteService.findNoteById(1);
+
+        // Act
+        Versioned<NoteDto> result = noteService.findVersionedNoteById(1, 4);
+        Versioned<NoteDto> loaded = noteService.findVersionedNoteById(2);
+
+        // Assert
+        assertEquals(4, result.getVersion());
+        assertEquals("updated", result.getValue().getNote());
+        assertEquals("uncached", loaded.getValue().getNote());
+        verify(noteRepository, times(2)).findById(1);
+        verify(noteRepository, never()).findVersionById(anyInt());
+    }
+
+
+    @Test
+    @DisplayName("Should read the patient notes version before the notes")
+    public void getVersionedNotesByPatientIdTest() {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        when(noteRepository.findPatientNotesVersion(1)).thenReturn(5L);
+        when(noteRepository.findByPatientIdOrderByDateAsc(1)).thenReturn(List.of(note));
+
+        // Act
+        Versioned<List<NoteDto>> result = noteService.getVersionedNotesByPatientId(1);
+
+        // Assert
+        assertEquals(5, result.getVersion());
+        assertEquals(1, result.getValue().size());
+        InOrder inOrder = inOrder(noteRepository);
+        inOrder.verify(noteRepository).findPatientNotesVersion(1);
+        inOrder.verify(noteRepository).findByPatientIdOrderByDateAsc(1);
+    }
+
+
+    @Test
+    @DisplayName("Should serve the cached patient notes only while the patient notes version is the one they were read at")
+    public void getVersionedNotesByPatientIdCachedTest() {
+
+        // Arrange
+        when(noteRepository.findPatientNotesVersion(1)).thenReturn(5L, 5L, 6L);
+        when(noteRepository.findByPatientIdOrderByDateAsc(1)).thenReturn(List.of(new Note(1, "note")));
+
+        // Act
+        noteService.getVersionedNotesByPatientId(1);
+        Versioned<List<NoteDto>> cached = noteService.getVersionedNotesByPatientId(1);
+        Versioned<List<NoteDto>> reloaded = noteService.getVersionedNotesByPatientId(1);
+
+        // Assert
+        assertEquals(5, cached.getVersion());
+        assertEquals(6, reloaded.getVersion());
+        verify(noteRepository, times(2)).findByPatientIdOrderByDateAsc(1);
+    }
+
+
+    @Test
+    @DisplayName("Should Throw NoteNotFoundException when reading the version of a missing note")
+    public void getNoteVersionNegativeTest() {
+
+        // Arrange
+        when(noteRepository.findVersionById(1)).thenReturn(OptionalLong.empty());
+
+        // Act
+        // Assert
+        assertThrows(NoteNotFoundException.class, () -> noteService.getNoteVersion(1));
+    }
+
+
     @Test
     @DisplayName("Should Throw NoteNotFoundException")
     public void findNoteByIdNegativeTest() {
@@ -85,12 +247,12 @@ public class NoteServiceTest {
         NoteDto patientDto1 = new NoteDto(1, "note");
         NoteDto patientDto2 = new NoteDto(2, "note2");
 
-        when(noteRepository.findAll()).thenReturn(Arrays.asList(note, note2));
-        when(modelMapper.map(note, NoteDto.class)).thenReturn(patientDto1);
-        when(modelMapper.map(note2, NoteDto.class)).thenReturn(patientDto2);
+        when(noteRepository.readAll(null)).thenReturn(Arrays.asList(note, note2));
+        doReturn(patientDto1).when(noteMapper).toDto(note);
+        doReturn(patientDto2).when(noteMapper).toDto(note2);
 
         // Act
-        List<NoteDto> result = noteService.getAllNotes();
+        List<NoteDto> result = noteService.getAllNotes(null);
 
         // Assert
         assertEquals(2, result.size());
@@ -98,8 +260,8 @@ public class NoteServiceTest {
         assertEquals("note", result.get(0).getNote());
         assertEquals(2, result.get(1).getPatientId());
         assertEquals("note2", result.get(1).getNote());
-        verify(noteRepository, times(1)).findAll();
-        verify(modelMapper, times(2)).map(any(Note.class), eq(NoteDto.class));
+        verify(noteRepository, times(1)).readAll(null);
+        verify(noteMapper, times(2)).toDto(any(Note.class));
     }
 
 
@@ -115,9 +277,9 @@ public class NoteServiceTest {
         note2.setPatientId(patientId);
         NoteDto noteDto1 = new NoteDto();
         NoteDto noteDto2 = new NoteDto();
-        when(noteRepository.findAll()).thenReturn(Arrays.asList(note1, note2));
-        when(modelMapper.map(note1, NoteDto.class)).thenReturn(noteDto1);
-        when(modelMapper.map(note2, NoteDto.class)).thenReturn(noteDto2);
+        when(noteRepository.findByPatientIdOrderByDateAsc(patientId)).thenReturn(Arrays.asList(note1, note2));
+        doReturn(noteDto1).when(noteMapper).toDto(note1);
+        doReturn(noteDto2).when(noteMapper).toDto(note2);
 
         // Act
         List<NoteDto> result = noteService.getNotesByPatientId(patientId);
@@ -133,17 +295,176 @@ public class NoteServiceTest {
 
         // Arrange
         int patientId = 1;
-        Note note1 = new Note();
-        note1.setPatientId(2);
-        Note note2 = new Note();
-        note2.setPatientId(3);
-        when(noteRepository.findAll()).thenReturn(Arrays.asList(note1, note2));
+        when(noteRepository.findByPatientIdOrderByDateAsc(patientId)).thenReturn(List.of());
 
         // Act
         List<NoteDto> result = noteService.getNotesByPatientId(patientId);
 
         // Assert
         assertTrue(result.isEmpty());
+        verify(noteRepository, never()).findAll();
+    }
+
+
+    @Test
+    @DisplayName("should count trigger terms across the notes of a patient")
+    void countTriggerTermsTest() {
+
+        // Arrange
+        Note note1 = new Note(1, "Le patient déclare qu'il fume depuis peu. Fumeur depuis 10 ans.");
+        Note note2 = new Note(1, "Tests de laboratoire indiquant une MICROALBUMINE élevée");
+        when(noteRepository.findByPatientIdOrderByDateAsc(1)).thenReturn(List.of(note1, note2));
+
+        // Act
+        TriggerTermCountDto result = noteService.countTriggerTerms(1, List.of("Fumeur", "Microalbumine", "Vertige", "fumeur"));
+
+        // Assert
+        assertEquals(1, result.getPatientId());
+        assertEquals(2, result.getNoteCount());
+        assertEquals(List.of("Fumeur", "Microalbumine", "Vertige"), List.copyOf(result.getCounts().keySet()));
+        assertEquals(1, result.getCounts().get("Fumeur"));
+        assertEquals(1, result.getCounts().get("Microalbumine"));
+        assertEquals(0, result.getCounts().get("Vertige"));
+        assertEquals(2, result.getTotal());
+    }
+
+
+    @Test
+    @DisplayName("should reject too many trigger terms or a too long one before reading the notes")
+    void countTriggerTermsTooManyTest() {
+
+        // Arrange
+        List<String> tooMany = Collections.nCopies(NoteService.MAX_TRIGGER_TERMS + 1, "Fumeur");
+        List<String> tooLong = List.of("Fumeur", "a".repeat(NoteService.MAX_TRIGGER_TERM_LENGTH + 1));
+
+        // Act
+        // Assert
+        assertThrows(InvalidNoteRequestException.class, () -> noteService.countTriggerTerms(1, tooMany));
+        assertThrows(InvalidNoteRequestException.class, () -> noteService.countTriggerTerms(1, tooLong));
+        verifyNoInteractions(noteRepository);
+    }
+
+
+    @Test
+    @DisplayName("should return a page of notes ordered by id")
+    void getNotesPageTest() {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        NoteDto noteDto = new NoteDto(1, "note");
+        when(noteRepository.findByIdGreaterThan(eq(5), any(Pageable.class))).thenReturn(List.of(note));
+        doReturn(noteDto).when(noteMapper).toDto(note);
+
+        // Act
+        List<NoteDto> result = noteService.getNotesPage(5, 20);
+
+        // Assert
+        assertEquals(List.of(noteDto), result);
+        verify(noteRepository).findByIdGreaterThan(eq(5), argThat(pageable ->
+                pageable.getPageSize() == 20 && pageable.getSort().getOrderFor("id") != null));
+        assertEquals(1, meterRegistry.get("note.service.result.size").tag("method", "getNotesPage").summary().count());
+        assertEquals(1, meterRegistry.get("note.service.result.size").tag("method", "getNotesPage").summary().totalAmount());
+    }
+
+
+    @Test
+    @DisplayName("should cap the page size of a patient page")
+    void getNotesByPatientIdPageTest() {
+
+        // Arrange
+        when(noteRepository.findByPatientIdAndIdGreaterThan(eq(1), eq(0), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        List<NoteDto> result = noteService.getNotesByPatientIdPage(1, 0, 1_000_000);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(noteRepository).findByPatientIdAndIdGreaterThan(eq(1), eq(0),
+                argThat(pageable -> pageable.getPageSize() == NoteService.MAX_PAGE_SIZE));
+    }
+
+
+    @Test
+    @DisplayName("should read note summaries with a projection, bypassing the mapper and the cache")
+    void getVersionedNoteSummariesByPatientIdTest() {
+
+        // Arrange
+        List<NoteSummaryDto> summaries = List.of(new NoteSummaryDto(1, 1, LocalDate.now()));
+        when(noteRepository.findPatientNotesVersion(1)).thenReturn(2L);
+        when(noteRepository.findByPatientIdOrderByDateAsc(1, NoteSummaryDto.class)).thenReturn(summaries);
+
+        // Act
+        Versioned<List<NoteSummaryDto>> result = noteService.getVersionedNoteSummariesByPatientId(1);
+
+        // Assert
+        assertSame(summaries, result.getValue());
+        assertEquals(2, result.getVersion());
+        verify(noteRepository, never()).findByPatientIdOrderByDateAsc(1);
+        verifyNoInteractions(noteMapper);
+    }
+
+
+    @Test
+    @DisplayName("should cap the size of a page of note summaries")
+    void getNoteSummariesPageTest() {
+
+        // Arrange
+        when(noteRepository.findByIdGreaterThan(eq(0), any(Pageable.class), eq(NoteSummaryDto.class))).thenReturn(List.of());
+
+        // Act
+        List<NoteSummaryDto> result = noteService.getNoteSummariesPage(0, 1_000_000);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(noteRepository).findByIdGreaterThan(eq(0),
+                argThat(pageable -> pageable.getPageSize() == NoteService.MAX_PAGE_SIZE), eq(NoteSummaryDto.class));
+    }
+
+
+    @Test
+    @DisplayName("should stream all notes")
+    void streamAllNotesTest() {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        NoteDto noteDto = new NoteDto(1, "note");
+        when(noteRepository.streamAll()).thenReturn(Stream.of(note));
+        doReturn(noteDto).when(noteMapper).toDto(note);
+
+        // Act
+        List<NoteDto> result;
+        try (Stream<NoteDto> notes = noteService.streamAllNotes()) {
+            result = notes.collect(Collectors.toList());
+        }
+
+        // Assert
+        assertEquals(List.of(noteDto), result);
+        verify(noteRepository, never()).findAll();
+    }
+
+
+    @Test
+    @DisplayName("should reload the notes of a patient after one of them is updated")
+    void getNotesByPatientIdEvictedTest() throws NoteNotFoundException {
+
+        // Arrange
+        Note note = new Note(1, "note");
+        note.setId(3);
+        when(noteRepository.findByPatientIdOrderByDateAsc(1)).thenReturn(List.of(note));
+        when(noteRepository.updateContent(any(Note.class))).thenReturn(Optional.of(note));
+
+        // Act
+        noteService.getNotesByPatientId(1);
+        noteService.getNotesByPatientId(1);
+        noteService.updateNote(3, new NoteDto(2, "moved"));
+        noteService.getNotesByPatientId(1);
+
+        // Assert
+        verify(noteRepository, times(2)).findByPatientIdOrderByDateAsc(1);
+        verify(noteCache).evictNote(3);
+        verify(noteCache).evictPatient(1);
+        verify(noteCache).evictPatient(2);
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(1, 2));
     }
 
 
@@ -155,8 +476,8 @@ public class NoteServiceTest {
         NoteDto noteDto = new NoteDto(1, "note");
         Note note = new Note(1, "note");
         when(noteRepository.save(note)).thenReturn(note);
-        when(modelMapper.map(noteDto, Note.class)).thenReturn(note);
-        when(modelMapper.map(note, NoteDto.class)).thenReturn(noteDto);
+        doReturn(note).when(noteMapper).toEntity(noteDto);
+        doReturn(noteDto).when(noteMapper).toDto(note);
         when(sequenceGenerator.generateSequence(anyString())).thenReturn(Long.valueOf(1));
 
         // Act
@@ -165,8 +486,50 @@ public class NoteServiceTest {
         // Assert
         assertEquals(noteDto, result);
         verify(noteRepository, times(1)).save(note);
-        verify(modelMapper, times(1)).map(noteDto, Note.class);
-        verify(modelMapper, times(1)).map(note, NoteDto.class);
+        verify(noteMapper, times(1)).toEntity(noteDto);
+        verify(noteMapper, times(1)).toDto(note);
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(1));
+    }
+
+
+    @Test
+    @DisplayName("should execute a bulk in one write and report each operation")
+    void executeBulkTest() {
+
+        // Arrange
+        NoteDto created = new NoteDto(1, "created");
+        NoteDto updated = new NoteDto(2, "updated");
+        List<BulkNoteOperation> operations = List.of(
+                BulkNoteOperation.create(created),
+                BulkNoteOperation.update(7, updated),
+                BulkNoteOperation.delete(8),
+                BulkNoteOperation.delete(9),
+                BulkNoteOperation.create(new NoteDto(1, " ")),
+                BulkNoteOperation.delete(7));
+        when(noteRepository.findTargetsByIds(Set.of(7, 8, 9))).thenReturn(Map.of(7, target(7, 2, 4), 8, target(8, 3, 1)));
+        when(sequenceGenerator.reserveSequence(Note.SEQUENCE_NAME, 1)).thenReturn(40L);
+        when(noteRepository.bulkWrite(anyList())).thenReturn(Map.of(2, "write error"));
+
+        // Act
+        List<BulkNoteResult> results = noteService.executeBulk(operations);
+
+        // Assert
+        assertEquals(6, results.size());
+        assertEquals(BulkNoteResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(40, results.get(0).getId());
+        assertEquals(BulkNoteResult.Status.UPDATED, results.get(1).getStatus());
+        assertEquals(BulkNoteResult.Status.FAILED, results.get(2).getStatus());
+        assertEquals("write error", results.get(2).getMessage());
+        assertEquals(BulkNoteResult.Status.NOT_FOUND, results.get(3).getStatus());
+        assertEquals(BulkNoteResult.Status.INVALID, results.get(4).getStatus());
+        assertEquals(BulkNoteResult.Status.INVALID, results.get(5).getStatus());
+        verify(noteRepository, times(1)).bulkWrite(argThat(writes -> writes.size() == 3
+                && writes.get(0).getType() == NoteWrite.Type.INSERT && writes.get(0).getId() == 40
+                && writes.get(1).getType() == NoteWrite.Type.UPDATE && writes.get(1).getNote().getPatientId() == 2
+                && writes.get(2).getType() == NoteWrite.Type.DELETE && writes.get(2).getId() == 8));
+        verify(noteRepository, never()).save(any());
+        verify(sequenceGenerator, never()).generateSequence(anyString());
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(1, 2, 3));
     }
 
 
@@ -176,20 +539,26 @@ public class NoteServiceTest {
 
         // Arrange
         int id = 1;
-        NoteDto noteDto = new NoteDto(1, "note");
-        Note note = new Note(1, "note");
-        when(noteRepository.findById(id)).thenReturn(Optional.of(note));
-        when(noteRepository.save(note)).thenReturn(note);
-        when(modelMapper.map(note, NoteDto.class)).thenReturn(noteDto);
+        NoteDto noteDto = new NoteDto(2, "updated");
+        Note previous = new Note(1, null);
+        previous.setId(id);
+        when(noteRepository.updateContent(any(Note.class))).thenReturn(Optional.of(previous));
 
         // Act
         NoteDto result = noteService.updateNote(id, noteDto);
 
         // Assert
-        assertEquals(noteDto, result);
-        verify(noteRepository, times(1)).findById(id);
-        verify(noteRepository, times(1)).save(note);
-        verify(modelMapper, times(1)).map(note, NoteDto.class);
+        assertEquals(id, result.getId());
+        assertEquals(2, result.getPatientId());
+        assertEquals("updated", result.getNote());
+        assertEquals(LocalDate.now(), result.getDate());
+        verify(noteRepository, times(1)).updateContent(argThat(note ->
+                note.getId() == id && note.getPatientId() == 2 && note.getNote().equals("updated")));
+        verify(noteRepository, never()).findById(anyInt());
+        verify(noteRepository, never()).save(any());
+        verify(noteCache).evictPatient(1);
+        verify(noteCache).evictPatient(2);
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(1, 2));
     }
 
 
@@ -204,9 +573,9 @@ public class NoteServiceTest {
         // Act
         // Assert
         assertThrows(NoteNotFoundException.class, () -> noteService.updateNote(id, noteDto));
-        verify(noteRepository, times(1)).findById(id);
-        verify(noteRepository, times(0)).save(any());
-        verify(modelMapper, times(0)).map(any(), any());
+        verify(noteRepository, times(1)).updateContent(any(Note.class));
+        verify(noteMapper, never()).toDto(any());
+        verify(noteCache, never()).evictNote(anyInt());
     }
 
 
@@ -218,14 +587,18 @@ public class NoteServiceTest {
         int noteId = 1;
         Note note = new Note();
         note.setId(noteId);
-        when(noteRepository.findById(noteId)).thenReturn(Optional.of(note));
+        note.setPatientId(4);
+        when(noteRepository.removeById(noteId)).thenReturn(Optional.of(note));
 
         // Act
         noteService.deleteNote(noteId);
 
         // Assert
-        verify(noteRepository, times(1)).findById(noteId);
-        verify(noteRepository, times(1)).delete(note);
+        verify(noteRepository, times(1)).removeById(noteId);
+        verify(noteRepository, never()).findById(anyInt());
+        verify(noteCache).evictNote(noteId);
+        verify(noteCache).evictPatient(4);
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(4));
     }
 
 
@@ -235,12 +608,320 @@ public class NoteServiceTest {
 
         // Arrange
         int noteId = 1;
-        when(noteRepository.findById(noteId)).thenReturn(Optional.empty());
+        when(noteRepository.removeById(noteId)).thenReturn(Optional.empty());
 
         // Act
         // Assert
         assertThrows(NoteNotFoundException.class, () -> noteService.deleteNote(noteId));
-        verify(noteRepository, times(1)).findById(noteId);
-        verify(noteRepository, never()).delete(any(Note.class));
+        verify(noteRepository, times(1)).removeById(noteId);
+        verify(noteCache, never()).evictNote(anyInt());
+    }
+
+
+    @Test
+    @DisplayName("should record an event for each applied write of a bulk")
+    @SuppressWarnings("unchecked")
+    void executeBulkEventsTest() {
+
+        // Arrange
+        List<NoteEvent> events = new ArrayList<>();
+        doAnswer(invocation -> {
+            Object result = invocation.<Supplier<Object>>getArgument(0).get();
+            events.addAll(invocation.<Function<Object, List<NoteEvent>>>getArgument(1).apply(result));
+            return result;
+        }).when(noteOutbox).write(any(), any());
+        when(noteRepository.findTargetsByIds(Set.of(7, 8, 9))).thenReturn(Map.of(7, target(7, 2, 4), 8, target(8, 3, 1),
+                9, target(9, 5, 0)));
+        when(sequenceGenerator.reserveSequence(Note.SEQUENCE_NAME, 1)).thenReturn(40L);
+        when(noteRepository.bulkWrite(anyList())).thenReturn(Map.of(2, "write error"));
+
+        // Act
+        noteService.executeBulk(List.of(
+                BulkNoteOperation.create(new NoteDto(1, "created")),
+                BulkNoteOperation.update(7, new NoteDto(2, "updated")),
+                BulkNoteOperation.delete(8),
+                BulkNoteOperation.delete(9)));
+
+        // Assert
+        assertEquals(3, events.size());
+        assertEquals(NoteEvent.Type.CREATED, events.get(0).getType());
+        assertEquals(40, events.get(0).getNoteId());
+        assertEquals(NoteEvent.Type.UPDATED, events.get(1).getType());
+        assertEquals(5, events.get(1).getVersion());
+        assertEquals(NoteEvent.Type.DELETED, events.get(2).getType());
+        assertEquals(9, events.get(2).getNoteId());
+        assertEquals(5, events.get(2).getPatientId());
+    }
+
+
+    @Test
+    @DisplayName("should bump the note list version of the patient within the write, and so within its transaction")
+    @SuppressWarnings("unchecked")
+    void deleteNoteVersionInWriteTest() throws NoteNotFoundException {
+
+        // Arrange
+        List<String> calls = new ArrayList<>();
+        doAnswer(invocation -> {
+            calls.add("begin");
+            Object result = invocation.<Supplier<Object>>getArgument(0).get();
+            calls.add("commit");
+            return result;
+        }).when(noteOutbox).write(any(), any());
+        when(noteRepository.removeById(1)).thenReturn(Optional.of(target(1, 3, 0)));
+        doAnswer(invocation -> calls.add("bump")).when(noteRepository).incrementPatientNotesVersions(Set.of(3));
+
+        // Act
+        noteService.deleteNote(1);
+
+        // Assert
+        assertEquals(List.of("begin", "bump", "commit"), calls);
+    }
+
+
+    @Test
+    @DisplayName("should record an update event with the version it produced")
+    @SuppressWarnings("unchecked")
+    void updateNoteEventTest() throws NoteNotFoundException {
+
+        // Arrange
+        List<NoteEvent> events = new ArrayList<>();
+        doAnswer(invocation -> {
+            Object result = invocation.<Supplier<Object>>getArgument(0).get();
+            events.addAll(invocation.<Function<Object, List<NoteEvent>>>getArgument(1).apply(result));
+            return result;
+        }).when(noteOutbox).write(any(), any());
+        when(noteRepository.updateContent(any(Note.class))).thenReturn(Optional.of(target(1, 1, 2)));
+
+        // Act
+        noteService.updateNote(1, new NoteDto(2, "updated"));
+
+        // Assert
+        assertEquals(1, events.size());
+        assertEquals(NoteEvent.Type.UPDATED, events.get(0).getType());
+        assertEquals(2, events.get(0).getPatientId());
+        assertEquals(3, events.get(0).getVersion());
+    }
+
+
+    @Test
+    @DisplayName("should count a note already inserted by an earlier attempt as inserted")
+    void insertNotesTest() {
+
+        // Arrange
+        List<Note> notes = List.of(target(40, 1, 0), target(41, 2, 0), target(42, 3, 0));
+        when(noteRepository.bulkWrite(anyList())).thenReturn(Map.of(
+                0, "E11000 duplicate key error collection: mediscreen.notes index: _id_",
+                2, "Document failed validation"));
+
+        // Act
+        int rejected = noteService.insertNotes(notes);
+
+        // Assert
+        assertEquals(1, rejected);
+        verify(noteRepository).bulkWrite(argThat(writes -> writes.size() == 3
+                && writes.stream().allMatch(write -> write.getType() == NoteWrite.Type.INSERT)));
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(1, 2, 3));
+    }
+
+
+    @Test
+    @DisplayName("should skip the notes already inserted by an earlier attempt of a replayed batch")
+    void insertNotesReplayTest() {
+
+        // Arrange
+        List<Note> notes = List.of(target(40, 1, 0), target(41, 2, 0));
+        when(noteRepository.findTargetsByIds(List.of(40, 41))).thenReturn(Map.of(40, target(40, 1, 0)));
+
+        // Act
+        int rejected = noteService.insertNotes(notes);
+
+        // Assert
+        assertEquals(0, rejected);
+        verify(noteRepository).bulkWrite(argThat(writes -> writes.size() == 1 && writes.get(0).getId() == 41));
+    }
+
+
+    @Test
+    @DisplayName("should find cached notes locally and the others in one query, reporting the missing ids")
+    void findNotesByIdsTest() {
+
+        // Arrange
+        NoteDto cached = new NoteDto(1, "cached");
+        cached.setId(1);
+        noteCache.putNote(cached, 0, noteCache.stamp());
+        when(noteRepository.findByIdIn(List.of(3, 2))).thenReturn(List.of(target(2, 1, 0)));
+
+        // Act
+        NoteBatchDto result = noteService.findNotesByIds(List.of(3, 1, 2, 1));
+
+        // Assert
+        assertEquals(List.of(1, 2), List.copyOf(result.getNotes().keySet()));
+        assertEquals("cached", result.getNotes().get(1).getNote());
+        assertEquals(List.of(3), result.getMissingIds());
+        verify(noteRepository, times(1)).findByIdIn(any());
+        verify(noteRepository, never()).findById(anyInt());
+    }
+
+
+    @Test
+    @DisplayName("should get the notes of several patients in one query, grouped by patient")
+    void getNotesByPatientIdsTest() {
+
+        // Arrange
+        when(noteRepository.findByPatientIdInOrderByPatientIdAscDateAsc(List.of(5, 6, 7)))
+                .thenReturn(List.of(target(1, 5, 0), target(2, 5, 0), target(3, 7, 0)));
+
+        // Act
+        Map<Integer, List<NoteDto>> result = noteService.getNotesByPatientIds(List.of(5, 6, 7));
+
+        // Assert
+        assertEquals(List.of(5, 6, 7), List.copyOf(result.keySet()));
+        assertEquals(2, result.get(5).size());
+        assertTrue(result.get(6).isEmpty());
+        assertEquals(3, result.get(7).get(0).getId());
+        assertEquals(List.of(1, 2), noteService.getNotesByPatientIds(List.of(5)).get(5).stream().map(NoteDto::getId).toList());
+        verify(noteRepository, times(1)).findByPatientIdInOrderByPatientIdAscDateAsc(any());
+    }
+
+
+    @Test
+    @DisplayName("should find a note missing from the hot notes in the archive when archiving is enabled")
+    void findNoteByIdArchivedTest() throws NoteNotFoundException {
+
+        // Arrange
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteRepository.findById(1)).thenReturn(Optional.empty());
+        when(noteRepository.findArchivedById(1)).thenReturn(Optional.of(target(1, 4, 2)));
+
+        // Act
+        NoteDto result = noteService.findNoteById(1);
+
+        // Assert
+        assertEquals(1, result.getId());
+        assertEquals(4, result.getPatientId());
+    }
+
+
+    @Test
+    @DisplayName("should look for the notes missing from the hot notes in the archive with one query")
+    void findNotesByIdsArchivedTest() {
+
+        // Arrange
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteRepository.findByIdIn(List.of(1, 2, 3))).thenReturn(List.of(target(2, 1, 0)));
+        when(noteRepository.findArchivedByIds(Set.of(1, 3))).thenReturn(List.of(target(1, 1, 0)));
+
+        // Act
+        NoteBatchDto result = noteService.findNotesByIds(List.of(1, 2, 3));
+
+        // Assert
+        assertEquals(List.of(1, 2), List.copyOf(result.getNotes().keySet()));
+        assertEquals(List.of(3), result.getMissingIds());
+    }
+
+
+    @Test
+    @DisplayName("should merge the archived notes of a patient with the hot ones, once each and oldest first")
+    void getVersionedNotesWithArchiveByPatientIdTest() {
+
+        // Arrange
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteRepository.findPatientNotesVersion(5)).thenReturn(3L);
+        when(noteRepository.findByPatientIdOrderByDateAsc(5)).thenReturn(List.of(dated(3, 5, LocalDate.of(2024, 1, 1))));
+        when(noteRepository.findArchivedByPatientId(5)).thenReturn(List.of(dated(1, 5, LocalDate.of(2019, 1, 1)),
+                dated(2, 5, LocalDate.of(2020, 1, 1)), dated(3, 5, LocalDate.of(2024, 1, 1))));
+
+        // Act
+        Versioned<List<NoteDto>> result = noteService.getVersionedNotesWithArchiveByPatientId(5);
+
+        // Assert
+        assertEquals(3L, result.getVersion());
+        assertEquals(List.of(1, 2, 3), result.getValue().stream().map(NoteDto::getId).toList());
+    }
+
+
+    @Test
+    @DisplayName("should move an archived note back to the hot notes before updating it")
+    void updateArchivedNoteTest() throws NoteNotFoundException {
+
+        // Arrange
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteRepository.updateContent(any(Note.class))).thenReturn(Optional.empty(), Optional.of(target(1, 4, 2)));
+        when(noteRepository.restoreArchived(1)).thenReturn(true);
+
+        // Act
+        NoteDto result = noteService.updateNote(1, new NoteDto(4, "updated"));
+
+        // Assert
+        assertEquals(LocalDate.now(), result.getDate());
+        InOrder inOrder = inOrder(noteRepository);
+        inOrder.verify(noteRepository).updateContent(any(Note.class));
+        inOrder.verify(noteRepository).restoreArchived(1);
+        inOrder.verify(noteRepository).updateContent(any(Note.class));
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(4));
+    }
+
+
+    @Test
+    @DisplayName("should delete a note missing from the hot notes from the archive")
+    void deleteArchivedNoteTest() throws NoteNotFoundException {
+
+        // Arrange
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteRepository.removeById(1)).thenReturn(Optional.empty());
+        when(noteRepository.removeArchivedById(1)).thenReturn(Optional.of(target(1, 4, 2)));
+
+        // Act
+        noteService.deleteNote(1);
+
+        // Assert
+        verify(noteCache).evictNote(1);
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(4));
+    }
+
+
+    @Test
+    @DisplayName("should also delete the archived copy of a hot note when archiving is enabled")
+    void deleteHotNoteArchivedCopyTest() throws NoteNotFoundException {
+
+        // Arrange
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteRepository.removeById(1)).thenReturn(Optional.of(target(1, 4, 2)));
+
+        // Act
+        noteService.deleteNote(1);
+
+        // Assert
+        verify(noteRepository).removeArchivedById(1);
+        verify(noteRepository).incrementPatientNotesVersions(Set.of(4));
+    }
+
+
+    @Test
+    @DisplayName("should not reach the archive when archiving is disabled")
+    void findNoteByIdArchiveDisabledTest() {
+
+        // Arrange
+        when(noteRepository.findById(1)).thenReturn(Optional.empty());
+
+        // Act
+        // Assert
+        assertThrows(NoteNotFoundException.class, () -> noteService.findNoteById(1));
+        verify(noteRepository, never()).findArchivedById(anyInt());
+    }
+
+
+    private static Note dated(int id, int patientId, LocalDate date) {
+        Note note = target(id, patientId, 0);
+        note.setDate(date);
+        return note;
+    }
+
+
+    private static Note target(int id, int patientId, long version) {
+        Note note = new Note(patientId, null);
+        note.setId(id);
+        note.setVersion(version);
+        return note;
     }
 }
@@ -0,0 +1,104 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.note.dto.NotePeriodStatsDto;
+import com.mediscreen.note.dto.PatientNoteStatsDto;
+import com.mediscreen.note.exception.InvalidNoteRequestException;
+import com.mediscreen.note.repository.DateBucket;
+import com.mediscreen.note.repository.NoteRepository;
+import com.mediscreen.note.repository.NoteStatsQuery;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteStatsServiceTest {
+
+
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private NoteArchiveService noteArchive;
+    @InjectMocks
+    private NoteStatsService noteStatsService;
+
+
+    @Test
+    @DisplayName("should aggregate the notes of every patient when no patient is given")
+    void getPatientStatsTest() {
+
+        // Arrange
+        ArgumentCaptor<NoteStatsQuery> query = ArgumentCaptor.forClass(NoteStatsQuery.class);
+        List<PatientNoteStatsDto> stats = List.of(new PatientNoteStatsDto(1, 3, LocalDate.of(2022, 1, 1), LocalDate.of(2023, 1, 1)));
+        when(noteRepository.aggregateByPatient(query.capture())).thenReturn(stats);
+
+        // Act
+        List<PatientNoteStatsDto> result = noteStatsService.getPatientStats(null, null, LocalDate.of(2023, 6, 30), null);
+
+        // Assert
+        assertSame(stats, result);
+        assertTrue(query.getValue().getPatientIds().isEmpty());
+        assertNull(query.getValue().getFrom());
+        assertEquals(LocalDate.of(2023, 6, 30), query.getValue().getTo());
+    }
+
+
+    @Test
+    @DisplayName("should aggregate the notes of the given patients by period")
+    void getPeriodStatsTest() {
+
+        // Arrange
+        ArgumentCaptor<NoteStatsQuery> query = ArgumentCaptor.forClass(NoteStatsQuery.class);
+        List<NotePeriodStatsDto> stats = List.of(new NotePeriodStatsDto("2023-01", 4, 2));
+        when(noteRepository.aggregateByPeriod(query.capture(), eq(DateBucket.MONTH))).thenReturn(stats);
+
+        // Act
+        List<NotePeriodStatsDto> result = noteStatsService.getPeriodStats(DateBucket.MONTH, List.of(1, 2), null, null, null);
+
+        // Assert
+        assertSame(stats, result);
+        assertEquals(List.of(1, 2), query.getValue().getPatientIds());
+        assertFalse(query.getValue().isIncludeArchive());
+    }
+
+
+    @Test
+    @DisplayName("should include the archived notes when the date range reaches the archive")
+    void getPatientStatsArchiveTest() {
+
+        // Arrange
+        ArgumentCaptor<NoteStatsQuery> query = ArgumentCaptor.forClass(NoteStatsQuery.class);
+        LocalDate from = LocalDate.of(2015, 1, 1);
+        when(noteArchive.reachesArchive(from)).thenReturn(true);
+        when(noteRepository.aggregateByPatient(query.capture())).thenReturn(List.of());
+
+        // Act
+        noteStatsService.getPatientStats(List.of(1), from, null, null);
+
+        // Assert
+        assertTrue(query.getValue().isIncludeArchive());
+    }
+
+
+    @Test
+    @DisplayName("should reject an inverted date range without querying")
+    void getPeriodStatsInvertedRangeTest() {
+
+        // Act
+        // Assert
+        assertThrows(InvalidNoteRequestException.class, () -> noteStatsService.getPeriodStats(DateBucket.DAY, List.of(),
+                LocalDate.of(2023, 2, 1), LocalDate.of(2023, 1, 1), null));
+        verifyNoInteractions(noteRepository);
+    }
+}
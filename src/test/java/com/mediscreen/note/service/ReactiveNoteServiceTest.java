@@ -0,0 +1,239 @@
+package com.mediscreen.note.service;
+
+import com.mediscreen.library.dto.NoteDto;
+import com.mediscreen.note.cache.NoteCache;
+import com.mediscreen.note.exception.NoteNotFoundException;
+import com.mediscreen.note.mapper.NoteMapper;
+import com.mediscreen.note.model.Note;
+import com.mediscreen.note.repository.ReactiveNoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveNoteServiceTest {
+
+
+    @Mock
+    private ReactiveNoteRepository reactiveNoteRepository;
+    @Mock
+    private NoteService noteService;
+    @Mock
+    private NoteSearchService noteSearchService;
+    @Spy
+    private NoteMapper noteMapper;
+    @Spy
+    private NoteCache noteCache = new NoteCache(NoteCache.Mode.LOCAL, 100, Duration.ofMinutes(10), Duration.ofSeconds(5),
+            new SimpleMeterRegistry());
+    @Mock
+    private NoteArchiveService noteArchive;
+    @InjectMocks
+    private ReactiveNoteService reactiveNoteService;
+
+
+    private static Note note(int id, int patientId, String body) {
+        Note note = new Note(patientId, body);
+        note.setId(id);
+        return note;
+    }
+
+
+    @Test
+    @DisplayName("should find a note once and then serve it from the cache")
+    void findNoteByIdTest() {
+
+        // Arrange
+        when(reactiveNoteRepository.findById(1)).thenReturn(Mono.just(note(1, 2, "note")));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.findNoteById(1))
+                .assertNext(noteDto -> assertEquals("note", noteDto.getNote()))
+                .verifyComplete();
+        StepVerifier.create(reactiveNoteService.findNoteById(1))
+                .assertNext(noteDto -> assertEquals(2, noteDto.getPatientId()))
+                .verifyComplete();
+        verify(reactiveNoteRepository, times(1)).findById(1);
+    }
+
+
+    @Test
+    @DisplayName("should fail with NoteNotFoundException when the note does not exist")
+    void findNoteByIdNotFoundTest() throws NoteNotFoundException {
+
+        // Arrange
+        when(reactiveNoteRepository.findById(1)).thenReturn(Mono.empty());
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.findNoteById(1))
+                .expectError(NoteNotFoundException.class)
+                .verify();
+        verify(noteService, never()).findNoteById(anyInt());
+    }
+
+
+    @Test
+    @DisplayName("should fall back to the archive when the note is not hot and archiving is enabled")
+    void findNoteByIdArchivedTest() throws NoteNotFoundException {
+
+        // Arrange
+        NoteDto archived = new NoteDto(2, "archived");
+        archived.setId(1);
+        when(reactiveNoteRepository.findById(1)).thenReturn(Mono.empty());
+        when(noteArchive.isEnabled()).thenReturn(true);
+        when(noteService.findNoteById(1)).thenReturn(archived);
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.findNoteById(1))
+                .assertNext(noteDto -> assertEquals("archived", noteDto.getNote()))
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("should stream all notes ordered by id, as requested by the subscriber")
+    void getAllNotesTest() {
+
+        // Arrange
+        when(reactiveNoteRepository.findAllBy(Sort.by("id")))
+                .thenReturn(Flux.just(note(1, 1, "a"), note(2, 1, "b"), note(3, 2, "c")));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.getAllNotes(), 1)
+                .assertNext(noteDto -> assertEquals(1, noteDto.getId()))
+                .thenRequest(2)
+                .assertNext(noteDto -> assertEquals(2, noteDto.getId()))
+                .assertNext(noteDto -> assertEquals(3, noteDto.getId()))
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("should cache the notes of a patient")
+    void getNotesByPatientIdTest() {
+
+        // Arrange
+        when(reactiveNoteRepository.findByPatientIdOrderByDateAsc(1)).thenReturn(Flux.just(note(1, 1, "a"), note(2, 1, "b")));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.getNotesByPatientId(1)).expectNextCount(2).verifyComplete();
+        StepVerifier.create(reactiveNoteService.getNotesByPatientId(1)).expectNextCount(2).verifyComplete();
+        verify(reactiveNoteRepository, times(1)).findByPatientIdOrderByDateAsc(1);
+    }
+
+
+    @Test
+    @DisplayName("should stream the notes of a patient before the cursor is exhausted and cache only a complete list")
+    void getNotesByPatientIdStreamingTest() {
+
+        // Arrange
+        when(reactiveNoteRepository.findByPatientIdOrderByDateAsc(1))
+                .thenReturn(Flux.concat(Flux.just(note(1, 1, "a")), Flux.never()));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.getNotesByPatientId(1), 1)
+                .assertNext(noteDto -> assertEquals(1, noteDto.getId()))
+                .thenCancel()
+                .verify();
+        StepVerifier.create(reactiveNoteService.getNotesByPatientId(1), 1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+        verify(reactiveNoteRepository, times(2)).findByPatientIdOrderByDateAsc(1);
+    }
+
+
+    @Test
+    @DisplayName("should cap the page size")
+    void getNotesPageTest() {
+
+        // Arrange
+        when(reactiveNoteRepository.findByIdGreaterThan(eq(5), any(Pageable.class))).thenReturn(Flux.just(note(6, 1, "a")));
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.getNotesPage(5, 5000))
+                .assertNext(noteDto -> assertEquals(6, noteDto.getId()))
+                .verifyComplete();
+        verify(reactiveNoteRepository).findByIdGreaterThan(5,
+                PageRequest.of(0, NoteService.MAX_PAGE_SIZE, Sort.by("id")));
+    }
+
+
+    @Test
+    @DisplayName("should delegate writes to the blocking service off the calling thread")
+    void createNoteTest() {
+
+        // Arrange
+        NoteDto noteDto = new NoteDto(1, "note");
+        NoteDto created = new NoteDto(1, "note");
+        created.setId(7);
+        Thread caller = Thread.currentThread();
+        when(noteService.createNote(noteDto)).thenAnswer(invocation -> {
+            assertNotSame(caller, Thread.currentThread());
+            return created;
+        });
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.createNote(noteDto))
+                .expectNext(created)
+                .verifyComplete();
+    }
+
+
+    @Test
+    @DisplayName("should propagate NoteNotFoundException from a delete")
+    void deleteNoteTest() throws NoteNotFoundException {
+
+        // Arrange
+        doThrow(new NoteNotFoundException(1)).when(noteService).deleteNote(1);
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.deleteNote(1))
+                .expectError(NoteNotFoundException.class)
+                .verify();
+    }
+
+
+    @Test
+    @DisplayName("should delegate bulk operations")
+    void executeBulkTest() {
+
+        // Arrange
+        when(noteService.executeBulk(List.of())).thenReturn(List.of());
+
+        // Act
+        // Assert
+        StepVerifier.create(reactiveNoteService.executeBulk(List.of()))
+                .expectNext(List.of())
+                .verifyComplete();
+    }
+}
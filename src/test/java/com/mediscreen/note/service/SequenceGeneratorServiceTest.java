@@ -1,19 +1,32 @@
 package com.mediscreen.note.service;
 
 import com.mediscreen.note.model.DatabaseSequence;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class SequenceGeneratorServiceTest {
@@ -21,10 +34,17 @@ public class SequenceGeneratorServiceTest {
 
     @Mock
     private MongoOperations mongoOperations;
-    @InjectMocks
+    private MeterRegistry meterRegistry;
     private SequenceGeneratorService sequenceGeneratorService;
 
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sequenceGeneratorService = new SequenceGeneratorService(mongoOperations, meterRegistry, 1);
+    }
+
+
     @Test
     @DisplayName("When Sequence Exists")
     void generateSequenceTest() {
@@ -59,4 +79,100 @@ public class SequenceGeneratorServiceTest {
         // Assert
         assertEquals(1, result);
     }
+
+
+    @Test
+    @DisplayName("Should hand out a reserved block locally")
+    void generateSequenceFromBlockTest() {
+
+        // Arrange
+        meterRegistry = new SimpleMeterRegistry();
+        sequenceGeneratorService = new SequenceGeneratorService(mongoOperations, meterRegistry, 3);
+        AtomicLong storedCounter = new AtomicLong();
+        stubIncrements(storedCounter);
+
+        // Act
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            values.add(sequenceGeneratorService.generateSequence("invoice"));
+        }
+
+        // Assert
+        assertEquals(List.of(1L, 2L, 3L, 4L), values);
+        assertEquals(6, storedCounter.get());
+        verify(mongoOperations, times(2)).findAndModify(any(), any(Update.class), any(), eq(DatabaseSequence.class));
+        assertEquals(2, meterRegistry.counter("note.sequence.block.refills", "sequence", "invoice").count());
+        assertEquals(3, meterRegistry.get("note.sequence.block.size").gauge().value());
+        assertEquals(2, meterRegistry.get("note.sequence.round.trip").tag("sequence", "invoice").timer().count());
+    }
+
+
+    @Test
+    @DisplayName("Should never hand out the same value twice under contention")
+    void generateSequenceConcurrentTest() throws Exception {
+
+        // Arrange
+        sequenceGeneratorService = new SequenceGeneratorService(mongoOperations, meterRegistry, 7);
+        stubIncrements(new AtomicLong());
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    values.add(sequenceGeneratorService.generateSequence("invoice"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(4000, values.size());
+    }
+
+
+    @Test
+    @DisplayName("Should reserve a whole range in one round trip")
+    void reserveSequenceTest() {
+
+        // Arrange
+        AtomicLong storedCounter = new AtomicLong(10);
+        stubIncrements(storedCounter);
+
+        // Act
+        long first = sequenceGeneratorService.reserveSequence("invoice", 1000);
+
+        // Assert
+        assertEquals(11, first);
+        assertEquals(1010, storedCounter.get());
+        verify(mongoOperations, times(1)).findAndModify(any(), any(Update.class), any(), eq(DatabaseSequence.class));
+    }
+
+
+    @Test
+    @DisplayName("Should reject a non positive block size")
+    void invalidBlockSizeTest() {
+
+        // Act
+        // Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new SequenceGeneratorService(mongoOperations, meterRegistry, 0));
+    }
+
+
+    private void stubIncrements(AtomicLong storedCounter) {
+        when(mongoOperations.findAndModify(any(), any(Update.class), any(), eq(DatabaseSequence.class)))
+                .thenAnswer(invocation -> {
+                    Update update = invocation.getArgument(1);
+                    Number increment = (Number) update.getUpdateObject().get("$inc", Document.class).get("seq");
+                    DatabaseSequence counter = new DatabaseSequence();
+                    counter.setSeq(storedCounter.addAndGet(increment.longValue()));
+                    return counter;
+                });
+    }
 }